@@ -3,9 +3,105 @@ package com.hibernate.JPA.Hibernate;
 import javax.persistence.*;
 import java.util.List;
 
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.id.PooledIdGenerator;
+import com.hibernate.actor_movie.render.ResultRenderer;
+
 @Entity
+// One index per finder filter; industry is paired with id so the keyset pages of findActorPageByIndustry
+// are read in index order
+@Table(indexes = {
+    @Index(name = "idx_actor_name", columnList = "name"),
+    @Index(name = "idx_actor_industry", columnList = "industry, id"),
+    @Index(name = "idx_actor_age", columnList = "age"),
+    @Index(name = "idx_actor_nationality", columnList = "nationality")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.ACTOR)
+@NamedEntityGraphs({
+    // plain actor rows, movies left unloaded
+    @NamedEntityGraph(name = Actor.SUMMARY),
+    // actor rows with their movies, fetched by the same query
+    @NamedEntityGraph(name = Actor.WITH_MOVIES, attributeNodes = @NamedAttributeNode("movies"))
+})
+// Every statement ActorDao runs, parsed once when the factory starts (a query that does not parse fails the startup,
+// see NativeQueryCheck for the SQL ones) and bound with parameters, so each is one SQL string whatever its arguments
+@NamedQueries({
+    // the SELECT DISTINCT finders take a fetch graph, see QuerySupport.withGraph
+    @NamedQuery(name = Actor.FIND_BY_ID, query = "SELECT DISTINCT a FROM Actor a WHERE a.id = :id"),
+    @NamedQuery(name = Actor.FIND_ALL, query = "SELECT DISTINCT a FROM Actor a"),
+    @NamedQuery(name = Actor.FIND_BY_NAME, query = "SELECT DISTINCT a FROM Actor a WHERE a.name = :name"),
+    @NamedQuery(name = Actor.FIND_BY_INDUSTRY, query = "SELECT DISTINCT a FROM Actor a WHERE a.industry = :industry"),
+    @NamedQuery(name = Actor.FIND_BETWEEN_AGE,
+        query = "SELECT DISTINCT a FROM Actor a WHERE a.age BETWEEN :minAge AND :maxAge"),
+    // the movie filter lives in an uncorrelated subquery so it does not also filter the movies fetched by the graph
+    @NamedQuery(name = Actor.FIND_BY_MOVIE_NAME, query = "SELECT DISTINCT a FROM Actor a WHERE a.id IN "
+        + "(SELECT c.id FROM Movie m JOIN m.actor c WHERE m.movieName = :movieName)"),
+    @NamedQuery(name = Actor.SCAN_BY_INDUSTRY, query = "FROM Actor a WHERE a.industry = :industry"),
+    @NamedQuery(name = Actor.SCAN_BETWEEN_AGE, query = "FROM Actor a WHERE a.age BETWEEN :minAge AND :maxAge"),
+    @NamedQuery(name = Actor.SCAN_BY_MOVIE_NAME, query = "FROM Actor a WHERE a.id IN "
+        + "(SELECT c.id FROM Movie m JOIN m.actor c WHERE m.movieName = :movieName)"),
+    @NamedQuery(name = Actor.PAGE_BY_INDUSTRY,
+        query = "FROM Actor a WHERE a.industry = :industry AND a.id > :after ORDER BY a.id"),
+    @NamedQuery(name = Actor.PAGE_BY_MOVIE_NAME, query = "FROM Actor a WHERE a.id IN "
+        + "(SELECT c.id FROM Movie m JOIN m.actor c WHERE m.movieName = :movieName) AND a.id > :after ORDER BY a.id"),
+    @NamedQuery(name = Actor.SUMMARIES_BY_INDUSTRY,
+        query = "SELECT new com.hibernate.actor_movie.dao.ActorSummary(a.id, a.name, a.industry) FROM Actor a"
+            + " WHERE a.industry = :industry"),
+    @NamedQuery(name = Actor.SUMMARIES_BETWEEN_AGE,
+        query = "SELECT new com.hibernate.actor_movie.dao.ActorSummary(a.id, a.name, a.industry) FROM Actor a"
+            + " WHERE a.age BETWEEN :minAge AND :maxAge"),
+    // VERSIONED increments the version like an entity update would
+    @NamedQuery(name = Actor.UPDATE_NATIONALITY,
+        query = "UPDATE VERSIONED Actor SET nationality = :nationality WHERE id = :id"),
+    @NamedQuery(name = Actor.DELETE_BY_INDUSTRY, query = "DELETE FROM Actor WHERE industry = :industry")
+})
+@NamedNativeQueries({
+    @NamedNativeQuery(name = Actor.UPDATE_SALARY_BY_MOVIE, query = "UPDATE Actor SET salary = ?1, version = version + 1"
+        + " WHERE id IN (SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?2)"),
+    // the ids a bulk statement changes, for its change events and the LinkTable deletes
+    @NamedNativeQuery(name = Actor.ID_BY_ID, query = "SELECT id FROM Actor WHERE id = ?1"),
+    @NamedNativeQuery(name = Actor.IDS_BY_INDUSTRY, query = "SELECT id FROM Actor WHERE industry = ?1"),
+    @NamedNativeQuery(name = Actor.IDS_BY_MOVIE, query = "SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?1"),
+    @NamedNativeQuery(name = Actor.IDS_BY_MOVIE_NAME, query = "SELECT am.Actor_id FROM Actor_Movie am"
+        + " JOIN Movie m ON m.movieId = am.movie_id WHERE m.movieName = ?1")
+})
 public class Actor {
+    public static final String SUMMARY = "Actor.summary";
+    public static final String WITH_MOVIES = "Actor.withMovies";
+
+    public static final String FIND_BY_ID = "Actor.findById";
+    public static final String FIND_ALL = "Actor.findAll";
+    public static final String FIND_BY_NAME = "Actor.findByName";
+    public static final String FIND_BY_INDUSTRY = "Actor.findByIndustry";
+    public static final String FIND_BETWEEN_AGE = "Actor.findBetweenAge";
+    public static final String FIND_BY_MOVIE_NAME = "Actor.findByMovieName";
+    public static final String SCAN_BY_INDUSTRY = "Actor.scanByIndustry";
+    public static final String SCAN_BETWEEN_AGE = "Actor.scanBetweenAge";
+    public static final String SCAN_BY_MOVIE_NAME = "Actor.scanByMovieName";
+    public static final String PAGE_BY_INDUSTRY = "Actor.pageByIndustry";
+    public static final String PAGE_BY_MOVIE_NAME = "Actor.pageByMovieName";
+    public static final String SUMMARIES_BY_INDUSTRY = "Actor.summariesByIndustry";
+    public static final String SUMMARIES_BETWEEN_AGE = "Actor.summariesBetweenAge";
+    public static final String UPDATE_NATIONALITY = "Actor.updateNationality";
+    public static final String DELETE_BY_INDUSTRY = "Actor.deleteByIndustry";
+    public static final String UPDATE_SALARY_BY_MOVIE = "Actor.updateSalaryByMovie";
+    public static final String ID_BY_ID = "Actor.idById";
+    public static final String IDS_BY_INDUSTRY = "Actor.idsByIndustry";
+    public static final String IDS_BY_MOVIE = "Actor.idsByMovie";
+    public static final String IDS_BY_MOVIE_NAME = "Actor.idsByMovieName";
+
+    // Left at 0, the id is taken from the Actor pool of the id_pool table when the actor is inserted; a caller may
+    // still set one (see PooledIdGenerator)
     @Id
+    @GeneratedValue(generator = "actor_ids")
+    @GenericGenerator(name = "actor_ids", strategy = PooledIdGenerator.STRATEGY)
     private int id;
     private String name;
     private int age;
@@ -13,11 +109,26 @@ public class Actor {
     private double salary;
     private String nationality;
 
-    @ManyToMany(fetch = FetchType.EAGER)
+    // Optimistic locking: every update checks and increments it, so a write based on a stale copy fails instead of
+    // silently overwriting a newer one (see ActorDao.raiseActorSalaryById)
+    @Version
+    private int version;
+
+    // Lazy loads of this collection are batched: touching the movies of one actor loaded by the same
+    // EntityManager loads those of up to 500 of them with a single select (see MovieDao.addMovie)
+    // Linking a movie does not conflict with a salary or nationality change, so it leaves the version alone
+    @ManyToMany(fetch = FetchType.LAZY)
+    @OptimisticLock(excluded = true)
+    @BatchSize(size = 500)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.ACTOR_MOVIES)
     @JoinTable(
         name = "Actor_Movie",
         joinColumns = @JoinColumn(name = "Actor_id"),
-        inverseJoinColumns = @JoinColumn(name = "movie_id")
+        inverseJoinColumns = @JoinColumn(name = "movie_id"),
+        // a link exists at most once and is found from either side: (Actor_id, movie_id) for an actor's movies,
+        // (movie_id, Actor_id) for a movie's cast
+        uniqueConstraints = @UniqueConstraint(name = "uk_actor_movie", columnNames = { "Actor_id", "movie_id" }),
+        indexes = @Index(name = "idx_actor_movie_movie", columnList = "movie_id, Actor_id")
     )
     private List<Movie> movies;
 
@@ -69,6 +180,14 @@ public class Actor {
         this.nationality = nationality;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public List<Movie> getMovies() {
         return movies;
     }
@@ -77,9 +196,9 @@ public class Actor {
         this.movies = movies;
     }
 
+    // toString(): associations one level deep; see ResultRenderer
     @Override
     public String toString() {
-        return "Actor [id=" + id + ", name=" + name + ", age=" + age + ", industry=" + industry + ", salary=" + salary
-                + ", nationality=" + nationality + ", movies=" + movies + "]";
+        return ResultRenderer.describe(this);
     }
 }
@@ -1,16 +1,29 @@
 package com.hibernate.JPA.Hibernate;
 
 import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
 import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.metrics.DaoMetrics;
+import com.hibernate.actor_movie.metrics.InstrumentedActorDao;
+import com.hibernate.actor_movie.metrics.InstrumentedMovieDao;
+import com.hibernate.actor_movie.render.ResultRenderer;
+import com.hibernate.actor_movie.render.ResultWriter;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
 public class App {
-    public static void main(String[] args) {
-        ActorDao actorDao = new ActorDao();
-        MovieDao movieDao = new MovieDao();
+    public static void main(String[] args) throws IOException {
+        // Metrics are only recorded when started with -Dactor_movie.metrics=true
+        ActorDao actorDao = new InstrumentedActorDao();
+        MovieDao movieDao = new InstrumentedMovieDao();
         Scanner scanner = new Scanner(System.in);
+        // Results are rendered into a buffer and written in blocks rather than println per row
+        ResultRenderer renderer = new ResultRenderer();
+        ResultWriter out = ResultWriter.console();
         boolean exit = false;
 
         while (!exit) {
@@ -42,10 +55,7 @@ public class App {
 
             switch (choice) {
                 case 1:
-                    // Add Actor
-                    System.out.println("Enter actor ID: ");
-                    int actorId = scanner.nextInt();
-                    scanner.nextLine(); // consume newline
+                    // Add Actor; its ID is generated
                     System.out.println("Enter actor name: ");
                     String name = scanner.nextLine();
                     System.out.println("Enter actor age: ");
@@ -60,7 +70,6 @@ public class App {
                     String nationality = scanner.nextLine();
                     
                     Actor newActor = new Actor();
-                    newActor.setId(actorId);
                     newActor.setName(name);
                     newActor.setAge(age);
                     newActor.setIndustry(industry);
@@ -68,27 +77,28 @@ public class App {
                     newActor.setNationality(nationality);
                     
                     actorDao.addActor(newActor);
+                    System.out.println("Added actor ID: " + newActor.getId());
                     break;
                 case 2:
                     // Find Actor by ID
                     System.out.println("Enter actor ID: ");
                     int id = scanner.nextInt();
-                    Actor actor = actorDao.findActorById(id);
-                    System.out.println(actor);
+                    Actor actor = actorDao.findActorById(id, Actor.WITH_MOVIES);
+                    print(renderer, out, Collections.singletonList(actor));
                     break;
                 case 3:
                     // Find Actor by Name
                     System.out.println("Enter actor name: ");
                     String actorName = scanner.nextLine();
-                    List<Actor> actorsByName = actorDao.findActorByName(actorName);
-                    actorsByName.forEach(System.out::println);
+                    List<Actor> actorsByName = actorDao.findActorByName(actorName, Actor.WITH_MOVIES);
+                    print(renderer, out, actorsByName);
                     break;
                 case 4:
                     // Find Actor by Industry
                     System.out.println("Enter industry: ");
                     String actorIndustry = scanner.nextLine();
-                    List<Actor> actorsByIndustry = actorDao.findActorByIndustry(actorIndustry);
-                    actorsByIndustry.forEach(System.out::println);
+                    List<Actor> actorsByIndustry = actorDao.findActorByIndustry(actorIndustry, Actor.WITH_MOVIES);
+                    print(renderer, out, actorsByIndustry);
                     break;
                 case 5:
                     // Find Actor Between Age
@@ -96,15 +106,15 @@ public class App {
                     int minAge = scanner.nextInt();
                     System.out.println("Enter max age: ");
                     int maxAge = scanner.nextInt();
-                    List<Actor> actorsByAge = actorDao.findActorBetweenAge(minAge, maxAge);
-                    actorsByAge.forEach(System.out::println);
+                    List<Actor> actorsByAge = actorDao.findActorBetweenAge(minAge, maxAge, Actor.WITH_MOVIES);
+                    print(renderer, out, actorsByAge);
                     break;
                 case 6:
                     // Find All Actors by Movie Name
                     System.out.println("Enter movie name: ");
                     String movieName = scanner.nextLine();
-                    List<Actor> actorsByMovieName = actorDao.findAllActorsByMovieName(movieName);
-                    actorsByMovieName.forEach(System.out::println);
+                    List<Actor> actorsByMovieName = actorDao.findAllActorsByMovieName(movieName, Actor.WITH_MOVIES);
+                    print(renderer, out, actorsByMovieName);
                     break;
                 case 7:
                     // Update All Actor Salary by Movie ID
@@ -136,33 +146,53 @@ public class App {
                     actorDao.deleteAllActorsByMovieName(delMovieName);
                     break;
                 case 11:
-                    // Add Movie
+                    // Add Movie; its ID is generated
                     Movie newMovie = new Movie();
-                    movieDao.addMovie(newMovie);
+                    System.out.println("Enter movie name: ");
+                    newMovie.setMovieName(scanner.nextLine());
+                    System.out.println("Enter movie director: ");
+                    newMovie.setMovieDirector(scanner.nextLine());
+                    System.out.println("Enter genre: ");
+                    newMovie.setGenre(scanner.nextLine());
+                    System.out.println("Enter verdict: ");
+                    newMovie.setVerdict(scanner.nextLine());
+                    System.out.println("Enter collection: ");
+                    newMovie.setCollection(scanner.nextInt());
+                    scanner.nextLine(); // consume newline
+
+                    // Show the actors to pick from, then take their IDs
+                    print(renderer, out, actorDao.findAllActors());
+                    System.out.println("Enter actor IDs (comma separated): ");
+                    List<Integer> movieActorIds = new ArrayList<>();
+                    for (String movieActorId : scanner.nextLine().split(",")) {
+                        movieActorIds.add(Integer.parseInt(movieActorId.trim()));
+                    }
+                    movieDao.addMovie(newMovie, movieActorIds);
+                    System.out.println("Added movie ID: " + newMovie.getMovieId());
                     break;
                 case 12:
                     // Find Movie by Name
                     System.out.println("Enter movie name: ");
                     String findMovieName = scanner.nextLine();
-                    movieDao.findMovieByName(findMovieName);
+                    print(renderer, out, movieDao.findMovieByName(findMovieName, Movie.WITH_ACTORS));
                     break;
                 case 13:
                     // Find All Movies by Genre
                     System.out.println("Enter genre: ");
                     String genre = scanner.nextLine();
-                    movieDao.findAllMoviesByGenre(genre);
+                    print(renderer, out, movieDao.findAllMoviesByGenre(genre, Movie.WITH_ACTORS));
                     break;
                 case 14:
                     // Find All Movies by Director
                     System.out.println("Enter director: ");
                     String director = scanner.nextLine();
-                    movieDao.findAllMoviesByDirector(director);
+                    print(renderer, out, movieDao.findAllMoviesByDirector(director, Movie.WITH_ACTORS));
                     break;
                 case 15:
                     // Find All Movies with Collection Greater Than
                     System.out.println("Enter collection amount: ");
                     int collection = scanner.nextInt();
-                    movieDao.findAllMovieCollectionGreaterThan(collection);
+                    print(renderer, out, movieDao.findAllMovieCollectionGreaterThan(collection, Movie.WITH_ACTORS));
                     break;
                 case 16:
                     // Update Movie Collection by Verdict
@@ -176,7 +206,7 @@ public class App {
                     // Find All Movies by Actor ID
                     System.out.println("Enter actor ID: ");
                     int actorIdForMovies = scanner.nextInt();
-                    movieDao.findAllMoviesByActorId(actorIdForMovies);
+                    print(renderer, out, movieDao.findAllMoviesByActorId(actorIdForMovies));
                     break;
                 case 18:
                     // Delete All Movies by Actor Name
@@ -200,5 +230,16 @@ public class App {
         }
 
         scanner.close();
+        out.close();
+        if (DaoMetrics.isEnabled()) {
+            System.out.print(DaoMetrics.dump());
+        }
+        EntityManagerFactoryProvider.close();
+    }
+
+    // print(): renders results one per line and flushes them before the next prompt goes to System.out
+    private static void print(ResultRenderer renderer, ResultWriter out, List<?> results) {
+        renderer.renderAll(results, out);
+        out.flush();
     }
 }
@@ -1,14 +1,120 @@
 package com.hibernate.JPA.Hibernate;
 
 import java.util.List;
+import javax.persistence.Cacheable;
 import javax.persistence.Entity;
+import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
+import javax.persistence.Index;
 import javax.persistence.ManyToMany;
+import javax.persistence.NamedAttributeNode;
+import javax.persistence.NamedEntityGraph;
+import javax.persistence.NamedEntityGraphs;
+import javax.persistence.NamedNativeQueries;
+import javax.persistence.NamedNativeQuery;
+import javax.persistence.NamedQueries;
+import javax.persistence.NamedQuery;
+import javax.persistence.Table;
+import javax.persistence.Version;
+
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.OptimisticLock;
+
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.id.PooledIdGenerator;
+import com.hibernate.actor_movie.render.ResultRenderer;
 
 @Entity
+// One index per finder filter; director and genre are paired with movieId so their keyset pages are read in index order
+@Table(indexes = {
+    @Index(name = "idx_movie_name", columnList = "movieName"),
+    @Index(name = "idx_movie_director", columnList = "movieDirector, movieId"),
+    @Index(name = "idx_movie_genre", columnList = "genre, movieId"),
+    @Index(name = "idx_movie_verdict", columnList = "verdict"),
+    @Index(name = "idx_movie_collection", columnList = "collection")
+})
+@Cacheable
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.MOVIE)
+@NamedEntityGraphs({
+    // plain movie rows, actors left unloaded
+    @NamedEntityGraph(name = Movie.SUMMARY),
+    // movie rows with their actors, fetched by the same query
+    @NamedEntityGraph(name = Movie.WITH_ACTORS, attributeNodes = @NamedAttributeNode("actor"))
+})
+// Every statement MovieDao runs with fixed SQL, see Actor
+@NamedQueries({
+    @NamedQuery(name = Movie.FIND_BY_NAME, query = "SELECT DISTINCT m FROM Movie m WHERE m.movieName = :movieName"),
+    @NamedQuery(name = Movie.FIND_BY_GENRE, query = "SELECT DISTINCT m FROM Movie m WHERE m.genre = :genre"),
+    @NamedQuery(name = Movie.FIND_BY_DIRECTOR,
+        query = "SELECT DISTINCT m FROM Movie m WHERE m.movieDirector = :director"),
+    @NamedQuery(name = Movie.FIND_COLLECTION_GREATER_THAN,
+        query = "SELECT DISTINCT m FROM Movie m WHERE m.collection > :collection"),
+    // a single join from the actor through Actor_Movie
+    @NamedQuery(name = Movie.FIND_BY_ACTOR_ID, query = "SELECT m FROM Actor a JOIN a.movies m WHERE a.id = :actorId"),
+    @NamedQuery(name = Movie.SCAN_BY_GENRE, query = "FROM Movie m WHERE m.genre = :genre"),
+    @NamedQuery(name = Movie.SCAN_BY_DIRECTOR, query = "FROM Movie m WHERE m.movieDirector = :director"),
+    @NamedQuery(name = Movie.SCAN_COLLECTION_GREATER_THAN, query = "FROM Movie m WHERE m.collection > :collection"),
+    @NamedQuery(name = Movie.SCAN_BY_ACTOR_ID, query = "SELECT m FROM Actor a JOIN a.movies m WHERE a.id = :actorId"),
+    @NamedQuery(name = Movie.PAGE_BY_GENRE,
+        query = "FROM Movie m WHERE m.genre = :genre AND m.movieId > :after ORDER BY m.movieId"),
+    @NamedQuery(name = Movie.PAGE_BY_DIRECTOR,
+        query = "FROM Movie m WHERE m.movieDirector = :director AND m.movieId > :after ORDER BY m.movieId"),
+    // a range on collection cannot hand the rows over in movieId order, so the database sorts the matches of each page
+    @NamedQuery(name = Movie.PAGE_COLLECTION_GREATER_THAN,
+        query = "FROM Movie m WHERE m.collection > :collection AND m.movieId > :after ORDER BY m.movieId"),
+    // read in the order of uk_actor_movie (Actor_id, movie_id)
+    @NamedQuery(name = Movie.PAGE_BY_ACTOR_ID, query = "SELECT m FROM Actor a JOIN a.movies m WHERE a.id = :actorId"
+        + " AND m.movieId > :after ORDER BY m.movieId"),
+    @NamedQuery(name = Movie.SUMMARIES_BY_GENRE,
+        query = "SELECT new com.hibernate.actor_movie.dao.MovieSummary(m.movieId, m.movieName, m.genre, m.collection)"
+            + " FROM Movie m WHERE m.genre = :genre"),
+    @NamedQuery(name = Movie.SUMMARIES_BY_DIRECTOR,
+        query = "SELECT new com.hibernate.actor_movie.dao.MovieSummary(m.movieId, m.movieName, m.genre, m.collection)"
+            + " FROM Movie m WHERE m.movieDirector = :director"),
+    @NamedQuery(name = Movie.UPDATE_COLLECTION_BY_VERDICT,
+        query = "UPDATE VERSIONED Movie m SET m.collection = m.collection + :increment WHERE m.verdict = :verdict"),
+    @NamedQuery(name = Movie.DELETE_WITH_COLLECTION_LESS_THAN,
+        query = "DELETE FROM Movie m WHERE m.collection < :collection")
+})
+@NamedNativeQueries({
+    @NamedNativeQuery(name = Movie.IDS_BY_VERDICT, query = "SELECT movieId FROM Movie WHERE verdict = ?1"),
+    @NamedNativeQuery(name = Movie.IDS_WITH_COLLECTION_LESS_THAN,
+        query = "SELECT movieId FROM Movie WHERE collection < ?1"),
+    @NamedNativeQuery(name = Movie.IDS_BY_ACTOR_NAME, query = "SELECT am.movie_id FROM Actor_Movie am"
+        + " JOIN Actor a ON a.id = am.Actor_id WHERE a.name = ?1")
+})
 public class Movie {
-
+    public static final String SUMMARY = "Movie.summary";
+    public static final String WITH_ACTORS = "Movie.withActors";
+
+    public static final String FIND_BY_NAME = "Movie.findByName";
+    public static final String FIND_BY_GENRE = "Movie.findByGenre";
+    public static final String FIND_BY_DIRECTOR = "Movie.findByDirector";
+    public static final String FIND_COLLECTION_GREATER_THAN = "Movie.findCollectionGreaterThan";
+    public static final String FIND_BY_ACTOR_ID = "Movie.findByActorId";
+    public static final String SCAN_BY_GENRE = "Movie.scanByGenre";
+    public static final String SCAN_BY_DIRECTOR = "Movie.scanByDirector";
+    public static final String SCAN_COLLECTION_GREATER_THAN = "Movie.scanCollectionGreaterThan";
+    public static final String SCAN_BY_ACTOR_ID = "Movie.scanByActorId";
+    public static final String PAGE_BY_GENRE = "Movie.pageByGenre";
+    public static final String PAGE_BY_DIRECTOR = "Movie.pageByDirector";
+    public static final String PAGE_COLLECTION_GREATER_THAN = "Movie.pageCollectionGreaterThan";
+    public static final String PAGE_BY_ACTOR_ID = "Movie.pageByActorId";
+    public static final String SUMMARIES_BY_GENRE = "Movie.summariesByGenre";
+    public static final String SUMMARIES_BY_DIRECTOR = "Movie.summariesByDirector";
+    public static final String UPDATE_COLLECTION_BY_VERDICT = "Movie.updateCollectionByVerdict";
+    public static final String DELETE_WITH_COLLECTION_LESS_THAN = "Movie.deleteWithCollectionLessThan";
+    public static final String IDS_BY_VERDICT = "Movie.idsByVerdict";
+    public static final String IDS_WITH_COLLECTION_LESS_THAN = "Movie.idsWithCollectionLessThan";
+    public static final String IDS_BY_ACTOR_NAME = "Movie.idsByActorName";
+
+    // Left at 0, the id is taken from the Movie pool of the id_pool table when the movie is inserted (see Actor.id)
     @Id
+    @GeneratedValue(generator = "movie_ids")
+    @GenericGenerator(name = "movie_ids", strategy = PooledIdGenerator.STRATEGY)
     private int movieId;
     private String movieName;
     private String movieDirector;
@@ -16,7 +122,14 @@ public class Movie {
     private String verdict;
     private int collection;
 
+    // Optimistic locking, see Actor
+    @Version
+    private int version;
+
     @ManyToMany(mappedBy = "movies")
+    @OptimisticLock(excluded = true)
+    @BatchSize(size = 500)
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = CacheRegions.MOVIE_ACTORS)
     private List<Actor> actor;
 
     public int getMovieId() {
@@ -67,6 +180,14 @@ public class Movie {
         this.collection = collection;
     }
 
+    public int getVersion() {
+        return version;
+    }
+
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     public List<Actor> getActor() {
         return actor;
     }
@@ -75,9 +196,9 @@ public class Movie {
         this.actor = actor;
     }
 
+    // toString(): associations one level deep; see ResultRenderer
     @Override
     public String toString() {
-        return "Movie [movieId=" + movieId + ", movieName=" + movieName + ", movieDirector=" + movieDirector
-                + ", genre=" + genre + ", verdict=" + verdict + ", collection=" + collection + ", actor=" + actor + "]";
+        return ResultRenderer.describe(this);
     }
 }
@@ -0,0 +1,25 @@
+package com.hibernate.actor_movie.aggregate;
+
+// Actor columns that salary statistics can be grouped by
+public enum ActorDimension {
+
+	INDUSTRY("industry"),
+	NATIONALITY("nationality");
+
+	private final String property;
+
+	ActorDimension(String property) {
+		this.property = property;
+	}
+
+	// getProperty(): the Actor property, which is also the column name
+	public String getProperty() {
+		return property;
+	}
+
+	// statsQuery(): server-side GROUP BY returning one SalaryStats per value, in value order
+	public String statsQuery() {
+		return "SELECT new com.hibernate.actor_movie.aggregate.SalaryStats(a." + property + ", COUNT(a), SUM(a.salary), MAX(a.salary))"
+				+ " FROM Actor a GROUP BY a." + property + " ORDER BY a." + property;
+	}
+}
@@ -0,0 +1,375 @@
+package com.hibernate.actor_movie.aggregate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Query;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.query.NativeQuery;
+
+import com.hibernate.actor_movie.dao.FactoryLocal;
+
+// In-memory materialized view of the dashboard aggregates: box-office totals per MovieDimension and salary
+// statistics per ActorDimension. Enabled with the actor_movie.aggregate.view property; loaded with the DAOs' GROUP BY
+// queries when the factory starts, then kept current without reading the tables again, so a dashboard read costs
+// O(groups):
+//   - entity inserts, updates and deletes (addActor, addMovie, the importer) are applied as deltas by
+//     AggregateViewIntegrator once their transaction commits
+//   - the bulk updates read the groups they touch in their own transaction and apply them after the commit
+//     (affectedActors/affectedMovies, then salariesSet, nationalitiesSet or collectionsIncremented); so do the
+//     WriteBehindBuffer flushes (affectedActors/incrementedMovies, then salariesRaised or collectionsIncremented)
+//   - the bulk deletes call rowsChanged(), which reloads the view
+// A group maximum can only grow incrementally; when the actor holding it leaves the group or earns less, that group's
+// maximum is read again on the next dashboard read.
+public final class AggregateView {
+
+	public static final String ENABLED_PROPERTY = "actor_movie.aggregate.view";
+
+	private static final Comparator<String> GROUP_ORDER = Comparator.nullsFirst(Comparator.naturalOrder());
+	private static final int IN_LIST_SIZE = 1000;
+
+	private static final FactoryLocal<AggregateView> CURRENT = new FactoryLocal<>();
+
+	private final EntityManagerFactory emf;
+	private final Map<MovieDimension, Map<String, MovieTotals>> movieGroups = new EnumMap<>(MovieDimension.class);
+	private final Map<ActorDimension, Map<String, SalaryTotals>> actorGroups = new EnumMap<>(ActorDimension.class);
+
+	AggregateView(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	// load(): a view of the factory's current rows that no write will update, for one-off reports
+	public static AggregateView load(EntityManagerFactory emf) {
+		AggregateView view = new AggregateView(emf);
+		view.refresh();
+		return view;
+	}
+
+	public static AggregateView current(EntityManagerFactory emf) {
+		return CURRENT.get(emf);
+	}
+
+	static void install(SessionFactory factory, AggregateView view) {
+		CURRENT.set(factory, view);
+	}
+
+	static void uninstall(SessionFactory factory) {
+		CURRENT.set(factory, null);
+	}
+
+	// rowsChanged(): called after bulk deletes of actors or movies
+	public static void rowsChanged(EntityManagerFactory emf) {
+		AggregateView view = CURRENT.get(emf);
+		if (view != null) {
+			view.refresh();
+		}
+	}
+
+	// collectionTotals(): one total per value of the dimension, in value order (null first)
+	public synchronized List<CollectionTotal> collectionTotals(MovieDimension by) {
+		List<CollectionTotal> totals = new ArrayList<>();
+		for (Map.Entry<String, MovieTotals> group : movieGroups.get(by).entrySet()) {
+			totals.add(new CollectionTotal(group.getKey(), group.getValue().movies, group.getValue().collection));
+		}
+		return totals;
+	}
+
+	// salaryStats(): one entry per value of the dimension, in value order (null first)
+	public synchronized List<SalaryStats> salaryStats(ActorDimension by) {
+		List<SalaryStats> stats = new ArrayList<>();
+		for (Map.Entry<String, SalaryTotals> group : actorGroups.get(by).entrySet()) {
+			SalaryTotals totals = group.getValue();
+			if (totals.maxStale) {
+				totals.max = readMax(by, group.getKey());
+				totals.maxStale = false;
+			}
+			stats.add(new SalaryStats(group.getKey(), totals.actors, totals.total, totals.max));
+		}
+		return stats;
+	}
+
+	// refresh(): reloads every group with the GROUP BY queries
+	public synchronized void refresh() {
+		StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession();
+		try {
+			for (MovieDimension by : MovieDimension.values()) {
+				Map<String, MovieTotals> groups = new TreeMap<>(GROUP_ORDER);
+				for (CollectionTotal total : session.createQuery(by.totalsQuery(), CollectionTotal.class).getResultList()) {
+					groups.put(total.getGroup(), new MovieTotals(total.getMovies(), total.getCollection()));
+				}
+				movieGroups.put(by, groups);
+			}
+			for (ActorDimension by : ActorDimension.values()) {
+				Map<String, SalaryTotals> groups = new TreeMap<>(GROUP_ORDER);
+				for (SalaryStats stats : session.createQuery(by.statsQuery(), SalaryStats.class).getResultList()) {
+					groups.put(stats.getGroup(), new SalaryTotals(stats.getActors(), stats.getTotal(), stats.getMax()));
+				}
+				actorGroups.put(by, groups);
+			}
+		} finally {
+			session.close();
+		}
+	}
+
+	// movieChanged(): adds (sign 1) or removes (sign -1) one movie; values are indexed by MovieDimension ordinal
+	synchronized void movieChanged(String[] values, long collection, int sign) {
+		for (MovieDimension by : MovieDimension.values()) {
+			Map<String, MovieTotals> groups = movieGroups.get(by);
+			MovieTotals totals = groups.computeIfAbsent(values[by.ordinal()], group -> new MovieTotals(0, 0));
+			totals.movies += sign;
+			totals.collection += sign * collection;
+			if (totals.movies <= 0) {
+				groups.remove(values[by.ordinal()]);
+			}
+		}
+	}
+
+	// actorAdded(): values are indexed by ActorDimension ordinal
+	synchronized void actorAdded(String[] values, double salary) {
+		for (ActorDimension by : ActorDimension.values()) {
+			SalaryTotals totals = actorGroups.get(by).get(values[by.ordinal()]);
+			if (totals == null) {
+				actorGroups.get(by).put(values[by.ordinal()], new SalaryTotals(1, salary, salary));
+				continue;
+			}
+			totals.actors++;
+			totals.total += salary;
+			totals.max = Math.max(totals.max, salary);
+		}
+	}
+
+	synchronized void actorRemoved(String[] values, double salary) {
+		for (ActorDimension by : ActorDimension.values()) {
+			Map<String, SalaryTotals> groups = actorGroups.get(by);
+			SalaryTotals totals = groups.get(values[by.ordinal()]);
+			if (totals == null) {
+				continue;
+			}
+			if (--totals.actors <= 0) {
+				groups.remove(values[by.ordinal()]);
+				continue;
+			}
+			totals.total -= salary;
+			if (salary >= totals.max) {
+				totals.maxStale = true;
+			}
+		}
+	}
+
+	// affectedActors(): the grouping values and salaries of the actors matching condition (SQL on the Actor table with
+	// ?1, ?2... parameters), read in the caller's transaction before it updates them; null when the view is off
+	public static AffectedActors affectedActors(EntityManager em, String condition, Object... params) {
+		AggregateView view = CURRENT.get(em.getEntityManagerFactory());
+		if (view == null) {
+			return null;
+		}
+		Query query = em.createNativeQuery("SELECT industry, nationality, salary, id FROM Actor WHERE " + condition);
+		List<?> rows = bind(query, params).getResultList();
+		return new AffectedActors(view, rows);
+	}
+
+	// salariesSet(): the affected actors now earn salary; a no-op for null
+	public static void salariesSet(AffectedActors actors, double salary) {
+		if (actors != null) {
+			actors.apply(null, salary);
+		}
+	}
+
+	// nationalitiesSet(): the affected actors now have this nationality; a no-op for null
+	public static void nationalitiesSet(AffectedActors actors, String nationality) {
+		if (actors != null) {
+			actors.apply(nationality, null);
+		}
+	}
+
+	// salariesRaised(): each affected actor's salary grew by its increment (actor id to increment, none for 0); a no-op
+	// for null
+	public static void salariesRaised(AffectedActors actors, Map<Integer, ? extends Number> increments) {
+		if (actors != null) {
+			actors.raise(increments);
+		}
+	}
+
+	// affectedMovies(): the movies matching condition (SQL on the Movie table), counted per combination of grouping
+	// values, read in the caller's transaction; null when the view is off
+	public static AffectedMovies affectedMovies(EntityManager em, String condition, Object... params) {
+		AggregateView view = CURRENT.get(em.getEntityManagerFactory());
+		if (view == null) {
+			return null;
+		}
+		Query query = em.createNativeQuery("SELECT genre, movieDirector, verdict, COUNT(*) FROM Movie WHERE " + condition
+				+ " GROUP BY genre, movieDirector, verdict");
+		List<?> rows = bind(query, params).getResultList();
+		return new AffectedMovies(view, rows);
+	}
+
+	// incrementedMovies(): the movies whose collections are about to grow by different amounts (movie id to amount),
+	// summed per combination of grouping values, read in the caller's transaction; their collectionsIncremented
+	// increment is 1. null when the view is off.
+	public static AffectedMovies incrementedMovies(EntityManager em, Map<Integer, ? extends Number> increments) {
+		AggregateView view = CURRENT.get(em.getEntityManagerFactory());
+		if (view == null) {
+			return null;
+		}
+		Map<List<Object>, Long> groups = new HashMap<>();
+		List<Integer> ids = new ArrayList<>(increments.keySet());
+		for (int from = 0; from < ids.size(); from += IN_LIST_SIZE) {
+			List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + IN_LIST_SIZE));
+			List<?> rows = em.createNativeQuery("SELECT genre, movieDirector, verdict, movieId FROM Movie WHERE movieId IN ("
+					+ chunk.stream().map(String::valueOf).collect(Collectors.joining(", ")) + ")").getResultList();
+			for (Object row : rows) {
+				Object[] columns = (Object[]) row;
+				long amount = increments.get(((Number) columns[3]).intValue()).longValue();
+				groups.merge(Arrays.asList(columns[0], columns[1], columns[2]), amount, Long::sum);
+			}
+		}
+		List<Object[]> rows = new ArrayList<>();
+		for (Map.Entry<List<Object>, Long> group : groups.entrySet()) {
+			List<Object> values = group.getKey();
+			rows.add(new Object[] { values.get(0), values.get(1), values.get(2), group.getValue() });
+		}
+		return new AffectedMovies(view, rows);
+	}
+
+	// collectionsIncremented(): the affected movies' collections grew by increment; a no-op for null
+	public static void collectionsIncremented(AffectedMovies movies, int increment) {
+		if (movies != null) {
+			movies.apply(increment);
+		}
+	}
+
+	// readMax(): the maximum salary of one group, with an indexed lookup on the group column
+	private double readMax(ActorDimension by, String group) {
+		StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession();
+		try {
+			String column = by.getProperty();
+			NativeQuery<?> query = session.createNativeQuery("SELECT MAX(salary) FROM Actor WHERE " + column
+					+ (group == null ? " IS NULL" : " = ?1"));
+			if (group != null) {
+				query.setParameter(1, group);
+			}
+			Object max = query.uniqueResult();
+			return max == null ? 0 : ((Number) max).doubleValue();
+		} finally {
+			session.close();
+		}
+	}
+
+	private static Query bind(Query query, Object... params) {
+		for (int i = 0; i < params.length; i++) {
+			query.setParameter(i + 1, params[i]);
+		}
+		return query;
+	}
+
+	private static String[] actorValues(Object industry, Object nationality) {
+		String[] values = new String[ActorDimension.values().length];
+		values[ActorDimension.INDUSTRY.ordinal()] = (String) industry;
+		values[ActorDimension.NATIONALITY.ordinal()] = (String) nationality;
+		return values;
+	}
+
+	// The actors a bulk update is about to change, as they were before it
+	public static final class AffectedActors {
+
+		private final AggregateView view;
+		private final List<?> rows;
+
+		AffectedActors(AggregateView view, List<?> rows) {
+			this.view = view;
+			this.rows = rows;
+		}
+
+		// apply(): nationality or salary is the new value, null for the one the update left alone
+		void apply(String nationality, Double salary) {
+			synchronized (view) {
+				for (Object row : rows) {
+					Object[] columns = (Object[]) row;
+					double oldSalary = ((Number) columns[2]).doubleValue();
+					view.actorRemoved(actorValues(columns[0], columns[1]), oldSalary);
+					view.actorAdded(actorValues(columns[0], nationality == null ? columns[1] : nationality),
+							salary == null ? oldSalary : salary);
+				}
+			}
+		}
+
+		void raise(Map<Integer, ? extends Number> increments) {
+			synchronized (view) {
+				for (Object row : rows) {
+					Object[] columns = (Object[]) row;
+					Number increment = increments.get(((Number) columns[3]).intValue());
+					if (increment == null) {
+						continue;
+					}
+					double oldSalary = ((Number) columns[2]).doubleValue();
+					String[] values = actorValues(columns[0], columns[1]);
+					view.actorRemoved(values, oldSalary);
+					view.actorAdded(values, oldSalary + increment.doubleValue());
+				}
+			}
+		}
+	}
+
+	// The movies a bulk update is about to change, counted per genre, director and verdict
+	public static final class AffectedMovies {
+
+		private final AggregateView view;
+		private final List<?> rows;
+
+		AffectedMovies(AggregateView view, List<?> rows) {
+			this.view = view;
+			this.rows = rows;
+		}
+
+		void apply(int increment) {
+			synchronized (view) {
+				for (Object row : rows) {
+					Object[] columns = (Object[]) row;
+					long delta = (long) increment * ((Number) columns[3]).longValue();
+					for (MovieDimension by : MovieDimension.values()) {
+						MovieTotals totals = view.movieGroups.get(by).get((String) columns[by.ordinal()]);
+						if (totals != null) {
+							totals.collection += delta;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	private static class MovieTotals {
+
+		long movies;
+		long collection;
+
+		MovieTotals(long movies, long collection) {
+			this.movies = movies;
+			this.collection = collection;
+		}
+	}
+
+	private static class SalaryTotals {
+
+		long actors;
+		double total;
+		double max;
+		boolean maxStale;
+
+		SalaryTotals(long actors, double total, double max) {
+			this.actors = actors;
+			this.total = total;
+			this.max = max;
+		}
+	}
+}
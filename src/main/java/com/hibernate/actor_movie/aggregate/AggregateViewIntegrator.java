@@ -0,0 +1,166 @@
+package com.hibernate.actor_movie.aggregate;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+// Installs the AggregateView when actor_movie.aggregate.view is true: loads it once the factory is built and
+// applies every flushed insert, update and delete of an Actor or Movie to it after its transaction commits.
+public class AggregateViewIntegrator implements Integrator {
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		if (!Boolean.parseBoolean(String.valueOf(sessionFactory.getProperties().get(AggregateView.ENABLED_PROPERTY)))) {
+			return;
+		}
+		AggregateView view = new AggregateView(sessionFactory);
+		Listener listener = new Listener(view);
+		EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_INSERT, listener);
+		listeners.appendListeners(EventType.POST_UPDATE, listener);
+		listeners.appendListeners(EventType.POST_DELETE, listener);
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				view.refresh();
+				AggregateView.install(factory, view);
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		AggregateView.uninstall(sessionFactory);
+	}
+
+	private static class Listener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final AggregateView view;
+
+		Listener(AggregateView view) {
+			this.view = view;
+		}
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			changed(event.getSession(), event.getEntity(), event.getPersister(), null, event.getState());
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			if (event.getOldState() == null) {
+				// a detached entity reattached with Session.update() has no loaded snapshot; its old groups are unknown
+				if (event.getEntity() instanceof Actor || event.getEntity() instanceof Movie) {
+					afterCommit(event.getSession(), view::refresh);
+				}
+				return;
+			}
+			changed(event.getSession(), event.getEntity(), event.getPersister(), event.getOldState(), event.getState());
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			changed(event.getSession(), event.getEntity(), event.getPersister(), event.getDeletedState(), null);
+		}
+
+		// deprecated in favour of requiresPostCommitHandling(), but Hibernate 5.4 still declares it abstract
+		@SuppressWarnings("deprecation")
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+		// changed(): removes the old state from its groups and adds the new one, null for either meaning none
+		private void changed(EventSource session, Object entity, EntityPersister persister,
+				Object[] oldState, Object[] newState) {
+			if (entity instanceof Actor) {
+				String[] oldValues = oldState == null ? null : actorValues(persister, oldState);
+				String[] newValues = newState == null ? null : actorValues(persister, newState);
+				double oldSalary = oldState == null ? 0 : salary(persister, oldState);
+				double newSalary = newState == null ? 0 : salary(persister, newState);
+				afterCommit(session, () -> {
+					synchronized (view) {
+						if (oldValues != null) {
+							view.actorRemoved(oldValues, oldSalary);
+						}
+						if (newValues != null) {
+							view.actorAdded(newValues, newSalary);
+						}
+					}
+				});
+			} else if (entity instanceof Movie) {
+				String[] oldValues = oldState == null ? null : movieValues(persister, oldState);
+				String[] newValues = newState == null ? null : movieValues(persister, newState);
+				long oldCollection = oldState == null ? 0 : collection(persister, oldState);
+				long newCollection = newState == null ? 0 : collection(persister, newState);
+				afterCommit(session, () -> {
+					synchronized (view) {
+						if (oldValues != null) {
+							view.movieChanged(oldValues, oldCollection, -1);
+						}
+						if (newValues != null) {
+							view.movieChanged(newValues, newCollection, 1);
+						}
+					}
+				});
+			}
+		}
+
+		private static void afterCommit(EventSource session, Runnable change) {
+			session.getActionQueue().registerProcess((success, ignored) -> {
+				if (success) {
+					change.run();
+				}
+			});
+		}
+
+		private static String[] actorValues(EntityPersister persister, Object[] state) {
+			String[] values = new String[ActorDimension.values().length];
+			for (ActorDimension by : ActorDimension.values()) {
+				values[by.ordinal()] = (String) state[index(persister, by.getProperty())];
+			}
+			return values;
+		}
+
+		private static String[] movieValues(EntityPersister persister, Object[] state) {
+			String[] values = new String[MovieDimension.values().length];
+			for (MovieDimension by : MovieDimension.values()) {
+				values[by.ordinal()] = (String) state[index(persister, by.getProperty())];
+			}
+			return values;
+		}
+
+		private static double salary(EntityPersister persister, Object[] state) {
+			return ((Number) state[index(persister, "salary")]).doubleValue();
+		}
+
+		private static long collection(EntityPersister persister, Object[] state) {
+			return ((Number) state[index(persister, "collection")]).longValue();
+		}
+
+		private static int index(EntityPersister persister, String property) {
+			return persister.getEntityMetamodel().getPropertyIndex(property);
+		}
+	}
+}
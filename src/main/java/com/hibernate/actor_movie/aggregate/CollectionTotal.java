@@ -0,0 +1,32 @@
+package com.hibernate.actor_movie.aggregate;
+
+// Box-office total of the movies sharing one value of a MovieDimension; group is null for movies without one
+public class CollectionTotal {
+
+	private final String group;
+	private final long movies;
+	private final long collection;
+
+	public CollectionTotal(String group, long movies, long collection) {
+		this.group = group;
+		this.movies = movies;
+		this.collection = collection;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public long getMovies() {
+		return movies;
+	}
+
+	public long getCollection() {
+		return collection;
+	}
+
+	@Override
+	public String toString() {
+		return "CollectionTotal [group=" + group + ", movies=" + movies + ", collection=" + collection + "]";
+	}
+}
@@ -0,0 +1,26 @@
+package com.hibernate.actor_movie.aggregate;
+
+// Movie columns that box-office totals can be grouped by
+public enum MovieDimension {
+
+	GENRE("genre"),
+	DIRECTOR("movieDirector"),
+	VERDICT("verdict");
+
+	private final String property;
+
+	MovieDimension(String property) {
+		this.property = property;
+	}
+
+	// getProperty(): the Movie property, which is also the column name
+	public String getProperty() {
+		return property;
+	}
+
+	// totalsQuery(): server-side GROUP BY returning one CollectionTotal per value, in value order
+	public String totalsQuery() {
+		return "SELECT new com.hibernate.actor_movie.aggregate.CollectionTotal(m." + property + ", COUNT(m), SUM(m.collection))"
+				+ " FROM Movie m GROUP BY m." + property + " ORDER BY m." + property;
+	}
+}
@@ -0,0 +1,42 @@
+package com.hibernate.actor_movie.aggregate;
+
+// Salary statistics of the actors sharing one value of an ActorDimension; group is null for actors without one
+public class SalaryStats {
+
+	private final String group;
+	private final long actors;
+	private final double total;
+	private final double max;
+
+	public SalaryStats(String group, long actors, double total, double max) {
+		this.group = group;
+		this.actors = actors;
+		this.total = total;
+		this.max = max;
+	}
+
+	public String getGroup() {
+		return group;
+	}
+
+	public long getActors() {
+		return actors;
+	}
+
+	public double getTotal() {
+		return total;
+	}
+
+	public double getAverage() {
+		return actors == 0 ? 0 : total / actors;
+	}
+
+	public double getMax() {
+		return max;
+	}
+
+	@Override
+	public String toString() {
+		return "SalaryStats [group=" + group + ", actors=" + actors + ", average=" + getAverage() + ", max=" + max + "]";
+	}
+}
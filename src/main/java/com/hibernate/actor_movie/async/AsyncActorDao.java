@@ -0,0 +1,181 @@
+package com.hibernate.actor_movie.async;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.SalaryStats;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.ActorSummary;
+import com.hibernate.actor_movie.dao.Page;
+
+// ActorDao with every call run by a DaoExecutor: each method returns at once with a CompletableFuture of what the
+// ActorDao method returns (Void for the void ones), so independent lookups can run side by side. Cancelling the
+// future, or its timeout, stops the call if it has not run yet.
+public class AsyncActorDao {
+
+	private final ActorDao dao;
+	private final DaoExecutor executor;
+
+	public AsyncActorDao(ActorDao dao, DaoExecutor executor) {
+		this.dao = dao;
+		this.executor = executor;
+	}
+
+	// findEachActorById(): one lookup per id, all in flight together; the list follows the order of ids, with null
+	// for an id that has no actor. findActorsByIds() reads the same actors with one select and one connection.
+	public CompletableFuture<List<Actor>> findEachActorById(List<Integer> ids) {
+		return findEachActorById(ids, null);
+	}
+
+	public CompletableFuture<List<Actor>> findEachActorById(List<Integer> ids, String graph) {
+		List<CompletableFuture<Actor>> lookups = new ArrayList<>();
+		for (Integer id : ids) {
+			lookups.add(findActorById(id, graph));
+		}
+		return AsyncSupport.allOf(lookups);
+	}
+
+	public CompletableFuture<Void> addActor(Actor actor) {
+		return executor.submit(() -> {
+			dao.addActor(actor);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> addMovie(Movie movie) {
+		return executor.submit(() -> {
+			dao.addMovie(movie);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Actor> findActorById(int id) {
+		return executor.submit(() -> dao.findActorById(id));
+	}
+
+	public CompletableFuture<Actor> findActorById(int id, String graph) {
+		return executor.submit(() -> dao.findActorById(id, graph));
+	}
+
+	public CompletableFuture<List<Actor>> findActorsByIds(Collection<Integer> ids) {
+		return executor.submit(() -> dao.findActorsByIds(ids));
+	}
+
+	public CompletableFuture<List<Actor>> findActorsByIds(Collection<Integer> ids, String graph) {
+		return executor.submit(() -> dao.findActorsByIds(ids, graph));
+	}
+
+	public CompletableFuture<List<Actor>> findAllActors() {
+		return executor.submit(() -> dao.findAllActors());
+	}
+
+	public CompletableFuture<List<Actor>> findAllActors(String graph) {
+		return executor.submit(() -> dao.findAllActors(graph));
+	}
+
+	public CompletableFuture<List<Actor>> findActorByName(String name) {
+		return executor.submit(() -> dao.findActorByName(name));
+	}
+
+	public CompletableFuture<List<Actor>> findActorByName(String name, String graph) {
+		return executor.submit(() -> dao.findActorByName(name, graph));
+	}
+
+	public CompletableFuture<List<Actor>> searchActorsByName(String query, int limit) {
+		return executor.submit(() -> dao.searchActorsByName(query, limit));
+	}
+
+	public CompletableFuture<List<Actor>> findActorByIndustry(String industry) {
+		return executor.submit(() -> dao.findActorByIndustry(industry));
+	}
+
+	public CompletableFuture<List<Actor>> findActorByIndustry(String industry, String graph) {
+		return executor.submit(() -> dao.findActorByIndustry(industry, graph));
+	}
+
+	public CompletableFuture<Long> forEachActorByIndustry(String industry, int fetchSize, Consumer<? super Actor> action) {
+		return executor.submit(() -> dao.forEachActorByIndustry(industry, fetchSize, action));
+	}
+
+	public CompletableFuture<Page<Actor>> findActorPageByIndustry(String industry, String pageToken, int pageSize) {
+		return executor.submit(() -> dao.findActorPageByIndustry(industry, pageToken, pageSize));
+	}
+
+	public CompletableFuture<List<ActorSummary>> findActorSummariesByIndustry(String industry) {
+		return executor.submit(() -> dao.findActorSummariesByIndustry(industry));
+	}
+
+	public CompletableFuture<List<Actor>> findActorBetweenAge(int minAge, int maxAge) {
+		return executor.submit(() -> dao.findActorBetweenAge(minAge, maxAge));
+	}
+
+	public CompletableFuture<List<Actor>> findActorBetweenAge(int minAge, int maxAge, String graph) {
+		return executor.submit(() -> dao.findActorBetweenAge(minAge, maxAge, graph));
+	}
+
+	public CompletableFuture<Long> forEachActorBetweenAge(int minAge, int maxAge, int fetchSize, Consumer<? super Actor> action) {
+		return executor.submit(() -> dao.forEachActorBetweenAge(minAge, maxAge, fetchSize, action));
+	}
+
+	public CompletableFuture<List<ActorSummary>> findActorSummariesBetweenAge(int minAge, int maxAge) {
+		return executor.submit(() -> dao.findActorSummariesBetweenAge(minAge, maxAge));
+	}
+
+	public CompletableFuture<List<Actor>> findAllActorsByMovieName(String movieName) {
+		return executor.submit(() -> dao.findAllActorsByMovieName(movieName));
+	}
+
+	public CompletableFuture<List<Actor>> findAllActorsByMovieName(String movieName, String graph) {
+		return executor.submit(() -> dao.findAllActorsByMovieName(movieName, graph));
+	}
+
+	public CompletableFuture<Long> forEachActorByMovieName(String movieName, int fetchSize, Consumer<? super Actor> action) {
+		return executor.submit(() -> dao.forEachActorByMovieName(movieName, fetchSize, action));
+	}
+
+	public CompletableFuture<Page<Actor>> findActorPageByMovieName(String movieName, String pageToken, int pageSize) {
+		return executor.submit(() -> dao.findActorPageByMovieName(movieName, pageToken, pageSize));
+	}
+
+	public CompletableFuture<List<SalaryStats>> findSalaryStats(ActorDimension by) {
+		return executor.submit(() -> dao.findSalaryStats(by));
+	}
+
+	public CompletableFuture<Void> updateAllActorSalaryByMovieId(int movieId, double newSalary) {
+		return executor.submit(() -> {
+			dao.updateAllActorSalaryByMovieId(movieId, newSalary);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Actor> raiseActorSalaryById(int id, double increment) {
+		return executor.submit(() -> dao.raiseActorSalaryById(id, increment));
+	}
+
+	public CompletableFuture<Void> updateActorNationalityById(int id, String newNationality) {
+		return executor.submit(() -> {
+			dao.updateActorNationalityById(id, newNationality);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleteAllActorsByIndustry(String industry) {
+		return executor.submit(() -> {
+			dao.deleteAllActorsByIndustry(industry);
+			return null;
+		});
+	}
+
+	public CompletableFuture<Void> deleteAllActorsByMovieName(String movieName) {
+		return executor.submit(() -> {
+			dao.deleteAllActorsByMovieName(movieName);
+			return null;
+		});
+	}
+}
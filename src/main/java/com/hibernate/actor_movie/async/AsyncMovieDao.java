@@ -0,0 +1,160 @@
+package com.hibernate.actor_movie.async;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.CollectionTotal;
+import com.hibernate.actor_movie.aggregate.MovieDimension;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.MovieSummary;
+import com.hibernate.actor_movie.dao.Page;
+
+// MovieDao with every call run by a DaoExecutor, see AsyncActorDao
+public class AsyncMovieDao {
+
+    private final MovieDao dao;
+    private final DaoExecutor executor;
+
+    public AsyncMovieDao(MovieDao dao, DaoExecutor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    public CompletableFuture<Void> addMovie(Movie movie, List<Integer> actorIds) {
+        return executor.submit(() -> {
+            dao.addMovie(movie, actorIds);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<Movie>> findMoviesByIds(Collection<Integer> ids) {
+        return executor.submit(() -> dao.findMoviesByIds(ids));
+    }
+
+    public CompletableFuture<List<Movie>> findMoviesByIds(Collection<Integer> ids, String graph) {
+        return executor.submit(() -> dao.findMoviesByIds(ids, graph));
+    }
+
+    public CompletableFuture<List<Movie>> findMovieByName(String movieName) {
+        return executor.submit(() -> dao.findMovieByName(movieName));
+    }
+
+    public CompletableFuture<List<Movie>> findMovieByName(String movieName, String graph) {
+        return executor.submit(() -> dao.findMovieByName(movieName, graph));
+    }
+
+    public CompletableFuture<List<Movie>> searchMoviesByName(String query, int limit) {
+        return executor.submit(() -> dao.searchMoviesByName(query, limit));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMoviesByGenre(String genre) {
+        return executor.submit(() -> dao.findAllMoviesByGenre(genre));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMoviesByGenre(String genre, String graph) {
+        return executor.submit(() -> dao.findAllMoviesByGenre(genre, graph));
+    }
+
+    public CompletableFuture<Long> forEachMovieByGenre(String genre, int fetchSize, Consumer<? super Movie> action) {
+        return executor.submit(() -> dao.forEachMovieByGenre(genre, fetchSize, action));
+    }
+
+    public CompletableFuture<Page<Movie>> findMoviePageByGenre(String genre, String pageToken, int pageSize) {
+        return executor.submit(() -> dao.findMoviePageByGenre(genre, pageToken, pageSize));
+    }
+
+    public CompletableFuture<List<MovieSummary>> findMovieSummariesByGenre(String genre) {
+        return executor.submit(() -> dao.findMovieSummariesByGenre(genre));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMoviesByDirector(String director) {
+        return executor.submit(() -> dao.findAllMoviesByDirector(director));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMoviesByDirector(String director, String graph) {
+        return executor.submit(() -> dao.findAllMoviesByDirector(director, graph));
+    }
+
+    public CompletableFuture<Long> forEachMovieByDirector(String director, int fetchSize, Consumer<? super Movie> action) {
+        return executor.submit(() -> dao.forEachMovieByDirector(director, fetchSize, action));
+    }
+
+    public CompletableFuture<Page<Movie>> findMoviePageByDirector(String director, String pageToken, int pageSize) {
+        return executor.submit(() -> dao.findMoviePageByDirector(director, pageToken, pageSize));
+    }
+
+    public CompletableFuture<List<MovieSummary>> findMovieSummariesByDirector(String director) {
+        return executor.submit(() -> dao.findMovieSummariesByDirector(director));
+    }
+
+    public CompletableFuture<List<Movie>> searchMoviesByDirector(String query, int limit) {
+        return executor.submit(() -> dao.searchMoviesByDirector(query, limit));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMovieCollectionGreaterThan(int collection) {
+        return executor.submit(() -> dao.findAllMovieCollectionGreaterThan(collection));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMovieCollectionGreaterThan(int collection, String graph) {
+        return executor.submit(() -> dao.findAllMovieCollectionGreaterThan(collection, graph));
+    }
+
+    public CompletableFuture<Long> forEachMovieCollectionGreaterThan(int collection, int fetchSize, Consumer<? super Movie> action) {
+        return executor.submit(() -> dao.forEachMovieCollectionGreaterThan(collection, fetchSize, action));
+    }
+
+    public CompletableFuture<Page<Movie>> findMoviePageCollectionGreaterThan(int collection, String pageToken, int pageSize) {
+        return executor.submit(() -> dao.findMoviePageCollectionGreaterThan(collection, pageToken, pageSize));
+    }
+
+    public CompletableFuture<List<CollectionTotal>> findCollectionTotals(MovieDimension by) {
+        return executor.submit(() -> dao.findCollectionTotals(by));
+    }
+
+    public CompletableFuture<Void> updateMovieCollectionByVerdict(String verdict, int increment) {
+        return executor.submit(() -> {
+            dao.updateMovieCollectionByVerdict(verdict, increment);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Movie> addToMovieCollectionById(int movieId, int increment) {
+        return executor.submit(() -> dao.addToMovieCollectionById(movieId, increment));
+    }
+
+    public CompletableFuture<List<Movie>> findAllMoviesByActorId(int actorId) {
+        return executor.submit(() -> dao.findAllMoviesByActorId(actorId));
+    }
+
+    public CompletableFuture<Long> forEachMovieByActorId(int actorId, int fetchSize, Consumer<? super Movie> action) {
+        return executor.submit(() -> dao.forEachMovieByActorId(actorId, fetchSize, action));
+    }
+
+    public CompletableFuture<Page<Movie>> findMoviePageByActorId(int actorId, String pageToken, int pageSize) {
+        return executor.submit(() -> dao.findMoviePageByActorId(actorId, pageToken, pageSize));
+    }
+
+    public CompletableFuture<Void> deleteAllMoviesByActorName(String actorName) {
+        return executor.submit(() -> {
+            dao.deleteAllMoviesByActorName(actorName);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteMoviesByIds(Collection<Integer> movieIds) {
+        return executor.submit(() -> {
+            dao.deleteMoviesByIds(movieIds);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteAllMoviesWithCollectionLessThan(int collection) {
+        return executor.submit(() -> {
+            dao.deleteAllMoviesWithCollectionLessThan(collection);
+            return null;
+        });
+    }
+}
@@ -0,0 +1,40 @@
+package com.hibernate.actor_movie.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+// Helpers for combining the futures of the async DAOs.
+final class AsyncSupport {
+
+	private AsyncSupport() {
+	}
+
+	// allOf(): the results of all the futures, in order. If one fails the combined future fails with its exception
+	// and the others are cancelled, so calls still queued behind it never take a connection.
+	static <T> CompletableFuture<List<T>> allOf(List<CompletableFuture<T>> futures) {
+		CompletableFuture<List<T>> all = CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]))
+				.thenApply(done -> {
+					List<T> results = new ArrayList<>(futures.size());
+					for (CompletableFuture<T> future : futures) {
+						results.add(future.join());
+					}
+					return results;
+				});
+		for (CompletableFuture<T> future : futures) {
+			future.whenComplete((value, error) -> {
+				if (error != null) {
+					all.completeExceptionally(error);
+				}
+			});
+		}
+		all.whenComplete((value, error) -> {
+			if (error != null) {
+				for (CompletableFuture<T> future : futures) {
+					future.cancel(true);
+				}
+			}
+		});
+		return all;
+	}
+}
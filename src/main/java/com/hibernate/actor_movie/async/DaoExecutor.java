@@ -0,0 +1,148 @@
+package com.hibernate.actor_movie.async;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// Runs blocking DAO calls off the caller's thread, never more at once than there are pooled connections, so
+// concurrent callers queue here instead of timing out inside the pool.
+// Calls run on virtual threads when the JVM has them (Java 21+), otherwise on a fixed pool of platform threads of
+// the same size as the limit. A call can be cancelled, or given a timeout: a call still waiting for a permit then
+// never runs, and a running one is interrupted (its JDBC statement may still finish, the result is dropped).
+// A call runs with the replica routing of the thread that submitted it (see ReplicaRouting.carried()), so reads after
+// the caller's writes, or inside its onPrimary(), stay on the primary.
+public class DaoExecutor implements AutoCloseable {
+
+	public static final String POOL_SIZE_PROPERTY = "hibernate.hikari.maximumPoolSize";
+	// HikariCP's default maximumPoolSize
+	private static final int DEFAULT_POOL_SIZE = 10;
+
+	private final ExecutorService executor;
+	private final ScheduledExecutorService timer;
+	private final Semaphore permits;
+	private final int maxConcurrent;
+	private final long timeoutNanos;
+	private final boolean virtual;
+
+	// maxConcurrent should not exceed the connection pool size; timeout 0 means calls never time out
+	public DaoExecutor(int maxConcurrent, long timeout, TimeUnit unit) {
+		if (maxConcurrent <= 0 || timeout < 0) {
+			throw new IllegalArgumentException("need maxConcurrent > 0 and timeout >= 0");
+		}
+		this.maxConcurrent = maxConcurrent;
+		this.timeoutNanos = unit.toNanos(timeout);
+		this.permits = new Semaphore(maxConcurrent, true);
+		ExecutorService virtualThreads = newVirtualThreadExecutor();
+		this.virtual = virtualThreads != null;
+		this.executor = virtual ? virtualThreads : Executors.newFixedThreadPool(maxConcurrent, daemonThreads("dao-async-"));
+		this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("dao-async-timeout-"));
+	}
+
+	// forPool(): a limit equal to the factory's connection pool size
+	public static DaoExecutor forPool(EntityManagerFactory emf, long timeout, TimeUnit unit) {
+		return new DaoExecutor(connectionPoolSize(emf), timeout, unit);
+	}
+
+	// connectionPoolSize(): the factory's hibernate.hikari.maximumPoolSize, HikariCP's default when it is not set
+	public static int connectionPoolSize(EntityManagerFactory emf) {
+		Object poolSize = emf.getProperties().get(POOL_SIZE_PROPERTY);
+		return poolSize == null ? DEFAULT_POOL_SIZE : Integer.parseInt(poolSize.toString().trim());
+	}
+
+	public int getMaxConcurrent() {
+		return maxConcurrent;
+	}
+
+	// usesVirtualThreads(): false on JVMs before Java 21, where a platform thread pool is used instead
+	public boolean usesVirtualThreads() {
+		return virtual;
+	}
+
+	// submit(): runs the call with the executor's default timeout
+	public <T> CompletableFuture<T> submit(Supplier<T> call) {
+		return submit(call, timeoutNanos, TimeUnit.NANOSECONDS);
+	}
+
+	// submit(): runs the call once a permit is free. The future fails with a TimeoutException when the call has not
+	// finished within timeout (0 for none), counted from submission so time spent queued counts too.
+	public <T> CompletableFuture<T> submit(Supplier<T> call, long timeout, TimeUnit unit) {
+		CompletableFuture<T> result = new CompletableFuture<>();
+		Future<?> task = executor.submit(ReplicaRouting.carried(() -> {
+			if (result.isDone()) {
+				return;
+			}
+			try {
+				permits.acquire();
+			} catch (InterruptedException e) {
+				result.completeExceptionally(new CancellationException("interrupted while waiting for a connection"));
+				return;
+			}
+			try {
+				if (!result.isDone()) {
+					result.complete(call.get());
+				}
+			} catch (Throwable e) {
+				result.completeExceptionally(e);
+			} finally {
+				permits.release();
+			}
+		}));
+		if (timeout > 0) {
+			Future<?> timeoutTask = timer.schedule(() -> {
+				result.completeExceptionally(new TimeoutException("DAO call did not finish within " + unit.toMillis(timeout) + " ms"));
+			}, timeout, unit);
+			result.whenComplete((value, error) -> timeoutTask.cancel(false));
+		}
+		// cancel() and timeouts complete the future first; the task is then stopped wherever it is
+		result.whenComplete((value, error) -> {
+			if (error != null) {
+				task.cancel(true);
+			}
+		});
+		return result;
+	}
+
+	// close(): stops accepting calls and waits briefly for the running ones
+	@Override
+	public void close() {
+		executor.shutdown();
+		timer.shutdownNow();
+		try {
+			executor.awaitTermination(30, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	// newVirtualThreadExecutor(): Executors.newVirtualThreadPerTaskExecutor() looked up reflectively, as the project
+	// still compiles for Java 8; null when the running JVM has no virtual threads
+	private static ExecutorService newVirtualThreadExecutor() {
+		try {
+			return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+		} catch (ReflectiveOperationException e) {
+			return null;
+		}
+	}
+
+	private static ThreadFactory daemonThreads(String prefix) {
+		AtomicInteger count = new AtomicInteger();
+		return runnable -> {
+			Thread thread = new Thread(runnable, prefix + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+}
@@ -0,0 +1,102 @@
+package com.hibernate.actor_movie.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+
+// Names of the second-level cache regions (sized in ehcache.xml) and helpers to evict and inspect them.
+public final class CacheRegions {
+
+	public static final String ACTOR = "actor";
+	public static final String MOVIE = "movie";
+	public static final String ACTOR_MOVIES = "actor-movies";
+	public static final String MOVIE_ACTORS = "movie-actors";
+	public static final String ACTOR_QUERIES = "actor-queries";
+	public static final String MOVIE_QUERIES = "movie-queries";
+
+	private static final String[] DOMAIN_REGIONS = { ACTOR, MOVIE, ACTOR_MOVIES, MOVIE_ACTORS };
+	private static final String[] QUERY_REGIONS = { ACTOR_QUERIES, MOVIE_QUERIES };
+
+	private CacheRegions() {
+	}
+
+	// evictLinks(): drops both cached sides of Actor_Movie. Needed after SQL that changes the join table
+	// behind Hibernate's back; bulk HQL/Criteria statements already invalidate the entity and query regions.
+	public static void evictLinks(EntityManagerFactory emf) {
+		Cache cache = emf.unwrap(SessionFactory.class).getCache();
+		cache.evictCollectionData("com.hibernate.JPA.Hibernate.Actor.movies");
+		cache.evictCollectionData("com.hibernate.JPA.Hibernate.Movie.actor");
+	}
+
+	// enableStatistics(): hit/miss counting is off by default because it costs on every cache access
+	public static void enableStatistics(EntityManagerFactory emf, boolean enabled) {
+		emf.unwrap(SessionFactory.class).getStatistics().setStatisticsEnabled(enabled);
+	}
+
+	// statistics(): hits, misses and puts per region since statistics were enabled (or last cleared)
+	public static Map<String, RegionStatistics> statistics(EntityManagerFactory emf) {
+		Statistics statistics = emf.unwrap(SessionFactory.class).getStatistics();
+		Map<String, RegionStatistics> regions = new LinkedHashMap<>();
+		for (String region : DOMAIN_REGIONS) {
+			regions.put(region, new RegionStatistics(region, statistics.getDomainDataRegionStatistics(region)));
+		}
+		for (String region : QUERY_REGIONS) {
+			regions.put(region, new RegionStatistics(region, statistics.getQueryRegionStatistics(region)));
+		}
+		return regions;
+	}
+
+	public static class RegionStatistics {
+
+		private final String region;
+		private final long hits;
+		private final long misses;
+		private final long puts;
+		private final long entries;
+
+		RegionStatistics(String region, CacheRegionStatistics statistics) {
+			this.region = region;
+			this.hits = statistics == null ? 0 : statistics.getHitCount();
+			this.misses = statistics == null ? 0 : statistics.getMissCount();
+			this.puts = statistics == null ? 0 : statistics.getPutCount();
+			this.entries = statistics == null ? 0 : Math.max(0, statistics.getElementCountInMemory());
+		}
+
+		public String getRegion() {
+			return region;
+		}
+
+		public long getHits() {
+			return hits;
+		}
+
+		public long getMisses() {
+			return misses;
+		}
+
+		public long getPuts() {
+			return puts;
+		}
+
+		public long getEntries() {
+			return entries;
+		}
+
+		public double getHitRatio() {
+			long lookups = hits + misses;
+			return lookups == 0 ? 0 : (double) hits / lookups;
+		}
+
+		@Override
+		public String toString() {
+			return "RegionStatistics [region=" + region + ", hits=" + hits + ", misses=" + misses + ", puts=" + puts
+					+ ", entries=" + entries + ", hitRatio=" + String.format("%.3f", getHitRatio()) + "]";
+		}
+	}
+}
@@ -0,0 +1,83 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.Query;
+
+// The rows a bulk statement is about to change, read in the caller's transaction before it runs and published as
+// one batch of ChangeEvents once it commits. Does nothing, and reads nothing, when the stream is off.
+public final class BulkChange {
+
+	private final ChangeStream stream;
+	private final Class<?> entity;
+	private final ChangeType type;
+	private int[] ids = new int[0];
+	private int count;
+
+	BulkChange(ChangeStream stream, Class<?> entity, ChangeType type) {
+		this.stream = stream;
+		this.entity = entity;
+		this.type = type;
+	}
+
+	// read(): adds the ids idSelect returns (SQL selecting one id column, with ?1, ?2... parameters)
+	public BulkChange read(EntityManager em, String idSelect, Object... params) {
+		if (stream == null) {
+			return this;
+		}
+		Query query = em.createNativeQuery(idSelect);
+		for (int i = 0; i < params.length; i++) {
+			query.setParameter(i + 1, params[i]);
+		}
+		for (Object id : query.getResultList()) {
+			append(((Number) id).intValue());
+		}
+		return this;
+	}
+
+	// add(): ids the caller knows without reading, such as the rows a WriteBehindBuffer flush updated
+	public BulkChange add(Collection<Integer> changed) {
+		if (stream == null) {
+			return this;
+		}
+		for (Integer id : changed) {
+			append(id);
+		}
+		return this;
+	}
+
+	// add(): one id the caller knows without reading, such as the actor of a link CatalogueImporter writes
+	public BulkChange add(int changed) {
+		if (stream != null) {
+			append(changed);
+		}
+		return this;
+	}
+
+	// committed(): publishes one event per distinct id, in id order; called after the statement's transaction commits
+	public void committed() {
+		if (stream == null || count == 0) {
+			return;
+		}
+		Arrays.sort(ids, 0, count);
+		List<ChangeEvent> events = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			if (i == 0 || ids[i] != ids[i - 1]) {
+				events.add(new ChangeEvent(type, entity, ids[i], true));
+			}
+		}
+		count = 0;
+		stream.publish(events);
+	}
+
+	private void append(int id) {
+		if (count == ids.length) {
+			ids = Arrays.copyOf(ids, Math.max(16, count * 2));
+		}
+		ids[count++] = id;
+	}
+}
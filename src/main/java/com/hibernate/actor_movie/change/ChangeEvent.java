@@ -0,0 +1,49 @@
+package com.hibernate.actor_movie.change;
+
+// One committed insert, update or delete of an Actor or Movie row, as published to the ChangeStream. Events carry the
+// row's id only; a subscriber that needs the new state reads it (or drops what it holds for the row).
+public final class ChangeEvent {
+
+	private final ChangeType type;
+	private final Class<?> entity;
+	private final int id;
+	private final boolean bulk;
+	// assigned by the ChangeRing when the event is published, before any subscriber can see it
+	long sequence = -1;
+
+	ChangeEvent(ChangeType type, Class<?> entity, int id, boolean bulk) {
+		this.type = type;
+		this.entity = entity;
+		this.id = id;
+		this.bulk = bulk;
+	}
+
+	// getSequence(): the event's position in the stream; a later commit's events have higher sequences, and the
+	// events of one transaction are consecutive unless it changed more rows than the ring holds
+	public long getSequence() {
+		return sequence;
+	}
+
+	public ChangeType getType() {
+		return type;
+	}
+
+	public Class<?> getEntity() {
+		return entity;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	// isBulk(): the row was changed by a bulk statement (HQL, Criteria or native SQL) rather than through the entity,
+	// so no entity listener saw it and the second-level cache may not have either
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	@Override
+	public String toString() {
+		return sequence + " " + type + " " + entity.getSimpleName() + "#" + id + (bulk ? " (bulk)" : "");
+	}
+}
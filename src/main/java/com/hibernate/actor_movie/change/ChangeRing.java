@@ -0,0 +1,164 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+// Bounded ring of ChangeEvents shared by any number of publishers and subscribers, without locks:
+//   - a publisher claims a run of sequences with one compareAndSet on the claimed counter, stores its events in their
+//     slots and then marks each slot published with the sequence written into it
+//   - a subscriber reads forward from its own Cursor for as long as the next slot is marked with the sequence it
+//     expects, so it never sees a slot being written, and moves its cursor once it has handled what it read
+// Every subscriber receives every event. A publisher may not claim a slot that some subscriber has not handled yet
+// (one ring size behind the slowest cursor): it parks until the subscriber catches up, which is the back-pressure.
+// With no subscribers, publishing only overwrites the ring.
+final class ChangeRing {
+
+	private static final long PUBLISHER_PARK_NANOS = 50_000;
+
+	private final ChangeEvent[] slots;
+	private final AtomicLongArray published;
+	private final int mask;
+	private final AtomicLong claimed = new AtomicLong(-1);
+	private final AtomicReference<Cursor[]> cursors = new AtomicReference<>(new Cursor[0]);
+	// a lower bound on the slowest cursor, so most claims do not scan the cursors
+	private volatile long gate = -1;
+
+	ChangeRing(int size) {
+		if (size < 1 || Integer.bitCount(size) != 1) {
+			throw new IllegalArgumentException("ring size must be a power of two: " + size);
+		}
+		this.slots = new ChangeEvent[size];
+		this.published = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			published.set(i, -1);
+		}
+		this.mask = size - 1;
+	}
+
+	int size() {
+		return slots.length;
+	}
+
+	// last(): the highest sequence claimed so far, -1 before the first
+	long last() {
+		return claimed.get();
+	}
+
+	// publish(): appends the events in order and assigns their sequences; a list longer than the ring goes in
+	// ring-sized runs. Returns the last sequence, or -1 for an empty list.
+	long publish(List<ChangeEvent> events) {
+		long last = -1;
+		for (int from = 0; from < events.size(); ) {
+			int count = Math.min(slots.length, events.size() - from);
+			long first = claim(count);
+			for (int i = 0; i < count; i++) {
+				long sequence = first + i;
+				int slot = (int) sequence & mask;
+				ChangeEvent event = events.get(from + i);
+				event.sequence = sequence;
+				slots[slot] = event;
+				// the release store orders the slot write before it for a subscriber that sees the sequence
+				published.lazySet(slot, sequence);
+			}
+			from += count;
+			last = first + count - 1;
+		}
+		return last;
+	}
+
+	// claim(): the first of count consecutive sequences, once no subscriber still needs their slots
+	private long claim(int count) {
+		while (true) {
+			long current = claimed.get();
+			long next = current + count;
+			long wrap = next - slots.length;
+			if (wrap > gate) {
+				long slowest = slowest(current);
+				gate = slowest;
+				if (wrap > slowest) {
+					LockSupport.parkNanos(this, PUBLISHER_PARK_NANOS);
+					continue;
+				}
+			}
+			if (claimed.compareAndSet(current, next)) {
+				return current + 1;
+			}
+		}
+	}
+
+	private long slowest(long current) {
+		long slowest = current;
+		for (Cursor cursor : cursors.get()) {
+			slowest = Math.min(slowest, cursor.sequence);
+		}
+		return slowest;
+	}
+
+	// subscribe(): a cursor that will see the events published from now on
+	Cursor subscribe() {
+		Cursor cursor = new Cursor();
+		// until it is placed below: an earlier position, which can only hold publishers back longer than needed
+		cursor.sequence = claimed.get();
+		Cursor[] current;
+		Cursor[] updated;
+		do {
+			current = cursors.get();
+			updated = Arrays.copyOf(current, current.length + 1);
+			updated[current.length] = cursor;
+		} while (!cursors.compareAndSet(current, updated));
+		// read once publishers can see the cursor: a claim racing with this one checked a position no later than it
+		cursor.sequence = claimed.get();
+		return cursor;
+	}
+
+	void unsubscribe(Cursor cursor) {
+		Cursor[] current;
+		Cursor[] updated;
+		do {
+			current = cursors.get();
+			int index = Arrays.asList(current).indexOf(cursor);
+			if (index < 0) {
+				return;
+			}
+			updated = new Cursor[current.length - 1];
+			System.arraycopy(current, 0, updated, 0, index);
+			System.arraycopy(current, index + 1, updated, index, updated.length - index);
+		} while (!cursors.compareAndSet(current, updated));
+	}
+
+	// poll(): adds up to max events after the cursor to into, stopping at the first slot not published yet; the
+	// cursor stays where it is until handled() moves it
+	int poll(Cursor cursor, int max, List<ChangeEvent> into) {
+		long next = cursor.sequence + 1;
+		int count = 0;
+		while (count < max) {
+			int slot = (int) next & mask;
+			if (published.get(slot) != next) {
+				break;
+			}
+			into.add(slots[slot]);
+			next++;
+			count++;
+		}
+		return count;
+	}
+
+	// handled(): the subscriber is done with every event up to sequence; publishers may reuse their slots
+	void handled(Cursor cursor, long sequence) {
+		cursor.sequence = sequence;
+	}
+
+	// The position of one subscriber: the last sequence it has handled. Written by its subscriber only.
+	static final class Cursor {
+
+		volatile long sequence;
+
+		long lag(ChangeRing ring) {
+			return ring.last() - sequence;
+		}
+	}
+}
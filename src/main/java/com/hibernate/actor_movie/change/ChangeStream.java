@@ -0,0 +1,181 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+
+import com.hibernate.actor_movie.dao.FactoryLocal;
+
+// Committed inserts, updates and deletes of actors and movies, as an ordered stream of ChangeEvents that caches,
+// search indexes and other consumers in the JVM subscribe to instead of polling the tables. Enabled with the
+// actor_movie.change.stream property; the events go through a ChangeRing of actor_movie.change.ring_size slots:
+//   - entity inserts, updates and deletes (addActor, addMovie, the optimistic updates, the importer) are collected by
+//     ChangeStreamIntegrator and published as one batch once their transaction commits; a rolled back transaction
+//     publishes nothing
+//   - the bulk updates and deletes, which Hibernate's listeners never see, read the ids they are about to change in
+//     their own transaction and publish them after the commit (see BulkChange); so do the WriteBehindBuffer flushes
+//     and the links CatalogueImporter writes over JDBC, chunk by chunk
+// The Actor_Movie links are not rows of their own here: linking an actor and a movie is an UPDATE of the actor, whose
+// movies collection owns the link, and a deleted actor or movie takes its links with it.
+// Each subscription has its own thread and receives every event published after it subscribed, in sequence order.
+// A subscriber a full ring behind holds up the commits that publish next, rather than losing events.
+public final class ChangeStream {
+
+	public static final String ENABLED_PROPERTY = "actor_movie.change.stream";
+	public static final String RING_SIZE_PROPERTY = "actor_movie.change.ring_size";
+	public static final int DEFAULT_RING_SIZE = 1 << 16;
+	public static final int MAX_BATCH = 1024;
+
+	static final Logger LOG = Logger.getLogger("com.hibernate.actor_movie.change");
+
+	private static final long MAX_IDLE_NANOS = 1_000_000;
+	private static final AtomicInteger SUBSCRIBER_THREADS = new AtomicInteger();
+
+	private static final FactoryLocal<ChangeStream> CURRENT = new FactoryLocal<>();
+
+	private final ChangeRing ring;
+	private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+	ChangeStream(int ringSize) {
+		this.ring = new ChangeRing(ringSize);
+	}
+
+	public static ChangeStream current(EntityManagerFactory emf) {
+		return CURRENT.get(emf);
+	}
+
+	// require(): the factory's stream, for subscribers that cannot work without one
+	public static ChangeStream require(EntityManagerFactory emf) {
+		ChangeStream stream = CURRENT.get(emf);
+		if (stream == null) {
+			throw new IllegalStateException("change events need " + ENABLED_PROPERTY + "=true");
+		}
+		return stream;
+	}
+
+	static void install(SessionFactory factory, ChangeStream stream) {
+		ChangeStream previous = CURRENT.set(factory, stream);
+		if (previous != null && previous != stream) {
+			previous.close();
+		}
+	}
+
+	// uninstall(): also ends the subscriptions, whose factory is gone
+	static void uninstall(SessionFactory factory) {
+		ChangeStream previous = CURRENT.set(factory, null);
+		if (previous != null) {
+			previous.close();
+		}
+	}
+
+	// bulk(): the rows a bulk statement on entity is about to change
+	public static BulkChange bulk(EntityManagerFactory emf, Class<?> entity, ChangeType type) {
+		return new BulkChange(CURRENT.get(emf), entity, type);
+	}
+
+	// subscribe(): starts delivering the events published from now on to subscriber, on a thread of its own
+	public Subscription subscribe(ChangeSubscriber subscriber) {
+		Subscription subscription = new Subscription(this, subscriber);
+		subscriptions.add(subscription);
+		subscription.thread.start();
+		return subscription;
+	}
+
+	// getLastSequence(): the sequence of the latest event published, -1 before the first
+	public long getLastSequence() {
+		return ring.last();
+	}
+
+	public int getRingSize() {
+		return ring.size();
+	}
+
+	// publish(): appends one transaction's events; waits while a subscriber is a full ring behind
+	void publish(List<ChangeEvent> events) {
+		ring.publish(events);
+	}
+
+	void close() {
+		for (Subscription subscription : subscriptions) {
+			subscription.close();
+		}
+	}
+
+	// One subscriber's position in the stream and the thread delivering to it
+	public static final class Subscription implements AutoCloseable {
+
+		private final ChangeStream stream;
+		private final ChangeSubscriber subscriber;
+		private final ChangeRing.Cursor cursor;
+		private final Thread thread;
+		private volatile boolean closed;
+
+		Subscription(ChangeStream stream, ChangeSubscriber subscriber) {
+			this.stream = stream;
+			this.subscriber = subscriber;
+			this.cursor = stream.ring.subscribe();
+			this.thread = new Thread(this::deliver, "change-subscriber-" + SUBSCRIBER_THREADS.incrementAndGet());
+			thread.setDaemon(true);
+		}
+
+		// getSequence(): the sequence of the last event the subscriber has handled
+		public long getSequence() {
+			return cursor.sequence;
+		}
+
+		// getLag(): how many events were published that the subscriber has not handled yet
+		public long getLag() {
+			return cursor.lag(stream.ring);
+		}
+
+		// close(): stops the delivery once the batch in hand is handled; publishers no longer wait for this subscriber
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			LockSupport.unpark(thread);
+			if (Thread.currentThread() != thread) {
+				try {
+					thread.join();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+			stream.ring.unsubscribe(cursor);
+			stream.subscriptions.remove(this);
+		}
+
+		// deliver(): hands each published batch to the subscriber; parks for up to a millisecond while there is none.
+		// An exception from the subscriber is logged and its batch counted as handled, so one bad event cannot stop
+		// the stream for everyone.
+		private void deliver() {
+			long idleNanos = 1;
+			while (!closed) {
+				List<ChangeEvent> batch = new ArrayList<>();
+				if (stream.ring.poll(cursor, MAX_BATCH, batch) == 0) {
+					LockSupport.parkNanos(this, idleNanos);
+					idleNanos = Math.min(MAX_IDLE_NANOS, idleNanos * 2);
+					continue;
+				}
+				idleNanos = 1;
+				try {
+					subscriber.onChanges(batch);
+				} catch (RuntimeException e) {
+					LOG.log(Level.WARNING, "change subscriber failed on events " + batch.get(0).getSequence() + " to "
+							+ batch.get(batch.size() - 1).getSequence(), e);
+				}
+				stream.ring.handled(cursor, batch.get(batch.size() - 1).getSequence());
+			}
+		}
+	}
+}
@@ -0,0 +1,162 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Installs the ChangeStream when actor_movie.change.stream is true: collects every flushed insert, update and delete
+// of an entity per transaction and publishes them as one batch after the transaction commits. The Actor_Movie links
+// leave the versions alone (see Actor.movies), so no entity update reports them; a written collection is published as
+// an UPDATE of its owner instead, unless the transaction already changed that row.
+public class ChangeStreamIntegrator implements Integrator {
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		Map<String, Object> properties = sessionFactory.getProperties();
+		if (!Boolean.parseBoolean(String.valueOf(properties.get(ChangeStream.ENABLED_PROPERTY)))) {
+			return;
+		}
+		Object ringSize = properties.get(ChangeStream.RING_SIZE_PROPERTY);
+		ChangeStream stream = new ChangeStream(ringSize == null ? ChangeStream.DEFAULT_RING_SIZE
+				: Integer.parseInt(ringSize.toString().trim()));
+		Listener listener = new Listener(stream);
+		EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_INSERT, listener);
+		listeners.appendListeners(EventType.POST_UPDATE, listener);
+		listeners.appendListeners(EventType.POST_DELETE, listener);
+		listeners.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		listeners.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				ChangeStream.install(factory, stream);
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		ChangeStream.uninstall(sessionFactory);
+	}
+
+	private static class Listener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener,
+			PostCollectionRecreateEventListener, PostCollectionUpdateEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ChangeStream stream;
+		// the events of each session's running transaction; a session is used by one thread at a time
+		private final Map<EventSource, Batch> pending = new ConcurrentHashMap<>();
+
+		Listener(ChangeStream stream) {
+			this.stream = stream;
+		}
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			changed(event.getSession(), ChangeType.INSERT, event.getPersister(), event.getId());
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			changed(event.getSession(), ChangeType.UPDATE, event.getPersister(), event.getId());
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			changed(event.getSession(), ChangeType.DELETE, event.getPersister(), event.getId());
+		}
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+			ownerChanged(event);
+		}
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+			ownerChanged(event);
+		}
+
+		// deprecated in favour of requiresPostCommitHandling(), but Hibernate 5.4 still declares it abstract
+		@SuppressWarnings("deprecation")
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+		private void changed(EventSource session, ChangeType type, EntityPersister persister, Object id) {
+			batch(session).add(type, persister.getMappedClass(), ((Number) id).intValue());
+		}
+
+		// ownerChanged(): a removed collection is not reported, its owner is being deleted or its links rewritten
+		private void ownerChanged(AbstractCollectionEvent event) {
+			Batch batch = batch(event.getSession());
+			Class<?> owner = event.getSession().getFactory().getMetamodel()
+					.entityPersister(event.getAffectedOwnerEntityName()).getMappedClass();
+			int id = ((Number) event.getAffectedOwnerIdOrNull()).intValue();
+			if (!batch.contains(owner, id)) {
+				batch.add(ChangeType.UPDATE, owner, id);
+			}
+		}
+
+		// batch(): the first change of a transaction registers the callback that publishes them all after it ends
+		private Batch batch(EventSource session) {
+			Batch batch = pending.get(session);
+			if (batch == null) {
+				batch = new Batch();
+				pending.put(session, batch);
+				session.getActionQueue().registerProcess((success, ignored) -> {
+					Batch committed = pending.remove(session);
+					if (success && committed != null) {
+						stream.publish(committed.events);
+					}
+				});
+			}
+			return batch;
+		}
+	}
+
+	// The changes of one transaction, in the order they were flushed
+	private static class Batch {
+
+		final List<ChangeEvent> events = new ArrayList<>();
+		private final Set<String> rows = new HashSet<>();
+
+		void add(ChangeType type, Class<?> entity, int id) {
+			events.add(new ChangeEvent(type, entity, id, false));
+			rows.add(entity.getName() + '#' + id);
+		}
+
+		boolean contains(Class<?> entity, int id) {
+			return rows.contains(entity.getName() + '#' + id);
+		}
+	}
+}
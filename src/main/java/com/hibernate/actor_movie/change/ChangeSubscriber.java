@@ -0,0 +1,13 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.List;
+
+// Receives the ChangeStream's events on the subscription's own thread, in sequence order, a batch at a time
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+	// onChanges(): the events published since the previous call, at most ChangeStream.MAX_BATCH of them. Publishers
+	// wait for this call to return once the subscriber is a full ring behind, so it should not block for long, nor
+	// write through the DAOs itself: a commit of its own would wait for it.
+	void onChanges(List<ChangeEvent> changes);
+}
@@ -0,0 +1,9 @@
+package com.hibernate.actor_movie.change;
+
+// What happened to the row a ChangeEvent names
+public enum ChangeType {
+
+	INSERT,
+	UPDATE,
+	DELETE
+}
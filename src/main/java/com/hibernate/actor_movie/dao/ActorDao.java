@@ -2,154 +2,384 @@ package com.hibernate.actor_movie.dao;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.CriteriaDelete;
-import javax.persistence.criteria.CriteriaUpdate;
-import javax.persistence.criteria.Root;
-import javax.persistence.criteria.Subquery;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.query.NativeQuery;
 
 import com.hibernate.JPA.Hibernate.Actor;
 import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.aggregate.SalaryStats;
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.change.BulkChange;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.change.ChangeType;
+import com.hibernate.actor_movie.search.SearchField;
+import com.hibernate.actor_movie.search.SearchIndex;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.function.Consumer;
 
 public class ActorDao {
 	
-	EntityManagerFactory emf = Persistence.createEntityManagerFactory("mysql-config");
+	EntityManagerFactory emf;
+
+	// Uses the EntityManagerFactory shared by every DAO in the JVM
+	public ActorDao() {
+		this(EntityManagerFactoryProvider.getEntityManagerFactory());
+	}
 
-	// To avoid code repetition, we are using a helper method to handle the transaction commit and entity manager close operations.
-	private void commitAndClose(EntityManager em) {
-		EntityTransaction et = em.getTransaction();
-		et.commit();
+	public ActorDao(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	// rollbackAndClose(): ends a write in a finally block; a transaction that did not commit, such as a merge that
+	// failed with an OptimisticLockException, is rolled back first, so its pooled connection is never kept
+	private static void rollbackAndClose(EntityManager em) {
+		if (em.getTransaction().isActive()) {
+			em.getTransaction().rollback();
+		}
 		em.close();
 	}
 
-	// addActor(): using inbuilt methods
+	// addActor(): using inbuilt methods. An actor without an id (0) is new: it is persisted and gets the next id of
+	// the Actor pool, a single batched INSERT. One with an id is merged, which first selects the row to decide between
+	// insert and update; merging a copy older than the stored row (its version is behind) fails with an
+	// OptimisticLockException rather than overwriting the newer row.
 	public void addActor(Actor actor) {
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		em.merge(actor);
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			if (actor.getId() == 0) {
+				em.persist(actor);
+			} else {
+				em.merge(actor);
+			}
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
 	}
 
 	// addMovie(): using inbuilt method
 	public void addMovie(Movie movie) {
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		em.persist(movie);
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			em.persist(movie);
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
 	}
 
 	// findActorById(): using inbuilt methods
 	public Actor findActorById(int id) {
-		EntityManager em = emf.createEntityManager();
-		Actor actor = em.find(Actor.class, id);
-		em.close();
-		return actor;
+		return findActorById(id, null);
+	}
+
+	// findActorById(): graph is a named entity graph such as Actor.WITH_MOVIES, or null for the actor row only.
+	// Without a graph the lookup can be answered by the second-level cache; with one it is a single join query,
+	// because a cached actor would come back without the graph applied.
+	public Actor findActorById(int id, String graph) {
+		if (graph == null) {
+			EntityManager em = QuerySupport.reader(emf);
+			try {
+				return em.find(Actor.class, id);
+			} finally {
+				em.close();
+			}
+		}
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			List<Actor> actors = QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_BY_ID, Actor.class), graph)
+					.setParameter("id", id)
+					.getResultList();
+			return actors.isEmpty() ? null : actors.get(0);
+		} finally {
+			em.close();
+		}
+	}
+
+	// findActorsByIds(): the actors in the order of ids, null for an id without an actor. The actors not cached
+	// are read with one select per 500 ids instead of one per id; with a graph they are all read.
+	public List<Actor> findActorsByIds(Collection<Integer> ids) {
+		return findActorsByIds(ids, null);
+	}
+
+	public List<Actor> findActorsByIds(Collection<Integer> ids, String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			return QuerySupport.findByIds(em, Actor.class, ids, graph);
+		} finally {
+			em.close();
+		}
+	}
+
+	// findAllActors(): using a named HQL query, as every finder here (see the @NamedQueries of Actor)
+	public List<Actor> findAllActors() {
+		return findAllActors(null);
+	}
+
+	public List<Actor> findAllActors(String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			return QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_ALL, Actor.class), graph)
+					.getResultList();
+		} finally {
+			em.close();
+		}
 	}
 
 	// findActorByName(): using HQL with alias
 	public List<Actor> findActorByName(String name) {
-		EntityManager em = emf.createEntityManager();
-		List<Actor> actors = em.createQuery("FROM Actor a WHERE a.name = :name", Actor.class)
-				.setParameter("name", name)
-				.getResultList();
-		em.close();
-		return actors;
+		return findActorByName(name, null);
+	}
+
+	public List<Actor> findActorByName(String name, String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_BY_NAME, Actor.class), graph);
+			return QuerySupport.cached(query, CacheRegions.ACTOR_QUERIES, graph)
+					.setParameter("name", name)
+					.getResultList();
+		} finally {
+			em.close();
+		}
 	}
 
-	// findActorByIndustry(): using CriteriaBuilder
+	// searchActorsByName(): up to limit actors whose names match query word by word, best match first: whole words
+	// before prefixes (typeahead) before misspellings, then shorter names. Ranked in memory by the SearchIndex, which
+	// must be enabled (actor_movie.search.index); the actors are then loaded by id in batches.
+	public List<Actor> searchActorsByName(String query, int limit) {
+		return QuerySupport.search(emf, Actor.class, SearchField.ACTOR_NAME, query, limit);
+	}
+
+	// findActorByIndustry(): using HQL; as a CriteriaBuilder query it was rebuilt and translated on every call
 	public List<Actor> findActorByIndustry(String industry) {
-		EntityManager em = emf.createEntityManager();
-		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaQuery<Actor> cq = cb.createQuery(Actor.class);
-		Root<Actor> root = cq.from(Actor.class);
-		cq.select(root).where(cb.equal(root.get("industry"), industry));
-		List<Actor> actors = em.createQuery(cq).getResultList();
-		em.close();
-		return actors;
+		return findActorByIndustry(industry, null);
+	}
+
+	public List<Actor> findActorByIndustry(String industry, String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			return QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_BY_INDUSTRY, Actor.class), graph)
+					.setParameter("industry", industry)
+					.getResultList();
+		} finally {
+			em.close();
+		}
 	}
 
-	// findActorBetweenAge(): using CriteriaBuilder
+	// forEachActorByIndustry(): streams the actors of an industry to the action without loading them all;
+	// returns the number of actors visited
+	public long forEachActorByIndustry(String industry, int fetchSize, Consumer<? super Actor> action) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = em.createNamedQuery(Actor.SCAN_BY_INDUSTRY, Actor.class)
+					.setParameter("industry", industry);
+			return QuerySupport.scroll(em, query, fetchSize, action);
+		} finally {
+			em.close();
+		}
+	}
+
+	// findActorPageByIndustry(): keyset pagination on id; pass null for the first page
+	public Page<Actor> findActorPageByIndustry(String industry, String pageToken, int pageSize) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = em.createNamedQuery(Actor.PAGE_BY_INDUSTRY, Actor.class)
+					.setParameter("industry", industry);
+			return QuerySupport.page(query, pageToken, pageSize, Actor::getId);
+		} finally {
+			em.close();
+		}
+	}
+
+	// findActorSummariesByIndustry(): read-only listing of an industry's actors, see QuerySupport.project
+	public List<ActorSummary> findActorSummariesByIndustry(String industry) {
+		return QuerySupport.project(emf, session -> session.createNamedQuery(Actor.SUMMARIES_BY_INDUSTRY, ActorSummary.class)
+				.setParameter("industry", industry));
+	}
+
+	// findActorBetweenAge(): using HQL
 	public List<Actor> findActorBetweenAge(int minAge, int maxAge) {
-		EntityManager em = emf.createEntityManager();
-		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaQuery<Actor> cq = cb.createQuery(Actor.class);
-		Root<Actor> root = cq.from(Actor.class);
-		cq.select(root).where(cb.between(root.get("age"), minAge, maxAge));
-		List<Actor> actors = em.createQuery(cq).getResultList();
-		em.close();
-		return actors;
+		return findActorBetweenAge(minAge, maxAge, null);
+	}
+
+	public List<Actor> findActorBetweenAge(int minAge, int maxAge, String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			return QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_BETWEEN_AGE, Actor.class), graph)
+					.setParameter("minAge", minAge)
+					.setParameter("maxAge", maxAge)
+					.getResultList();
+		} finally {
+			em.close();
+		}
+	}
+
+	// findActorSummariesBetweenAge(): read-only listing, see QuerySupport.project
+	public List<ActorSummary> findActorSummariesBetweenAge(int minAge, int maxAge) {
+		return QuerySupport.project(emf, session -> session.createNamedQuery(Actor.SUMMARIES_BETWEEN_AGE, ActorSummary.class)
+				.setParameter("minAge", minAge)
+				.setParameter("maxAge", maxAge));
+	}
+
+	// forEachActorBetweenAge(): streams the actors in an age range to the action without loading them all
+	public long forEachActorBetweenAge(int minAge, int maxAge, int fetchSize, Consumer<? super Actor> action) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = em.createNamedQuery(Actor.SCAN_BETWEEN_AGE, Actor.class)
+					.setParameter("minAge", minAge)
+					.setParameter("maxAge", maxAge);
+			return QuerySupport.scroll(em, query, fetchSize, action);
+		} finally {
+			em.close();
+		}
 	}
 
-	// findAllActorsByMovieName(): using CriteriaBuilder
+	// findAllActorsByMovieName(): using HQL
 	public List<Actor> findAllActorsByMovieName(String movieName) {
-		EntityManager em = emf.createEntityManager();
-		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaQuery<Actor> cq = cb.createQuery(Actor.class);
-		Root<Actor> root = cq.from(Actor.class);
+		return findAllActorsByMovieName(movieName, null);
+	}
 
-		Subquery<Integer> subquery = cq.subquery(Integer.class);
-		Root<Movie> movieRoot = subquery.from(Movie.class);
-		subquery.select(movieRoot.get("movieId")).where(cb.equal(movieRoot.get("movieName"), movieName));
+	public List<Actor> findAllActorsByMovieName(String movieName, String graph) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			return QuerySupport.withGraph(em, em.createNamedQuery(Actor.FIND_BY_MOVIE_NAME, Actor.class), graph)
+					.setParameter("movieName", movieName)
+					.getResultList();
+		} finally {
+			em.close();
+		}
+	}
 
-		cq.select(root).where(cb.in(root.join("movies").get("movieId")).value(subquery));
-		List<Actor> actors = em.createQuery(cq).getResultList();
-		em.close();
-		return actors;
+	// forEachActorByMovieName(): streams the cast of the movies with that name to the action without loading it all
+	public long forEachActorByMovieName(String movieName, int fetchSize, Consumer<? super Actor> action) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = em.createNamedQuery(Actor.SCAN_BY_MOVIE_NAME, Actor.class)
+					.setParameter("movieName", movieName);
+			return QuerySupport.scroll(em, query, fetchSize, action);
+		} finally {
+			em.close();
+		}
 	}
 
-	// updateAllActorSalaryByMovieId(): using CriteriaBuilder
+	// findActorPageByMovieName(): keyset pagination on id; pass null for the first page
+	public Page<Actor> findActorPageByMovieName(String movieName, String pageToken, int pageSize) {
+		EntityManager em = QuerySupport.reader(emf);
+		try {
+			TypedQuery<Actor> query = em.createNamedQuery(Actor.PAGE_BY_MOVIE_NAME, Actor.class)
+					.setParameter("movieName", movieName);
+			return QuerySupport.page(query, pageToken, pageSize, Actor::getId);
+		} finally {
+			em.close();
+		}
+	}
+
+	// findSalaryStats(): actor count, salary total and highest salary per industry or nationality, computed by the
+	// database with one GROUP BY; AggregateView.current(emf) serves the same figures from memory when it is enabled
+	public List<SalaryStats> findSalaryStats(ActorDimension by) {
+		return QuerySupport.project(emf, session -> session.createQuery(by.statsQuery(), SalaryStats.class));
+	}
+
+	// updateAllActorSalaryByMovieId(): one UPDATE that reads the cast straight from the join table; it increments the
+	// versions, so concurrent read-modify-write updates of these actors retry on the new salary
 	public void updateAllActorSalaryByMovieId(int movieId, double newSalary) {
+		AggregateView.AffectedActors affected;
+		BulkChange changed;
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaUpdate<Actor> cu = cb.createCriteriaUpdate(Actor.class);
-		Root<Actor> root = cu.from(Actor.class);
-		cu.set(root.get("salary"), newSalary).where(cb.isMember(movieId, root.get("movies")));
-		em.createQuery(cu).executeUpdate();
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			affected = AggregateView.affectedActors(em,
+					"id IN (SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?1)", movieId);
+			changed = ChangeStream.bulk(emf, Actor.class, ChangeType.UPDATE)
+					.read(em, QuerySupport.sql(em, Actor.IDS_BY_MOVIE), movieId);
+			em.createNamedQuery(Actor.UPDATE_SALARY_BY_MOVIE)
+			.unwrap(NativeQuery.class)
+			.addSynchronizedEntityClass(Actor.class)
+			.setParameter(1, newSalary)
+			.setParameter(2, movieId)
+			.executeUpdate();
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
+		AggregateView.salariesSet(affected, newSalary);
+		changed.committed();
+	}
+
+	// raiseActorSalaryById(): adds increment to the actor's salary and returns the updated actor, null when there is
+	// none. Concurrent raises of the same actor never lose one another: a raise whose actor changed since it was read
+	// is retried on the new salary, see OptimisticRetry.
+	public Actor raiseActorSalaryById(int id, double increment) {
+		return OptimisticRetry.inTransaction(emf, em -> {
+			Actor actor = em.find(Actor.class, id);
+			if (actor != null) {
+				actor.setSalary(actor.getSalary() + increment);
+			}
+			return actor;
+		});
 	}
 
-	// updateActorNationalityById(): using HQL
+	// updateActorNationalityById(): using HQL; VERSIONED increments the version like an entity update would
 	public void updateActorNationalityById(int id, String newNationality) {
+		AggregateView.AffectedActors affected;
+		BulkChange changed;
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		em.createQuery("UPDATE Actor SET nationality = :nationality WHERE id = :id")
-		.setParameter("nationality", newNationality)
-		.setParameter("id", id)
-		.executeUpdate();
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			affected = AggregateView.affectedActors(em, "id = ?1", id);
+			changed = ChangeStream.bulk(emf, Actor.class, ChangeType.UPDATE)
+					.read(em, QuerySupport.sql(em, Actor.ID_BY_ID), id);
+			em.createNamedQuery(Actor.UPDATE_NATIONALITY)
+			.setParameter("nationality", newNationality)
+			.setParameter("id", id)
+			.executeUpdate();
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
+		AggregateView.nationalitiesSet(affected, newNationality);
+		changed.committed();
 	}
 
-	// deleteAllActorsByIndustry(): using HQL
+	// deleteAllActorsByIndustry(): using HQL; Actor owns Actor_Movie, so Hibernate deletes the actors' links with one
+	// statement of its own before deleting the actors
 	public void deleteAllActorsByIndustry(String industry) {
+		BulkChange deleted;
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		em.createQuery("DELETE FROM Actor WHERE industry = :industry")
-		.setParameter("industry", industry)
-		.executeUpdate();
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			deleted = ChangeStream.bulk(emf, Actor.class, ChangeType.DELETE)
+					.read(em, QuerySupport.sql(em, Actor.IDS_BY_INDUSTRY), industry);
+			em.createNamedQuery(Actor.DELETE_BY_INDUSTRY)
+			.setParameter("industry", industry)
+			.executeUpdate();
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
+		LinkTable.afterDelete(emf, deleted);
 	}
 
-	// deleteAllActorsByMovieName(): using CriteriaBuilder
+	// deleteAllActorsByMovieName(): deletes the cast of the movie and their links, see LinkTable
 	public void deleteAllActorsByMovieName(String movieName) {
+		BulkChange deleted;
 		EntityManager em = emf.createEntityManager();
-		em.getTransaction().begin();
-		CriteriaBuilder cb = em.getCriteriaBuilder();
-		CriteriaDelete<Actor> cd = cb.createCriteriaDelete(Actor.class);
-		Root<Actor> root = cd.from(Actor.class);
-
-		Subquery<Integer> subquery = cd.subquery(Integer.class);
-		Root<Movie> movieRoot = subquery.from(Movie.class);
-		subquery.select(movieRoot.get("movieId")).where(cb.equal(movieRoot.get("movieName"), movieName));
-
-		cd.where(cb.in(root.join("movies").get("movieId")).value(subquery));
-		em.createQuery(cd).executeUpdate();
-		commitAndClose(em);
+		try {
+			em.getTransaction().begin();
+			String idSelect = QuerySupport.sql(em, Actor.IDS_BY_MOVIE_NAME);
+			deleted = ChangeStream.bulk(emf, Actor.class, ChangeType.DELETE).read(em, idSelect, movieName);
+			LinkTable.deleteActors(em, idSelect, movieName);
+			em.getTransaction().commit();
+		} finally {
+			rollbackAndClose(em);
+		}
+		LinkTable.afterDelete(emf, deleted);
 	}
 }
-
@@ -0,0 +1,33 @@
+package com.hibernate.actor_movie.dao;
+
+// Read-only listing row of an actor: the columns a listing shows, read by a constructor expression without
+// loading an Actor entity (see ActorDao.findActorSummariesByIndustry).
+public class ActorSummary {
+
+	private final int id;
+	private final String name;
+	private final String industry;
+
+	public ActorSummary(int id, String name, String industry) {
+		this.id = id;
+		this.name = name;
+		this.industry = industry;
+	}
+
+	public int getId() {
+		return id;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public String getIndustry() {
+		return industry;
+	}
+
+	@Override
+	public String toString() {
+		return "ActorSummary [id=" + id + ", name=" + name + ", industry=" + industry + "]";
+	}
+}
@@ -0,0 +1,57 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+// Holds the single EntityManagerFactory shared by every DAO in the JVM.
+// Bootstrapping Hibernate is expensive (metamodel, schema update, connection pool), so it is done once, lazily,
+// on the first call to getEntityManagerFactory(). Pool size and timeouts come from persistence.xml.
+public final class EntityManagerFactoryProvider {
+
+	public static final String PERSISTENCE_UNIT = "mysql-config";
+
+	private static final Map<String, Object> overrides = new HashMap<>();
+	private static volatile EntityManagerFactory emf;
+
+	private EntityManagerFactoryProvider() {
+	}
+
+	// configure(): replaces the properties that override persistence.xml (e.g. another JDBC url or pool size).
+	// Must be called before the factory is built, or after close().
+	public static synchronized void configure(Map<String, ?> properties) {
+		if (emf != null) {
+			throw new IllegalStateException("EntityManagerFactory is already built; call close() first");
+		}
+		overrides.clear();
+		overrides.putAll(properties);
+	}
+
+	// getEntityManagerFactory(): builds the factory on first use, double-checked so later calls never lock
+	public static EntityManagerFactory getEntityManagerFactory() {
+		EntityManagerFactory result = emf;
+		if (result == null) {
+			synchronized (EntityManagerFactoryProvider.class) {
+				result = emf;
+				if (result == null) {
+					result = Persistence.createEntityManagerFactory(PERSISTENCE_UNIT, overrides);
+					emf = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	// close(): shuts the factory down and releases its pooled connections; the next call to
+	// getEntityManagerFactory() bootstraps a fresh one
+	public static synchronized void close() {
+		if (emf != null) {
+			if (emf.isOpen()) {
+				emf.close();
+			}
+			emf = null;
+		}
+	}
+}
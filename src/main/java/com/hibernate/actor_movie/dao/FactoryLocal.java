@@ -0,0 +1,30 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+
+// The instances of an optional subsystem, one per running factory; CastGraphIndex, AggregateView, SearchIndex,
+// ChangeStream and IndexCheck each keep theirs in one. The subsystem's Integrator sets a factory's instance once the
+// factory is built with the subsystem on and removes it when the factory closes, so get() is null exactly when the
+// subsystem is off for that factory. Callers look up the instance of the factory they work on (the DAOs their emf),
+// so factories on different databases, such as the shards of a ShardedCatalogue, never see each other's rows.
+// The DAOs reach the subsystems on every bulk write, and get() is one hash lookup, so a subsystem that is off costs
+// nothing more.
+public final class FactoryLocal<T> {
+
+	private final Map<SessionFactory, T> values = new ConcurrentHashMap<>();
+
+	// get(): the instance of the factory, null when the subsystem is off for it or the factory is closed
+	public T get(EntityManagerFactory emf) {
+		return values.get(emf.unwrap(SessionFactory.class));
+	}
+
+	// set(): the instance it replaces, null for none, for the caller to close; a null value removes the factory's
+	public T set(SessionFactory factory, T value) {
+		return value == null ? values.remove(factory) : values.put(factory, value);
+	}
+}
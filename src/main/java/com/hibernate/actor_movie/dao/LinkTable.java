@@ -0,0 +1,98 @@
+package com.hibernate.actor_movie.dao;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.hql.spi.id.AbstractMultiTableBulkIdStrategyImpl;
+import org.hibernate.hql.spi.id.IdTableSupport;
+import org.hibernate.hql.spi.id.IdTableSupportStandardImpl;
+import org.hibernate.hql.spi.id.MultiTableBulkIdStrategy;
+import org.hibernate.query.NativeQuery;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.change.BulkChange;
+import com.hibernate.actor_movie.graph.CastGraphIndex;
+import com.hibernate.actor_movie.search.SearchIndex;
+
+// Set-based bulk deletes for rows selected through the Actor_Movie join table, which HQL and Criteria cannot express
+// portably (MySQL rejects a DELETE that selects from its own table). Each one deletes the rows and their links with a
+// fixed number of statements, whatever the number of rows or links it touches, in the caller's transaction.
+// The id selects passed in are plain SQL with ?1, ?2... parameters.
+final class LinkTable {
+
+	private static final String TABLE = "Actor_Movie";
+
+	// Scratch table for the ids of the rows being deleted; a temporary table is private to its connection
+	private static final String ID_TABLE = "bulk_ids";
+
+	private LinkTable() {
+	}
+
+	// deleteActors(): deletes the actors whose ids idSelect returns together with their links; returns the actors deleted
+	static int deleteActors(EntityManager em, String idSelect, Object... params) {
+		return deleteWithLinks(em, Actor.class, "Actor", "id", "Actor_id", idSelect, params);
+	}
+
+	// deleteMovies(): deletes the movies whose ids idSelect returns together with their links; returns the movies deleted
+	static int deleteMovies(EntityManager em, String idSelect, Object... params) {
+		return deleteWithLinks(em, Movie.class, "Movie", "movieId", "movie_id", idSelect, params);
+	}
+
+	// afterDelete(): what follows every committed bulk delete of actors or movies, which Hibernate's listeners never
+	// see: the cached movie lists are evicted, the cast graph, aggregate view and search index of the factory reload,
+	// and the deleted rows are published on its ChangeStream. The in-memory copies reload rather than follow the
+	// stream, so they stay right when it is off.
+	static void afterDelete(EntityManagerFactory emf, BulkChange deleted) {
+		CacheRegions.evictLinks(emf);
+		CastGraphIndex.linksChanged(emf);
+		AggregateView.rowsChanged(emf);
+		SearchIndex.rowsChanged(emf);
+		deleted.committed();
+	}
+
+	// deleteWithLinks(): idSelect may read Actor_Movie itself (e.g. "the actors of this movie"), so the ids are copied
+	// into a temporary table first; the links and then the rows are deleted by joining on it, 5 statements in all
+	private static int deleteWithLinks(EntityManager em, Class<?> entity, String table, String idColumn, String linkColumn,
+			String idSelect, Object... params) {
+		IdTableSupport idTables = idTableSupport(em);
+		String options = idTables.getCreateIdTableStatementOptions();
+		execute(em, idTables.getCreateIdTableCommand() + " " + ID_TABLE + " (id integer not null)"
+				+ (options == null ? "" : " " + options), ID_TABLE);
+		// The table can outlive the transaction on a pooled connection (MySQL keeps it until the connection closes)
+		execute(em, "DELETE FROM " + ID_TABLE, ID_TABLE);
+		execute(em, "INSERT INTO " + ID_TABLE + " (id) " + idSelect, ID_TABLE, params);
+		execute(em, "DELETE FROM " + TABLE + " WHERE " + linkColumn + " IN (SELECT id FROM " + ID_TABLE + ")", TABLE);
+		return nativeQuery(em, "DELETE FROM " + table + " WHERE " + idColumn + " IN (SELECT id FROM " + ID_TABLE + ")")
+				.addSynchronizedEntityClass(entity)
+				.executeUpdate();
+	}
+
+	// idTableSupport(): the same temporary table DDL Hibernate itself uses for multi-table bulk statements on this dialect
+	private static IdTableSupport idTableSupport(EntityManager em) {
+		Dialect dialect = em.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class).getJdbcServices().getDialect();
+		MultiTableBulkIdStrategy strategy = dialect.getDefaultMultiTableBulkIdStrategy();
+		if (strategy instanceof AbstractMultiTableBulkIdStrategyImpl) {
+			return ((AbstractMultiTableBulkIdStrategyImpl<?, ?>) strategy).getIdTableSupport();
+		}
+		return new IdTableSupportStandardImpl();
+	}
+
+	// execute(): the query space tells Hibernate which cached data the statement invalidates; without one a native
+	// update would clear every cache region
+	private static int execute(EntityManager em, String sql, String querySpace, Object... params) {
+		NativeQuery<?> query = nativeQuery(em, sql).addSynchronizedQuerySpace(querySpace);
+		for (int i = 0; i < params.length; i++) {
+			query.setParameter(i + 1, params[i]);
+		}
+		return query.executeUpdate();
+	}
+
+	private static NativeQuery<?> nativeQuery(EntityManager em, String sql) {
+		return em.createNativeQuery(sql).unwrap(NativeQuery.class);
+	}
+}
@@ -2,185 +2,408 @@ package com.hibernate.actor_movie.dao;
 
 import com.hibernate.JPA.Hibernate.Actor;
 import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.aggregate.CollectionTotal;
+import com.hibernate.actor_movie.aggregate.MovieDimension;
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.change.BulkChange;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.change.ChangeType;
+import com.hibernate.actor_movie.search.SearchField;
+import com.hibernate.actor_movie.search.SearchIndex;
 
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.EntityTransaction;
-import javax.persistence.Persistence;
 import javax.persistence.Query;
-import javax.persistence.criteria.CriteriaBuilder;
-import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.CriteriaDelete;
-import javax.persistence.criteria.Root;
+import javax.persistence.TypedQuery;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Scanner;
+import java.util.function.Consumer;
 
 public class MovieDao {
 
-    EntityManagerFactory emf = Persistence.createEntityManagerFactory("mysql-config");
+    EntityManagerFactory emf;
 
-    // To avoid code repetition, we are using a helper method to handle the transaction commit and entity manager close operations.
-    private void commitAndClose(EntityManager em) {
-        EntityTransaction et = em.getTransaction();
-        et.commit();
+    // Uses the EntityManagerFactory shared by every DAO in the JVM
+    public MovieDao() {
+        this(EntityManagerFactoryProvider.getEntityManagerFactory());
+    }
+
+    public MovieDao(EntityManagerFactory emf) {
+        this.emf = emf;
+    }
+
+    // rollbackAndClose(): ends a write in a finally block; a transaction that did not commit, such as a merge that
+    // failed with an OptimisticLockException, is rolled back first, so its pooled connection is never kept
+    private static void rollbackAndClose(EntityManager em) {
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+        }
         em.close();
     }
 
-    // addMovie()
-    public void addMovie(Movie movie) {
+    // addMovie(): saves the movie and links it to the given actors in one transaction.
+    // The values are collected by the caller (see App), so no console I/O happens while the transaction is open.
+    public void addMovie(Movie movie, List<Integer> actorIds) {
         EntityManager em = emf.createEntityManager();
-        em.getTransaction().begin();
+        try {
+            em.getTransaction().begin();
+
+            // 1. Find the actors by ID, with one select per 500 ids; an id given twice is linked once
+            List<Actor> actorsList = new ArrayList<>();
+            for (Actor actor : QuerySupport.findByIds(em, Actor.class, new LinkedHashSet<>(actorIds), null)) {
+                if (actor != null) {
+                    actorsList.add(actor);
+                }
+            }
+
+            // 2. Add the actor objects into the movie and save it: a movie without an id (0) is new and persisted with
+            // the next id of the Movie pool, one with an id is merged, which selects it first
+            movie.setActor(actorsList);
+            Movie saved;
+            if (movie.getMovieId() == 0) {
+                em.persist(movie);
+                saved = movie;
+            } else {
+                saved = em.merge(movie);
+            }
 
-        Scanner scanner = new Scanner(System.in);
+            // 3. Actor.movies owns the Actor_Movie join table, so the link is written from the actor side.
+            // Adding to it loads it; @BatchSize loads the movies of up to 500 of these actors per select
+            for (Actor actor : actorsList) {
+                actor.getMovies().add(saved);
+            }
+            em.getTransaction().commit();
+        } finally {
+            rollbackAndClose(em);
+        }
+    }
 
-        // 1. Create movie object and set all the values
-        System.out.println("Enter movie ID: ");
-        movie.setMovieId(scanner.nextInt());
-        scanner.nextLine(); // Consume newline
+    // findMoviesByIds(): the movies in the order of ids, null for an id without a movie. The movies not cached
+    // are read with one select per 500 ids instead of one per id; with a graph they are all read.
+    public List<Movie> findMoviesByIds(Collection<Integer> ids) {
+        return findMoviesByIds(ids, null);
+    }
 
-        System.out.println("Enter movie name: ");
-        movie.setMovieName(scanner.nextLine());
+    public List<Movie> findMoviesByIds(Collection<Integer> ids, String graph) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            return QuerySupport.findByIds(em, Movie.class, ids, graph);
+        } finally {
+            em.close();
+        }
+    }
 
-        System.out.println("Enter movie director: ");
-        movie.setMovieDirector(scanner.nextLine());
+    // findMovieByName(): using a named HQL query, as every finder here (see the @NamedQueries of Movie)
+    public List<Movie> findMovieByName(String movieName) {
+        return findMovieByName(movieName, null);
+    }
 
-        System.out.println("Enter genre: ");
-        movie.setGenre(scanner.nextLine());
+    // graph is a named entity graph such as Movie.WITH_ACTORS, or null for the movie rows only
+    public List<Movie> findMovieByName(String movieName, String graph) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = QuerySupport.withGraph(em,
+                    em.createNamedQuery(Movie.FIND_BY_NAME, Movie.class), graph);
+            QuerySupport.cached(query, CacheRegions.MOVIE_QUERIES, graph);
+            query.setParameter("movieName", movieName);
+            return query.getResultList();
+        } finally {
+            em.close();
+        }
+    }
 
-        System.out.println("Enter verdict: ");
-        movie.setVerdict(scanner.nextLine());
+    // searchMoviesByName(): up to limit movies whose names match query, best match first; ranked by the SearchIndex
+    // as in ActorDao.searchActorsByName
+    public List<Movie> searchMoviesByName(String query, int limit) {
+        return QuerySupport.search(emf, Movie.class, SearchField.MOVIE_NAME, query, limit);
+    }
 
-        System.out.println("Enter collection: ");
-        movie.setCollection(scanner.nextInt());
-        scanner.nextLine(); // Consume newline
+    // findAllMoviesByGenre(): using HQL; as a CriteriaBuilder query it was rebuilt and translated on every call
+    public List<Movie> findAllMoviesByGenre(String genre) {
+        return findAllMoviesByGenre(genre, null);
+    }
 
-        // 2. Fetch all actor details and display
-        Query query = em.createQuery("FROM Actor");
-        List<Actor> actors = query.getResultList();
-        for (Actor actor : actors) {
-            System.out.println(actor);
+    public List<Movie> findAllMoviesByGenre(String genre, String graph) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = QuerySupport.withGraph(em,
+                    em.createNamedQuery(Movie.FIND_BY_GENRE, Movie.class), graph);
+            return QuerySupport.cached(query, CacheRegions.MOVIE_QUERIES, graph)
+                    .setParameter("genre", genre)
+                    .getResultList();
+        } finally {
+            em.close();
         }
+    }
 
-        // 3. Take the actor IDs as input (imp and crucial) take string inputs
-        System.out.println("Enter actor IDs (comma separated): ");
-        String actorIdsInput = scanner.nextLine();
-        String[] actorIds = actorIdsInput.split(",");
+    // forEachMovieByGenre(): streams the movies of a genre to the action without loading them all;
+    // returns the number of movies visited
+    public long forEachMovieByGenre(String genre, int fetchSize, Consumer<? super Movie> action) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.SCAN_BY_GENRE, Movie.class)
+                    .setParameter("genre", genre);
+            return QuerySupport.scroll(em, query, fetchSize, action);
+        } finally {
+            em.close();
+        }
+    }
 
-        // 4. Find the actors by ID
-        List<Actor> actorsList = new ArrayList<>();
-        for (String actorId : actorIds) {
-            Actor actor = em.find(Actor.class, Integer.parseInt(actorId.trim()));
-            if (actor != null) {
-                actorsList.add(actor);
-            }
+    // findMoviePageByGenre(): keyset pagination on movieId; pass null for the first page
+    public Page<Movie> findMoviePageByGenre(String genre, String pageToken, int pageSize) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.PAGE_BY_GENRE, Movie.class)
+                    .setParameter("genre", genre);
+            return QuerySupport.page(query, pageToken, pageSize, Movie::getMovieId);
+        } finally {
+            em.close();
         }
+    }
 
-        // 5. Add the actor object into the movie
-        movie.setActor(actorsList);
+    // findMovieSummariesByGenre(): read-only listing of a genre's movies, see QuerySupport.project
+    public List<MovieSummary> findMovieSummariesByGenre(String genre) {
+        return QuerySupport.project(emf, session -> session
+                .createNamedQuery(Movie.SUMMARIES_BY_GENRE, MovieSummary.class)
+                .setParameter("genre", genre));
+    }
 
-        // 6. Then save the movie object
-        em.merge(movie);
-        commitAndClose(em);
+    // findAllMoviesByDirector(): using HQL
+    public List<Movie> findAllMoviesByDirector(String director) {
+        return findAllMoviesByDirector(director, null);
     }
 
-    // findMovieByName(): using HQL
-    public void findMovieByName(String movieName) {
-        EntityManager em = emf.createEntityManager();
-        Query query = em.createQuery("FROM Movie m WHERE m.movieName = :movieName", Movie.class);
-        query.setParameter("movieName", movieName);
-        List<Movie> movies = query.getResultList();
-        for (Movie movie : movies) {
-            System.out.println(movie);
+    public List<Movie> findAllMoviesByDirector(String director, String graph) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = QuerySupport.withGraph(em,
+                    em.createNamedQuery(Movie.FIND_BY_DIRECTOR, Movie.class), graph);
+            query.setParameter("director", director);
+            return query.getResultList();
+        } finally {
+            em.close();
         }
-        em.close();
     }
 
-    // findAllMoviesByGenre(): using CriteriaBuilder
-    public void findAllMoviesByGenre(String genre) {
-        EntityManager em = emf.createEntityManager();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Movie> cq = cb.createQuery(Movie.class);
-        Root<Movie> root = cq.from(Movie.class);
-        cq.select(root).where(cb.equal(root.get("genre"), genre));
-        List<Movie> movies = em.createQuery(cq).getResultList();
-        for (Movie movie : movies) {
-            System.out.println(movie);
+    // forEachMovieByDirector(): streams the movies of a director to the action without loading them all
+    public long forEachMovieByDirector(String director, int fetchSize, Consumer<? super Movie> action) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.SCAN_BY_DIRECTOR, Movie.class)
+                    .setParameter("director", director);
+            return QuerySupport.scroll(em, query, fetchSize, action);
+        } finally {
+            em.close();
         }
-        em.close();
     }
 
-    // findAllMoviesByDirector(): using HQL
-    public void findAllMoviesByDirector(String director) {
-        EntityManager em = emf.createEntityManager();
-        Query query = em.createQuery("FROM Movie m WHERE m.movieDirector = :director", Movie.class);
-        query.setParameter("director", director);
-        List<Movie> movies = query.getResultList();
-        for (Movie movie : movies) {
-            System.out.println(movie);
+    // findMoviePageByDirector(): keyset pagination on movieId; pass null for the first page
+    public Page<Movie> findMoviePageByDirector(String director, String pageToken, int pageSize) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.PAGE_BY_DIRECTOR, Movie.class)
+                    .setParameter("director", director);
+            return QuerySupport.page(query, pageToken, pageSize, Movie::getMovieId);
+        } finally {
+            em.close();
         }
-        em.close();
     }
 
-    // findAllMovieCollectionGreaterThan(): using CriteriaBuilder
-    public void findAllMovieCollectionGreaterThan(int collection) {
-        EntityManager em = emf.createEntityManager();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Movie> cq = cb.createQuery(Movie.class);
-        Root<Movie> root = cq.from(Movie.class);
-        cq.select(root).where(cb.greaterThan(root.get("collection"), collection));
-        List<Movie> movies = em.createQuery(cq).getResultList();
-        for (Movie movie : movies) {
-            System.out.println(movie);
+    // findMovieSummariesByDirector(): read-only listing, see QuerySupport.project
+    public List<MovieSummary> findMovieSummariesByDirector(String director) {
+        return QuerySupport.project(emf, session -> session
+                .createNamedQuery(Movie.SUMMARIES_BY_DIRECTOR, MovieSummary.class)
+                .setParameter("director", director));
+    }
+
+    // searchMoviesByDirector(): up to limit movies whose directors match query, best match first
+    public List<Movie> searchMoviesByDirector(String query, int limit) {
+        return QuerySupport.search(emf, Movie.class, SearchField.MOVIE_DIRECTOR, query, limit);
+    }
+
+    // findAllMovieCollectionGreaterThan(): using HQL. As a CriteriaBuilder query the number was inlined into the SQL
+    // as a literal, so every distinct collection made a new statement; as a parameter it is one statement the driver
+    // and the database prepare once
+    public List<Movie> findAllMovieCollectionGreaterThan(int collection) {
+        return findAllMovieCollectionGreaterThan(collection, null);
+    }
+
+    public List<Movie> findAllMovieCollectionGreaterThan(int collection, String graph) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            return QuerySupport.withGraph(em,
+                    em.createNamedQuery(Movie.FIND_COLLECTION_GREATER_THAN, Movie.class), graph)
+                    .setParameter("collection", collection)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    // forEachMovieCollectionGreaterThan(): streams the movies above a collection to the action without loading them all
+    public long forEachMovieCollectionGreaterThan(int collection, int fetchSize, Consumer<? super Movie> action) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.SCAN_COLLECTION_GREATER_THAN, Movie.class)
+                    .setParameter("collection", collection);
+            return QuerySupport.scroll(em, query, fetchSize, action);
+        } finally {
+            em.close();
         }
-        em.close();
     }
 
-    // updateMovieCollectionByVerdict(): using HQL
+    // findMoviePageCollectionGreaterThan(): keyset pagination on movieId; pass null for the first page
+    public Page<Movie> findMoviePageCollectionGreaterThan(int collection, String pageToken, int pageSize) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.PAGE_COLLECTION_GREATER_THAN, Movie.class)
+                    .setParameter("collection", collection);
+            return QuerySupport.page(query, pageToken, pageSize, Movie::getMovieId);
+        } finally {
+            em.close();
+        }
+    }
+
+    // findCollectionTotals(): movie count and total collection per genre, director or verdict, computed by the
+    // database with one GROUP BY; AggregateView.current(emf) serves the same figures from memory when it is enabled
+    public List<CollectionTotal> findCollectionTotals(MovieDimension by) {
+        return QuerySupport.project(emf, session -> session.createQuery(by.totalsQuery(), CollectionTotal.class));
+    }
+
+    // updateMovieCollectionByVerdict(): using HQL; VERSIONED increments the versions like entity updates would
     public void updateMovieCollectionByVerdict(String verdict, int increment) {
+        AggregateView.AffectedMovies affected;
+        BulkChange changed;
         EntityManager em = emf.createEntityManager();
-        em.getTransaction().begin();
-        Query query = em.createQuery("UPDATE Movie m SET m.collection = m.collection + :increment WHERE m.verdict = :verdict");
-        query.setParameter("increment", increment);
-        query.setParameter("verdict", verdict);
-        query.executeUpdate();
-        commitAndClose(em);
+        try {
+            em.getTransaction().begin();
+            affected = AggregateView.affectedMovies(em, "verdict = ?1", verdict);
+            changed = ChangeStream.bulk(emf, Movie.class, ChangeType.UPDATE)
+                    .read(em, QuerySupport.sql(em, Movie.IDS_BY_VERDICT), verdict);
+            Query query = em.createNamedQuery(Movie.UPDATE_COLLECTION_BY_VERDICT);
+            query.setParameter("increment", increment);
+            query.setParameter("verdict", verdict);
+            query.executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            rollbackAndClose(em);
+        }
+        AggregateView.collectionsIncremented(affected, increment);
+        changed.committed();
     }
 
-    // findAllMoviesByActorId(): using CriteriaBuilder
-    public void findAllMoviesByActorId(int actorId) {
-        EntityManager em = emf.createEntityManager();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<Movie> cq = cb.createQuery(Movie.class);
-        Root<Movie> root = cq.from(Movie.class);
-        cq.select(root).where(cb.isMember(actorId, root.get("actor")));
-        List<Movie> movies = em.createQuery(cq).getResultList();
-        for (Movie movie : movies) {
-            System.out.println(movie);
+    // addToMovieCollectionById(): adds increment to the movie's collection and returns the updated movie, null when
+    // there is none; retried when the movie changed since it was read, see OptimisticRetry
+    public Movie addToMovieCollectionById(int movieId, int increment) {
+        return OptimisticRetry.inTransaction(emf, em -> {
+            Movie movie = em.find(Movie.class, movieId);
+            if (movie != null) {
+                movie.setCollection(movie.getCollection() + increment);
+            }
+            return movie;
+        });
+    }
+
+    // findAllMoviesByActorId(): using HQL, a single join from the actor through Actor_Movie
+    public List<Movie> findAllMoviesByActorId(int actorId) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            return em.createNamedQuery(Movie.FIND_BY_ACTOR_ID, Movie.class)
+                    .setParameter("actorId", actorId)
+                    .getResultList();
+        } finally {
+            em.close();
+        }
+    }
+
+    // forEachMovieByActorId(): streams the actor's movies to the action without loading them all
+    public long forEachMovieByActorId(int actorId, int fetchSize, Consumer<? super Movie> action) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.SCAN_BY_ACTOR_ID, Movie.class)
+                    .setParameter("actorId", actorId);
+            return QuerySupport.scroll(em, query, fetchSize, action);
+        } finally {
+            em.close();
         }
-        em.close();
     }
 
-    // deleteAllMoviesByActorName(): using HQL
+    // findMoviePageByActorId(): keyset pagination on movieId; pass null for the first page
+    public Page<Movie> findMoviePageByActorId(int actorId, String pageToken, int pageSize) {
+        EntityManager em = QuerySupport.reader(emf);
+        try {
+            TypedQuery<Movie> query = em.createNamedQuery(Movie.PAGE_BY_ACTOR_ID, Movie.class)
+                    .setParameter("actorId", actorId);
+            return QuerySupport.page(query, pageToken, pageSize, Movie::getMovieId);
+        } finally {
+            em.close();
+        }
+    }
+
+    // deleteAllMoviesByActorName(): deletes every movie of the actors with that name and their links, see LinkTable
     public void deleteAllMoviesByActorName(String actorName) {
+        BulkChange deleted;
         EntityManager em = emf.createEntityManager();
-        em.getTransaction().begin();
-        Query query = em.createQuery("DELETE FROM Movie m WHERE :actorName MEMBER OF m.actor");
-        query.setParameter("actorName", actorName);
-        query.executeUpdate();
-        commitAndClose(em);
+        try {
+            em.getTransaction().begin();
+            String idSelect = QuerySupport.sql(em, Movie.IDS_BY_ACTOR_NAME);
+            deleted = ChangeStream.bulk(emf, Movie.class, ChangeType.DELETE).read(em, idSelect, actorName);
+            LinkTable.deleteMovies(em, idSelect, actorName);
+            em.getTransaction().commit();
+        } finally {
+            rollbackAndClose(em);
+        }
+        LinkTable.afterDelete(emf, deleted);
     }
 
-    // deleteAllMoviesWithCollectionLessThan(): using CriteriaBuilder
+    // deleteMoviesByIds(): deletes the movies with these ids and their links, see LinkTable; one round of statements
+    // per 500 ids, all in one transaction. The only id select built per call: its IN list is as long as the chunk
+    public void deleteMoviesByIds(Collection<Integer> movieIds) {
+        List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(movieIds));
+        if (ids.isEmpty()) {
+            return;
+        }
+        BulkChange deleted;
+        EntityManager em = emf.createEntityManager();
+        try {
+            em.getTransaction().begin();
+            deleted = ChangeStream.bulk(emf, Movie.class, ChangeType.DELETE);
+            for (int from = 0; from < ids.size(); from += QuerySupport.IDS_PER_SELECT) {
+                List<Integer> chunk = ids.subList(from, Math.min(ids.size(), from + QuerySupport.IDS_PER_SELECT));
+                StringBuilder idSelect = new StringBuilder("SELECT movieId FROM Movie WHERE movieId IN (");
+                for (int i = 1; i <= chunk.size(); i++) {
+                    idSelect.append(i == 1 ? "?" : ", ?").append(i);
+                }
+                idSelect.append(')');
+                deleted.read(em, idSelect.toString(), chunk.toArray());
+                LinkTable.deleteMovies(em, idSelect.toString(), chunk.toArray());
+            }
+            em.getTransaction().commit();
+        } finally {
+            rollbackAndClose(em);
+        }
+        LinkTable.afterDelete(emf, deleted);
+    }
+
+    // deleteAllMoviesWithCollectionLessThan(): using HQL; Hibernate deletes the movies' Actor_Movie links
+    // with one statement of its own before deleting the movies
     public void deleteAllMoviesWithCollectionLessThan(int collection) {
+        BulkChange deleted;
         EntityManager em = emf.createEntityManager();
-        em.getTransaction().begin();
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaDelete<Movie> cd = cb.createCriteriaDelete(Movie.class);
-        Root<Movie> root = cd.from(Movie.class);
-        cd.where(cb.lessThan(root.get("collection"), collection));
-        em.createQuery(cd).executeUpdate();
-        commitAndClose(em);
+        try {
+            em.getTransaction().begin();
+            deleted = ChangeStream.bulk(emf, Movie.class, ChangeType.DELETE)
+                    .read(em, QuerySupport.sql(em, Movie.IDS_WITH_COLLECTION_LESS_THAN), collection);
+            em.createNamedQuery(Movie.DELETE_WITH_COLLECTION_LESS_THAN)
+                    .setParameter("collection", collection)
+                    .executeUpdate();
+            em.getTransaction().commit();
+        } finally {
+            rollbackAndClose(em);
+        }
+        LinkTable.afterDelete(emf, deleted);
     }
 }
-
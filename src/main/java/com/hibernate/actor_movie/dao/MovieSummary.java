@@ -0,0 +1,39 @@
+package com.hibernate.actor_movie.dao;
+
+// Read-only listing row of a movie, see ActorSummary and MovieDao.findMovieSummariesByGenre
+public class MovieSummary {
+
+    private final int movieId;
+    private final String movieName;
+    private final String genre;
+    private final int collection;
+
+    public MovieSummary(int movieId, String movieName, String genre, int collection) {
+        this.movieId = movieId;
+        this.movieName = movieName;
+        this.genre = genre;
+        this.collection = collection;
+    }
+
+    public int getMovieId() {
+        return movieId;
+    }
+
+    public String getMovieName() {
+        return movieName;
+    }
+
+    public String getGenre() {
+        return genre;
+    }
+
+    public int getCollection() {
+        return collection;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieSummary [movieId=" + movieId + ", movieName=" + movieName + ", genre=" + genre
+                + ", collection=" + collection + "]";
+    }
+}
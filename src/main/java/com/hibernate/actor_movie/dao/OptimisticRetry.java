@@ -0,0 +1,70 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.Session;
+import org.hibernate.StaleStateException;
+
+// Read-modify-write transactions under optimistic locking. When the commit finds that another transaction changed a
+// row since it was read (its @Version moved on), the work is rolled back and run again on fresh rows after a short
+// random backoff, so concurrent writers of the same rows neither lose updates nor hold row locks while they work.
+final class OptimisticRetry {
+
+	static final int MAX_ATTEMPTS = 20;
+	// the backoff before attempt n is random in [0, min(MAX_BACKOFF, BASE_BACKOFF * 2^n)), so writers that
+	// collided spread out instead of colliding again
+	private static final long BASE_BACKOFF_MICROS = 100;
+	private static final long MAX_BACKOFF_MICROS = 20_000;
+
+	private OptimisticRetry() {
+	}
+
+	// inTransaction(): runs work in a transaction of its own EntityManager and returns its result once committed;
+	// the conflict of the last attempt, and any other failure, is thrown to the caller
+	static <T> T inTransaction(EntityManagerFactory emf, Function<EntityManager, T> work) {
+		for (int attempt = 1;; attempt++) {
+			EntityManager em = emf.createEntityManager();
+			// these transactions write a row or two; unbatched, a conflict surfaces as an exception without Hibernate
+			// also logging it as a failed batch
+			em.unwrap(Session.class).setJdbcBatchSize(1);
+			try {
+				em.getTransaction().begin();
+				T result = work.apply(em);
+				em.getTransaction().commit();
+				return result;
+			} catch (RuntimeException e) {
+				if (em.getTransaction().isActive()) {
+					em.getTransaction().rollback();
+				}
+				if (attempt == MAX_ATTEMPTS || !isConflict(e)) {
+					throw e;
+				}
+			} finally {
+				em.close();
+			}
+			backoff(attempt);
+		}
+	}
+
+	// isConflict(): true for a version check that failed, at flush or at commit (wrapped in a RollbackException)
+	static boolean isConflict(Throwable e) {
+		for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+			if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void backoff(int attempt) {
+		long bound = Math.min(MAX_BACKOFF_MICROS, BASE_BACKOFF_MICROS << Math.min(attempt, 20));
+		LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(ThreadLocalRandom.current().nextLong(bound)));
+	}
+}
@@ -0,0 +1,51 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.Collections;
+import java.util.List;
+
+// One page of a keyset-paginated finder. Pass getNextPageToken() back to the finder for the following page;
+// the token is opaque to callers and null on the last page.
+public class Page<T> {
+
+	private final List<T> items;
+	private final String nextPageToken;
+
+	public Page(List<T> items, String nextPageToken) {
+		this.items = Collections.unmodifiableList(items);
+		this.nextPageToken = nextPageToken;
+	}
+
+	public List<T> getItems() {
+		return items;
+	}
+
+	public String getNextPageToken() {
+		return nextPageToken;
+	}
+
+	public boolean hasNext() {
+		return nextPageToken != null;
+	}
+
+	// The token carries the last key of this page; the next page starts strictly after it
+	static String tokenAfter(int lastKey) {
+		return Integer.toString(lastKey);
+	}
+
+	// afterKey(): the key a page token continues from; a null token starts at the beginning
+	static int afterKey(String pageToken) {
+		if (pageToken == null) {
+			return Integer.MIN_VALUE;
+		}
+		try {
+			return Integer.parseInt(pageToken);
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid page token: " + pageToken);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "Page [items=" + items.size() + ", nextPageToken=" + nextPageToken + "]";
+	}
+}
@@ -0,0 +1,214 @@
+package com.hibernate.actor_movie.dao;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.TypedQuery;
+
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.CacheMode;
+import org.hibernate.MultiIdentifierLoadAccess;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.graph.GraphSemantic;
+import org.hibernate.graph.RootGraph;
+import org.hibernate.jpa.QueryHints;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+import com.hibernate.actor_movie.search.SearchField;
+import com.hibernate.actor_movie.search.SearchIndex;
+
+// Query helpers shared by the DAOs.
+final class QuerySupport {
+
+	// Loading associations is the caller's choice: finders take a named entity graph (Actor.SUMMARY,
+	// Actor.WITH_MOVIES, Movie.SUMMARY, Movie.WITH_ACTORS) that is applied as a fetch graph, so a collection is
+	// either join-fetched by the same query or not loaded at all, never fetched with one extra select per row.
+	private static final String FETCH_GRAPH = "javax.persistence.fetchgraph";
+
+	// Ids per IN-list select of a multi-load, well below the IN-list limits of the supported databases; the same as
+	// the @BatchSize of Actor.movies and Movie.actor
+	static final int IDS_PER_SELECT = 500;
+
+	private QuerySupport() {
+	}
+
+	// reader(): the EntityManager of a read-only finder. When ReplicaRouting picks a replica it is a session on a
+	// connection to it that releases the connection when it closes; it takes entities and query results from the
+	// second-level and query caches but never puts any there, so a replica lagging behind cannot hand its stale rows
+	// to the readers of the primary. Otherwise it is an ordinary EntityManager on the primary.
+	static EntityManager reader(EntityManagerFactory emf) {
+		Connection replica = ReplicaRouting.replicaConnection(emf);
+		if (replica == null) {
+			return emf.createEntityManager();
+		}
+		Session session = emf.unwrap(SessionFactory.class).withOptions().connection(replica).openSession();
+		session.setCacheMode(CacheMode.GET);
+		session.addEventListeners(new ReleaseOnEnd(replica));
+		return session;
+	}
+
+	// cached(): serves repeated finder calls from the query cache region; results are dropped automatically
+	// whenever a table they read from is written through Hibernate (including bulk HQL/Criteria statements).
+	// A cached result holds ids only and a hit rebuilds the entities without the fetch graph, so a query that has
+	// one (graph as for withGraph()) is left uncached, as findActorById does.
+	static <T> TypedQuery<T> cached(TypedQuery<T> query, String region, String graph) {
+		if (graph != null) {
+			return query;
+		}
+		query.setHint(QueryHints.HINT_CACHEABLE, true);
+		query.setHint(QueryHints.HINT_CACHE_REGION, region);
+		return query;
+	}
+
+	// sql(): the SQL of a named native query such as Actor.IDS_BY_INDUSTRY, for the helpers that take an id select as
+	// text (LinkTable, BulkChange); the statement itself was checked against the database at startup, see
+	// NativeQueryCheck
+	static String sql(EntityManager em, String name) {
+		return em.createNamedQuery(name).unwrap(NativeQuery.class).getQueryString();
+	}
+
+	// withGraph(): applies the graph to a query, null leaves every lazy association unloaded.
+	// Finder queries are DISTINCT so a join-fetched collection does not repeat the root rows; the hint keeps
+	// that DISTINCT in memory instead of sending it to the database.
+	static <T> TypedQuery<T> withGraph(EntityManager em, TypedQuery<T> query, String graph) {
+		query.setHint(QueryHints.HINT_PASS_DISTINCT_THROUGH, false);
+		if (graph != null) {
+			query.setHint(FETCH_GRAPH, em.getEntityGraph(graph));
+		}
+		return query;
+	}
+
+	// scroll(): hands each row of the query to the action through a forward-only cursor that fetches fetchSize
+	// rows per round trip. The session is cleared once the action returns, dropping the row and whatever the action
+	// loaded through it (such as an actor's movies), so the persistence context never holds more than one row's
+	// worth and memory stays flat however many rows match. Lazy associations of a row can only be read inside the
+	// action.
+	@SuppressWarnings("unchecked")
+	static <T> long scroll(EntityManager em, TypedQuery<T> query, int fetchSize, Consumer<? super T> action) {
+		Query<T> hibernateQuery = query.unwrap(Query.class);
+		hibernateQuery.setFetchSize(fetchSize);
+		hibernateQuery.setReadOnly(true);
+		hibernateQuery.setCacheMode(CacheMode.IGNORE);
+		Session session = em.unwrap(Session.class);
+		long rows = 0;
+		ScrollableResults results = hibernateQuery.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (results.next()) {
+				T row = (T) results.get(0);
+				action.accept(row);
+				session.clear();
+				rows++;
+			}
+		} finally {
+			results.close();
+		}
+		return rows;
+	}
+
+	// page(): runs a keyset query that is ordered by key and filtered on key > :after, asking for one row more
+	// than the page size to learn whether another page follows. Deep pages cost the same as the first one
+	// because the database seeks to the key instead of skipping an offset.
+	static <T> Page<T> page(TypedQuery<T> query, String pageToken, int pageSize, ToIntFunction<T> key) {
+		if (pageSize <= 0) {
+			throw new IllegalArgumentException("pageSize must be positive");
+		}
+		List<T> rows = query.setParameter("after", Page.afterKey(pageToken))
+				.setMaxResults(pageSize + 1)
+				.getResultList();
+		if (rows.size() <= pageSize) {
+			return new Page<>(rows, null);
+		}
+		List<T> items = rows.subList(0, pageSize);
+		return new Page<>(items, Page.tokenAfter(key.applyAsInt(items.get(pageSize - 1))));
+	}
+
+	// findByIds(): Hibernate multi-load of the entities with these ids, in the order of ids and with null for an id
+	// that has no row. Entities already in the persistence context or the second-level cache are taken from there,
+	// the rest are read with one IN-list select per IDS_PER_SELECT ids. graph as for withGraph(); it is applied as a
+	// fetch graph to those selects.
+	@SuppressWarnings("unchecked")
+	static <T> List<T> findByIds(EntityManager em, Class<T> entityClass, Collection<Integer> ids, String graph) {
+		Session session = em.unwrap(Session.class);
+		// The second-level cache is only looked at when a cache mode is set explicitly. Entities found there come back
+		// without the graph's associations, so with a graph they are read from the database (and cached, unless the
+		// session is a replica reader())
+		MultiIdentifierLoadAccess<T> load = session.byMultipleIds(entityClass)
+				.with(graph == null || !session.getCacheMode().isPutEnabled() ? session.getCacheMode() : CacheMode.PUT)
+				.withBatchSize(IDS_PER_SELECT)
+				.enableSessionCheck(true)
+				.enableOrderedReturn(true);
+		if (graph != null) {
+			load.with((RootGraph<T>) em.getEntityGraph(graph), GraphSemantic.FETCH);
+		}
+		return load.multiLoad(new ArrayList<>(ids));
+	}
+
+	// search(): the entities SearchIndex ranks best for query, in rank order, loaded as by findByIds with no graph.
+	// A row deleted since it was ranked is left out.
+	static <T> List<T> search(EntityManagerFactory emf, Class<T> entityClass, SearchField field, String query,
+			int limit) {
+		int[] ranked = SearchIndex.require(emf).search(field, query, limit);
+		List<Integer> ids = new ArrayList<>(ranked.length);
+		for (int id : ranked) {
+			ids.add(id);
+		}
+		EntityManager em = reader(emf);
+		try {
+			List<T> found = new ArrayList<>(ranked.length);
+			for (T entity : findByIds(em, entityClass, ids, null)) {
+				if (entity != null) {
+					found.add(entity);
+				}
+			}
+			return found;
+		} finally {
+			em.close();
+		}
+	}
+
+	// project(): runs a constructor-expression query (SELECT new ...Summary(...)) in a StatelessSession. Each row
+	// becomes one plain object: no entity is hydrated, nothing is put in a persistence context or kept as a
+	// dirty-checking snapshot, and the second-level cache is not involved. Reads from a replica when ReplicaRouting
+	// picks one.
+	static <T> List<T> project(EntityManagerFactory emf, Function<StatelessSession, Query<T>> query) {
+		SessionFactory factory = emf.unwrap(SessionFactory.class);
+		Connection replica = ReplicaRouting.replicaConnection(emf);
+		StatelessSession session = replica == null ? factory.openStatelessSession() : factory.openStatelessSession(replica);
+		try {
+			return query.apply(session).setReadOnly(true).getResultList();
+		} finally {
+			session.close();
+			ReplicaRouting.release(replica);
+		}
+	}
+
+	// Returns the replica connection of a reader() session to its pool when the session closes
+	private static final class ReleaseOnEnd extends BaseSessionEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Connection replica;
+
+		ReleaseOnEnd(Connection replica) {
+			this.replica = replica;
+		}
+
+		@Override
+		public void end() {
+			ReplicaRouting.release(replica);
+		}
+	}
+}
@@ -0,0 +1,128 @@
+package com.hibernate.actor_movie.export;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.query.NativeQuery;
+import org.hibernate.query.Query;
+import org.hibernate.type.StandardBasicTypes;
+import org.hibernate.type.Type;
+
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// Full dump of actors, movies and Actor_Movie links to one snapshot file for analytics (see SnapshotFormat, read it
+// back with CatalogueSnapshot). Each table is streamed through a forward-only cursor of a StatelessSession as plain
+// column tuples: no entity is hydrated, no collection loaded and nothing kept in a persistence context, and the
+// writer holds one block of rows at a time, so the heap stays flat however large the catalogue is. The three
+// tables are read in one read-only transaction, from a replica when ReplicaRouting picks one, so on MySQL (InnoDB,
+// REPEATABLE READ) they come from the same consistent snapshot. The file is written next to its target and moved
+// into place when complete, so a reader never sees half an export.
+public class CatalogueExporter {
+
+	public static final int DEFAULT_ROWS_PER_BLOCK = 65_536;
+	public static final int DEFAULT_FETCH_SIZE = 10_000;
+
+	private final EntityManagerFactory emf;
+	private final int rowsPerBlock;
+	private final int fetchSize;
+
+	public CatalogueExporter() {
+		this(EntityManagerFactoryProvider.getEntityManagerFactory(), DEFAULT_ROWS_PER_BLOCK, DEFAULT_FETCH_SIZE);
+	}
+
+	// rowsPerBlock bounds the rows held in memory and mapped per block; fetchSize is the rows per round trip
+	public CatalogueExporter(EntityManagerFactory emf, int rowsPerBlock, int fetchSize) {
+		if (rowsPerBlock <= 0 || rowsPerBlock > SnapshotFormat.MAX_ROWS_PER_BLOCK || fetchSize <= 0) {
+			throw new IllegalArgumentException("need 0 < rowsPerBlock <= " + SnapshotFormat.MAX_ROWS_PER_BLOCK
+					+ " and fetchSize > 0");
+		}
+		this.emf = emf;
+		this.rowsPerBlock = rowsPerBlock;
+		this.fetchSize = fetchSize;
+	}
+
+	// export(): writes every row of the catalogue to file, replacing it
+	public ExportResult export(Path file) throws IOException {
+		long start = System.nanoTime();
+		Path target = file.toAbsolutePath();
+		Path partial = target.resolveSibling(target.getFileName() + ".partial");
+		Map<SnapshotTable, Long> rows = new EnumMap<>(SnapshotTable.class);
+		long bytes;
+		SessionFactory factory = emf.unwrap(SessionFactory.class);
+		Connection replica = ReplicaRouting.replicaConnection(emf);
+		StatelessSession session = replica == null ? factory.openStatelessSession() : factory.openStatelessSession(replica);
+		try (SnapshotWriter writer = new SnapshotWriter(partial, rowsPerBlock)) {
+			Transaction transaction = session.beginTransaction();
+			try {
+				for (SnapshotTable table : SnapshotTable.values()) {
+					rows.put(table, exportTable(session, table, writer));
+				}
+			} finally {
+				transaction.rollback();
+			}
+			writer.finish();
+			bytes = writer.position();
+		} catch (IOException | RuntimeException e) {
+			Files.deleteIfExists(partial);
+			throw e;
+		} finally {
+			session.close();
+			ReplicaRouting.release(replica);
+		}
+		Files.move(partial, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		return new ExportResult(rows, bytes, System.nanoTime() - start);
+	}
+
+	private long exportTable(StatelessSession session, SnapshotTable table, SnapshotWriter writer) throws IOException {
+		Query<?> query;
+		if (table.isNativeQuery()) {
+			// declared scalar types spare Hibernate from resolving each column's type again on every row
+			NativeQuery<?> sql = session.createNativeQuery(table.exportQuery());
+			for (SnapshotColumn column : table.getColumns()) {
+				sql.addScalar(column.getName(), scalarType(column));
+			}
+			query = sql;
+		} else {
+			query = session.createQuery(table.exportQuery());
+		}
+		ScrollableResults results = query.setFetchSize(fetchSize)
+				.setReadOnly(true)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		long rows = 0;
+		writer.startTable(table);
+		try {
+			while (results.next()) {
+				writer.append(results.get());
+				rows++;
+			}
+		} finally {
+			results.close();
+		}
+		writer.endTable();
+		return rows;
+	}
+
+	private static Type scalarType(SnapshotColumn column) {
+		switch (column.getType()) {
+		case INT:
+			return StandardBasicTypes.INTEGER;
+		case DOUBLE:
+			return StandardBasicTypes.DOUBLE;
+		default:
+			return StandardBasicTypes.STRING;
+		}
+	}
+}
@@ -0,0 +1,210 @@
+package com.hibernate.actor_movie.export;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hibernate.actor_movie.importer.CatalogueImporter;
+import com.hibernate.actor_movie.importer.ImportResult;
+import com.hibernate.actor_movie.importer.RowSource;
+
+// A catalogue snapshot written by CatalogueExporter, opened for reading. Only the footer (block index and
+// dictionaries) is read on open; the blocks are memory-mapped as cursors reach them, so a scan is served by the page
+// cache without copying the file onto the heap, and a query pays only for the columns it reads. Thread safe; each
+// thread scans with its own cursor.
+public final class CatalogueSnapshot implements AutoCloseable {
+
+	private final FileChannel channel;
+	private final Map<SnapshotTable, Table> tables = new EnumMap<>(SnapshotTable.class);
+	private final Map<SnapshotColumn, String[]> dictionaries = new EnumMap<>(SnapshotColumn.class);
+	private final Map<SnapshotColumn, Map<String, Integer>> codes = new EnumMap<>(SnapshotColumn.class);
+
+	private CatalogueSnapshot(FileChannel channel) throws IOException {
+		this.channel = channel;
+		long size = channel.size();
+		if (size < SnapshotFormat.HEADER_SIZE + SnapshotFormat.TRAILER_SIZE) {
+			throw new IllegalArgumentException("not a catalogue snapshot: only " + size + " bytes");
+		}
+		ByteBuffer trailer = read(size - SnapshotFormat.TRAILER_SIZE, SnapshotFormat.TRAILER_SIZE);
+		long footer = trailer.getLong();
+		int version = trailer.getInt();
+		if (trailer.getInt() != SnapshotFormat.MAGIC || version != SnapshotFormat.VERSION) {
+			throw new IllegalArgumentException("not a catalogue snapshot of version " + SnapshotFormat.VERSION);
+		}
+		ByteBuffer index = read(footer, (int) (size - SnapshotFormat.TRAILER_SIZE - footer));
+		for (SnapshotTable table : SnapshotTable.values()) {
+			long rows = index.getLong();
+			int blocks = index.getInt();
+			long[] offsets = new long[blocks];
+			int[] lengths = new int[blocks];
+			int[] blockRows = new int[blocks];
+			for (int i = 0; i < blocks; i++) {
+				offsets[i] = index.getLong();
+				lengths[i] = index.getInt();
+				blockRows[i] = index.getInt();
+			}
+			tables.put(table, new Table(rows, offsets, lengths, blockRows));
+		}
+		for (SnapshotColumn column : SnapshotColumn.values()) {
+			if (column.getType() == SnapshotColumn.Type.DICTIONARY) {
+				String[] values = new String[index.getInt() + 1];
+				Map<String, Integer> valueCodes = new HashMap<>();
+				for (int code = 1; code < values.length; code++) {
+					byte[] bytes = new byte[index.getInt()];
+					index.get(bytes);
+					values[code] = new String(bytes, StandardCharsets.UTF_8);
+					valueCodes.put(values[code], code);
+				}
+				dictionaries.put(column, values);
+				codes.put(column, valueCodes);
+			}
+		}
+	}
+
+	// open(): reads the footer of the snapshot file; fails with an IllegalArgumentException for any other file
+	public static CatalogueSnapshot open(Path file) throws IOException {
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		try {
+			return new CatalogueSnapshot(channel);
+		} catch (IOException | RuntimeException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	public long getRowCount(SnapshotTable table) {
+		return tables.get(table).rows;
+	}
+
+	// cursor(): a forward-only cursor over the rows of the table, in the order they were exported
+	public SnapshotCursor cursor(SnapshotTable table) {
+		return new SnapshotCursor(this, table);
+	}
+
+	// code(): the dictionary code of value in column, 0 for null and -1 for a value no row has. Lets a query compare
+	// SnapshotCursor.getCode() with an int instead of decoding every row's string.
+	public int code(SnapshotColumn column, String value) {
+		requireDictionary(column);
+		if (value == null) {
+			return 0;
+		}
+		Integer code = codes.get(column).get(value);
+		return code == null ? -1 : code;
+	}
+
+	// values(): the distinct values of a DICTIONARY column, in code order (the value of code c at index c - 1)
+	public List<String> values(SnapshotColumn column) {
+		requireDictionary(column);
+		String[] values = dictionaries.get(column);
+		List<String> list = new ArrayList<>(values.length - 1);
+		for (int code = 1; code < values.length; code++) {
+			list.add(values[code]);
+		}
+		return list;
+	}
+
+	// rows(): the table's rows as CatalogueImporter reads them
+	public RowSource rows(SnapshotTable table) {
+		SnapshotCursor cursor = cursor(table);
+		List<SnapshotColumn> columns = table.getColumns();
+		return () -> {
+			if (!cursor.next()) {
+				return null;
+			}
+			String[] row = new String[columns.size()];
+			for (int i = 0; i < row.length; i++) {
+				SnapshotColumn column = columns.get(i);
+				switch (column.getType()) {
+				case INT:
+					row[i] = Integer.toString(cursor.getInt(column));
+					break;
+				case DOUBLE:
+					row[i] = Double.toString(cursor.getDouble(column));
+					break;
+				default:
+					row[i] = cursor.getString(column);
+				}
+			}
+			return row;
+		};
+	}
+
+	// restore(): imports the snapshot's actors, movies and links, in that order, into the importer's database.
+	// The ids are kept, so the tables should be empty.
+	public List<ImportResult> restore(CatalogueImporter importer) throws IOException {
+		List<ImportResult> results = new ArrayList<>();
+		results.add(importer.importActors(rows(SnapshotTable.ACTOR)));
+		results.add(importer.importMovies(rows(SnapshotTable.MOVIE)));
+		results.add(importer.importLinks(rows(SnapshotTable.ACTOR_MOVIE)));
+		return results;
+	}
+
+	// close(): closes the file; blocks mapped already stay readable until they are garbage collected
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	int blockCount(SnapshotTable table) {
+		return tables.get(table).offsets.length;
+	}
+
+	int blockRows(SnapshotTable table, int block) {
+		return tables.get(table).blockRows[block];
+	}
+
+	ByteBuffer mapBlock(SnapshotTable table, int block) {
+		Table index = tables.get(table);
+		try {
+			return channel.map(FileChannel.MapMode.READ_ONLY, index.offsets[block], index.lengths[block])
+					.order(SnapshotFormat.ORDER);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	String dictionaryValue(SnapshotColumn column, int code) {
+		return dictionaries.get(column)[code];
+	}
+
+	private void requireDictionary(SnapshotColumn column) {
+		if (column.getType() != SnapshotColumn.Type.DICTIONARY) {
+			throw new IllegalArgumentException(column + " is not dictionary-encoded");
+		}
+	}
+
+	private ByteBuffer read(long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(SnapshotFormat.ORDER);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new IllegalArgumentException("truncated catalogue snapshot");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static final class Table {
+
+		private final long rows;
+		private final long[] offsets;
+		private final int[] lengths;
+		private final int[] blockRows;
+
+		Table(long rows, long[] offsets, int[] lengths, int[] blockRows) {
+			this.rows = rows;
+			this.offsets = offsets;
+			this.lengths = lengths;
+			this.blockRows = blockRows;
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.hibernate.actor_movie.export;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+// Outcome of one catalogue export: rows per table, the size of the snapshot file and how fast it was written.
+public class ExportResult {
+
+	private final Map<SnapshotTable, Long> rows;
+	private final long bytes;
+	private final long elapsedNanos;
+
+	public ExportResult(Map<SnapshotTable, Long> rows, long bytes, long elapsedNanos) {
+		this.rows = new EnumMap<>(rows);
+		this.bytes = bytes;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public long getRows(SnapshotTable table) {
+		Long count = rows.get(table);
+		return count == null ? 0 : count;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	public double getMegabytesPerSecond() {
+		return elapsedNanos == 0 ? 0 : bytes * 1_000.0 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ExportResult [rows=" + rows + ", bytes=" + bytes + ", elapsedMillis=" + getElapsedMillis()
+				+ ", megabytesPerSecond=" + String.format("%.1f", getMegabytesPerSecond()) + "]";
+	}
+}
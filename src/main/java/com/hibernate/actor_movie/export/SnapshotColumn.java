@@ -0,0 +1,66 @@
+package com.hibernate.actor_movie.export;
+
+// The columns of a catalogue snapshot and how each is stored in a block:
+//   INT, DOUBLE - one little-endian primitive per row
+//   STRING      - a null bitmap, rows + 1 offsets and the UTF-8 bytes of the values
+//   DICTIONARY  - one code per row, 1, 2 or 4 bytes wide as the block needs; code 0 is null and the values of the
+//                 other codes are kept once, in the footer. For columns with few distinct values.
+public enum SnapshotColumn {
+
+	ACTOR_ID(SnapshotTable.ACTOR, "id", Type.INT),
+	ACTOR_NAME(SnapshotTable.ACTOR, "name", Type.STRING),
+	ACTOR_AGE(SnapshotTable.ACTOR, "age", Type.INT),
+	ACTOR_INDUSTRY(SnapshotTable.ACTOR, "industry", Type.DICTIONARY),
+	ACTOR_SALARY(SnapshotTable.ACTOR, "salary", Type.DOUBLE),
+	ACTOR_NATIONALITY(SnapshotTable.ACTOR, "nationality", Type.DICTIONARY),
+	MOVIE_ID(SnapshotTable.MOVIE, "movieId", Type.INT),
+	MOVIE_NAME(SnapshotTable.MOVIE, "movieName", Type.STRING),
+	MOVIE_DIRECTOR(SnapshotTable.MOVIE, "movieDirector", Type.STRING),
+	MOVIE_GENRE(SnapshotTable.MOVIE, "genre", Type.DICTIONARY),
+	MOVIE_VERDICT(SnapshotTable.MOVIE, "verdict", Type.DICTIONARY),
+	MOVIE_COLLECTION(SnapshotTable.MOVIE, "collection", Type.INT),
+	LINK_ACTOR_ID(SnapshotTable.ACTOR_MOVIE, "actorId", Type.INT),
+	LINK_MOVIE_ID(SnapshotTable.ACTOR_MOVIE, "movieId", Type.INT);
+
+	public enum Type {
+		INT, DOUBLE, STRING, DICTIONARY
+	}
+
+	private final SnapshotTable table;
+	private final String name;
+	private final Type type;
+	private int position;
+
+	static {
+		for (SnapshotTable table : SnapshotTable.values()) {
+			int position = 0;
+			for (SnapshotColumn column : table.getColumns()) {
+				column.position = position++;
+			}
+		}
+	}
+
+	SnapshotColumn(SnapshotTable table, String name, Type type) {
+		this.table = table;
+		this.name = name;
+		this.type = type;
+	}
+
+	public SnapshotTable getTable() {
+		return table;
+	}
+
+	// getName(): the column name CatalogueImporter uses
+	public String getName() {
+		return name;
+	}
+
+	public Type getType() {
+		return type;
+	}
+
+	// position(): the index of the column in its table
+	int position() {
+		return position;
+	}
+}
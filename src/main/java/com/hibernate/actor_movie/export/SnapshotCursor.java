@@ -0,0 +1,108 @@
+package com.hibernate.actor_movie.export;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+// Forward-only cursor over one table of a CatalogueSnapshot. Values are read straight from the mapped block of the
+// current row; only getString() of a STRING column copies bytes. Not thread safe.
+public final class SnapshotCursor {
+
+	private final CatalogueSnapshot snapshot;
+	private final SnapshotTable table;
+	private final int[] columnStarts;
+	private final int[] codeWidths;
+	private int block = -1;
+	private ByteBuffer data;
+	private int rows;
+	private int row;
+	private byte[] scratch = new byte[64];
+
+	SnapshotCursor(CatalogueSnapshot snapshot, SnapshotTable table) {
+		this.snapshot = snapshot;
+		this.table = table;
+		this.columnStarts = new int[table.getColumns().size()];
+		this.codeWidths = new int[columnStarts.length];
+	}
+
+	// next(): moves to the next row; false past the last one
+	public boolean next() {
+		if (++row < rows) {
+			return true;
+		}
+		while (++block < snapshot.blockCount(table)) {
+			if (snapshot.blockRows(table, block) > 0) {
+				open(block);
+				return true;
+			}
+		}
+		data = null;
+		rows = 0;
+		return false;
+	}
+
+	public int getInt(SnapshotColumn column) {
+		return data.getInt(start(column, SnapshotColumn.Type.INT) + 4 * row);
+	}
+
+	public double getDouble(SnapshotColumn column) {
+		return data.getDouble(start(column, SnapshotColumn.Type.DOUBLE) + 8 * row);
+	}
+
+	// getCode(): the dictionary code of a DICTIONARY column, 0 for null; see CatalogueSnapshot.code()
+	public int getCode(SnapshotColumn column) {
+		int start = start(column, SnapshotColumn.Type.DICTIONARY);
+		switch (codeWidths[column.position()]) {
+		case 1:
+			return data.get(start + row) & 0xff;
+		case 2:
+			return data.getShort(start + 2 * row) & 0xffff;
+		default:
+			return data.getInt(start + 4 * row);
+		}
+	}
+
+	// getString(): the value of a STRING or DICTIONARY column, null for null
+	public String getString(SnapshotColumn column) {
+		if (column.getType() == SnapshotColumn.Type.DICTIONARY) {
+			return snapshot.dictionaryValue(column, getCode(column));
+		}
+		int start = start(column, SnapshotColumn.Type.STRING);
+		if ((data.get(start + (row >>> 3)) & (1 << (row & 7))) != 0) {
+			return null;
+		}
+		int offsets = start + (rows + 7) / 8;
+		int bytes = offsets + 4 * (rows + 1);
+		int from = data.getInt(offsets + 4 * row);
+		int length = data.getInt(offsets + 4 * (row + 1)) - from;
+		if (scratch.length < length) {
+			scratch = new byte[Math.max(length, scratch.length * 2)];
+		}
+		ByteBuffer value = data.duplicate();
+		value.position(bytes + from);
+		value.get(scratch, 0, length);
+		return new String(scratch, 0, length, StandardCharsets.UTF_8);
+	}
+
+	private void open(int next) {
+		data = snapshot.mapBlock(table, next);
+		rows = data.getInt(0);
+		row = 0;
+		for (int i = 0; i < columnStarts.length; i++) {
+			columnStarts[i] = data.getInt(4 + 4 * i);
+			if (table.getColumns().get(i).getType() == SnapshotColumn.Type.DICTIONARY) {
+				codeWidths[i] = data.get(columnStarts[i]);
+				columnStarts[i]++;
+			}
+		}
+	}
+
+	private int start(SnapshotColumn column, SnapshotColumn.Type type) {
+		if (column.getTable() != table || column.getType() != type) {
+			throw new IllegalArgumentException(column + " is not a " + type + " column of " + table);
+		}
+		if (data == null) {
+			throw new IllegalStateException("no current row; call next() first");
+		}
+		return columnStarts[column.position()];
+	}
+}
@@ -0,0 +1,35 @@
+package com.hibernate.actor_movie.export;
+
+import java.nio.ByteOrder;
+
+// Layout of a catalogue snapshot file, all numbers little-endian:
+//   header  - MAGIC, VERSION
+//   blocks  - the rows of each table in turn, at most rowsPerBlock per block. A block is its row count, the offset of
+//             each column from the block start, then the columns one after the other (see SnapshotColumn), so a
+//             query reads only the columns it needs.
+//   footer  - per table: row count, block count, then offset, length and row count of each block; per DICTIONARY
+//             column: its values in code order
+//   trailer - footer offset, VERSION, MAGIC
+// Writers append and readers map the file read-only; a snapshot is never modified once written.
+final class SnapshotFormat {
+
+	static final int MAGIC = 0x414d5331; // "AMS1"
+	static final int VERSION = 1;
+	static final ByteOrder ORDER = ByteOrder.LITTLE_ENDIAN;
+	static final int HEADER_SIZE = 8;
+	static final int TRAILER_SIZE = 16;
+	static final int MAX_ROWS_PER_BLOCK = 1 << 20;
+
+	private SnapshotFormat() {
+	}
+
+	// codeWidth(): bytes per dictionary code in a block whose highest code is maxCode
+	static int codeWidth(int maxCode) {
+		return maxCode <= 0xff ? 1 : maxCode <= 0xffff ? 2 : 4;
+	}
+
+	// stringHeaderSize(): bytes of the null bitmap and offsets of a STRING column of rows values
+	static int stringHeaderSize(int rows) {
+		return (rows + 7) / 8 + 4 * (rows + 1);
+	}
+}
@@ -0,0 +1,47 @@
+package com.hibernate.actor_movie.export;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The tables of a catalogue snapshot, in the order CatalogueExporter writes them. Each is read with one forward-only
+// query whose select list is the table's SnapshotColumns in order, the same columns and order as CatalogueImporter.
+public enum SnapshotTable {
+
+	ACTOR("SELECT a.id, a.name, a.age, a.industry, a.salary, a.nationality FROM Actor a", false),
+	MOVIE("SELECT m.movieId, m.movieName, m.movieDirector, m.genre, m.verdict, m.collection FROM Movie m", false),
+	ACTOR_MOVIE("SELECT Actor_id AS actorId, movie_id AS movieId FROM Actor_Movie", true);
+
+	private final String exportQuery;
+	private final boolean nativeQuery;
+	private List<SnapshotColumn> columns;
+
+	SnapshotTable(String exportQuery, boolean nativeQuery) {
+		this.exportQuery = exportQuery;
+		this.nativeQuery = nativeQuery;
+	}
+
+	// getColumns(): the columns of this table, in storage order
+	public List<SnapshotColumn> getColumns() {
+		if (columns == null) {
+			List<SnapshotColumn> own = new ArrayList<>();
+			for (SnapshotColumn column : SnapshotColumn.values()) {
+				if (column.getTable() == this) {
+					own.add(column);
+				}
+			}
+			columns = Collections.unmodifiableList(own);
+		}
+		return columns;
+	}
+
+	String exportQuery() {
+		return exportQuery;
+	}
+
+	// isNativeQuery(): the join table has no entity, so it is read with SQL instead of HQL; its select list is
+	// aliased with the column names
+	boolean isNativeQuery() {
+		return nativeQuery;
+	}
+}
@@ -0,0 +1,303 @@
+package com.hibernate.actor_movie.export;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Writes a snapshot file (see SnapshotFormat) table by table, holding one block of rows per table in primitive
+// column vectors and the dictionaries; everything else goes straight out through a direct buffer, so the heap it
+// needs depends on rowsPerBlock, not on the size of the catalogue.
+final class SnapshotWriter implements AutoCloseable {
+
+	private static final int OUTPUT_BUFFER = 1 << 20;
+
+	private final FileChannel channel;
+	private final ByteBuffer out = ByteBuffer.allocateDirect(OUTPUT_BUFFER).order(SnapshotFormat.ORDER);
+	private final int rowsPerBlock;
+	private final Map<SnapshotColumn, Dictionary> dictionaries = new EnumMap<>(SnapshotColumn.class);
+	private final Map<SnapshotTable, TableIndex> tables = new EnumMap<>(SnapshotTable.class);
+	private long flushed;
+	private TableIndex table;
+	private ColumnVector[] vectors;
+	private int rows;
+
+	SnapshotWriter(Path file, int rowsPerBlock) throws IOException {
+		this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE);
+		this.rowsPerBlock = rowsPerBlock;
+		for (SnapshotColumn column : SnapshotColumn.values()) {
+			if (column.getType() == SnapshotColumn.Type.DICTIONARY) {
+				dictionaries.put(column, new Dictionary());
+			}
+		}
+		out.putInt(SnapshotFormat.MAGIC).putInt(SnapshotFormat.VERSION);
+	}
+
+	void startTable(SnapshotTable snapshotTable) {
+		table = new TableIndex();
+		tables.put(snapshotTable, table);
+		List<SnapshotColumn> columns = snapshotTable.getColumns();
+		vectors = new ColumnVector[columns.size()];
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i] = new ColumnVector(columns.get(i), rowsPerBlock, dictionaries.get(columns.get(i)));
+		}
+		rows = 0;
+	}
+
+	// append(): one row, its values in the order of the table's columns
+	void append(Object[] row) throws IOException {
+		for (int i = 0; i < vectors.length; i++) {
+			vectors[i].set(rows, row[i]);
+		}
+		if (++rows == rowsPerBlock) {
+			writeBlock();
+		}
+	}
+
+	void endTable() throws IOException {
+		if (rows > 0) {
+			writeBlock();
+		}
+		vectors = null;
+	}
+
+	// finish(): writes the footer and trailer and forces the file to disk
+	void finish() throws IOException {
+		long footer = position();
+		for (SnapshotTable snapshotTable : SnapshotTable.values()) {
+			TableIndex index = tables.containsKey(snapshotTable) ? tables.get(snapshotTable) : new TableIndex();
+			ensure(12);
+			out.putLong(index.rows).putInt(index.offsets.size());
+			for (int i = 0; i < index.offsets.size(); i++) {
+				ensure(16);
+				out.putLong(index.offsets.get(i)).putInt(index.lengths.get(i)).putInt(index.blockRows.get(i));
+			}
+		}
+		for (Dictionary dictionary : dictionaries.values()) {
+			ensure(4);
+			out.putInt(dictionary.values.size());
+			for (String value : dictionary.values) {
+				byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+				ensure(4);
+				out.putInt(bytes.length);
+				putBytes(bytes, 0, bytes.length);
+			}
+		}
+		ensure(SnapshotFormat.TRAILER_SIZE);
+		out.putLong(footer).putInt(SnapshotFormat.VERSION).putInt(SnapshotFormat.MAGIC);
+		flush();
+		channel.force(true);
+	}
+
+	long position() {
+		return flushed + out.position();
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private void writeBlock() throws IOException {
+		long start = position();
+		int headerSize = 4 + 4 * vectors.length;
+		ensure(headerSize);
+		out.putInt(rows);
+		int offset = headerSize;
+		for (ColumnVector vector : vectors) {
+			out.putInt(offset);
+			offset += vector.size(rows);
+		}
+		for (ColumnVector vector : vectors) {
+			vector.write(this, rows);
+		}
+		table.offsets.add(start);
+		table.lengths.add((int) (position() - start));
+		table.blockRows.add(rows);
+		table.rows += rows;
+		rows = 0;
+	}
+
+	// ensure(): room for bytes more in the output buffer, at most OUTPUT_BUFFER
+	private void ensure(int bytes) throws IOException {
+		if (out.remaining() < bytes) {
+			flush();
+		}
+	}
+
+	private void putBytes(byte[] bytes, int from, int length) throws IOException {
+		while (length > 0) {
+			if (!out.hasRemaining()) {
+				flush();
+			}
+			int chunk = Math.min(length, out.remaining());
+			out.put(bytes, from, chunk);
+			from += chunk;
+			length -= chunk;
+		}
+	}
+
+	private void flush() throws IOException {
+		out.flip();
+		while (out.hasRemaining()) {
+			flushed += channel.write(out);
+		}
+		out.clear();
+	}
+
+	private static final class TableIndex {
+
+		private final List<Long> offsets = new ArrayList<>();
+		private final List<Integer> lengths = new ArrayList<>();
+		private final List<Integer> blockRows = new ArrayList<>();
+		private long rows;
+	}
+
+	// The values of a DICTIONARY column; code 0 is null, value i has code i + 1
+	private static final class Dictionary {
+
+		private final Map<String, Integer> codes = new HashMap<>();
+		private final List<String> values = new ArrayList<>();
+
+		int code(String value) {
+			if (value == null) {
+				return 0;
+			}
+			Integer code = codes.get(value);
+			if (code == null) {
+				values.add(value);
+				code = values.size();
+				codes.put(value, code);
+			}
+			return code;
+		}
+	}
+
+	// One column of the block being filled
+	private static final class ColumnVector {
+
+		private final SnapshotColumn.Type type;
+		private final Dictionary dictionary;
+		private int[] ints;
+		private double[] doubles;
+		private byte[] bytes;
+		private int byteCount;
+		private byte[] nulls;
+		private int maxCode;
+
+		ColumnVector(SnapshotColumn column, int capacity, Dictionary dictionary) {
+			this.type = column.getType();
+			this.dictionary = dictionary;
+			switch (type) {
+			case DOUBLE:
+				doubles = new double[capacity];
+				break;
+			case STRING:
+				ints = new int[capacity + 1];
+				bytes = new byte[capacity * 16];
+				nulls = new byte[(capacity + 7) / 8];
+				break;
+			default:
+				ints = new int[capacity];
+			}
+		}
+
+		void set(int row, Object value) {
+			switch (type) {
+			case INT:
+				ints[row] = value == null ? 0 : ((Number) value).intValue();
+				break;
+			case DOUBLE:
+				doubles[row] = value == null ? 0 : ((Number) value).doubleValue();
+				break;
+			case DICTIONARY:
+				int code = dictionary.code((String) value);
+				ints[row] = code;
+				maxCode = Math.max(maxCode, code);
+				break;
+			case STRING:
+				if (row == 0) {
+					byteCount = 0;
+					Arrays.fill(nulls, (byte) 0);
+				}
+				if (value == null) {
+					nulls[row >>> 3] |= 1 << (row & 7);
+				} else {
+					byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+					if (byteCount + utf8.length > bytes.length) {
+						bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + utf8.length));
+					}
+					System.arraycopy(utf8, 0, bytes, byteCount, utf8.length);
+					byteCount += utf8.length;
+				}
+				ints[row + 1] = byteCount;
+				break;
+			}
+		}
+
+		int size(int rows) {
+			switch (type) {
+			case INT:
+				return 4 * rows;
+			case DOUBLE:
+				return 8 * rows;
+			case DICTIONARY:
+				return 1 + SnapshotFormat.codeWidth(maxCode) * rows;
+			default:
+				return SnapshotFormat.stringHeaderSize(rows) + byteCount;
+			}
+		}
+
+		void write(SnapshotWriter writer, int rows) throws IOException {
+			ByteBuffer out = writer.out;
+			switch (type) {
+			case INT:
+				for (int row = 0; row < rows; row++) {
+					writer.ensure(4);
+					out.putInt(ints[row]);
+				}
+				break;
+			case DOUBLE:
+				for (int row = 0; row < rows; row++) {
+					writer.ensure(8);
+					out.putDouble(doubles[row]);
+				}
+				break;
+			case DICTIONARY:
+				int width = SnapshotFormat.codeWidth(maxCode);
+				writer.ensure(1);
+				out.put((byte) width);
+				for (int row = 0; row < rows; row++) {
+					writer.ensure(4);
+					if (width == 1) {
+						out.put((byte) ints[row]);
+					} else if (width == 2) {
+						out.putShort((short) ints[row]);
+					} else {
+						out.putInt(ints[row]);
+					}
+				}
+				maxCode = 0;
+				break;
+			case STRING:
+				writer.putBytes(nulls, 0, (rows + 7) / 8);
+				ints[0] = 0;
+				for (int row = 0; row <= rows; row++) {
+					writer.ensure(4);
+					out.putInt(ints[row]);
+				}
+				writer.putBytes(bytes, 0, byteCount);
+				break;
+			}
+		}
+	}
+}
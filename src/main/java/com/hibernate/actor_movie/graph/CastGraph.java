@@ -0,0 +1,271 @@
+package com.hibernate.actor_movie.graph;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+// Immutable snapshot of the Actor_Movie links as a bipartite graph in compressed sparse row (CSR) form: actors and
+// movies are numbered densely in id order, and the neighbours of actor a are actorMovies[actorOffsets[a] ..
+// actorOffsets[a + 1]) (likewise for movies), so a traversal walks int arrays instead of entity lists.
+// Ids are mapped to their dense numbers by binary search. Every method returns ids in ascending order.
+public final class CastGraph {
+
+	public static final CastGraph EMPTY = fromLinks(new long[0], 0);
+
+	private static final int[] NONE = new int[0];
+	private static final int LOAD_FETCH_SIZE = 10_000;
+
+	private final int[] actorIds;
+	private final int[] actorOffsets;
+	private final int[] actorMovies;
+	private final int[] movieIds;
+	private final int[] movieOffsets;
+	private final int[] movieActors;
+
+	private CastGraph(int[] actorIds, int[] actorOffsets, int[] actorMovies, int[] movieIds, int[] movieOffsets,
+			int[] movieActors) {
+		this.actorIds = actorIds;
+		this.actorOffsets = actorOffsets;
+		this.actorMovies = actorMovies;
+		this.movieIds = movieIds;
+		this.movieOffsets = movieOffsets;
+		this.movieActors = movieActors;
+	}
+
+	// load(): reads every link with one forward-only scan of Actor_Movie
+	public static CastGraph load(EntityManagerFactory emf) {
+		long[] links = new long[1024];
+		int count = 0;
+		StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession();
+		try {
+			ScrollableResults rows = session.createNativeQuery("SELECT Actor_id, movie_id FROM Actor_Movie")
+					.setFetchSize(LOAD_FETCH_SIZE)
+					.scroll(ScrollMode.FORWARD_ONLY);
+			try {
+				while (rows.next()) {
+					if (count == links.length) {
+						links = Arrays.copyOf(links, count * 2);
+					}
+					links[count++] = link(((Number) rows.get(0)).intValue(), ((Number) rows.get(1)).intValue());
+				}
+			} finally {
+				rows.close();
+			}
+		} finally {
+			session.close();
+		}
+		return fromLinks(links, count);
+	}
+
+	// fromLinks(): links[0 .. count) are link(actorId, movieId) values in any order, repeats allowed; sorts them in place
+	static CastGraph fromLinks(long[] links, int count) {
+		Arrays.sort(links, 0, count);
+		int distinct = 0;
+		for (int i = 0; i < count; i++) {
+			if (distinct == 0 || links[i] != links[distinct - 1]) {
+				links[distinct++] = links[i];
+			}
+		}
+
+		// actor side: the links are sorted by actor, so each actor's movies are one run
+		int actors = 0;
+		for (int i = 0; i < distinct; i++) {
+			if (i == 0 || actorOf(links[i]) != actorOf(links[i - 1])) {
+				actors++;
+			}
+		}
+		int[] actorIds = new int[actors];
+		int[] actorOffsets = new int[actors + 1];
+		int[] movieIds = new int[distinct];
+		for (int i = 0, a = -1; i < distinct; i++) {
+			if (i == 0 || actorOf(links[i]) != actorOf(links[i - 1])) {
+				actorIds[++a] = actorOf(links[i]);
+				actorOffsets[a] = i;
+			}
+			movieIds[i] = movieOf(links[i]);
+		}
+		actorOffsets[actors] = distinct;
+		Arrays.sort(movieIds);
+		int movies = 0;
+		for (int i = 0; i < distinct; i++) {
+			if (movies == 0 || movieIds[i] != movieIds[movies - 1]) {
+				movieIds[movies++] = movieIds[i];
+			}
+		}
+		movieIds = Arrays.copyOf(movieIds, movies);
+		int[] actorMovies = new int[distinct];
+		int[] movieOffsets = new int[movies + 1];
+		for (int i = 0; i < distinct; i++) {
+			actorMovies[i] = Arrays.binarySearch(movieIds, movieOf(links[i]));
+			movieOffsets[actorMovies[i] + 1]++;
+		}
+
+		// movie side: counting sort of the same links by movie; visiting actors in order keeps each cast sorted
+		for (int m = 0; m < movies; m++) {
+			movieOffsets[m + 1] += movieOffsets[m];
+		}
+		int[] next = Arrays.copyOf(movieOffsets, movies);
+		int[] movieActors = new int[distinct];
+		for (int a = 0; a < actors; a++) {
+			for (int i = actorOffsets[a]; i < actorOffsets[a + 1]; i++) {
+				movieActors[next[actorMovies[i]]++] = a;
+			}
+		}
+		return new CastGraph(actorIds, actorOffsets, actorMovies, movieIds, movieOffsets, movieActors);
+	}
+
+	// withActorLinks(): a new graph where each actor in changes is linked to exactly the given movies (none for an
+	// empty array); rebuilding costs O(links log links), tens of milliseconds for a million links
+	public CastGraph withActorLinks(Map<Integer, int[]> changes) {
+		int added = 0;
+		for (int[] movies : changes.values()) {
+			added += movies.length;
+		}
+		long[] links = new long[actorMovies.length + added];
+		int count = 0;
+		for (int a = 0; a < actorIds.length; a++) {
+			if (changes.containsKey(actorIds[a])) {
+				continue;
+			}
+			for (int i = actorOffsets[a]; i < actorOffsets[a + 1]; i++) {
+				links[count++] = link(actorIds[a], movieIds[actorMovies[i]]);
+			}
+		}
+		for (Map.Entry<Integer, int[]> change : changes.entrySet()) {
+			for (int movieId : change.getValue()) {
+				links[count++] = link(change.getKey(), movieId);
+			}
+		}
+		return fromLinks(links, count);
+	}
+
+	public int actorCount() {
+		return actorIds.length;
+	}
+
+	public int movieCount() {
+		return movieIds.length;
+	}
+
+	public int linkCount() {
+		return actorMovies.length;
+	}
+
+	// filmography(): the movies of an actor; empty for an actor without movies or unknown
+	public int[] filmography(int actorId) {
+		int a = Arrays.binarySearch(actorIds, actorId);
+		return a < 0 ? NONE : ids(movieIds, actorMovies, actorOffsets[a], actorOffsets[a + 1]);
+	}
+
+	// cast(): the actors of a movie; empty for a movie without actors or unknown
+	public int[] cast(int movieId) {
+		int m = Arrays.binarySearch(movieIds, movieId);
+		return m < 0 ? NONE : ids(actorIds, movieActors, movieOffsets[m], movieOffsets[m + 1]);
+	}
+
+	// coStars(): the other actors of the actor's movies
+	public int[] coStars(int actorId) {
+		return neighbourhood(actorId, 1);
+	}
+
+	// neighbourhood(): the actors reachable from the actor through at most hops shared movies, without the actor
+	// itself: hops 1 gives the co-stars, 2 adds their co-stars, and so on. A breadth-first walk that visits each
+	// actor and movie at most once.
+	public int[] neighbourhood(int actorId, int hops) {
+		if (hops < 0) {
+			throw new IllegalArgumentException("hops must not be negative");
+		}
+		int start = Arrays.binarySearch(actorIds, actorId);
+		if (start < 0 || hops == 0) {
+			return NONE;
+		}
+		long[] seenActors = new long[(actorIds.length + 63) >>> 6];
+		long[] seenMovies = new long[(movieIds.length + 63) >>> 6];
+		int[] frontier = { start };
+		int frontierSize = 1;
+		int found = 0;
+		mark(seenActors, start);
+		for (int hop = 0; hop < hops && frontierSize > 0; hop++) {
+			int[] reached = new int[16];
+			int reachedSize = 0;
+			for (int f = 0; f < frontierSize; f++) {
+				int a = frontier[f];
+				for (int i = actorOffsets[a]; i < actorOffsets[a + 1]; i++) {
+					int m = actorMovies[i];
+					if (!mark(seenMovies, m)) {
+						continue;
+					}
+					for (int j = movieOffsets[m]; j < movieOffsets[m + 1]; j++) {
+						int other = movieActors[j];
+						if (mark(seenActors, other)) {
+							if (reachedSize == reached.length) {
+								reached = Arrays.copyOf(reached, reachedSize * 2);
+							}
+							reached[reachedSize++] = other;
+						}
+					}
+				}
+			}
+			found += reachedSize;
+			frontier = reached;
+			frontierSize = reachedSize;
+		}
+
+		// the marked actors in dense order are the reached ids in ascending order
+		int[] result = new int[found];
+		int r = 0;
+		for (int word = 0; word < seenActors.length; word++) {
+			long bits = seenActors[word];
+			while (bits != 0) {
+				int a = (word << 6) + Long.numberOfTrailingZeros(bits);
+				bits &= bits - 1;
+				if (a != start) {
+					result[r++] = actorIds[a];
+				}
+			}
+		}
+		return result;
+	}
+
+	// mark(): sets the bit, true when it was not set yet
+	private static boolean mark(long[] bits, int index) {
+		long mask = 1L << index;
+		long word = bits[index >>> 6];
+		if ((word & mask) != 0) {
+			return false;
+		}
+		bits[index >>> 6] = word | mask;
+		return true;
+	}
+
+	private static int[] ids(int[] ids, int[] dense, int from, int to) {
+		int[] result = new int[to - from];
+		for (int i = from; i < to; i++) {
+			result[i - from] = ids[dense[i]];
+		}
+		return result;
+	}
+
+	static long link(int actorId, int movieId) {
+		return ((long) actorId << 32) | (movieId & 0xFFFFFFFFL);
+	}
+
+	private static int actorOf(long link) {
+		return (int) (link >> 32);
+	}
+
+	private static int movieOf(long link) {
+		return (int) link;
+	}
+
+	@Override
+	public String toString() {
+		return "CastGraph [actors=" + actorIds.length + ", movies=" + movieIds.length + ", links=" + actorMovies.length + "]";
+	}
+}
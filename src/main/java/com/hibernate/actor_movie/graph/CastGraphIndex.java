@@ -0,0 +1,82 @@
+package com.hibernate.actor_movie.graph;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+
+import com.hibernate.actor_movie.dao.FactoryLocal;
+
+// The CastGraph of the running EntityManagerFactory, kept current as links are written. Enabled with the
+// actor_movie.graph.index property (persistence.xml or EntityManagerFactoryProvider.configure); the graph is
+// loaded when the factory starts.
+// Links written through Actor.movies (MovieDao.addMovie, or any entity change) are picked up by
+// CastGraphIntegrator once their transaction commits, and folded into the graph by the next read, so a burst of
+// writes costs one rebuild. SQL that changes Actor_Movie behind Hibernate's back (the bulk deletes, the importer)
+// calls linksChanged(), which reloads the graph.
+public final class CastGraphIndex {
+
+	public static final String ENABLED_PROPERTY = "actor_movie.graph.index";
+
+	private static final FactoryLocal<CastGraphIndex> CURRENT = new FactoryLocal<>();
+
+	private final EntityManagerFactory emf;
+	private final Map<Integer, int[]> pending = new LinkedHashMap<>();
+	private volatile CastGraph graph = CastGraph.EMPTY;
+	private volatile boolean dirty;
+
+	CastGraphIndex(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	public static CastGraphIndex current(EntityManagerFactory emf) {
+		return CURRENT.get(emf);
+	}
+
+	static void install(SessionFactory factory, CastGraphIndex index) {
+		CURRENT.set(factory, index);
+	}
+
+	static void uninstall(SessionFactory factory) {
+		CURRENT.set(factory, null);
+	}
+
+	// linksChanged(): called after SQL that changed Actor_Movie directly
+	public static void linksChanged(EntityManagerFactory emf) {
+		CastGraphIndex index = CURRENT.get(emf);
+		if (index != null) {
+			index.reload();
+		}
+	}
+
+	// graph(): the current snapshot; it never changes, so a traversal needs no locking
+	public CastGraph graph() {
+		if (dirty) {
+			fold();
+		}
+		return graph;
+	}
+
+	// reload(): replaces the graph by a fresh read of Actor_Movie; the writes pending so far are part of it
+	public synchronized void reload() {
+		pending.clear();
+		dirty = false;
+		graph = CastGraph.load(emf);
+	}
+
+	// actorLinked(): the actor's committed links are now exactly these movies
+	synchronized void actorLinked(int actorId, int[] movieIds) {
+		pending.put(actorId, movieIds);
+		dirty = true;
+	}
+
+	private synchronized void fold() {
+		if (!pending.isEmpty()) {
+			graph = graph.withActorLinks(pending);
+			pending.clear();
+		}
+		dirty = false;
+	}
+}
@@ -0,0 +1,105 @@
+package com.hibernate.actor_movie.graph;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.collection.spi.PersistentCollection;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.AbstractCollectionEvent;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCollectionRecreateEvent;
+import org.hibernate.event.spi.PostCollectionRecreateEventListener;
+import org.hibernate.event.spi.PostCollectionRemoveEvent;
+import org.hibernate.event.spi.PostCollectionRemoveEventListener;
+import org.hibernate.event.spi.PostCollectionUpdateEvent;
+import org.hibernate.event.spi.PostCollectionUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Installs the CastGraphIndex when actor_movie.graph.index is true: loads it once the factory is built and feeds
+// it every flushed change of Actor.movies, the owning side of Actor_Movie, after its transaction commits.
+public class CastGraphIntegrator implements Integrator {
+
+	private static final String ACTOR_MOVIES = "com.hibernate.JPA.Hibernate.Actor.movies";
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		if (!Boolean.parseBoolean(String.valueOf(sessionFactory.getProperties().get(CastGraphIndex.ENABLED_PROPERTY)))) {
+			return;
+		}
+		CastGraphIndex index = new CastGraphIndex(sessionFactory);
+		Listener listener = new Listener(index);
+		EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_COLLECTION_RECREATE, listener);
+		listeners.appendListeners(EventType.POST_COLLECTION_UPDATE, listener);
+		listeners.appendListeners(EventType.POST_COLLECTION_REMOVE, listener);
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				index.reload();
+				CastGraphIndex.install(factory, index);
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		CastGraphIndex.uninstall(sessionFactory);
+	}
+
+	private static class Listener implements PostCollectionRecreateEventListener, PostCollectionUpdateEventListener,
+			PostCollectionRemoveEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final CastGraphIndex index;
+
+		Listener(CastGraphIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public void onPostRecreateCollection(PostCollectionRecreateEvent event) {
+			changed(event, false);
+		}
+
+		@Override
+		public void onPostUpdateCollection(PostCollectionUpdateEvent event) {
+			changed(event, false);
+		}
+
+		@Override
+		public void onPostRemoveCollection(PostCollectionRemoveEvent event) {
+			changed(event, true);
+		}
+
+		// changed(): the actor's movies as flushed, applied once the transaction has committed
+		private void changed(AbstractCollectionEvent event, boolean removed) {
+			PersistentCollection collection = event.getCollection();
+			Serializable actorId = event.getAffectedOwnerIdOrNull();
+			if (!ACTOR_MOVIES.equals(collection.getRole()) || actorId == null) {
+				return;
+			}
+			Collection<?> movies = removed ? Collections.emptyList() : (Collection<?>) collection;
+			int[] movieIds = new int[movies.size()];
+			int i = 0;
+			for (Object movie : movies) {
+				movieIds[i++] = ((Number) event.getSession().getIdentifier(movie)).intValue();
+			}
+			int actor = ((Number) actorId).intValue();
+			event.getSession().getActionQueue().registerProcess((success, session) -> {
+				if (success) {
+					index.actorLinked(actor, movieIds);
+				}
+			});
+		}
+	}
+}
@@ -0,0 +1,52 @@
+package com.hibernate.actor_movie.id;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.mapping.PersistentClass;
+import org.hibernate.mapping.SimpleValue;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Completes the mapping of the entities whose ids come from a PooledIdGenerator, and moves their pools past the ids
+// already in their tables once the factory (and its schema) is built.
+public class IdPoolIntegrator implements Integrator {
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		List<String> pooled = new ArrayList<>();
+		for (PersistentClass entity : metadata.getEntityBindings()) {
+			if (entity.getIdentifier() instanceof SimpleValue && PooledIdGenerator.STRATEGY
+					.equals(((SimpleValue) entity.getIdentifier()).getIdentifierGeneratorStrategy())) {
+				// Hibernate takes an entity with a generated id for new only when the id is unset (0); the id may be
+				// given by the caller, so whether the entity is new is decided as for an assigned id: persist()
+				// assumes it is, merge() looks the row up. Runs before the entity persisters are built.
+				((SimpleValue) entity.getIdentifier()).setNullValue("undefined");
+				pooled.add(entity.getEntityName());
+			}
+		}
+		if (pooled.isEmpty()) {
+			return;
+		}
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				for (String entityName : pooled) {
+					((PooledIdGenerator) sessionFactory.getMetamodel().entityPersister(entityName)
+							.getIdentifierGenerator()).advance(sessionFactory);
+				}
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+}
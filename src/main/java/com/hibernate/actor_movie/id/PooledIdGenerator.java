@@ -0,0 +1,180 @@
+package com.hibernate.actor_movie.id;
+
+import java.io.Serializable;
+import java.util.Properties;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.MappingException;
+import org.hibernate.StatelessSession;
+import org.hibernate.Transaction;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.config.spi.ConfigurationService;
+import org.hibernate.engine.config.spi.StandardConverters;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.id.PersistentIdentifierGenerator;
+import org.hibernate.id.enhanced.TableGenerator;
+import org.hibernate.service.ServiceRegistry;
+import org.hibernate.type.Type;
+
+// Table hi-lo ids for entities that may also be given one by the caller. A row of the id_pool table per entity holds
+// the last id reserved; a factory reserves a block of ids with one short transaction of its own (pooled-lo
+// optimizer) and hands them out from memory, so an insert needs no statement to get its id and concurrent importers
+// and application instances never get the same one. Works the same on MySQL and H2, neither needs a sequence.
+//   - an entity whose id is set (not 0) keeps it, so catalogues with fixed ids import as before; the pool of the
+//     factory that saves it then skips past that id, so a block reserved earlier does not hand it out again
+//   - the block size is actor_movie.id.pool_size.<entity> (e.g. actor_movie.id.pool_size.Actor), default 50; larger
+//     blocks mean fewer id_pool updates, and ids lost when a factory stops with part of a block unused
+//   - the pool starts past the largest id in the table when the factory starts, and moves past the ids a caller
+//     assigned through another factory or raw JDBC when advance() is called (CatalogueImporter does after each import)
+//   - actor_movie.id.first and actor_movie.id.last confine the pool to a range of ids, so several databases can
+//     hand out ids that never collide (see ShardedCatalogue); ids outside the range are ignored when advancing
+// Mapped with @GenericGenerator(strategy = PooledIdGenerator.STRATEGY); IdPoolIntegrator does the rest.
+public class PooledIdGenerator extends TableGenerator {
+
+	public static final String STRATEGY = "com.hibernate.actor_movie.id.PooledIdGenerator";
+	public static final String POOL_SIZE_PROPERTY = "actor_movie.id.pool_size.";
+	public static final int DEFAULT_POOL_SIZE = 50;
+	public static final String POOL_TABLE = "id_pool";
+	public static final String FIRST_ID_PROPERTY = "actor_movie.id.first";
+	public static final String LAST_ID_PROPERTY = "actor_movie.id.last";
+
+	private String entityName;
+	private String entityTable;
+	private String idColumn;
+	// whether the id_pool value is the last id reserved (Hibernate's default) or the next free one
+	private boolean storesLastUsed;
+	// the largest id known to be taken by a row that did not get it from the pool
+	private volatile long floor;
+	// the range the pool hands out, when confined to one
+	private boolean ranged;
+	private long firstId = 1;
+	private long lastId = Long.MAX_VALUE;
+
+	@Override
+	public void configure(Type type, Properties params, ServiceRegistry serviceRegistry) throws MappingException {
+		entityName = params.getProperty(IdentifierGenerator.ENTITY_NAME);
+		entityTable = params.getProperty(PersistentIdentifierGenerator.TABLE);
+		idColumn = params.getProperty(PersistentIdentifierGenerator.PK);
+		String segment = params.getProperty(SEGMENT_VALUE_PARAM, params.getProperty(IdentifierGenerator.JPA_ENTITY_NAME));
+		ConfigurationService configuration = serviceRegistry.getService(ConfigurationService.class);
+		Object poolSize = configuration.getSettings().get(POOL_SIZE_PROPERTY + segment);
+		storesLastUsed = configuration.getSetting(AvailableSettings.TABLE_GENERATOR_STORE_LAST_USED,
+				StandardConverters.BOOLEAN, true);
+		Object first = configuration.getSettings().get(FIRST_ID_PROPERTY);
+		Object last = configuration.getSettings().get(LAST_ID_PROPERTY);
+		if (first != null || last != null) {
+			ranged = true;
+			firstId = first == null ? firstId : Long.parseLong(first.toString().trim());
+			lastId = last == null ? lastId : Long.parseLong(last.toString().trim());
+			if (firstId < 1 || lastId < firstId) {
+				throw new MappingException("need 1 <= " + FIRST_ID_PROPERTY + " <= " + LAST_ID_PROPERTY);
+			}
+		}
+
+		Properties pooled = new Properties();
+		pooled.putAll(params);
+		pooled.setProperty(TABLE_PARAM, POOL_TABLE);
+		pooled.setProperty(SEGMENT_VALUE_PARAM, segment);
+		pooled.setProperty(OPT_PARAM, "pooled-lo");
+		pooled.setProperty(INCREMENT_PARAM, poolSize != null ? poolSize.toString()
+				: params.getProperty(INCREMENT_PARAM, String.valueOf(DEFAULT_POOL_SIZE)));
+		super.configure(type, pooled, serviceRegistry);
+	}
+
+	// generate(): the id the caller set, or the next one of the pool that no caller has taken
+	@Override
+	public Serializable generate(SharedSessionContractImplementor session, Object object) {
+		Serializable assigned = session.getEntityPersister(entityName, object).getIdentifier(object, session);
+		if (assigned instanceof Number && ((Number) assigned).longValue() != 0) {
+			long taken = ((Number) assigned).longValue();
+			if (taken >= firstId && taken <= lastId) {
+				raiseFloor(taken);
+			}
+			return assigned;
+		}
+		Serializable id = super.generate(session, object);
+		if (((Number) id).longValue() <= floor) {
+			// a caller took an id at or past this one. Past the block in memory, the id_pool row first moves up to it
+			// in one statement, so only what is left of the block is skipped, instead of reserving block after block.
+			if (floor - ((Number) id).longValue() >= getIncrementSize()) {
+				reserveFrom(session.getFactory(), floor);
+			}
+			do {
+				id = super.generate(session, object);
+			} while (((Number) id).longValue() <= floor);
+		}
+		if (((Number) id).longValue() > lastId) {
+			throw new IllegalStateException(entityName + " has used up its ids up to " + lastId);
+		}
+		return id;
+	}
+
+	private synchronized void raiseFloor(long taken) {
+		if (taken > floor) {
+			floor = taken;
+		}
+	}
+
+	// advance(): moves the entity's pool past the largest id in its table, so ids given by callers since the factory
+	// started are not handed out again; a no-op for an entity without a pool
+	public static void advance(EntityManagerFactory emf, Class<?> entityClass) {
+		SessionFactoryImplementor factory = emf.unwrap(SessionFactoryImplementor.class);
+		IdentifierGenerator generator = factory.getMetamodel().entityPersister(entityClass).getIdentifierGenerator();
+		if (generator instanceof PooledIdGenerator) {
+			((PooledIdGenerator) generator).advance(factory);
+		}
+	}
+
+	void advance(SessionFactoryImplementor factory) {
+		StatelessSession session = factory.openStatelessSession();
+		long taken;
+		try {
+			Number max = (Number) (ranged
+					? session.createNativeQuery("SELECT MAX(" + idColumn + ") FROM " + entityTable + " WHERE "
+							+ idColumn + " BETWEEN ?1 AND ?2").setParameter(1, firstId).setParameter(2, lastId)
+					: session.createNativeQuery("SELECT MAX(" + idColumn + ") FROM " + entityTable)).uniqueResult();
+			taken = max == null ? firstId - 1 : Math.max(max.longValue(), firstId - 1);
+		} finally {
+			session.close();
+		}
+		reserveFrom(factory, taken);
+	}
+
+	// reserveFrom(): moves the id_pool row up so the next block reserved starts past taken, in one transaction of its
+	// own; a row already past it is left alone
+	private void reserveFrom(SessionFactoryImplementor factory, long taken) {
+		StatelessSession session = factory.openStatelessSession();
+		Transaction transaction = session.beginTransaction();
+		try {
+			long value = storesLastUsed ? taken : taken + 1;
+			Number stored = (Number) session.createNativeQuery("SELECT " + getValueColumnName() + " FROM "
+					+ getTableName() + " WHERE " + getSegmentColumnName() + " = ?1")
+					.setParameter(1, getSegmentValue())
+					.uniqueResult();
+			if (stored == null) {
+				session.createNativeQuery("INSERT INTO " + getTableName() + " (" + getSegmentColumnName() + ", "
+						+ getValueColumnName() + ") VALUES (?1, ?2)")
+						.setParameter(1, getSegmentValue())
+						.setParameter(2, value)
+						.executeUpdate();
+			} else if (stored.longValue() < value) {
+				// conditional, in case another factory reserved a block since the select
+				session.createNativeQuery("UPDATE " + getTableName() + " SET " + getValueColumnName() + " = ?1 WHERE "
+						+ getSegmentColumnName() + " = ?2 AND " + getValueColumnName() + " < ?1")
+						.setParameter(1, value)
+						.setParameter(2, getSegmentValue())
+						.executeUpdate();
+			}
+			transaction.commit();
+			raiseFloor(taken);
+		} finally {
+			if (transaction.isActive()) {
+				transaction.rollback();
+			}
+			session.close();
+		}
+	}
+}
@@ -0,0 +1,222 @@
+package com.hibernate.actor_movie.importer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.change.BulkChange;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.change.ChangeType;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.graph.CastGraphIndex;
+import com.hibernate.actor_movie.id.PooledIdGenerator;
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// Bulk loader for actors, movies and Actor_Movie links.
+// Rows are streamed from the input and written in chunked transactions: the persistence context is flushed
+// (one JDBC batch, see hibernate.jdbc.batch_size) and cleared every batchSize rows and the transaction is
+// committed every chunkSize rows, so memory stays flat however large the file is.
+// Entities are inserted with persist(), not merge(), so no row is selected before it is written; importing
+// an id that already exists fails with a constraint violation. A row with an empty id column gets the next id of
+// its entity's pool (see PooledIdGenerator), and after an import the pool moves past the ids the file gave.
+public class CatalogueImporter {
+
+	public static final int DEFAULT_BATCH_SIZE = 50;
+	public static final int DEFAULT_CHUNK_SIZE = 5_000;
+
+	static final String[] ACTOR_COLUMNS = { "id", "name", "age", "industry", "salary", "nationality" };
+	static final String[] MOVIE_COLUMNS = { "movieId", "movieName", "movieDirector", "genre", "verdict", "collection" };
+	static final String[] LINK_COLUMNS = { "actorId", "movieId" };
+
+	private static final String INSERT_LINK = "INSERT INTO Actor_Movie (Actor_id, movie_id) VALUES (?, ?)";
+
+	private final EntityManagerFactory emf;
+	private final int batchSize;
+	private final int chunkSize;
+
+	public CatalogueImporter() {
+		this(EntityManagerFactoryProvider.getEntityManagerFactory(), DEFAULT_BATCH_SIZE, DEFAULT_CHUNK_SIZE);
+	}
+
+	// batchSize should match hibernate.jdbc.batch_size; chunkSize is the number of rows per transaction
+	public CatalogueImporter(EntityManagerFactory emf, int batchSize, int chunkSize) {
+		if (batchSize <= 0 || chunkSize < batchSize) {
+			throw new IllegalArgumentException("need 0 < batchSize <= chunkSize");
+		}
+		this.emf = emf;
+		this.batchSize = batchSize;
+		this.chunkSize = chunkSize;
+	}
+
+	// importActors(): columns id,name,age,industry,salary,nationality
+	public ImportResult importActors(Path file) throws IOException {
+		try (RowReader reader = RowReader.open(file, ACTOR_COLUMNS)) {
+			return importActors(reader);
+		}
+	}
+
+	public ImportResult importActors(RowSource reader) throws IOException {
+		return importEntities(Actor.class, reader, row -> {
+			Actor actor = new Actor();
+			actor.setId(parseInt(row[0]));
+			actor.setName(row[1]);
+			actor.setAge(parseInt(row[2]));
+			actor.setIndustry(row[3]);
+			actor.setSalary(parseDouble(row[4]));
+			actor.setNationality(row[5]);
+			return actor;
+		});
+	}
+
+	// importMovies(): columns movieId,movieName,movieDirector,genre,verdict,collection
+	public ImportResult importMovies(Path file) throws IOException {
+		try (RowReader reader = RowReader.open(file, MOVIE_COLUMNS)) {
+			return importMovies(reader);
+		}
+	}
+
+	public ImportResult importMovies(RowSource reader) throws IOException {
+		return importEntities(Movie.class, reader, row -> {
+			Movie movie = new Movie();
+			movie.setMovieId(parseInt(row[0]));
+			movie.setMovieName(row[1]);
+			movie.setMovieDirector(row[2]);
+			movie.setGenre(row[3]);
+			movie.setVerdict(row[4]);
+			movie.setCollection(parseInt(row[5]));
+			return movie;
+		});
+	}
+
+	// importLinks(): columns actorId,movieId. The actors and movies must already exist.
+	// Links are written straight to the join table with JDBC batches: going through Actor.movies would
+	// load every actor's collection just to append to it.
+	public ImportResult importLinks(Path file) throws IOException {
+		try (RowReader reader = RowReader.open(file, LINK_COLUMNS)) {
+			return importLinks(reader);
+		}
+	}
+
+	public ImportResult importLinks(RowSource reader) throws IOException {
+		long start = System.nanoTime();
+		long[] counters = new long[2]; // rows, transactions
+		boolean more = true;
+		try {
+			while (more) {
+				EntityManager em = emf.createEntityManager();
+				try {
+					em.getTransaction().begin();
+					boolean[] exhausted = new boolean[1];
+					// linking an actor is an UPDATE of the actor, see ChangeStream
+					BulkChange linked = ChangeStream.bulk(emf, Actor.class, ChangeType.UPDATE);
+					em.unwrap(Session.class).doWork(connection -> {
+						try (PreparedStatement insert = connection.prepareStatement(INSERT_LINK)) {
+							int inChunk = 0;
+							String[] row;
+							while (inChunk < chunkSize && (row = nextRow(reader)) != null) {
+								int actorId = parseInt(row[0]);
+								insert.setInt(1, actorId);
+								insert.setInt(2, parseInt(row[1]));
+								insert.addBatch();
+								linked.add(actorId);
+								inChunk++;
+								if (inChunk % batchSize == 0) {
+									insert.executeBatch();
+								}
+							}
+							if (inChunk % batchSize != 0) {
+								insert.executeBatch();
+							}
+							counters[0] += inChunk;
+							exhausted[0] = inChunk < chunkSize;
+						}
+					});
+					em.getTransaction().commit();
+					ReplicaRouting.wrote();
+					linked.committed();
+					counters[1]++;
+					more = !exhausted[0];
+				} catch (UncheckedIOException e) {
+					throw e.getCause();
+				} finally {
+					rollbackAndClose(em);
+				}
+			}
+		} finally {
+			// The join table was written with plain JDBC, so cached movie lists and the cast graph are stale; the
+			// chunks committed before a failed one stay written, so they are refreshed then too
+			if (counters[1] > 0) {
+				CacheRegions.evictLinks(emf);
+				CastGraphIndex.linksChanged(emf);
+			}
+		}
+		return new ImportResult("Actor_Movie", counters[0], counters[1], System.nanoTime() - start);
+	}
+
+	private interface RowMapper {
+		Object map(String[] row);
+	}
+
+	private ImportResult importEntities(Class<?> entity, RowSource reader, RowMapper mapper) throws IOException {
+		long start = System.nanoTime();
+		long rows = 0;
+		long transactions = 0;
+		boolean more = true;
+		while (more) {
+			EntityManager em = emf.createEntityManager();
+			try {
+				em.getTransaction().begin();
+				int inChunk = 0;
+				String[] row;
+				while (inChunk < chunkSize && (row = reader.next()) != null) {
+					em.persist(mapper.map(row));
+					inChunk++;
+					if (inChunk % batchSize == 0) {
+						em.flush();
+						em.clear();
+					}
+				}
+				em.getTransaction().commit();
+				transactions++;
+				rows += inChunk;
+				more = inChunk == chunkSize;
+			} finally {
+				rollbackAndClose(em);
+			}
+		}
+		PooledIdGenerator.advance(emf, entity);
+		return new ImportResult(entity.getSimpleName(), rows, transactions, System.nanoTime() - start);
+	}
+
+	private static String[] nextRow(RowSource reader) {
+		try {
+			return reader.next();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private static void rollbackAndClose(EntityManager em) {
+		if (em.getTransaction().isActive()) {
+			em.getTransaction().rollback();
+		}
+		em.close();
+	}
+
+	private static int parseInt(String value) {
+		return value == null || value.isEmpty() ? 0 : Integer.parseInt(value.trim());
+	}
+
+	private static double parseDouble(String value) {
+		return value == null || value.isEmpty() ? 0 : Double.parseDouble(value.trim());
+	}
+}
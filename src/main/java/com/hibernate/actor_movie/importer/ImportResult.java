@@ -0,0 +1,43 @@
+package com.hibernate.actor_movie.importer;
+
+// Outcome of one bulk import: how many rows were written, in how many transactions, and how fast.
+public class ImportResult {
+
+	private final String table;
+	private final long rows;
+	private final long transactions;
+	private final long elapsedNanos;
+
+	public ImportResult(String table, long rows, long transactions, long elapsedNanos) {
+		this.table = table;
+		this.rows = rows;
+		this.transactions = transactions;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	public String getTable() {
+		return table;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public long getTransactions() {
+		return transactions;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	public double getRowsPerSecond() {
+		return elapsedNanos == 0 ? 0 : rows * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "ImportResult [table=" + table + ", rows=" + rows + ", transactions=" + transactions + ", elapsedMillis="
+				+ getElapsedMillis() + ", rowsPerSecond=" + String.format("%.1f", getRowsPerSecond()) + "]";
+	}
+}
@@ -0,0 +1,251 @@
+package com.hibernate.actor_movie.importer;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Streams rows out of a CSV (with a header line) or JSONL file one line at a time, so only the current row is
+// held in memory. Each row is returned as the values of the requested columns, in the requested order;
+// a missing column yields null.
+public class RowReader implements RowSource, Closeable {
+
+	public enum Format {
+		CSV, JSONL;
+
+		// forFile(): picks the format from the file extension (.jsonl / .json are JSONL, anything else CSV)
+		public static Format forFile(Path file) {
+			String name = file.getFileName().toString().toLowerCase();
+			return name.endsWith(".jsonl") || name.endsWith(".json") ? JSONL : CSV;
+		}
+	}
+
+	private final BufferedReader reader;
+	private final Format format;
+	private final String[] columns;
+	private int[] csvPositions;
+	private long lineNumber;
+
+	public RowReader(BufferedReader reader, Format format, String... columns) {
+		this.reader = reader;
+		this.format = format;
+		this.columns = columns;
+	}
+
+	public static RowReader open(Path file, String... columns) throws IOException {
+		return new RowReader(Files.newBufferedReader(file, StandardCharsets.UTF_8), Format.forFile(file), columns);
+	}
+
+	// next(): the next row, or null at end of input. Blank lines are skipped.
+	@Override
+	public String[] next() throws IOException {
+		if (format == Format.CSV && csvPositions == null) {
+			readCsvHeader();
+		}
+		String line;
+		do {
+			line = reader.readLine();
+			lineNumber++;
+			if (line == null) {
+				return null;
+			}
+		} while (line.trim().isEmpty());
+
+		return format == Format.CSV ? csvRow(line) : jsonRow(line);
+	}
+
+	private void readCsvHeader() throws IOException {
+		String header = reader.readLine();
+		lineNumber++;
+		csvPositions = new int[columns.length];
+		List<String> names = header == null ? new ArrayList<>() : splitCsv(header);
+		for (int i = 0; i < columns.length; i++) {
+			csvPositions[i] = -1;
+			for (int j = 0; j < names.size(); j++) {
+				if (names.get(j).trim().equalsIgnoreCase(columns[i])) {
+					csvPositions[i] = j;
+					break;
+				}
+			}
+		}
+	}
+
+	private String[] csvRow(String line) {
+		List<String> fields = splitCsv(line);
+		String[] row = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			int position = csvPositions[i];
+			row[i] = position >= 0 && position < fields.size() ? fields.get(position) : null;
+		}
+		return row;
+	}
+
+	// splitCsv(): RFC 4180 style fields on a single line; quoted fields may contain commas and doubled quotes
+	static List<String> splitCsv(String line) {
+		List<String> fields = new ArrayList<>();
+		StringBuilder field = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < line.length(); i++) {
+			char c = line.charAt(i);
+			if (quoted) {
+				if (c == '"') {
+					if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+						field.append('"');
+						i++;
+					} else {
+						quoted = false;
+					}
+				} else {
+					field.append(c);
+				}
+			} else if (c == '"') {
+				quoted = true;
+			} else if (c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			} else {
+				field.append(c);
+			}
+		}
+		fields.add(field.toString());
+		return fields;
+	}
+
+	private String[] jsonRow(String line) {
+		Map<String, String> object = parseFlatJson(line);
+		String[] row = new String[columns.length];
+		for (int i = 0; i < columns.length; i++) {
+			row[i] = object.get(columns[i]);
+		}
+		return row;
+	}
+
+	// parseFlatJson(): a single-level JSON object whose values are strings, numbers, booleans or null
+	private Map<String, String> parseFlatJson(String line) {
+		Map<String, String> object = new HashMap<>();
+		int[] pos = { skipWhitespace(line, 0) };
+		expect(line, pos, '{');
+		pos[0] = skipWhitespace(line, pos[0]);
+		if (pos[0] < line.length() && line.charAt(pos[0]) == '}') {
+			return object;
+		}
+		while (true) {
+			pos[0] = skipWhitespace(line, pos[0]);
+			String key = jsonString(line, pos);
+			pos[0] = skipWhitespace(line, pos[0]);
+			expect(line, pos, ':');
+			pos[0] = skipWhitespace(line, pos[0]);
+			String value;
+			if (pos[0] < line.length() && line.charAt(pos[0]) == '"') {
+				value = jsonString(line, pos);
+			} else {
+				int start = pos[0];
+				while (pos[0] < line.length() && ",} \t".indexOf(line.charAt(pos[0])) < 0) {
+					pos[0]++;
+				}
+				value = line.substring(start, pos[0]);
+				if (value.equals("null")) {
+					value = null;
+				}
+			}
+			object.put(key, value);
+			pos[0] = skipWhitespace(line, pos[0]);
+			if (pos[0] < line.length() && line.charAt(pos[0]) == ',') {
+				pos[0]++;
+				continue;
+			}
+			expect(line, pos, '}');
+			return object;
+		}
+	}
+
+	private String jsonString(String line, int[] pos) {
+		expect(line, pos, '"');
+		StringBuilder value = new StringBuilder();
+		while (pos[0] < line.length()) {
+			char c = line.charAt(pos[0]++);
+			if (c == '"') {
+				return value.toString();
+			}
+			if (c == '\\' && pos[0] < line.length()) {
+				char escaped = line.charAt(pos[0]++);
+				switch (escaped) {
+				case 'n':
+					value.append('\n');
+					break;
+				case 't':
+					value.append('\t');
+					break;
+				case 'r':
+					value.append('\r');
+					break;
+				case 'b':
+					value.append('\b');
+					break;
+				case 'f':
+					value.append('\f');
+					break;
+				case 'u':
+					value.append(unicodeEscape(line, pos[0]));
+					pos[0] += 4;
+					break;
+				default:
+					value.append(escaped);
+				}
+			} else {
+				value.append(c);
+			}
+		}
+		throw malformed("unterminated string");
+	}
+
+	// unicodeEscape(): the character spelled by the four hex digits of a unicode escape, starting at start
+	private char unicodeEscape(String line, int start) {
+		if (start + 4 > line.length()) {
+			throw malformed("truncated \\u escape at column " + (start - 1));
+		}
+		int code = 0;
+		for (int i = start; i < start + 4; i++) {
+			char c = line.charAt(i);
+			int digit = c < 128 ? Character.digit(c, 16) : -1;
+			if (digit < 0) {
+				throw malformed("invalid \\u escape at column " + (start - 1));
+			}
+			code = code * 16 + digit;
+		}
+		return (char) code;
+	}
+
+	private void expect(String line, int[] pos, char expected) {
+		if (pos[0] >= line.length() || line.charAt(pos[0]) != expected) {
+			throw malformed("expected '" + expected + "' at column " + (pos[0] + 1));
+		}
+		pos[0]++;
+	}
+
+	private static int skipWhitespace(String line, int pos) {
+		while (pos < line.length() && Character.isWhitespace(line.charAt(pos))) {
+			pos++;
+		}
+		return pos;
+	}
+
+	private IllegalArgumentException malformed(String message) {
+		return new IllegalArgumentException("Malformed JSON on line " + lineNumber + ": " + message);
+	}
+
+	public long getLineNumber() {
+		return lineNumber;
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.close();
+	}
+}
@@ -0,0 +1,11 @@
+package com.hibernate.actor_movie.importer;
+
+import java.io.IOException;
+
+// Rows for CatalogueImporter, one at a time: the values of the importer's columns in its order, null for a missing
+// value. RowReader reads them from CSV and JSONL files, CatalogueSnapshot from an exported snapshot.
+public interface RowSource {
+
+	// next(): the next row, or null at end of input
+	String[] next() throws IOException;
+}
@@ -0,0 +1,119 @@
+package com.hibernate.actor_movie.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+// Registry of per-DAO-method metrics (see InstrumentedActorDao / InstrumentedMovieDao).
+// Recording is off unless enabled with setEnabled(true) or -Dactor_movie.metrics=true; while off, every hook
+// returns after one volatile read and nothing is allocated.
+public final class DaoMetrics {
+
+	static final Logger SLOW_LOG = Logger.getLogger("com.hibernate.actor_movie.slow");
+
+	private static final ConcurrentHashMap<String, MethodMetrics> methods = new ConcurrentHashMap<>();
+	private static final ThreadLocal<ThreadCounters> counters = ThreadLocal.withInitial(ThreadCounters::new);
+
+	private static volatile boolean enabled = Boolean.getBoolean("actor_movie.metrics");
+	private static volatile long slowThresholdNanos = TimeUnit.MILLISECONDS.toNanos(Long.getLong("actor_movie.metrics.slow_ms", 500));
+
+	private DaoMetrics() {
+	}
+
+	// Work done by the current thread since the DAO method it is running started
+	static final class ThreadCounters {
+		long statements;
+		long entities;
+	}
+
+	public static boolean isEnabled() {
+		return enabled;
+	}
+
+	public static void setEnabled(boolean on) {
+		enabled = on;
+	}
+
+	// setSlowThreshold(): DAO calls slower than this are logged to the "com.hibernate.actor_movie.slow" logger
+	public static void setSlowThreshold(long duration, TimeUnit unit) {
+		slowThresholdNanos = unit.toNanos(duration);
+	}
+
+	static long slowThresholdNanos() {
+		return slowThresholdNanos;
+	}
+
+	// register(): the metrics of one DAO method; called once per method when the DAO class loads
+	public static MethodMetrics register(String name) {
+		return methods.computeIfAbsent(name, MethodMetrics::new);
+	}
+
+	static ThreadCounters counters() {
+		return counters.get();
+	}
+
+	// Hooks for Hibernate (StatementCounter, MetricsIntegrator)
+	static void statementPrepared() {
+		if (enabled) {
+			counters.get().statements++;
+		}
+	}
+
+	static void entityLoaded() {
+		if (enabled) {
+			counters.get().entities++;
+		}
+	}
+
+	// snapshot(): a consistent-enough copy of every method's metrics, sorted by name
+	public static List<MethodSnapshot> snapshot() {
+		List<MethodSnapshot> snapshots = new ArrayList<>();
+		for (MethodMetrics method : methods.values()) {
+			snapshots.add(method.snapshot());
+		}
+		snapshots.sort((a, b) -> a.getName().compareTo(b.getName()));
+		return snapshots;
+	}
+
+	public static void reset() {
+		for (MethodMetrics method : methods.values()) {
+			method.reset();
+		}
+	}
+
+	// dump(): human-readable table of the methods that were called
+	public static String dump() {
+		StringBuilder out = new StringBuilder();
+		out.append(String.format("%-45s %9s %7s %10s %10s %10s %11s %9s %9s%n", "method", "calls", "errors", "p50(us)",
+				"p99(us)", "max(us)", "statements", "rows", "entities"));
+		for (MethodSnapshot method : snapshot()) {
+			if (method.getCalls() > 0) {
+				out.append(String.format("%-45s %9d %7d %10d %10d %10d %11d %9d %9d%n", method.getName(), method.getCalls(),
+						method.getErrors(), method.getP50Micros(), method.getP99Micros(), method.getMaxMicros(),
+						method.getStatements(), method.getRows(), method.getEntities()));
+			}
+		}
+		return out.toString();
+	}
+
+	// exportCsv(): one line per method, for spreadsheets or scraping
+	public static void exportCsv(Writer writer) {
+		try {
+			writer.write("method,calls,errors,p50_us,p99_us,max_us,mean_us,statements,rows,entities\n");
+			for (MethodSnapshot method : snapshot()) {
+				writer.write(method.getName() + "," + method.getCalls() + "," + method.getErrors() + ","
+						+ method.getP50Micros() + "," + method.getP99Micros() + "," + method.getMaxMicros() + ","
+						+ method.getMeanMicros() + "," + method.getStatements() + "," + method.getRows() + ","
+						+ method.getEntities() + "\n");
+			}
+			writer.flush();
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+}
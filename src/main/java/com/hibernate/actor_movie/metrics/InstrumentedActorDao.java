@@ -0,0 +1,310 @@
+package com.hibernate.actor_movie.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.SalaryStats;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.ActorSummary;
+import com.hibernate.actor_movie.dao.Page;
+
+// ActorDao that records DaoMetrics for every call. Only the methods that do the work are wrapped: the
+// convenience overloads (e.g. findActorByName(name)) delegate to these, so each call is counted once.
+public class InstrumentedActorDao extends ActorDao {
+
+	private static final MethodMetrics ADD_ACTOR = DaoMetrics.register("ActorDao.addActor");
+	private static final MethodMetrics ADD_MOVIE = DaoMetrics.register("ActorDao.addMovie");
+	private static final MethodMetrics FIND_ACTOR_BY_ID = DaoMetrics.register("ActorDao.findActorById");
+	private static final MethodMetrics FIND_ACTORS_BY_IDS = DaoMetrics.register("ActorDao.findActorsByIds");
+	private static final MethodMetrics FIND_ALL_ACTORS = DaoMetrics.register("ActorDao.findAllActors");
+	private static final MethodMetrics FIND_ACTOR_BY_NAME = DaoMetrics.register("ActorDao.findActorByName");
+	private static final MethodMetrics SEARCH_ACTORS_BY_NAME = DaoMetrics.register("ActorDao.searchActorsByName");
+	private static final MethodMetrics FOR_EACH_ACTOR_BY_INDUSTRY = DaoMetrics.register("ActorDao.forEachActorByIndustry");
+	private static final MethodMetrics FIND_ACTOR_PAGE_BY_INDUSTRY = DaoMetrics.register("ActorDao.findActorPageByIndustry");
+	private static final MethodMetrics FIND_ACTOR_BY_INDUSTRY = DaoMetrics.register("ActorDao.findActorByIndustry");
+	private static final MethodMetrics FIND_ACTOR_SUMMARIES_BY_INDUSTRY = DaoMetrics.register("ActorDao.findActorSummariesByIndustry");
+	private static final MethodMetrics FIND_ACTOR_BETWEEN_AGE = DaoMetrics.register("ActorDao.findActorBetweenAge");
+	private static final MethodMetrics FIND_ACTOR_SUMMARIES_BETWEEN_AGE = DaoMetrics.register("ActorDao.findActorSummariesBetweenAge");
+	private static final MethodMetrics FOR_EACH_ACTOR_BETWEEN_AGE = DaoMetrics.register("ActorDao.forEachActorBetweenAge");
+	private static final MethodMetrics FIND_ALL_ACTORS_BY_MOVIE_NAME = DaoMetrics.register("ActorDao.findAllActorsByMovieName");
+	private static final MethodMetrics FOR_EACH_ACTOR_BY_MOVIE_NAME = DaoMetrics.register("ActorDao.forEachActorByMovieName");
+	private static final MethodMetrics FIND_ACTOR_PAGE_BY_MOVIE_NAME = DaoMetrics.register("ActorDao.findActorPageByMovieName");
+	private static final MethodMetrics FIND_SALARY_STATS = DaoMetrics.register("ActorDao.findSalaryStats");
+	private static final MethodMetrics UPDATE_ALL_ACTOR_SALARY_BY_MOVIE_ID = DaoMetrics.register("ActorDao.updateAllActorSalaryByMovieId");
+	private static final MethodMetrics RAISE_ACTOR_SALARY_BY_ID = DaoMetrics.register("ActorDao.raiseActorSalaryById");
+	private static final MethodMetrics UPDATE_ACTOR_NATIONALITY_BY_ID = DaoMetrics.register("ActorDao.updateActorNationalityById");
+	private static final MethodMetrics DELETE_ALL_ACTORS_BY_INDUSTRY = DaoMetrics.register("ActorDao.deleteAllActorsByIndustry");
+	private static final MethodMetrics DELETE_ALL_ACTORS_BY_MOVIE_NAME = DaoMetrics.register("ActorDao.deleteAllActorsByMovieName");
+
+	public InstrumentedActorDao() {
+	}
+
+	public InstrumentedActorDao(EntityManagerFactory emf) {
+		super(emf);
+	}
+
+	@Override
+	public void addActor(Actor actor) {
+		long start = ADD_ACTOR.begin();
+		try {
+			super.addActor(actor);
+			ADD_ACTOR.done(start);
+		} catch (RuntimeException e) {
+			ADD_ACTOR.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void addMovie(Movie movie) {
+		long start = ADD_MOVIE.begin();
+		try {
+			super.addMovie(movie);
+			ADD_MOVIE.done(start);
+		} catch (RuntimeException e) {
+			ADD_MOVIE.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Actor findActorById(int id, String graph) {
+		long start = FIND_ACTOR_BY_ID.begin();
+		try {
+			return FIND_ACTOR_BY_ID.row(start, super.findActorById(id, graph));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_BY_ID.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findActorsByIds(Collection<Integer> ids, String graph) {
+		long start = FIND_ACTORS_BY_IDS.begin();
+		try {
+			return FIND_ACTORS_BY_IDS.rows(start, super.findActorsByIds(ids, graph));
+		} catch (RuntimeException e) {
+			FIND_ACTORS_BY_IDS.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findAllActors(String graph) {
+		long start = FIND_ALL_ACTORS.begin();
+		try {
+			return FIND_ALL_ACTORS.rows(start, super.findAllActors(graph));
+		} catch (RuntimeException e) {
+			FIND_ALL_ACTORS.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findActorByName(String name, String graph) {
+		long start = FIND_ACTOR_BY_NAME.begin();
+		try {
+			return FIND_ACTOR_BY_NAME.rows(start, super.findActorByName(name, graph));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_BY_NAME.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public long forEachActorByIndustry(String industry, int fetchSize, Consumer<? super Actor> action) {
+		long start = FOR_EACH_ACTOR_BY_INDUSTRY.begin();
+		try {
+			return FOR_EACH_ACTOR_BY_INDUSTRY.count(start, super.forEachActorByIndustry(industry, fetchSize, action));
+		} catch (RuntimeException e) {
+			FOR_EACH_ACTOR_BY_INDUSTRY.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Page<Actor> findActorPageByIndustry(String industry, String pageToken, int pageSize) {
+		long start = FIND_ACTOR_PAGE_BY_INDUSTRY.begin();
+		try {
+			return FIND_ACTOR_PAGE_BY_INDUSTRY.page(start, super.findActorPageByIndustry(industry, pageToken, pageSize));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_PAGE_BY_INDUSTRY.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> searchActorsByName(String query, int limit) {
+		long start = SEARCH_ACTORS_BY_NAME.begin();
+		try {
+			return SEARCH_ACTORS_BY_NAME.rows(start, super.searchActorsByName(query, limit));
+		} catch (RuntimeException e) {
+			SEARCH_ACTORS_BY_NAME.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findActorByIndustry(String industry, String graph) {
+		long start = FIND_ACTOR_BY_INDUSTRY.begin();
+		try {
+			return FIND_ACTOR_BY_INDUSTRY.rows(start, super.findActorByIndustry(industry, graph));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_BY_INDUSTRY.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<ActorSummary> findActorSummariesByIndustry(String industry) {
+		long start = FIND_ACTOR_SUMMARIES_BY_INDUSTRY.begin();
+		try {
+			return FIND_ACTOR_SUMMARIES_BY_INDUSTRY.rows(start, super.findActorSummariesByIndustry(industry));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_SUMMARIES_BY_INDUSTRY.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findActorBetweenAge(int minAge, int maxAge, String graph) {
+		long start = FIND_ACTOR_BETWEEN_AGE.begin();
+		try {
+			return FIND_ACTOR_BETWEEN_AGE.rows(start, super.findActorBetweenAge(minAge, maxAge, graph));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_BETWEEN_AGE.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<ActorSummary> findActorSummariesBetweenAge(int minAge, int maxAge) {
+		long start = FIND_ACTOR_SUMMARIES_BETWEEN_AGE.begin();
+		try {
+			return FIND_ACTOR_SUMMARIES_BETWEEN_AGE.rows(start, super.findActorSummariesBetweenAge(minAge, maxAge));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_SUMMARIES_BETWEEN_AGE.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public long forEachActorBetweenAge(int minAge, int maxAge, int fetchSize, Consumer<? super Actor> action) {
+		long start = FOR_EACH_ACTOR_BETWEEN_AGE.begin();
+		try {
+			return FOR_EACH_ACTOR_BETWEEN_AGE.count(start, super.forEachActorBetweenAge(minAge, maxAge, fetchSize, action));
+		} catch (RuntimeException e) {
+			FOR_EACH_ACTOR_BETWEEN_AGE.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<Actor> findAllActorsByMovieName(String movieName, String graph) {
+		long start = FIND_ALL_ACTORS_BY_MOVIE_NAME.begin();
+		try {
+			return FIND_ALL_ACTORS_BY_MOVIE_NAME.rows(start, super.findAllActorsByMovieName(movieName, graph));
+		} catch (RuntimeException e) {
+			FIND_ALL_ACTORS_BY_MOVIE_NAME.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public long forEachActorByMovieName(String movieName, int fetchSize, Consumer<? super Actor> action) {
+		long start = FOR_EACH_ACTOR_BY_MOVIE_NAME.begin();
+		try {
+			return FOR_EACH_ACTOR_BY_MOVIE_NAME.count(start, super.forEachActorByMovieName(movieName, fetchSize, action));
+		} catch (RuntimeException e) {
+			FOR_EACH_ACTOR_BY_MOVIE_NAME.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Page<Actor> findActorPageByMovieName(String movieName, String pageToken, int pageSize) {
+		long start = FIND_ACTOR_PAGE_BY_MOVIE_NAME.begin();
+		try {
+			return FIND_ACTOR_PAGE_BY_MOVIE_NAME.page(start, super.findActorPageByMovieName(movieName, pageToken, pageSize));
+		} catch (RuntimeException e) {
+			FIND_ACTOR_PAGE_BY_MOVIE_NAME.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public List<SalaryStats> findSalaryStats(ActorDimension by) {
+		long start = FIND_SALARY_STATS.begin();
+		try {
+			return FIND_SALARY_STATS.rows(start, super.findSalaryStats(by));
+		} catch (RuntimeException e) {
+			FIND_SALARY_STATS.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void updateAllActorSalaryByMovieId(int movieId, double newSalary) {
+		long start = UPDATE_ALL_ACTOR_SALARY_BY_MOVIE_ID.begin();
+		try {
+			super.updateAllActorSalaryByMovieId(movieId, newSalary);
+			UPDATE_ALL_ACTOR_SALARY_BY_MOVIE_ID.done(start);
+		} catch (RuntimeException e) {
+			UPDATE_ALL_ACTOR_SALARY_BY_MOVIE_ID.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public Actor raiseActorSalaryById(int id, double increment) {
+		long start = RAISE_ACTOR_SALARY_BY_ID.begin();
+		try {
+			return RAISE_ACTOR_SALARY_BY_ID.row(start, super.raiseActorSalaryById(id, increment));
+		} catch (RuntimeException e) {
+			RAISE_ACTOR_SALARY_BY_ID.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void updateActorNationalityById(int id, String newNationality) {
+		long start = UPDATE_ACTOR_NATIONALITY_BY_ID.begin();
+		try {
+			super.updateActorNationalityById(id, newNationality);
+			UPDATE_ACTOR_NATIONALITY_BY_ID.done(start);
+		} catch (RuntimeException e) {
+			UPDATE_ACTOR_NATIONALITY_BY_ID.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteAllActorsByIndustry(String industry) {
+		long start = DELETE_ALL_ACTORS_BY_INDUSTRY.begin();
+		try {
+			super.deleteAllActorsByIndustry(industry);
+			DELETE_ALL_ACTORS_BY_INDUSTRY.done(start);
+		} catch (RuntimeException e) {
+			DELETE_ALL_ACTORS_BY_INDUSTRY.failed(start);
+			throw e;
+		}
+	}
+
+	@Override
+	public void deleteAllActorsByMovieName(String movieName) {
+		long start = DELETE_ALL_ACTORS_BY_MOVIE_NAME.begin();
+		try {
+			super.deleteAllActorsByMovieName(movieName);
+			DELETE_ALL_ACTORS_BY_MOVIE_NAME.done(start);
+		} catch (RuntimeException e) {
+			DELETE_ALL_ACTORS_BY_MOVIE_NAME.failed(start);
+			throw e;
+		}
+	}
+}
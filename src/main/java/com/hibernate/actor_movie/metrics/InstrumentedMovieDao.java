@@ -0,0 +1,332 @@
+package com.hibernate.actor_movie.metrics;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.function.Consumer;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.CollectionTotal;
+import com.hibernate.actor_movie.aggregate.MovieDimension;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.MovieSummary;
+import com.hibernate.actor_movie.dao.Page;
+
+// MovieDao that records DaoMetrics for every call. Only the methods that do the work are wrapped: the
+// convenience overloads (e.g. findMovieByName(name)) delegate to these, so each call is counted once.
+public class InstrumentedMovieDao extends MovieDao {
+
+    private static final MethodMetrics ADD_MOVIE = DaoMetrics.register("MovieDao.addMovie");
+    private static final MethodMetrics FIND_MOVIES_BY_IDS = DaoMetrics.register("MovieDao.findMoviesByIds");
+    private static final MethodMetrics FIND_MOVIE_BY_NAME = DaoMetrics.register("MovieDao.findMovieByName");
+    private static final MethodMetrics SEARCH_MOVIES_BY_NAME = DaoMetrics.register("MovieDao.searchMoviesByName");
+    private static final MethodMetrics FIND_ALL_MOVIES_BY_GENRE = DaoMetrics.register("MovieDao.findAllMoviesByGenre");
+    private static final MethodMetrics FOR_EACH_MOVIE_BY_GENRE = DaoMetrics.register("MovieDao.forEachMovieByGenre");
+    private static final MethodMetrics FIND_MOVIE_PAGE_BY_GENRE = DaoMetrics.register("MovieDao.findMoviePageByGenre");
+    private static final MethodMetrics FIND_MOVIE_SUMMARIES_BY_GENRE = DaoMetrics.register("MovieDao.findMovieSummariesByGenre");
+    private static final MethodMetrics FIND_ALL_MOVIES_BY_DIRECTOR = DaoMetrics.register("MovieDao.findAllMoviesByDirector");
+    private static final MethodMetrics FOR_EACH_MOVIE_BY_DIRECTOR = DaoMetrics.register("MovieDao.forEachMovieByDirector");
+    private static final MethodMetrics FIND_MOVIE_PAGE_BY_DIRECTOR = DaoMetrics.register("MovieDao.findMoviePageByDirector");
+    private static final MethodMetrics FIND_MOVIE_SUMMARIES_BY_DIRECTOR = DaoMetrics.register("MovieDao.findMovieSummariesByDirector");
+    private static final MethodMetrics SEARCH_MOVIES_BY_DIRECTOR = DaoMetrics.register("MovieDao.searchMoviesByDirector");
+    private static final MethodMetrics FIND_ALL_MOVIE_COLLECTION_GREATER_THAN = DaoMetrics.register("MovieDao.findAllMovieCollectionGreaterThan");
+    private static final MethodMetrics FOR_EACH_MOVIE_COLLECTION_GREATER_THAN = DaoMetrics.register("MovieDao.forEachMovieCollectionGreaterThan");
+    private static final MethodMetrics FIND_MOVIE_PAGE_COLLECTION_GREATER_THAN = DaoMetrics.register("MovieDao.findMoviePageCollectionGreaterThan");
+    private static final MethodMetrics FIND_COLLECTION_TOTALS = DaoMetrics.register("MovieDao.findCollectionTotals");
+    private static final MethodMetrics UPDATE_MOVIE_COLLECTION_BY_VERDICT = DaoMetrics.register("MovieDao.updateMovieCollectionByVerdict");
+    private static final MethodMetrics ADD_TO_MOVIE_COLLECTION_BY_ID = DaoMetrics.register("MovieDao.addToMovieCollectionById");
+    private static final MethodMetrics FIND_ALL_MOVIES_BY_ACTOR_ID = DaoMetrics.register("MovieDao.findAllMoviesByActorId");
+    private static final MethodMetrics FOR_EACH_MOVIE_BY_ACTOR_ID = DaoMetrics.register("MovieDao.forEachMovieByActorId");
+    private static final MethodMetrics FIND_MOVIE_PAGE_BY_ACTOR_ID = DaoMetrics.register("MovieDao.findMoviePageByActorId");
+    private static final MethodMetrics DELETE_ALL_MOVIES_BY_ACTOR_NAME = DaoMetrics.register("MovieDao.deleteAllMoviesByActorName");
+    private static final MethodMetrics DELETE_MOVIES_BY_IDS = DaoMetrics.register("MovieDao.deleteMoviesByIds");
+    private static final MethodMetrics DELETE_ALL_MOVIES_WITH_COLLECTION_LESS_THAN = DaoMetrics.register("MovieDao.deleteAllMoviesWithCollectionLessThan");
+
+    public InstrumentedMovieDao() {
+    }
+
+    public InstrumentedMovieDao(EntityManagerFactory emf) {
+        super(emf);
+    }
+
+    @Override
+    public void addMovie(Movie movie, List<Integer> actorIds) {
+        long start = ADD_MOVIE.begin();
+        try {
+            super.addMovie(movie, actorIds);
+            ADD_MOVIE.done(start);
+        } catch (RuntimeException e) {
+            ADD_MOVIE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findMoviesByIds(Collection<Integer> ids, String graph) {
+        long start = FIND_MOVIES_BY_IDS.begin();
+        try {
+            return FIND_MOVIES_BY_IDS.rows(start, super.findMoviesByIds(ids, graph));
+        } catch (RuntimeException e) {
+            FIND_MOVIES_BY_IDS.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findMovieByName(String movieName, String graph) {
+        long start = FIND_MOVIE_BY_NAME.begin();
+        try {
+            return FIND_MOVIE_BY_NAME.rows(start, super.findMovieByName(movieName, graph));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_BY_NAME.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> searchMoviesByName(String query, int limit) {
+        long start = SEARCH_MOVIES_BY_NAME.begin();
+        try {
+            return SEARCH_MOVIES_BY_NAME.rows(start, super.searchMoviesByName(query, limit));
+        } catch (RuntimeException e) {
+            SEARCH_MOVIES_BY_NAME.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findAllMoviesByGenre(String genre, String graph) {
+        long start = FIND_ALL_MOVIES_BY_GENRE.begin();
+        try {
+            return FIND_ALL_MOVIES_BY_GENRE.rows(start, super.findAllMoviesByGenre(genre, graph));
+        } catch (RuntimeException e) {
+            FIND_ALL_MOVIES_BY_GENRE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long forEachMovieByGenre(String genre, int fetchSize, Consumer<? super Movie> action) {
+        long start = FOR_EACH_MOVIE_BY_GENRE.begin();
+        try {
+            return FOR_EACH_MOVIE_BY_GENRE.count(start, super.forEachMovieByGenre(genre, fetchSize, action));
+        } catch (RuntimeException e) {
+            FOR_EACH_MOVIE_BY_GENRE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<Movie> findMoviePageByGenre(String genre, String pageToken, int pageSize) {
+        long start = FIND_MOVIE_PAGE_BY_GENRE.begin();
+        try {
+            return FIND_MOVIE_PAGE_BY_GENRE.page(start, super.findMoviePageByGenre(genre, pageToken, pageSize));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_PAGE_BY_GENRE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<MovieSummary> findMovieSummariesByGenre(String genre) {
+        long start = FIND_MOVIE_SUMMARIES_BY_GENRE.begin();
+        try {
+            return FIND_MOVIE_SUMMARIES_BY_GENRE.rows(start, super.findMovieSummariesByGenre(genre));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_SUMMARIES_BY_GENRE.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findAllMoviesByDirector(String director, String graph) {
+        long start = FIND_ALL_MOVIES_BY_DIRECTOR.begin();
+        try {
+            return FIND_ALL_MOVIES_BY_DIRECTOR.rows(start, super.findAllMoviesByDirector(director, graph));
+        } catch (RuntimeException e) {
+            FIND_ALL_MOVIES_BY_DIRECTOR.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long forEachMovieByDirector(String director, int fetchSize, Consumer<? super Movie> action) {
+        long start = FOR_EACH_MOVIE_BY_DIRECTOR.begin();
+        try {
+            return FOR_EACH_MOVIE_BY_DIRECTOR.count(start, super.forEachMovieByDirector(director, fetchSize, action));
+        } catch (RuntimeException e) {
+            FOR_EACH_MOVIE_BY_DIRECTOR.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<Movie> findMoviePageByDirector(String director, String pageToken, int pageSize) {
+        long start = FIND_MOVIE_PAGE_BY_DIRECTOR.begin();
+        try {
+            return FIND_MOVIE_PAGE_BY_DIRECTOR.page(start, super.findMoviePageByDirector(director, pageToken, pageSize));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_PAGE_BY_DIRECTOR.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<MovieSummary> findMovieSummariesByDirector(String director) {
+        long start = FIND_MOVIE_SUMMARIES_BY_DIRECTOR.begin();
+        try {
+            return FIND_MOVIE_SUMMARIES_BY_DIRECTOR.rows(start, super.findMovieSummariesByDirector(director));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_SUMMARIES_BY_DIRECTOR.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> searchMoviesByDirector(String query, int limit) {
+        long start = SEARCH_MOVIES_BY_DIRECTOR.begin();
+        try {
+            return SEARCH_MOVIES_BY_DIRECTOR.rows(start, super.searchMoviesByDirector(query, limit));
+        } catch (RuntimeException e) {
+            SEARCH_MOVIES_BY_DIRECTOR.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findAllMovieCollectionGreaterThan(int collection, String graph) {
+        long start = FIND_ALL_MOVIE_COLLECTION_GREATER_THAN.begin();
+        try {
+            return FIND_ALL_MOVIE_COLLECTION_GREATER_THAN.rows(start, super.findAllMovieCollectionGreaterThan(collection, graph));
+        } catch (RuntimeException e) {
+            FIND_ALL_MOVIE_COLLECTION_GREATER_THAN.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long forEachMovieCollectionGreaterThan(int collection, int fetchSize, Consumer<? super Movie> action) {
+        long start = FOR_EACH_MOVIE_COLLECTION_GREATER_THAN.begin();
+        try {
+            return FOR_EACH_MOVIE_COLLECTION_GREATER_THAN.count(start, super.forEachMovieCollectionGreaterThan(collection, fetchSize, action));
+        } catch (RuntimeException e) {
+            FOR_EACH_MOVIE_COLLECTION_GREATER_THAN.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<Movie> findMoviePageCollectionGreaterThan(int collection, String pageToken, int pageSize) {
+        long start = FIND_MOVIE_PAGE_COLLECTION_GREATER_THAN.begin();
+        try {
+            return FIND_MOVIE_PAGE_COLLECTION_GREATER_THAN.page(start, super.findMoviePageCollectionGreaterThan(collection, pageToken, pageSize));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_PAGE_COLLECTION_GREATER_THAN.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<CollectionTotal> findCollectionTotals(MovieDimension by) {
+        long start = FIND_COLLECTION_TOTALS.begin();
+        try {
+            return FIND_COLLECTION_TOTALS.rows(start, super.findCollectionTotals(by));
+        } catch (RuntimeException e) {
+            FIND_COLLECTION_TOTALS.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void updateMovieCollectionByVerdict(String verdict, int increment) {
+        long start = UPDATE_MOVIE_COLLECTION_BY_VERDICT.begin();
+        try {
+            super.updateMovieCollectionByVerdict(verdict, increment);
+            UPDATE_MOVIE_COLLECTION_BY_VERDICT.done(start);
+        } catch (RuntimeException e) {
+            UPDATE_MOVIE_COLLECTION_BY_VERDICT.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Movie addToMovieCollectionById(int movieId, int increment) {
+        long start = ADD_TO_MOVIE_COLLECTION_BY_ID.begin();
+        try {
+            return ADD_TO_MOVIE_COLLECTION_BY_ID.row(start, super.addToMovieCollectionById(movieId, increment));
+        } catch (RuntimeException e) {
+            ADD_TO_MOVIE_COLLECTION_BY_ID.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public List<Movie> findAllMoviesByActorId(int actorId) {
+        long start = FIND_ALL_MOVIES_BY_ACTOR_ID.begin();
+        try {
+            return FIND_ALL_MOVIES_BY_ACTOR_ID.rows(start, super.findAllMoviesByActorId(actorId));
+        } catch (RuntimeException e) {
+            FIND_ALL_MOVIES_BY_ACTOR_ID.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public long forEachMovieByActorId(int actorId, int fetchSize, Consumer<? super Movie> action) {
+        long start = FOR_EACH_MOVIE_BY_ACTOR_ID.begin();
+        try {
+            return FOR_EACH_MOVIE_BY_ACTOR_ID.count(start, super.forEachMovieByActorId(actorId, fetchSize, action));
+        } catch (RuntimeException e) {
+            FOR_EACH_MOVIE_BY_ACTOR_ID.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public Page<Movie> findMoviePageByActorId(int actorId, String pageToken, int pageSize) {
+        long start = FIND_MOVIE_PAGE_BY_ACTOR_ID.begin();
+        try {
+            return FIND_MOVIE_PAGE_BY_ACTOR_ID.page(start, super.findMoviePageByActorId(actorId, pageToken, pageSize));
+        } catch (RuntimeException e) {
+            FIND_MOVIE_PAGE_BY_ACTOR_ID.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteAllMoviesByActorName(String actorName) {
+        long start = DELETE_ALL_MOVIES_BY_ACTOR_NAME.begin();
+        try {
+            super.deleteAllMoviesByActorName(actorName);
+            DELETE_ALL_MOVIES_BY_ACTOR_NAME.done(start);
+        } catch (RuntimeException e) {
+            DELETE_ALL_MOVIES_BY_ACTOR_NAME.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteMoviesByIds(Collection<Integer> movieIds) {
+        long start = DELETE_MOVIES_BY_IDS.begin();
+        try {
+            super.deleteMoviesByIds(movieIds);
+            DELETE_MOVIES_BY_IDS.done(start);
+        } catch (RuntimeException e) {
+            DELETE_MOVIES_BY_IDS.failed(start);
+            throw e;
+        }
+    }
+
+    @Override
+    public void deleteAllMoviesWithCollectionLessThan(int collection) {
+        long start = DELETE_ALL_MOVIES_WITH_COLLECTION_LESS_THAN.begin();
+        try {
+            super.deleteAllMoviesWithCollectionLessThan(collection);
+            DELETE_ALL_MOVIES_WITH_COLLECTION_LESS_THAN.done(start);
+        } catch (RuntimeException e) {
+            DELETE_ALL_MOVIES_WITH_COLLECTION_LESS_THAN.failed(start);
+            throw e;
+        }
+    }
+}
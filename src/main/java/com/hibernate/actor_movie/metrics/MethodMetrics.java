@@ -0,0 +1,122 @@
+package com.hibernate.actor_movie.metrics;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.hibernate.actor_movie.dao.Page;
+
+// Metrics of one DAO method: calls, failures, latency histogram and the JDBC statements, rows and entities
+// each call caused. A call is bracketed by begin() and one of the recording methods:
+//
+//   long start = METRICS.begin();
+//   try {
+//       return METRICS.rows(start, super.findSomething(...));
+//   } catch (RuntimeException e) {
+//       METRICS.failed(start);
+//       throw e;
+//   }
+//
+// begin() returns 0 while metrics are disabled and the recording methods then return immediately.
+public final class MethodMetrics {
+
+	private final String name;
+	private final LongAdder calls = new LongAdder();
+	private final LongAdder errors = new LongAdder();
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder statements = new LongAdder();
+	private final LongAdder rows = new LongAdder();
+	private final LongAdder entities = new LongAdder();
+	private final LatencyHistogram latency = new LatencyHistogram();
+
+	MethodMetrics(String name) {
+		this.name = name;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long begin() {
+		if (!DaoMetrics.isEnabled()) {
+			return 0;
+		}
+		DaoMetrics.ThreadCounters counters = DaoMetrics.counters();
+		counters.statements = 0;
+		counters.entities = 0;
+		long now = System.nanoTime();
+		return now == 0 ? 1 : now;
+	}
+
+	// done(): a call without a row count, e.g. an update
+	public void done(long start) {
+		record(start, 0, false);
+	}
+
+	public void failed(long start) {
+		record(start, 0, true);
+	}
+
+	public <T extends Collection<?>> T rows(long start, T result) {
+		record(start, result == null ? 0 : result.size(), false);
+		return result;
+	}
+
+	public <T> Page<T> page(long start, Page<T> result) {
+		record(start, result.getItems().size(), false);
+		return result;
+	}
+
+	public <T> T row(long start, T result) {
+		record(start, result == null ? 0 : 1, false);
+		return result;
+	}
+
+	public long count(long start, long count) {
+		record(start, count, false);
+		return count;
+	}
+
+	private void record(long start, long rowCount, boolean failed) {
+		if (start == 0) {
+			return;
+		}
+		long elapsed = System.nanoTime() - start;
+		DaoMetrics.ThreadCounters counters = DaoMetrics.counters();
+		calls.increment();
+		if (failed) {
+			errors.increment();
+		}
+		totalNanos.add(elapsed);
+		latency.record(elapsed);
+		statements.add(counters.statements);
+		entities.add(counters.entities);
+		rows.add(rowCount);
+		if (elapsed >= DaoMetrics.slowThresholdNanos()) {
+			DaoMetrics.SLOW_LOG.warning("Slow DAO call " + name + ": " + TimeUnit.NANOSECONDS.toMillis(elapsed) + " ms, "
+					+ counters.statements + " statements, " + rowCount + " rows, " + counters.entities + " entities"
+					+ (failed ? ", failed" : ""));
+		}
+	}
+
+	MethodSnapshot snapshot() {
+		long callCount = calls.sum();
+		return new MethodSnapshot(name, callCount, errors.sum(), toMicros(latency.percentile(50)),
+				toMicros(latency.percentile(99)), toMicros(latency.getMax()),
+				callCount == 0 ? 0 : toMicros(totalNanos.sum() / callCount), statements.sum(), rows.sum(), entities.sum());
+	}
+
+	void reset() {
+		calls.reset();
+		errors.reset();
+		totalNanos.reset();
+		statements.reset();
+		rows.reset();
+		entities.reset();
+		latency.reset();
+	}
+
+	private static long toMicros(long nanos) {
+		return TimeUnit.NANOSECONDS.toMicros(nanos);
+	}
+}
@@ -0,0 +1,77 @@
+package com.hibernate.actor_movie.metrics;
+
+// Point-in-time copy of one DAO method's metrics (see DaoMetrics.snapshot()).
+public class MethodSnapshot {
+
+	private final String name;
+	private final long calls;
+	private final long errors;
+	private final long p50Micros;
+	private final long p99Micros;
+	private final long maxMicros;
+	private final long meanMicros;
+	private final long statements;
+	private final long rows;
+	private final long entities;
+
+	MethodSnapshot(String name, long calls, long errors, long p50Micros, long p99Micros, long maxMicros, long meanMicros,
+			long statements, long rows, long entities) {
+		this.name = name;
+		this.calls = calls;
+		this.errors = errors;
+		this.p50Micros = p50Micros;
+		this.p99Micros = p99Micros;
+		this.maxMicros = maxMicros;
+		this.meanMicros = meanMicros;
+		this.statements = statements;
+		this.rows = rows;
+		this.entities = entities;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getCalls() {
+		return calls;
+	}
+
+	public long getErrors() {
+		return errors;
+	}
+
+	public long getP50Micros() {
+		return p50Micros;
+	}
+
+	public long getP99Micros() {
+		return p99Micros;
+	}
+
+	public long getMaxMicros() {
+		return maxMicros;
+	}
+
+	public long getMeanMicros() {
+		return meanMicros;
+	}
+
+	public long getStatements() {
+		return statements;
+	}
+
+	public long getRows() {
+		return rows;
+	}
+
+	public long getEntities() {
+		return entities;
+	}
+
+	@Override
+	public String toString() {
+		return "MethodSnapshot [name=" + name + ", calls=" + calls + ", errors=" + errors + ", p50Micros=" + p50Micros
+				+ ", p99Micros=" + p99Micros + ", maxMicros=" + maxMicros + ", statements=" + statements + ", rows=" + rows
+				+ ", entities=" + entities + "]";
+	}
+}
@@ -0,0 +1,33 @@
+package com.hibernate.actor_movie.metrics;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostLoadEvent;
+import org.hibernate.event.spi.PostLoadEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Counts entities loaded for the DAO method running on the current thread.
+public class MetricsIntegrator implements Integrator {
+
+	private static final PostLoadEventListener ENTITY_LOADED = new PostLoadEventListener() {
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public void onPostLoad(PostLoadEvent event) {
+			DaoMetrics.entityLoaded();
+		}
+	};
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		serviceRegistry.getService(EventListenerRegistry.class).appendListeners(EventType.POST_LOAD, ENTITY_LOADED);
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+}
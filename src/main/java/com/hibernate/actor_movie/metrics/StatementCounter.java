@@ -0,0 +1,16 @@
+package com.hibernate.actor_movie.metrics;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+// Counts the JDBC statements Hibernate prepares for the DAO method running on the current thread.
+// Registered through hibernate.session_factory.statement_inspector in persistence.xml, by way of StatementInspectorChain.
+public class StatementCounter implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	@Override
+	public String inspect(String sql) {
+		DaoMetrics.statementPrepared();
+		return sql;
+	}
+}
@@ -0,0 +1,67 @@
+package com.hibernate.actor_movie.payroll;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+// The payroll_checkpoint table: one row per partition a PayrollJob has committed, inserted in the partition's own
+// transaction, so a partition is either recomputed and checkpointed or neither.
+final class PayrollCheckpoints {
+
+	static final String TABLE = "payroll_checkpoint";
+
+	private PayrollCheckpoints() {
+	}
+
+	// create(): the table, the first time a job runs
+	static void create(Connection connection) throws SQLException {
+		try (Statement create = connection.createStatement()) {
+			create.executeUpdate("CREATE TABLE IF NOT EXISTS " + TABLE + " (job VARCHAR(200) NOT NULL, "
+					+ "first_id INT NOT NULL, last_id INT NOT NULL, PRIMARY KEY (job, first_id))");
+		}
+	}
+
+	// read(): the first ids of the partitions the job has checkpointed; fails when they were cut into partitions of
+	// another size, whose ranges would not line up with these
+	static Set<Integer> read(Connection connection, String job, int partitionSize) throws SQLException {
+		Set<Integer> done = new HashSet<>();
+		try (PreparedStatement select = connection.prepareStatement(
+				"SELECT first_id, last_id FROM " + TABLE + " WHERE job = ?")) {
+			select.setString(1, job);
+			try (ResultSet rows = select.executeQuery()) {
+				while (rows.next()) {
+					int first = rows.getInt(1);
+					int last = rows.getInt(2);
+					if (first % partitionSize != 0 || last - first >= partitionSize) {
+						throw new IllegalStateException("payroll job " + job + " was checkpointed in partitions other "
+								+ "than " + partitionSize + " ids; run it with the same size or clear() it");
+					}
+					done.add(first);
+				}
+			}
+		}
+		return done;
+	}
+
+	static void write(Connection connection, String job, int first, int last) throws SQLException {
+		try (PreparedStatement insert = connection.prepareStatement(
+				"INSERT INTO " + TABLE + " (job, first_id, last_id) VALUES (?, ?, ?)")) {
+			insert.setString(1, job);
+			insert.setInt(2, first);
+			insert.setInt(3, last);
+			insert.executeUpdate();
+		}
+	}
+
+	// clear(): forgets the job's partitions; returns how many there were
+	static int clear(Connection connection, String job) throws SQLException {
+		try (PreparedStatement delete = connection.prepareStatement("DELETE FROM " + TABLE + " WHERE job = ?")) {
+			delete.setString(1, job);
+			return delete.executeUpdate();
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package com.hibernate.actor_movie.payroll;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.ReturningWork;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.async.DaoExecutor;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.change.ChangeType;
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// Batch recomputation of every actor's salary from the collections and verdicts of their movies, as the payroll
+// does it, with a SalaryFormula. The actors are cut into partitions of partitionSize consecutive ids (0 up to
+// partitionSize - 1, then the next partitionSize ids, whatever ids exist), and a ForkJoinPool works through them,
+// each partition in a transaction of its own on a pooled connection of its own:
+//   - two range reads: the partition's actors with their salaries, then its Actor_Movie links joined to the movies'
+//     collection and verdict (served by the primary key and uk_actor_movie); the salaries are summed up as the links
+//     stream in
+//   - the salaries that changed written back with batched UPDATEs, BATCH_SIZE per round trip
+//   - a payroll_checkpoint row marking the partition done, committed with the salaries (see PayrollCheckpoints)
+// As many partitions run at once as the pool has threads. Each one holds a connection while it runs, so a pool larger
+// than hibernate.hikari.maximumPoolSize only waits for connections.
+// Running a job again under the same name skips the partitions it has checkpointed, so a job that failed or was
+// killed picks up where it stopped; clear() forgets them for the next payroll.
+// Actors without movies keep their salary. The written salaries increment the versions (concurrent read-modify-write
+// raises retry on the new salary), evict the cached actors and reach the ChangeStream as bulk updates, partition by
+// partition; the AggregateView is reloaded once the job ends.
+public class PayrollJob {
+
+	static final Logger LOG = Logger.getLogger("com.hibernate.actor_movie.payroll");
+
+	public static final int DEFAULT_PARTITION_SIZE = 10_000;
+
+	private static final int BATCH_SIZE = 500;
+	private static final int MAX_NAME_LENGTH = 200;
+
+	private static final String SELECT_ACTORS = "SELECT id, salary FROM Actor WHERE id BETWEEN ? AND ?";
+	private static final String SELECT_FEES = "SELECT am.Actor_id, m.collection, m.verdict FROM Actor_Movie am "
+			+ "JOIN Movie m ON m.movieId = am.movie_id WHERE am.Actor_id BETWEEN ? AND ?";
+	// increments the version like an entity update would
+	private static final String UPDATE_SALARY = "UPDATE Actor SET salary = ?, version = version + 1 WHERE id = ?";
+
+	private final EntityManagerFactory emf;
+	private final String name;
+	private final SalaryFormula formula;
+	private final int partitionSize;
+	// null for a pool of the job's own for each run
+	private final ForkJoinPool pool;
+
+	// Partitions of DEFAULT_PARTITION_SIZE ids, on a pool of one thread per pooled connection that each run starts and
+	// shuts down; the partitions block on JDBC, so they are kept off the common pool
+	public PayrollJob(EntityManagerFactory emf, String name, SalaryFormula formula) {
+		this(emf, name, formula, DEFAULT_PARTITION_SIZE, null);
+	}
+
+	// name identifies the job's checkpoints, e.g. "payroll-2026-10"; a restart has to use the same partitionSize
+	public PayrollJob(EntityManagerFactory emf, String name, SalaryFormula formula, int partitionSize,
+			ForkJoinPool pool) {
+		if (name == null || name.isEmpty() || name.length() > MAX_NAME_LENGTH) {
+			throw new IllegalArgumentException("need a job name of 1 to " + MAX_NAME_LENGTH + " characters");
+		}
+		if (partitionSize <= 0) {
+			throw new IllegalArgumentException("need partitionSize > 0");
+		}
+		this.emf = emf;
+		this.name = name;
+		this.formula = formula;
+		this.partitionSize = partitionSize;
+		this.pool = pool;
+	}
+
+	// run(): recomputes the partitions not checkpointed yet and returns once all of them have ended. A partition that
+	// fails is rolled back while the others carry on; the first failure is then thrown, and running the job again
+	// retries only the partitions that did not commit.
+	public PayrollResult run() {
+		long started = System.nanoTime();
+		Run run = inTransaction(connection -> {
+			PayrollCheckpoints.create(connection);
+			Set<Integer> done = PayrollCheckpoints.read(connection, name, partitionSize);
+			try (PreparedStatement range = connection.prepareStatement("SELECT MIN(id), MAX(id) FROM Actor");
+					ResultSet row = range.executeQuery()) {
+				row.next();
+				int min = row.getInt(1);
+				return row.wasNull() ? null : new Run(done, min / partitionSize, row.getInt(2) / partitionSize);
+			}
+		});
+		if (run == null) {
+			return new PayrollResult(0, 0, 0, 0, System.nanoTime() - started);
+		}
+		ForkJoinPool workers = pool != null ? pool : new ForkJoinPool(DaoExecutor.connectionPoolSize(emf));
+		try {
+			workers.invoke(new Partitions(run, run.firstPartition, run.lastPartition + 1));
+		} finally {
+			if (workers != pool) {
+				workers.shutdown();
+			}
+		}
+		if (run.changed.sum() > 0) {
+			// the partitions wrote on the pool's threads; the caller is the one that reads the salaries back
+			ReplicaRouting.wrote();
+			AggregateView.rowsChanged(emf);
+		}
+		if (run.failure.get() != null) {
+			throw new IllegalStateException(run.failed.get() + " payroll partitions of job " + name
+					+ " failed and were rolled back; run it again to retry them", run.failure.get());
+		}
+		return new PayrollResult(run.partitions.get(), run.skipped.get(), run.actors.sum(), run.changed.sum(),
+				System.nanoTime() - started);
+	}
+
+	// clear(): forgets the job's checkpoints, so its next run recomputes every partition; returns how many there were
+	public int clear() {
+		return inTransaction(connection -> {
+			PayrollCheckpoints.create(connection);
+			return PayrollCheckpoints.clear(connection, name);
+		});
+	}
+
+	// partition(): loads, computes, writes and checkpoints one partition in one transaction; a failure is recorded in
+	// the run instead of thrown, so it cannot cut the other partitions short
+	private void partition(Run run, int index) {
+		int first = index * partitionSize;
+		int last = (int) Math.min(Integer.MAX_VALUE, (long) first + partitionSize - 1);
+		if (run.done.contains(first)) {
+			run.skipped.incrementAndGet();
+			return;
+		}
+		try {
+			Partition partition = new Partition(first, last);
+			inTransaction(connection -> {
+				partition.load(connection, formula);
+				partition.write(connection);
+				PayrollCheckpoints.write(connection, name, first, last);
+				return null;
+			});
+			partition.committed(emf);
+			run.partitions.incrementAndGet();
+			run.actors.add(partition.actors);
+			run.changed.add(partition.changed.size());
+		} catch (RuntimeException e) {
+			LOG.log(Level.WARNING, "payroll job " + name + " failed on actors " + first + " to " + last, e);
+			run.failed.incrementAndGet();
+			run.failure.compareAndSet(null, e);
+		}
+	}
+
+	private <T> T inTransaction(ReturningWork<T> work) {
+		EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			T result = em.unwrap(Session.class).doReturningWork(work);
+			em.getTransaction().commit();
+			return result;
+		} catch (RuntimeException e) {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			em.close();
+		}
+	}
+
+	// The partitions of one run and what came of them
+	private static final class Run {
+
+		final Set<Integer> done;
+		final int firstPartition;
+		final int lastPartition;
+		final AtomicInteger partitions = new AtomicInteger();
+		final AtomicInteger skipped = new AtomicInteger();
+		final AtomicInteger failed = new AtomicInteger();
+		final LongAdder actors = new LongAdder();
+		final LongAdder changed = new LongAdder();
+		final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+
+		Run(Set<Integer> done, int firstPartition, int lastPartition) {
+			this.done = done;
+			this.firstPartition = firstPartition;
+			this.lastPartition = lastPartition;
+		}
+	}
+
+	// Partitions [from, to) of a run, halved until each task holds one so idle pool threads can steal the rest
+	private final class Partitions extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final transient Run run;
+		private final int from;
+		private final int to;
+
+		Partitions(Run run, int from, int to) {
+			this.run = run;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from == 1) {
+				partition(run, from);
+				return;
+			}
+			int middle = (from + to) >>> 1;
+			invokeAll(new Partitions(run, from, middle), new Partitions(run, middle, to));
+		}
+	}
+
+	// One partition's actors, indexed by id - first
+	private static final class Partition {
+
+		private static final byte NONE = 0;
+		private static final byte ACTOR = 1;
+		private static final byte WITH_MOVIES = 2;
+
+		final int first;
+		final int last;
+		final double[] salaries;
+		final double[] computed;
+		final byte[] state;
+		final List<Integer> changed = new ArrayList<>();
+		int actors;
+
+		Partition(int first, int last) {
+			this.first = first;
+			this.last = last;
+			int size = last - first + 1;
+			this.salaries = new double[size];
+			this.computed = new double[size];
+			this.state = new byte[size];
+		}
+
+		void load(Connection connection, SalaryFormula formula) throws SQLException {
+			try (PreparedStatement select = range(connection, SELECT_ACTORS); ResultSet rows = select.executeQuery()) {
+				while (rows.next()) {
+					int i = rows.getInt(1) - first;
+					salaries[i] = rows.getDouble(2);
+					state[i] = ACTOR;
+					actors++;
+				}
+			}
+			try (PreparedStatement select = range(connection, SELECT_FEES); ResultSet rows = select.executeQuery()) {
+				while (rows.next()) {
+					int i = rows.getInt(1) - first;
+					computed[i] += formula.fee(rows.getInt(2), rows.getString(3));
+					state[i] = WITH_MOVIES;
+				}
+			}
+		}
+
+		void write(Connection connection) throws SQLException {
+			try (PreparedStatement update = connection.prepareStatement(UPDATE_SALARY)) {
+				for (int i = 0; i < state.length; i++) {
+					if (state[i] != WITH_MOVIES || Double.compare(computed[i], salaries[i]) == 0) {
+						continue;
+					}
+					update.setDouble(1, computed[i]);
+					update.setInt(2, first + i);
+					update.addBatch();
+					changed.add(first + i);
+					if (changed.size() % BATCH_SIZE == 0) {
+						update.executeBatch();
+					}
+				}
+				if (changed.size() % BATCH_SIZE != 0) {
+					update.executeBatch();
+				}
+			}
+		}
+
+		// committed(): evicts the changed actors, as WriteBehindBuffer does after a flush, and publishes them
+		void committed(EntityManagerFactory emf) {
+			if (changed.isEmpty()) {
+				return;
+			}
+			Cache cache = emf.getCache();
+			for (Integer id : changed) {
+				cache.evict(Actor.class, id);
+			}
+			ChangeStream.bulk(emf, Actor.class, ChangeType.UPDATE).add(changed).committed();
+		}
+
+		private PreparedStatement range(Connection connection, String sql) throws SQLException {
+			PreparedStatement select = connection.prepareStatement(sql);
+			select.setInt(1, first);
+			select.setInt(2, last);
+			return select;
+		}
+	}
+}
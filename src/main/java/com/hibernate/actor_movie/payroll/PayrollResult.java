@@ -0,0 +1,54 @@
+package com.hibernate.actor_movie.payroll;
+
+// Outcome of one PayrollJob run: the partitions it recomputed and skipped, the actors it read and the salaries it
+// changed, and how fast.
+public class PayrollResult {
+
+	private final int partitions;
+	private final int skipped;
+	private final long actors;
+	private final long changed;
+	private final long elapsedNanos;
+
+	public PayrollResult(int partitions, int skipped, long actors, long changed, long elapsedNanos) {
+		this.partitions = partitions;
+		this.skipped = skipped;
+		this.actors = actors;
+		this.changed = changed;
+		this.elapsedNanos = elapsedNanos;
+	}
+
+	// getPartitions(): partitions recomputed and checkpointed by this run
+	public int getPartitions() {
+		return partitions;
+	}
+
+	// getSkipped(): partitions an earlier run of the job had already checkpointed
+	public int getSkipped() {
+		return skipped;
+	}
+
+	public long getActors() {
+		return actors;
+	}
+
+	// getChanged(): actors whose salary was written; an unchanged salary is not
+	public long getChanged() {
+		return changed;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedNanos / 1_000_000;
+	}
+
+	public double getActorsPerSecond() {
+		return elapsedNanos == 0 ? 0 : actors * 1_000_000_000.0 / elapsedNanos;
+	}
+
+	@Override
+	public String toString() {
+		return "PayrollResult [partitions=" + partitions + ", skipped=" + skipped + ", actors=" + actors + ", changed="
+				+ changed + ", elapsedMillis=" + getElapsedMillis() + ", actorsPerSecond="
+				+ String.format("%.0f", getActorsPerSecond()) + "]";
+	}
+}
@@ -0,0 +1,24 @@
+package com.hibernate.actor_movie.payroll;
+
+// What an actor earns for one of their movies; the PayrollJob pays each actor the sum over all their movies.
+// Called from the job's pool threads at once, so it has to be thread-safe.
+@FunctionalInterface
+public interface SalaryFormula {
+
+	// VERDICT_SHARE: a share of the movie's collection that grows with its verdict, from 10% of a Blockbuster's
+	// down to 1% of a Flop's; 3% for any other verdict
+	SalaryFormula VERDICT_SHARE = (collection, verdict) -> {
+		switch (verdict == null ? "" : verdict) {
+		case "Blockbuster":
+			return collection * 0.10;
+		case "Hit":
+			return collection * 0.06;
+		case "Flop":
+			return collection * 0.01;
+		default:
+			return collection * 0.03;
+		}
+	};
+
+	double fee(int collection, String verdict);
+}
@@ -0,0 +1,180 @@
+package com.hibernate.actor_movie.render;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+// Formats finder results as text, one result at a time into a StringBuilder the renderer reuses, so rendering a
+// result allocates next to nothing. Actor.movies and Movie.actor are followed depth levels deep; below that, and for
+// an entity already being rendered further up (an actor's movie listing the actor again), an entity is written as a
+// reference such as Movie#10, so Actor-Movie cycles end. A collection that was never loaded is written as
+// (not loaded) and stays unloaded. Not thread safe; use one renderer per thread.
+public final class ResultRenderer {
+
+	public static final int DEFAULT_DEPTH = 1;
+
+	private static final ThreadLocal<ResultRenderer> shared = ThreadLocal.withInitial(ResultRenderer::new);
+
+	private final int depth;
+	private final StringBuilder text = new StringBuilder(256);
+	// the entities being rendered, outermost first; as deep as the depth, so a scan beats a map
+	private Object[] path = new Object[4];
+	private int pathLength;
+	private boolean rendering;
+
+	public ResultRenderer() {
+		this(DEFAULT_DEPTH);
+	}
+
+	// depth: association levels written in full, 0 for references only
+	public ResultRenderer(int depth) {
+		if (depth < 0) {
+			throw new IllegalArgumentException("depth must not be negative");
+		}
+		this.depth = depth;
+	}
+
+	// describe(): the text of result as a String, for toString(); uses a renderer of the calling thread
+	public static String describe(Object result) {
+		ResultRenderer renderer = shared.get();
+		if (renderer.rendering) {
+			renderer = new ResultRenderer();
+		}
+		return renderer.render(result).toString();
+	}
+
+	// render(): the text of result, in the renderer's builder; valid until the next call
+	public CharSequence render(Object result) {
+		text.setLength(0);
+		rendering = true;
+		try {
+			append(result, 0);
+		} finally {
+			rendering = false;
+			Arrays.fill(path, 0, pathLength, null);
+			pathLength = 0;
+		}
+		return text;
+	}
+
+	// renderAll(): writes each result on a line of its own to out; returns the number of results
+	public long renderAll(Iterable<?> results, ResultWriter out) {
+		long count = 0;
+		for (Object result : results) {
+			out.append(render(result)).newLine();
+			count++;
+		}
+		return count;
+	}
+
+	private void append(Object value, int level) {
+		if (value instanceof Actor) {
+			appendActor((Actor) value, level);
+		} else if (value instanceof Movie) {
+			appendMovie((Movie) value, level);
+		} else if (value instanceof Collection) {
+			appendAll((Collection<?>) value, level);
+		} else {
+			text.append(value);
+		}
+	}
+
+	private void appendActor(Actor actor, int level) {
+		enter(actor);
+		text.append("Actor [id=").append(actor.getId())
+				.append(", name=").append(actor.getName())
+				.append(", age=").append(actor.getAge())
+				.append(", industry=").append(actor.getIndustry())
+				.append(", salary=").append(actor.getSalary())
+				.append(", nationality=").append(actor.getNationality())
+				.append(", movies=");
+		appendAssociation(actor.getMovies(), level);
+		text.append(']');
+		path[--pathLength] = null;
+	}
+
+	private void appendMovie(Movie movie, int level) {
+		enter(movie);
+		text.append("Movie [movieId=").append(movie.getMovieId())
+				.append(", movieName=").append(movie.getMovieName())
+				.append(", movieDirector=").append(movie.getMovieDirector())
+				.append(", genre=").append(movie.getGenre())
+				.append(", verdict=").append(movie.getVerdict())
+				.append(", collection=").append(movie.getCollection())
+				.append(", actor=");
+		appendAssociation(movie.getActor(), level);
+		text.append(']');
+		path[--pathLength] = null;
+	}
+
+	private void enter(Object entity) {
+		if (pathLength == path.length) {
+			path = Arrays.copyOf(path, pathLength * 2);
+		}
+		path[pathLength++] = entity;
+	}
+
+	private boolean onPath(Object value) {
+		for (int i = 0; i < pathLength; i++) {
+			if (path[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private void appendAssociation(List<?> entities, int level) {
+		if (!Hibernate.isInitialized(entities)) {
+			text.append("(not loaded)");
+		} else if (entities == null) {
+			text.append("null");
+		} else if (level >= depth) {
+			appendReferences(entities);
+		} else {
+			appendAll(entities, level + 1);
+		}
+	}
+
+	private void appendAll(Collection<?> values, int level) {
+		text.append('[');
+		boolean first = true;
+		for (Object value : values) {
+			if (!first) {
+				text.append(", ");
+			}
+			first = false;
+			if (onPath(value)) {
+				appendReference(value);
+			} else {
+				append(value, level);
+			}
+		}
+		text.append(']');
+	}
+
+	private void appendReferences(List<?> entities) {
+		text.append('[');
+		for (int i = 0; i < entities.size(); i++) {
+			if (i > 0) {
+				text.append(", ");
+			}
+			appendReference(entities.get(i));
+		}
+		text.append(']');
+	}
+
+	private void appendReference(Object entity) {
+		if (entity instanceof Actor) {
+			text.append("Actor#").append(((Actor) entity).getId());
+		} else if (entity instanceof Movie) {
+			text.append("Movie#").append(((Movie) entity).getMovieId());
+		} else {
+			text.append(entity);
+		}
+	}
+}
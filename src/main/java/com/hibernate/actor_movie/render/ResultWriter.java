@@ -0,0 +1,199 @@
+package com.hibernate.actor_movie.render;
+
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Text output for rendered results, in place of System.out.println per row. Text is encoded to UTF-8 into one of two
+// buffers; when it is full it is handed to a writer thread and the other one is filled meanwhile, so the caller
+// only waits when the channel is slower than the rendering. One channel write per buffer instead of one locked
+// PrintStream call per row. Not thread safe; a writer belongs to one producer thread.
+public final class ResultWriter implements Closeable, Flushable {
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+
+	private final WritableByteChannel channel;
+	private final boolean closeChannel;
+	private final ExecutorService io = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "result-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+	private final char[] chars = new char[4096];
+	private ByteBuffer filling;
+	private ByteBuffer spare;
+	private Future<?> pending;
+	private long bytes;
+
+	// closeChannel: whether close() closes the channel too
+	public ResultWriter(WritableByteChannel channel, int bufferSize, boolean closeChannel) {
+		if (bufferSize < 16) {
+			throw new IllegalArgumentException("bufferSize must be at least 16 bytes");
+		}
+		this.channel = channel;
+		this.closeChannel = closeChannel;
+		this.filling = ByteBuffer.allocate(bufferSize);
+		this.spare = ByteBuffer.allocate(bufferSize);
+	}
+
+	// console(): writes to standard output, which close() leaves open
+	public static ResultWriter console() {
+		return new ResultWriter(Channels.newChannel(new FileOutputStream(FileDescriptor.out)), DEFAULT_BUFFER_SIZE, false);
+	}
+
+	// open(): writes to file, replacing it
+	public static ResultWriter open(Path file) throws IOException {
+		return new ResultWriter(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+				StandardOpenOption.WRITE), DEFAULT_BUFFER_SIZE, true);
+	}
+
+	public ResultWriter append(CharSequence text) {
+		int length = text.length();
+		for (int from = 0; from < length;) {
+			int to = Math.min(length, from + chars.length);
+			// a surrogate pair split by the chunk is encoded with the next one
+			if (to < length && Character.isHighSurrogate(text.charAt(to - 1)) && to - 1 > from) {
+				to--;
+			}
+			copy(text, from, to);
+			encode(to - from);
+			from = to;
+		}
+		return this;
+	}
+
+	public ResultWriter newLine() {
+		return append(LINE_SEPARATOR);
+	}
+
+	// getBytes(): bytes handed to the channel so far
+	public long getBytes() {
+		return bytes;
+	}
+
+	// flush(): returns once everything appended so far is written to the channel
+	@Override
+	public void flush() {
+		if (filling.position() > 0) {
+			handOff();
+		}
+		awaitPending();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			flush();
+		} finally {
+			io.shutdown();
+			if (closeChannel) {
+				channel.close();
+			}
+		}
+	}
+
+	private void copy(CharSequence text, int from, int to) {
+		if (text instanceof String) {
+			((String) text).getChars(from, to, chars, 0);
+		} else if (text instanceof StringBuilder) {
+			((StringBuilder) text).getChars(from, to, chars, 0);
+		} else {
+			for (int i = from; i < to; i++) {
+				chars[i - from] = text.charAt(i);
+			}
+		}
+	}
+
+	// encode(): UTF-8 into the backing array of the buffer being filled, handing it off when fewer than 4 bytes fit
+	private void encode(int count) {
+		byte[] bytes = filling.array();
+		int position = filling.position();
+		int limit = filling.limit() - 4;
+		int i = 0;
+		while (i < count) {
+			if (position > limit) {
+				filling.position(position);
+				handOff();
+				bytes = filling.array();
+				position = filling.position();
+			}
+			// ASCII, nearly all of it, goes byte for char without a check per char of the space left
+			int end = Math.min(count, i + limit + 1 - position);
+			while (i < end && chars[i] < 0x80) {
+				bytes[position++] = (byte) chars[i++];
+			}
+			if (i == end) {
+				continue;
+			}
+			char c = chars[i++];
+			if (c < 0x800) {
+				bytes[position++] = (byte) (0xc0 | c >> 6);
+				bytes[position++] = (byte) (0x80 | c & 0x3f);
+			} else if (Character.isHighSurrogate(c) && i < count && Character.isLowSurrogate(chars[i])) {
+				int codePoint = Character.toCodePoint(c, chars[i++]);
+				bytes[position++] = (byte) (0xf0 | codePoint >> 18);
+				bytes[position++] = (byte) (0x80 | codePoint >> 12 & 0x3f);
+				bytes[position++] = (byte) (0x80 | codePoint >> 6 & 0x3f);
+				bytes[position++] = (byte) (0x80 | codePoint & 0x3f);
+			} else if (Character.isSurrogate(c)) {
+				bytes[position++] = '?';
+			} else {
+				bytes[position++] = (byte) (0xe0 | c >> 12);
+				bytes[position++] = (byte) (0x80 | c >> 6 & 0x3f);
+				bytes[position++] = (byte) (0x80 | c & 0x3f);
+			}
+		}
+		filling.position(position);
+	}
+
+
+	// handOff(): queues the full buffer for writing and continues in the other one, once that is written
+	private void handOff() {
+		awaitPending();
+		ByteBuffer full = filling;
+		filling = spare;
+		spare = full;
+		full.flip();
+		bytes += full.remaining();
+		pending = io.submit(() -> {
+			while (full.hasRemaining()) {
+				channel.write(full);
+			}
+			full.clear();
+			return null;
+		});
+	}
+
+	private void awaitPending() {
+		if (pending == null) {
+			return;
+		}
+		try {
+			pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while writing results", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw cause instanceof IOException ? new UncheckedIOException((IOException) cause)
+					: new IllegalStateException("could not write results", cause);
+		} finally {
+			pending = null;
+		}
+	}
+}
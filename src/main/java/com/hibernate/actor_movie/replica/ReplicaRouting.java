@@ -0,0 +1,114 @@
+package com.hibernate.actor_movie.replica;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+// Decides where a read-only finder reads from. Hibernate's own sessions always get primary connections from the
+// RoutingConnectionProvider, so every write and every transaction stays on the primary; the read-only finders ask
+// replicaConnection() for a connection of their own, and get one unless:
+//   - no replica is configured or healthy
+//   - the calling thread wrote within the read-your-writes window (actor_movie.replica.read_your_writes_ms), so it
+//     reads what it wrote even when the replicas lag behind; every INSERT, UPDATE or DELETE Hibernate prepares on the
+//     thread (see StatementInspectorChain) restarts the window, and so does wrote() after writes made over plain JDBC
+//   - the call runs inside onPrimary()
+// Both are kept per thread; a task handed to another thread takes them along with carried(), as DaoExecutor does.
+public final class ReplicaRouting {
+
+	private static final ThreadLocal<long[]> lastWrite = ThreadLocal.withInitial(() -> new long[] { Long.MIN_VALUE });
+	private static final ThreadLocal<int[]> primaryScopes = ThreadLocal.withInitial(() -> new int[1]);
+
+	private ReplicaRouting() {
+	}
+
+	// onPrimary(): runs read on the calling thread with every finder reading from the primary, for reads that must
+	// see the latest committed rows
+	public static <T> T onPrimary(Supplier<T> read) {
+		int[] depth = primaryScopes.get();
+		depth[0]++;
+		try {
+			return read.get();
+		} finally {
+			depth[0]--;
+		}
+	}
+
+	// carried(): task wrapped to run on another thread with the calling thread's routing: inside onPrimary() if the
+	// caller is, and on the caller's read-your-writes window, so a write on either thread sends the other's later
+	// reads to the primary too. The running thread gets its own back when the task ends.
+	public static Runnable carried(Runnable task) {
+		long[] written = lastWrite.get();
+		int depth = primaryScopes.get()[0];
+		return () -> {
+			long[] ownWritten = lastWrite.get();
+			int[] scopes = primaryScopes.get();
+			int ownDepth = scopes[0];
+			lastWrite.set(written);
+			scopes[0] = depth;
+			try {
+				task.run();
+			} finally {
+				lastWrite.set(ownWritten);
+				scopes[0] = ownDepth;
+			}
+		};
+	}
+
+	// replicaConnection(): a connection to a replica for a read-only finder, or null to read from the primary as
+	// usual. The caller hands it to its session and closes it when the session closes.
+	public static Connection replicaConnection(EntityManagerFactory emf) {
+		ConnectionProvider provider = emf.unwrap(SessionFactoryImplementor.class).getServiceRegistry()
+				.getService(ConnectionProvider.class);
+		if (!(provider instanceof RoutingConnectionProvider) || primaryScopes.get()[0] > 0) {
+			return null;
+		}
+		return ((RoutingConnectionProvider) provider).replicaConnection();
+	}
+
+	// release(): closes a connection from replicaConnection(), returning it to its pool; a no-op for null
+	public static void release(Connection connection) {
+		if (connection == null) {
+			return;
+		}
+		try {
+			connection.close();
+		} catch (SQLException e) {
+			RoutingConnectionProvider.LOG.log(Level.FINE, "could not release a replica connection", e);
+		}
+	}
+
+	// statementPrepared(): called with every statement Hibernate prepares; a write restarts the thread's
+	// read-your-writes window
+	public static void statementPrepared(String sql) {
+		if (isWrite(sql)) {
+			wrote();
+		}
+	}
+
+	// wrote(): restarts the calling thread's read-your-writes window after writes Hibernate never prepared, such as
+	// batches run over the session's JDBC connection
+	public static void wrote() {
+		lastWrite.get()[0] = System.nanoTime();
+	}
+
+	// wroteWithin(): whether the calling thread wrote less than windowNanos ago
+	static boolean wroteWithin(long windowNanos) {
+		long written = lastWrite.get()[0];
+		return written != Long.MIN_VALUE && System.nanoTime() - written < windowNanos;
+	}
+
+	private static boolean isWrite(String sql) {
+		int start = 0;
+		while (start < sql.length() && Character.isWhitespace(sql.charAt(start))) {
+			start++;
+		}
+		return sql.regionMatches(true, start, "insert", 0, 6) || sql.regionMatches(true, start, "update", 0, 6)
+				|| sql.regionMatches(true, start, "delete", 0, 6) || sql.regionMatches(true, start, "merge", 0, 5);
+	}
+}
@@ -0,0 +1,238 @@
+package com.hibernate.actor_movie.replica;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.sql.DataSource;
+
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.hikaricp.internal.HikariCPConnectionProvider;
+import org.hibernate.service.UnknownUnwrapTypeException;
+import org.hibernate.service.spi.Configurable;
+import org.hibernate.service.spi.Stoppable;
+
+import com.zaxxer.hikari.HikariDataSource;
+
+// The connection provider of the persistence unit: a HikariCP pool for the primary, which serves every connection
+// Hibernate asks for, and one pool per replica in actor_movie.replica.urls for the read-only finders (see
+// ReplicaRouting). Replica pools take every setting of the primary pool except the url, the pool name and a short
+// connection timeout, and may start while their replica is down.
+//   - balancing: a read goes to the healthy replica with the fewest connections in use, ties taken in turn
+//   - health: a daemon thread validates one connection of every replica each actor_movie.replica.health_check_ms;
+//     a replica that fails the check or a read's connection request is skipped until it passes again
+//   - fallback: with no healthy replica the finders read from the primary
+public class RoutingConnectionProvider implements ConnectionProvider, Configurable, Stoppable {
+
+	private static final long serialVersionUID = 1L;
+
+	public static final String REPLICA_URLS_PROPERTY = "actor_movie.replica.urls";
+	public static final String READ_YOUR_WRITES_PROPERTY = "actor_movie.replica.read_your_writes_ms";
+	public static final String HEALTH_CHECK_PROPERTY = "actor_movie.replica.health_check_ms";
+	public static final String CONNECTION_TIMEOUT_PROPERTY = "actor_movie.replica.connection_timeout_ms";
+
+	static final Logger LOG = Logger.getLogger("com.hibernate.actor_movie.replica");
+
+	private static final String POOL_NAME = "hibernate.hikari.poolName";
+	private static final int VALIDATION_TIMEOUT_SECONDS = 1;
+
+	private final HikariCPConnectionProvider primary = new HikariCPConnectionProvider();
+	private final AtomicInteger turn = new AtomicInteger();
+	private Replica[] replicas = new Replica[0];
+	private long readYourWritesNanos;
+	private ScheduledExecutorService healthCheck;
+
+	@Override
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	public void configure(Map settings) {
+		primary.configure(settings);
+		readYourWritesNanos = TimeUnit.MILLISECONDS.toNanos(setting(settings, READ_YOUR_WRITES_PROPERTY, 1000));
+		String urls = (String) settings.get(REPLICA_URLS_PROPERTY);
+		if (urls == null || urls.trim().isEmpty()) {
+			return;
+		}
+		String[] replicaUrls = urls.trim().split("\\s*,\\s*");
+		replicas = new Replica[replicaUrls.length];
+		for (int i = 0; i < replicaUrls.length; i++) {
+			Map replicaSettings = new HashMap(settings);
+			replicaSettings.put(AvailableSettings.URL, replicaUrls[i]);
+			replicaSettings.put(AvailableSettings.JPA_JDBC_URL, replicaUrls[i]);
+			replicaSettings.put(POOL_NAME, settings.getOrDefault(POOL_NAME, "actor-movie-pool") + "-replica-" + (i + 1));
+			replicaSettings.put("hibernate.hikari.connectionTimeout",
+					String.valueOf(setting(settings, CONNECTION_TIMEOUT_PROPERTY, 1000)));
+			replicaSettings.put("hibernate.hikari.initializationFailTimeout", "-1");
+			HikariCPConnectionProvider pool = new HikariCPConnectionProvider();
+			pool.configure(replicaSettings);
+			replicas[i] = new Replica(replicaUrls[i], pool);
+		}
+		long interval = setting(settings, HEALTH_CHECK_PROPERTY, 5000);
+		healthCheck = Executors.newSingleThreadScheduledExecutor(runnable -> {
+			Thread thread = new Thread(runnable, "replica-health-check");
+			thread.setDaemon(true);
+			return thread;
+		});
+		healthCheck.scheduleWithFixedDelay(this::checkReplicas, 0, interval, TimeUnit.MILLISECONDS);
+	}
+
+	@Override
+	public Connection getConnection() throws SQLException {
+		return primary.getConnection();
+	}
+
+	@Override
+	public void closeConnection(Connection connection) throws SQLException {
+		primary.closeConnection(connection);
+	}
+
+	@Override
+	public boolean supportsAggressiveRelease() {
+		return primary.supportsAggressiveRelease();
+	}
+
+	@Override
+	@SuppressWarnings("rawtypes")
+	public boolean isUnwrappableAs(Class unwrapType) {
+		return unwrapType.isInstance(this) || primary.isUnwrappableAs(unwrapType);
+	}
+
+	// unwrap(): the provider itself, or the primary's pool (DataSource, HikariDataSource)
+	@Override
+	public <T> T unwrap(Class<T> unwrapType) {
+		if (unwrapType.isInstance(this)) {
+			return unwrapType.cast(this);
+		}
+		if (primary.isUnwrappableAs(unwrapType)) {
+			return primary.unwrap(unwrapType);
+		}
+		throw new UnknownUnwrapTypeException(unwrapType);
+	}
+
+	@Override
+	public void stop() {
+		if (healthCheck != null) {
+			healthCheck.shutdownNow();
+		}
+		for (Replica replica : replicas) {
+			replica.pool.stop();
+		}
+		primary.stop();
+	}
+
+	// getReplicaCount(): the number of configured replicas
+	public int getReplicaCount() {
+		return replicas.length;
+	}
+
+	// isHealthy(): whether reads currently go to the replica at this position of actor_movie.replica.urls
+	public boolean isHealthy(int replica) {
+		return replicas[replica].healthy;
+	}
+
+	// getReads(): the connections handed to finders by the replica at this position
+	public long getReads(int replica) {
+		return replicas[replica].reads.get();
+	}
+
+	// getActiveConnections(): the connections of the replica at this position in use right now
+	public int getActiveConnections(int replica) {
+		return replicas[replica].active();
+	}
+
+	// replicaConnection(): a connection to the least busy healthy replica, or null when the calling thread must or
+	// can only read from the primary. A replica that cannot hand out a connection is marked down and the next one
+	// tried.
+	Connection replicaConnection() {
+		if (replicas.length == 0 || ReplicaRouting.wroteWithin(readYourWritesNanos)) {
+			return null;
+		}
+		while (true) {
+			Replica chosen = null;
+			int start = turn.getAndIncrement();
+			for (int i = 0; i < replicas.length; i++) {
+				Replica replica = replicas[Math.floorMod(start + i, replicas.length)];
+				if (replica.healthy && (chosen == null || replica.active() < chosen.active())) {
+					chosen = replica;
+				}
+			}
+			if (chosen == null) {
+				return null;
+			}
+			try {
+				Connection connection = chosen.pool.getConnection();
+				chosen.reads.incrementAndGet();
+				return connection;
+			} catch (SQLException e) {
+				chosen.down(e);
+			}
+		}
+	}
+
+	private void checkReplicas() {
+		for (Replica replica : replicas) {
+			try (Connection connection = replica.pool.getConnection()) {
+				if (connection.isValid(VALIDATION_TIMEOUT_SECONDS)) {
+					replica.up();
+				} else {
+					replica.down(null);
+				}
+			} catch (SQLException | RuntimeException e) {
+				replica.down(e);
+			}
+		}
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static long setting(Map settings, String name, long defaultValue) {
+		Object value = settings.get(name);
+		if (value == null) {
+			return defaultValue;
+		}
+		long parsed = Long.parseLong(value.toString().trim());
+		if (parsed < 0) {
+			throw new IllegalArgumentException(name + " must not be negative: " + parsed);
+		}
+		return parsed;
+	}
+
+	private static final class Replica {
+
+		private final String url;
+		private final HikariCPConnectionProvider pool;
+		private final HikariDataSource dataSource;
+		private final AtomicLong reads = new AtomicLong();
+		private volatile boolean healthy = true;
+
+		Replica(String url, HikariCPConnectionProvider pool) {
+			this.url = url;
+			this.pool = pool;
+			this.dataSource = (HikariDataSource) pool.unwrap(DataSource.class);
+		}
+
+		int active() {
+			return dataSource.getHikariPoolMXBean() == null ? 0 : dataSource.getHikariPoolMXBean().getActiveConnections();
+		}
+
+		void up() {
+			if (!healthy) {
+				LOG.info("replica " + url + " is back, reads go to it again");
+				healthy = true;
+			}
+		}
+
+		void down(Exception cause) {
+			if (healthy) {
+				LOG.log(Level.WARNING, "replica " + url + " is down, reads go to the other replicas or the primary", cause);
+				healthy = false;
+			}
+		}
+	}
+}
@@ -0,0 +1,80 @@
+package com.hibernate.actor_movie.schema;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.mapping.Column;
+import org.hibernate.mapping.ForeignKey;
+import org.hibernate.mapping.Index;
+import org.hibernate.mapping.Table;
+import org.hibernate.mapping.UniqueKey;
+
+// The columns of every mapped table and which of them lead an index, i.e. can be used by the database to seek
+// instead of scan. Primary keys, unique constraints and @Table/@JoinTable indexes count, and so do foreign keys:
+// MySQL and H2 both create an index for a foreign key column that has none. Names are kept in lower case.
+final class IndexCatalog {
+
+	private final Map<String, Set<String>> columns = new HashMap<>();
+	private final Map<String, Set<String>> leadingColumns = new HashMap<>();
+
+	IndexCatalog(Metadata metadata) {
+		for (Table table : metadata.collectTableMappings()) {
+			String name = lower(table.getName());
+			Set<String> tableColumns = new HashSet<>();
+			Iterator<?> columnIterator = table.getColumnIterator();
+			while (columnIterator.hasNext()) {
+				tableColumns.add(lower(((Column) columnIterator.next()).getName()));
+			}
+			columns.put(name, tableColumns);
+
+			Set<String> leading = new HashSet<>();
+			if (table.getPrimaryKey() != null) {
+				addLeading(leading, table.getPrimaryKey().getColumns());
+			}
+			for (Iterator<UniqueKey> keys = table.getUniqueKeyIterator(); keys.hasNext();) {
+				addLeading(leading, keys.next().getColumns());
+			}
+			for (Iterator<ForeignKey> keys = table.getForeignKeyIterator(); keys.hasNext();) {
+				addLeading(leading, keys.next().getColumns());
+			}
+			for (Iterator<Index> indexes = table.getIndexIterator(); indexes.hasNext();) {
+				Iterator<Column> indexColumns = indexes.next().getColumnIterator();
+				if (indexColumns.hasNext()) {
+					leading.add(lower(indexColumns.next().getName()));
+				}
+			}
+			leadingColumns.put(name, leading);
+		}
+	}
+
+	boolean hasTable(String table) {
+		return columns.containsKey(table);
+	}
+
+	boolean hasColumn(String table, String column) {
+		Set<String> tableColumns = columns.get(table);
+		return tableColumns != null && tableColumns.contains(column);
+	}
+
+	// isIndexed(): true when an index starts with the column, so an equality or range filter on it alone can seek
+	boolean isIndexed(String table, String column) {
+		Set<String> leading = leadingColumns.get(table);
+		return leading != null && leading.contains(column);
+	}
+
+	private static void addLeading(Set<String> leading, List<Column> keyColumns) {
+		if (!keyColumns.isEmpty()) {
+			leading.add(lower(keyColumns.get(0).getName()));
+		}
+	}
+
+	static String lower(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+}
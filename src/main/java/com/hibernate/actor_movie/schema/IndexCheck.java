@@ -0,0 +1,243 @@
+package com.hibernate.actor_movie.schema;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+
+import com.hibernate.actor_movie.dao.FactoryLocal;
+
+// Schema validation for the queries the DAOs actually run: every statement Hibernate prepares is checked against
+// the indexes of the mapped tables, and a statement that filters a table without a supporting index is reported.
+// Enabled with the actor_movie.schema.index_check property (persistence.xml or EntityManagerFactoryProvider.configure):
+//   off  - the default, statements are not looked at
+//   warn - each offending statement is logged once to com.hibernate.actor_movie.schema
+//   fail - the statement is rejected with an IllegalStateException before it reaches the database
+// A statement is supported when, in each of its SELECT blocks (subqueries are checked on their own), at least one WHERE
+// filter is on a column that leads an index and every joined table is reached through an indexed column. A block
+// without a WHERE clause is a deliberate full read and is not reported.
+public final class IndexCheck {
+
+	public static final String MODE_PROPERTY = "actor_movie.schema.index_check";
+
+	public enum Mode {
+		OFF, WARN, FAIL;
+
+		static Mode parse(Object value) {
+			return value == null ? OFF : valueOf(value.toString().trim().toUpperCase(Locale.ROOT));
+		}
+	}
+
+	static final Logger LOG = Logger.getLogger("com.hibernate.actor_movie.schema");
+
+	private static final Pattern LITERAL = Pattern.compile("'(?:[^']|'')*'");
+	private static final Pattern FROM_END = Pattern.compile(
+			"\\s(?:where|group\\s+by|order\\s+by|having|limit|offset|for\\s+update|union)\\s");
+	private static final Pattern WHERE_END = Pattern.compile("\\s(?:group\\s+by|order\\s+by|having|limit|offset|for\\s+update|union)\\s");
+	private static final Pattern JOIN = Pattern.compile("\\s(?:(?:inner|cross|left|right|full)\\s+)?(?:outer\\s+)?join\\s");
+	private static final Pattern ON = Pattern.compile("\\son\\s");
+	// a column reference followed by a comparison; "(Actor_id) in" is how Hibernate writes a key tuple of one column
+	private static final Pattern FILTER = Pattern.compile(
+			"(?<![\\w$.])(?:([a-z_][\\w$]*)\\.)?([a-z_][\\w$]*)\\)?\\s*(?:=|<>|!=|<=|>=|<|>|(?:not\\s+)?(?:between|in|like)\\b|is\\b)");
+	private static final Pattern COLUMN = Pattern.compile("(?<![\\w$.])(?:([a-z_][\\w$]*)\\.)?([a-z_][\\w$]*)");
+
+	private static final FactoryLocal<IndexCheck> CURRENT = new FactoryLocal<>();
+
+	private final IndexCatalog catalog;
+	private final Mode mode;
+	private final Map<String, List<String>> checked = new ConcurrentHashMap<>();
+
+	IndexCheck(IndexCatalog catalog, Mode mode) {
+		this.catalog = catalog;
+		this.mode = mode;
+	}
+
+	public static IndexCheck current(EntityManagerFactory emf) {
+		return CURRENT.get(emf);
+	}
+
+	static void install(SessionFactory factory, IndexCheck check) {
+		CURRENT.set(factory, check);
+	}
+
+	static void uninstall(SessionFactory factory) {
+		CURRENT.set(factory, null);
+	}
+
+	// inspect(): called for every statement the factory prepares. Each distinct statement is parsed once; the DAOs
+	// build the same SQL strings over and over.
+	void inspect(String sql) {
+		List<String> problems = checked.get(sql);
+		if (problems == null) {
+			problems = problems(sql);
+			if (checked.putIfAbsent(sql, problems) == null && !problems.isEmpty() && mode == Mode.WARN) {
+				LOG.warning("No index supports " + String.join("; ", problems) + " in: " + sql);
+			}
+		}
+		if (!problems.isEmpty() && mode == Mode.FAIL) {
+			throw new IllegalStateException("No index supports " + String.join("; ", problems) + " in: " + sql);
+		}
+	}
+
+	// problems(): what in the statement has no supporting index, empty when everything does
+	public List<String> problems(String sql) {
+		List<String> problems = new ArrayList<>();
+		String text = " " + LITERAL.matcher(sql.toLowerCase(Locale.ROOT)).replaceAll("?").replaceAll("\\s+", " ") + " ";
+		checkBlock(withoutSubqueries(text, problems), problems);
+		return problems;
+	}
+
+	// withoutSubqueries(): checks every parenthesised SELECT as a block of its own and replaces it by ?
+	private String withoutSubqueries(String text, List<String> problems) {
+		StringBuilder out = new StringBuilder();
+		int i = 0;
+		while (i < text.length()) {
+			char c = text.charAt(i);
+			if (c != '(') {
+				out.append(c);
+				i++;
+				continue;
+			}
+			int end = closing(text, i);
+			String inner = text.substring(i + 1, end);
+			if (inner.trim().startsWith("select ")) {
+				checkBlock(" " + withoutSubqueries(inner, problems) + " ", problems);
+				out.append('?');
+			} else {
+				out.append('(').append(withoutSubqueries(inner, problems)).append(')');
+			}
+			i = end + 1;
+		}
+		return out.toString();
+	}
+
+	private static int closing(String text, int open) {
+		int depth = 0;
+		for (int i = open; i < text.length(); i++) {
+			if (text.charAt(i) == '(') {
+				depth++;
+			} else if (text.charAt(i) == ')' && --depth == 0) {
+				return i;
+			}
+		}
+		return text.length() - 1;
+	}
+
+	private void checkBlock(String block, List<String> problems) {
+		String statement = block.trim();
+		String tables;
+		String rest;
+		if (statement.startsWith("select ")) {
+			int from = block.indexOf(" from ");
+			if (from < 0) {
+				return;
+			}
+			String afterFrom = block.substring(from + 6);
+			Matcher end = FROM_END.matcher(afterFrom);
+			int fromEnd = end.find() ? end.start() : afterFrom.length();
+			tables = afterFrom.substring(0, fromEnd);
+			rest = afterFrom.substring(fromEnd);
+		} else if (statement.startsWith("update ")) {
+			int set = block.indexOf(" set ");
+			tables = block.substring(block.indexOf("update ") + 7, set < 0 ? block.length() : set);
+			rest = set < 0 ? "" : block.substring(set);
+		} else if (statement.startsWith("delete ")) {
+			String afterFrom = block.substring(block.indexOf(" from ") + 6);
+			int where = afterFrom.indexOf(" where ");
+			tables = where < 0 ? afterFrom : afterFrom.substring(0, where);
+			rest = where < 0 ? "" : afterFrom.substring(where);
+		} else if (statement.startsWith("insert ") && block.contains(" select ")) {
+			// INSERT ... SELECT: only the select reads rows
+			checkBlock(block.substring(block.indexOf(" select ")), problems);
+			return;
+		} else {
+			return;
+		}
+
+		Map<String, String> aliases = new LinkedHashMap<>();
+		String[] joins = JOIN.split(tables);
+		for (int j = 0; j < joins.length; j++) {
+			String[] onSplit = ON.split(joins[j], 2);
+			for (String source : onSplit[0].split(",")) {
+				String[] words = source.trim().split(" ");
+				String table = words[0];
+				String alias = words.length > 1 ? words[words.length - 1] : table;
+				aliases.put(alias, table);
+				if (j > 0 && onSplit.length > 1) {
+					checkJoin(alias, table, onSplit[1], problems);
+				}
+			}
+		}
+
+		int where = rest.indexOf(" where ");
+		if (where < 0) {
+			return;
+		}
+		String condition = rest.substring(where + 7);
+		Matcher end = WHERE_END.matcher(condition);
+		if (end.find()) {
+			condition = condition.substring(0, end.start());
+		}
+		checkWhere(aliases, condition, problems);
+	}
+
+	private void checkJoin(String alias, String table, String on, List<String> problems) {
+		if (!catalog.hasTable(table)) {
+			return;
+		}
+		List<String> joinColumns = new ArrayList<>();
+		Matcher column = COLUMN.matcher(on);
+		while (column.find()) {
+			if (alias.equals(column.group(1)) && catalog.hasColumn(table, column.group(2))) {
+				if (catalog.isIndexed(table, column.group(2))) {
+					return;
+				}
+				joinColumns.add(table + "." + column.group(2));
+			}
+		}
+		if (!joinColumns.isEmpty()) {
+			problems.add("join on " + String.join(", ", joinColumns));
+		}
+	}
+
+	private void checkWhere(Map<String, String> aliases, String condition, List<String> problems) {
+		List<String> filters = new ArrayList<>();
+		Matcher filter = FILTER.matcher(condition);
+		while (filter.find()) {
+			String table = resolve(aliases, filter.group(1), filter.group(2));
+			if (table == null) {
+				continue;
+			}
+			if (catalog.isIndexed(table, filter.group(2))) {
+				return;
+			}
+			filters.add(table + "." + filter.group(2));
+		}
+		if (!filters.isEmpty()) {
+			problems.add("filter on " + String.join(", ", filters));
+		}
+	}
+
+	// resolve(): the mapped table a column reference belongs to, or null (temporary tables, parameters, keywords)
+	private String resolve(Map<String, String> aliases, String qualifier, String column) {
+		if (qualifier != null) {
+			String table = aliases.get(qualifier);
+			return table != null && catalog.hasColumn(table, column) ? table : null;
+		}
+		for (String table : aliases.values()) {
+			if (catalog.hasColumn(table, column)) {
+				return table;
+			}
+		}
+		return null;
+	}
+}
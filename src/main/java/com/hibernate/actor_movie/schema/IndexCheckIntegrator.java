@@ -0,0 +1,32 @@
+package com.hibernate.actor_movie.schema;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Builds the IndexCheck from the mapping once the schema is known and installs it for the factory's lifetime, in the
+// factory's StatementInspectorChain.
+public class IndexCheckIntegrator implements Integrator {
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		IndexCheck.Mode mode = IndexCheck.Mode.parse(sessionFactory.getProperties().get(IndexCheck.MODE_PROPERTY));
+		if (mode == IndexCheck.Mode.OFF) {
+			return;
+		}
+		IndexCheck check = new IndexCheck(new IndexCatalog(metadata), mode);
+		IndexCheck.install(sessionFactory, check);
+		StatementInspector inspector = sessionFactory.getSessionFactoryOptions().getStatementInspector();
+		if (inspector instanceof StatementInspectorChain) {
+			((StatementInspectorChain) inspector).checkWith(check);
+		}
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		IndexCheck.uninstall(sessionFactory);
+	}
+}
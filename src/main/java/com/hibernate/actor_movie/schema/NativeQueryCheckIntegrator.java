@@ -0,0 +1,83 @@
+package com.hibernate.actor_movie.schema;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Pattern;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.NamedSQLQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Prepares every named native query (the @NamedNativeQueries of Actor and Movie) on a connection to the primary once
+// the factory is built, so a statement naming a missing table or column fails the startup rather than the first call
+// that runs it. Hibernate already does this for the named HQL queries; the check follows the same setting,
+// hibernate.query.startup_check, on unless it is false. The statements are only prepared, never executed; MySQL
+// parses them on the server because persistence.xml turns on useServerPrepStmts.
+public class NativeQueryCheckIntegrator implements Integrator {
+
+	// ?1 and :name parameters as JDBC expects them
+	private static final Pattern PARAMETER = Pattern.compile("\\?\\d+|(?<![:\\w]):\\w+");
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		if (!ConfigurationHelper.getBoolean(AvailableSettings.QUERY_STARTUP_CHECKING, sessionFactory.getProperties(),
+				true)) {
+			return;
+		}
+		Map<String, String> statements = new TreeMap<>();
+		for (NamedSQLQueryDefinition query : metadata.getNamedNativeQueryDefinitions()) {
+			statements.put(query.getName(), query.getQueryString());
+		}
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				check(((SessionFactoryImplementor) factory).getServiceRegistry().getService(ConnectionProvider.class),
+						statements);
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+	}
+
+	// check(): prepares each statement; throws an IllegalStateException listing every statement that failed
+	static void check(ConnectionProvider connections, Map<String, String> statements) {
+		Map<String, String> errors = new TreeMap<>();
+		try {
+			Connection connection = connections.getConnection();
+			try {
+				for (Map.Entry<String, String> statement : statements.entrySet()) {
+					try {
+						connection.prepareStatement(jdbc(statement.getValue())).close();
+					} catch (SQLException e) {
+						errors.put(statement.getKey(), e.getMessage());
+					}
+				}
+			} finally {
+				connections.closeConnection(connection);
+			}
+		} catch (SQLException e) {
+			throw new IllegalStateException("No connection to check the named native queries on", e);
+		}
+		if (!errors.isEmpty()) {
+			throw new IllegalStateException("Errors in named native queries: " + errors);
+		}
+	}
+
+	static String jdbc(String sql) {
+		return PARAMETER.matcher(sql).replaceAll("?");
+	}
+}
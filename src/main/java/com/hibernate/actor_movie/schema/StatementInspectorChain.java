@@ -0,0 +1,32 @@
+package com.hibernate.actor_movie.schema;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import com.hibernate.actor_movie.metrics.StatementCounter;
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// The statement inspector of the persistence unit. Hibernate takes a single one, so this hands every statement to the
+// index check, to the replica routing (writes keep the thread's reads on the primary) and then to the metrics counter.
+// Hibernate builds one per factory, and IndexCheckIntegrator gives it that factory's IndexCheck.
+public class StatementInspectorChain implements StatementInspector {
+
+	private static final long serialVersionUID = 1L;
+
+	private final StatementInspector counter = new StatementCounter();
+	// null when the factory runs without the index check
+	private volatile IndexCheck indexCheck;
+
+	@Override
+	public String inspect(String sql) {
+		IndexCheck check = indexCheck;
+		if (check != null) {
+			check.inspect(sql);
+		}
+		ReplicaRouting.statementPrepared(sql);
+		return counter.inspect(sql);
+	}
+
+	void checkWith(IndexCheck check) {
+		indexCheck = check;
+	}
+}
@@ -0,0 +1,35 @@
+package com.hibernate.actor_movie.search;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+// Text properties the SearchIndex covers
+public enum SearchField {
+
+	ACTOR_NAME(Actor.class, "id", "name"),
+	MOVIE_NAME(Movie.class, "movieId", "movieName"),
+	MOVIE_DIRECTOR(Movie.class, "movieId", "movieDirector");
+
+	private final Class<?> entity;
+	private final String idProperty;
+	private final String property;
+
+	SearchField(Class<?> entity, String idProperty, String property) {
+		this.entity = entity;
+		this.idProperty = idProperty;
+		this.property = property;
+	}
+
+	public Class<?> getEntity() {
+		return entity;
+	}
+
+	public String getProperty() {
+		return property;
+	}
+
+	// loadQuery(): every id with its text
+	String loadQuery() {
+		return "SELECT e." + idProperty + ", e." + property + " FROM " + entity.getSimpleName() + " e";
+	}
+}
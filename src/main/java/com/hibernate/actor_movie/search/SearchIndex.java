@@ -0,0 +1,124 @@
+package com.hibernate.actor_movie.search;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
+import com.hibernate.actor_movie.dao.FactoryLocal;
+
+// Word, prefix and misspelling search over actor names, movie names and directors: one TextIndex per SearchField,
+// answering with ranked ids that the DAOs load in batches (ActorDao.searchActorsByName, MovieDao.searchMoviesByName,
+// MovieDao.searchMoviesByDirector). Enabled with the actor_movie.search.index property; loaded with one scan per
+// field when the factory starts, then kept current without reading the tables again:
+//   - entity inserts, updates and deletes (addActor, addMovie, the importer) are applied by SearchIndexIntegrator
+//     once their transaction commits
+//   - the bulk updates leave the indexed columns alone
+//   - the bulk deletes call rowsChanged(), which reloads the index
+public final class SearchIndex {
+
+	public static final String ENABLED_PROPERTY = "actor_movie.search.index";
+
+	private static final int LOAD_FETCH_SIZE = 10_000;
+
+	private static final FactoryLocal<SearchIndex> CURRENT = new FactoryLocal<>();
+
+	private final EntityManagerFactory emf;
+	private volatile Map<SearchField, TextIndex> fields = new EnumMap<>(SearchField.class);
+
+	SearchIndex(EntityManagerFactory emf) {
+		this.emf = emf;
+	}
+
+	// load(): an index of the factory's current rows that no write will update, for one-off searches
+	public static SearchIndex load(EntityManagerFactory emf) {
+		SearchIndex index = new SearchIndex(emf);
+		index.refresh();
+		return index;
+	}
+
+	public static SearchIndex current(EntityManagerFactory emf) {
+		return CURRENT.get(emf);
+	}
+
+	// require(): the factory's index, for the DAO searches, which have no database fallback
+	public static SearchIndex require(EntityManagerFactory emf) {
+		SearchIndex index = CURRENT.get(emf);
+		if (index == null) {
+			throw new IllegalStateException("search needs " + ENABLED_PROPERTY + "=true");
+		}
+		return index;
+	}
+
+	static void install(SessionFactory factory, SearchIndex index) {
+		CURRENT.set(factory, index);
+	}
+
+	static void uninstall(SessionFactory factory) {
+		CURRENT.set(factory, null);
+	}
+
+	// rowsChanged(): called after bulk deletes of actors or movies
+	public static void rowsChanged(EntityManagerFactory emf) {
+		SearchIndex index = CURRENT.get(emf);
+		if (index != null) {
+			index.refresh();
+		}
+	}
+
+	// search(): the ids of at most limit rows whose field matches query, best match first (see TextIndex)
+	public int[] search(SearchField field, String query, int limit) {
+		return fields.get(field).search(query, limit);
+	}
+
+	// refresh(): rebuilds every field from its table. Searches go on against the old index meanwhile; changes
+	// committed meanwhile wait and are applied to the new one.
+	public synchronized void refresh() {
+		Map<SearchField, TextIndex> loaded = new EnumMap<>(SearchField.class);
+		StatelessSession session = emf.unwrap(SessionFactory.class).openStatelessSession();
+		try {
+			for (SearchField field : SearchField.values()) {
+				loaded.put(field, load(session, field));
+			}
+		} finally {
+			session.close();
+		}
+		fields = loaded;
+	}
+
+	synchronized void put(SearchField field, int id, String text) {
+		fields.get(field).put(id, text);
+	}
+
+	synchronized void remove(SearchField field, int id) {
+		fields.get(field).remove(id);
+	}
+
+	private static TextIndex load(StatelessSession session, SearchField field) {
+		int[] ids = new int[1024];
+		String[] texts = new String[1024];
+		int count = 0;
+		ScrollableResults rows = session.createQuery(field.loadQuery())
+				.setFetchSize(LOAD_FETCH_SIZE)
+				.scroll(ScrollMode.FORWARD_ONLY);
+		try {
+			while (rows.next()) {
+				if (count == ids.length) {
+					ids = Arrays.copyOf(ids, count * 2);
+					texts = Arrays.copyOf(texts, count * 2);
+				}
+				ids[count] = ((Number) rows.get(0)).intValue();
+				texts[count++] = (String) rows.get(1);
+			}
+		} finally {
+			rows.close();
+		}
+		return TextIndex.of(ids, texts, count);
+	}
+}
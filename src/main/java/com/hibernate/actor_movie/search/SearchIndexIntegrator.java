@@ -0,0 +1,121 @@
+package com.hibernate.actor_movie.search;
+
+import java.util.Objects;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.SessionFactoryObserver;
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventSource;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostDeleteEvent;
+import org.hibernate.event.spi.PostDeleteEventListener;
+import org.hibernate.event.spi.PostInsertEvent;
+import org.hibernate.event.spi.PostInsertEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.event.spi.PostUpdateEventListener;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+// Installs the SearchIndex when actor_movie.search.index is true: loads it once the factory is built and applies
+// every flushed insert, update and delete of an Actor or Movie to the fields it indexes after its transaction commits.
+public class SearchIndexIntegrator implements Integrator {
+
+	@Override
+	public void integrate(Metadata metadata, SessionFactoryImplementor sessionFactory,
+			SessionFactoryServiceRegistry serviceRegistry) {
+		if (!Boolean.parseBoolean(String.valueOf(sessionFactory.getProperties().get(SearchIndex.ENABLED_PROPERTY)))) {
+			return;
+		}
+		SearchIndex index = new SearchIndex(sessionFactory);
+		Listener listener = new Listener(index);
+		EventListenerRegistry listeners = serviceRegistry.getService(EventListenerRegistry.class);
+		listeners.appendListeners(EventType.POST_INSERT, listener);
+		listeners.appendListeners(EventType.POST_UPDATE, listener);
+		listeners.appendListeners(EventType.POST_DELETE, listener);
+		sessionFactory.addObserver(new SessionFactoryObserver() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			public void sessionFactoryCreated(SessionFactory factory) {
+				index.refresh();
+				SearchIndex.install(factory, index);
+			}
+		});
+	}
+
+	@Override
+	public void disintegrate(SessionFactoryImplementor sessionFactory, SessionFactoryServiceRegistry serviceRegistry) {
+		SearchIndex.uninstall(sessionFactory);
+	}
+
+	private static class Listener implements PostInsertEventListener, PostUpdateEventListener, PostDeleteEventListener {
+
+		private static final long serialVersionUID = 1L;
+
+		private final SearchIndex index;
+
+		Listener(SearchIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public void onPostInsert(PostInsertEvent event) {
+			for (SearchField field : SearchField.values()) {
+				if (field.getEntity().isInstance(event.getEntity())) {
+					put(event.getSession(), field, event.getId(), text(event.getPersister(), field, event.getState()));
+				}
+			}
+		}
+
+		@Override
+		public void onPostUpdate(PostUpdateEvent event) {
+			for (SearchField field : SearchField.values()) {
+				if (field.getEntity().isInstance(event.getEntity())) {
+					String text = text(event.getPersister(), field, event.getState());
+					// an update that left the text alone (most of them: salaries, collections) costs nothing
+					if (event.getOldState() == null
+							|| !Objects.equals(text, text(event.getPersister(), field, event.getOldState()))) {
+						put(event.getSession(), field, event.getId(), text);
+					}
+				}
+			}
+		}
+
+		@Override
+		public void onPostDelete(PostDeleteEvent event) {
+			for (SearchField field : SearchField.values()) {
+				if (field.getEntity().isInstance(event.getEntity())) {
+					int id = ((Number) event.getId()).intValue();
+					afterCommit(event.getSession(), () -> index.remove(field, id));
+				}
+			}
+		}
+
+		// deprecated in favour of requiresPostCommitHandling(), but Hibernate 5.4 still declares it abstract
+		@SuppressWarnings("deprecation")
+		@Override
+		public boolean requiresPostCommitHanding(EntityPersister persister) {
+			return false;
+		}
+
+		private void put(EventSource session, SearchField field, Object id, String text) {
+			int entityId = ((Number) id).intValue();
+			afterCommit(session, () -> index.put(field, entityId, text));
+		}
+
+		private static void afterCommit(EventSource session, Runnable change) {
+			session.getActionQueue().registerProcess((success, ignored) -> {
+				if (success) {
+					change.run();
+				}
+			});
+		}
+
+		private static String text(EntityPersister persister, SearchField field, Object[] state) {
+			return (String) state[persister.getEntityMetamodel().getPropertyIndex(field.getProperty())];
+		}
+	}
+}
@@ -0,0 +1,412 @@
+package com.hibernate.actor_movie.search;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// Inverted index over one text field, for typeahead and misspelled queries. Texts are folded (lower case, accents
+// removed) and split into words; each word of the dictionary lists the documents that contain it, ordered by
+// (number of words, id) so the shortest texts come first.
+// A query is split the same way and each of its words is expanded to dictionary words:
+//   - the word itself, quality 1
+//   - the words it is a prefix of (up to PREFIX_SCAN of them are looked at), quality 0.5 to 0.9, closer completions
+//     higher
+//   - only when there is neither: words sharing trigrams with it (Dice similarity at least MIN_SIMILARITY), quality
+//     half the similarity
+// A document matches when every query word matches one of its words; it scores the sum of the best qualities, and
+// ties go to shorter texts, then lower ids. The top documents are found by merging the postings of the most selective
+// query word in that order, checking the other words against each candidate, and stopping once no later candidate
+// can score higher, so a query reads a handful of postings rather than every match.
+// Readers share a lock that writers take exclusively.
+public final class TextIndex {
+
+	static final int PREFIX_SCAN = 1024;
+	static final int MAX_EXPANSIONS = 64;
+	static final double MIN_SIMILARITY = 0.5;
+
+	private static final int[] NONE = new int[0];
+	private static final String[] NO_WORDS = new String[0];
+	private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+	private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+	private static final Comparator<Match> BEST_FIRST = (a, b) -> a.quality != b.quality
+			? Double.compare(b.quality, a.quality) : Integer.compare(b.term.size, a.term.size);
+
+	private final TreeMap<String, Term> terms = new TreeMap<>();
+	private final Map<String, List<Term>> trigrams = new HashMap<>();
+	private final Map<Integer, Doc> docs = new HashMap<>();
+	private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+	// of(): an index of texts[i] under ids[i] for i < count, built in one pass and sorted once
+	public static TextIndex of(int[] ids, String[] texts, int count) {
+		TextIndex index = new TextIndex();
+		for (int i = 0; i < count; i++) {
+			index.add(ids[i], texts[i], false);
+		}
+		for (Term term : index.terms.values()) {
+			Arrays.sort(term.postings, 0, term.size);
+		}
+		return index;
+	}
+
+	public int size() {
+		lock.readLock().lock();
+		try {
+			return docs.size();
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// put(): indexes text under id, replacing what was indexed under it; a text without words removes it
+	public void put(int id, String text) {
+		lock.writeLock().lock();
+		try {
+			removeDoc(id);
+			add(id, text, true);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	public void remove(int id) {
+		lock.writeLock().lock();
+		try {
+			removeDoc(id);
+		} finally {
+			lock.writeLock().unlock();
+		}
+	}
+
+	// search(): the ids of at most limit documents matching query, best first
+	public int[] search(String query, int limit) {
+		String[] words = words(query);
+		if (words.length == 0 || limit <= 0) {
+			return NONE;
+		}
+		lock.readLock().lock();
+		try {
+			Expansion[] expansions = new Expansion[words.length];
+			int driver = 0;
+			for (int i = 0; i < words.length; i++) {
+				expansions[i] = expand(words[i]);
+				if (expansions[i].matches.length == 0) {
+					return NONE;
+				}
+				if (expansions[i].postings < expansions[driver].postings) {
+					driver = i;
+				}
+			}
+			return rank(expansions, driver, limit);
+		} finally {
+			lock.readLock().unlock();
+		}
+	}
+
+	// words(): the distinct folded words of text, in order
+	static String[] words(String text) {
+		if (text == null) {
+			return NO_WORDS;
+		}
+		String folded = MARKS.matcher(Normalizer.normalize(text, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(Locale.ROOT);
+		Set<String> words = new LinkedHashSet<>();
+		for (String word : SEPARATORS.split(folded)) {
+			if (!word.isEmpty()) {
+				words.add(word);
+			}
+		}
+		return words.toArray(NO_WORDS);
+	}
+
+	// trigrams(): the distinct trigrams of the word padded with one '$' on each side
+	static Set<String> trigrams(String word) {
+		String padded = "$" + word + "$";
+		Set<String> grams = new LinkedHashSet<>();
+		for (int i = 0; i + 3 <= padded.length(); i++) {
+			grams.add(padded.substring(i, i + 3));
+		}
+		return grams;
+	}
+
+	private void add(int id, String text, boolean sorted) {
+		String[] words = words(text);
+		if (words.length == 0) {
+			return;
+		}
+		long key = key(words.length, id);
+		Term[] docTerms = new Term[words.length];
+		for (int i = 0; i < words.length; i++) {
+			Term term = terms.get(words[i]);
+			if (term == null) {
+				term = new Term(words[i]);
+				terms.put(words[i], term);
+				for (String gram : term.grams) {
+					trigrams.computeIfAbsent(gram, g -> new ArrayList<>()).add(term);
+				}
+			}
+			term.add(key, sorted);
+			docTerms[i] = term;
+		}
+		docs.put(id, new Doc(docTerms, key));
+	}
+
+	private void removeDoc(int id) {
+		Doc doc = docs.remove(id);
+		if (doc == null) {
+			return;
+		}
+		for (Term term : doc.terms) {
+			term.remove(doc.key);
+			if (term.size == 0) {
+				terms.remove(term.text);
+				for (String gram : term.grams) {
+					List<Term> withGram = trigrams.get(gram);
+					withGram.remove(term);
+					if (withGram.isEmpty()) {
+						trigrams.remove(gram);
+					}
+				}
+			}
+		}
+	}
+
+	private Expansion expand(String word) {
+		List<Match> matches = new ArrayList<>();
+		Term exact = terms.get(word);
+		if (exact != null) {
+			matches.add(new Match(exact, 1));
+		}
+		int scanned = 0;
+		for (Term term : terms.tailMap(word, false).values()) {
+			if (!term.text.startsWith(word) || scanned++ == PREFIX_SCAN) {
+				break;
+			}
+			matches.add(new Match(term, prefixQuality(word, term.text)));
+		}
+		if (matches.isEmpty()) {
+			Set<String> grams = trigrams(word);
+			Map<Term, int[]> shared = new IdentityHashMap<>();
+			for (String gram : grams) {
+				List<Term> withGram = trigrams.get(gram);
+				if (withGram != null) {
+					for (Term term : withGram) {
+						shared.computeIfAbsent(term, t -> new int[1])[0]++;
+					}
+				}
+			}
+			for (Map.Entry<Term, int[]> candidate : shared.entrySet()) {
+				double similarity = 2.0 * candidate.getValue()[0] / (grams.size() + candidate.getKey().grams.length);
+				if (similarity >= MIN_SIMILARITY) {
+					matches.add(new Match(candidate.getKey(), similarity / 2));
+				}
+			}
+		}
+		matches.sort(BEST_FIRST);
+		return new Expansion(word, matches.subList(0, Math.min(matches.size(), MAX_EXPANSIONS)));
+	}
+
+	private static double prefixQuality(String prefix, String word) {
+		return 0.5 + 0.4 * prefix.length() / word.length();
+	}
+
+	// rank(): merges the driver's postings best first and keeps the top limit documents matching every word
+	private int[] rank(Expansion[] expansions, int driver, int limit) {
+		PriorityQueue<Cursor> cursors = new PriorityQueue<>();
+		for (Match match : expansions[driver].matches) {
+			cursors.add(new Cursor(match));
+		}
+		// worst hit first: lowest score, then highest key
+		PriorityQueue<Hit> top = new PriorityQueue<>((a, b) -> a.score != b.score
+				? Double.compare(a.score, b.score) : Long.compare(b.key, a.key));
+		Set<Integer> seen = new HashSet<>();
+		int others = expansions.length - 1;
+		while (!cursors.isEmpty()) {
+			Cursor cursor = cursors.poll();
+			double quality = cursor.match.quality;
+			if (top.size() == limit && (others == 0 || top.peek().score > quality + others)) {
+				break;
+			}
+			long key = cursor.key();
+			if (cursor.advance()) {
+				cursors.add(cursor);
+			}
+			int id = (int) key;
+			if (!seen.add(id)) {
+				continue;
+			}
+			double score = quality;
+			if (others > 0) {
+				Doc doc = docs.get(id);
+				for (int i = 0; i < expansions.length && score > 0; i++) {
+					if (i != driver) {
+						double best = 0;
+						for (Term term : doc.terms) {
+							best = Math.max(best, expansions[i].quality(term));
+						}
+						score = best == 0 ? 0 : score + best;
+					}
+				}
+				if (score == 0) {
+					continue;
+				}
+			}
+			if (top.size() < limit) {
+				top.add(new Hit(score, key));
+			} else if (top.comparator().compare(new Hit(score, key), top.peek()) > 0) {
+				top.poll();
+				top.add(new Hit(score, key));
+			}
+		}
+		int[] ids = new int[top.size()];
+		for (int i = ids.length - 1; i >= 0; i--) {
+			ids[i] = (int) top.poll().key;
+		}
+		return ids;
+	}
+
+	// key(): postings order, texts with fewer words first, then by id
+	private static long key(int words, int id) {
+		return ((long) words << 32) | (id & 0xffffffffL);
+	}
+
+	private static final class Term {
+
+		final String text;
+		final String[] grams;
+		long[] postings = new long[2];
+		int size;
+
+		Term(String text) {
+			this.text = text;
+			this.grams = trigrams(text).toArray(NO_WORDS);
+		}
+
+		void add(long key, boolean sorted) {
+			if (size == postings.length) {
+				postings = Arrays.copyOf(postings, size * 2);
+			}
+			int at = size;
+			if (sorted && size > 0 && postings[size - 1] > key) {
+				at = -Arrays.binarySearch(postings, 0, size, key) - 1;
+				System.arraycopy(postings, at, postings, at + 1, size - at);
+			}
+			postings[at] = key;
+			size++;
+		}
+
+		void remove(long key) {
+			int at = Arrays.binarySearch(postings, 0, size, key);
+			if (at >= 0) {
+				System.arraycopy(postings, at + 1, postings, at, size - at - 1);
+				size--;
+			}
+		}
+	}
+
+	private static final class Doc {
+
+		final Term[] terms;
+		final long key;
+
+		Doc(Term[] terms, long key) {
+			this.terms = terms;
+			this.key = key;
+		}
+	}
+
+	private static final class Match {
+
+		final Term term;
+		final double quality;
+
+		Match(Term term, double quality) {
+			this.term = term;
+			this.quality = quality;
+		}
+	}
+
+	// The dictionary words one query word matches
+	private static final class Expansion {
+
+		final String word;
+		final Match[] matches;
+		final Map<Term, Double> misspellings = new IdentityHashMap<>();
+		final long postings;
+
+		Expansion(String word, List<Match> matches) {
+			this.word = word;
+			this.matches = matches.toArray(new Match[0]);
+			long total = 0;
+			for (Match match : this.matches) {
+				if (!match.term.text.startsWith(word)) {
+					misspellings.put(match.term, match.quality);
+				}
+				total += match.term.size;
+			}
+			this.postings = total;
+		}
+
+		// quality(): how well a word of a candidate matches, 0 for not at all; a completion beyond the expanded ones
+		// still counts. Only misspellings need a lookup, the other qualities follow from the words.
+		double quality(Term term) {
+			if (term.text.startsWith(word)) {
+				return term.text.length() == word.length() ? 1 : prefixQuality(word, term.text);
+			}
+			if (misspellings.isEmpty()) {
+				return 0;
+			}
+			Double quality = misspellings.get(term);
+			return quality == null ? 0 : quality;
+		}
+	}
+
+	// A position in the postings of one match; cursors compare best quality first, then smallest key
+	private static final class Cursor implements Comparable<Cursor> {
+
+		final Match match;
+		int position;
+
+		Cursor(Match match) {
+			this.match = match;
+		}
+
+		long key() {
+			return match.term.postings[position];
+		}
+
+		boolean advance() {
+			return ++position < match.term.size;
+		}
+
+		@Override
+		public int compareTo(Cursor other) {
+			return match.quality != other.match.quality ? Double.compare(other.match.quality, match.quality)
+					: Long.compare(key(), other.key());
+		}
+	}
+
+	private static final class Hit {
+
+		final double score;
+		final long key;
+
+		Hit(double score, long key) {
+			this.score = score;
+			this.key = key;
+		}
+	}
+}
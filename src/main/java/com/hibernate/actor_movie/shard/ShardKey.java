@@ -0,0 +1,45 @@
+package com.hibernate.actor_movie.shard;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+// Chooses the shard a new actor or movie is stored on. Only rows without an id are placed by the key: the id they
+// get belongs to that shard's range, and from then on the id alone says where the row is (ShardedCatalogue.shardOf),
+// so point lookups never need the key. A row given an id by the caller goes to the shard of that id.
+public enum ShardKey {
+
+	// actors by industry and movies by genre, so the actors of an industry share a database
+	INDUSTRY {
+		@Override
+		int actorShard(Actor actor, int shards) {
+			return hash(actor.getIndustry(), shards);
+		}
+
+		@Override
+		int movieShard(Movie movie, int shards) {
+			return hash(movie.getGenre(), shards);
+		}
+	},
+
+	// actors and movies spread evenly by a hash of their names
+	NAME {
+		@Override
+		int actorShard(Actor actor, int shards) {
+			return hash(actor.getName(), shards);
+		}
+
+		@Override
+		int movieShard(Movie movie, int shards) {
+			return hash(movie.getMovieName(), shards);
+		}
+	};
+
+	abstract int actorShard(Actor actor, int shards);
+
+	abstract int movieShard(Movie movie, int shards);
+
+	// hash(): String.hashCode() is the same in every JVM, so a value always maps to the same shard
+	private static int hash(String value, int shards) {
+		return value == null ? 0 : Math.floorMod(value.hashCode(), shards);
+	}
+}
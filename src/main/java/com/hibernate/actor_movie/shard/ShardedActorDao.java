@@ -0,0 +1,174 @@
+package com.hibernate.actor_movie.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.dao.ActorDao;
+
+// ActorDao over a ShardedCatalogue. Calls about one actor go to the shard of its id; finders by other columns ask
+// every shard at once and return the actors of all of them, shard by shard. An actor's movies are always complete on
+// its own shard (see ShardedMovieDao), so Actor.WITH_MOVIES needs no merging.
+// Writes to several shards are not atomic: each shard commits on its own, there is no two-phase commit. Deleting
+// actors leaves the copies of their movies on their shard, unlinked (ShardedMovieDao skips the duplicates).
+// Paging, streaming, summaries, search and the salary statistics are not sharded; use getShard() for them.
+public class ShardedActorDao {
+
+	private final ShardedCatalogue catalogue;
+	private final List<ActorDao> shards;
+
+	public ShardedActorDao(ShardedCatalogue catalogue) {
+		this.catalogue = catalogue;
+		this.shards = new ArrayList<>(catalogue.getShardCount());
+		for (int shard = 0; shard < catalogue.getShardCount(); shard++) {
+			shards.add(new ActorDao(catalogue.getFactory(shard)));
+		}
+	}
+
+	// getShard(): the plain DAO of one shard
+	public ActorDao getShard(int shard) {
+		return shards.get(shard);
+	}
+
+	// addActor(): a new actor (id 0) goes to the shard its key picks and gets an id of that shard's range; an actor
+	// with an id goes to the shard of the id
+	public void addActor(Actor actor) {
+		int shard = actor.getId() == 0 ? catalogue.getKey().actorShard(actor, catalogue.getShardCount())
+				: catalogue.shardOf(actor.getId());
+		if (shard < 0) {
+			throw new IllegalArgumentException("no shard holds actor id " + actor.getId());
+		}
+		shards.get(shard).addActor(actor);
+	}
+
+	public Actor findActorById(int id) {
+		return findActorById(id, null);
+	}
+
+	public Actor findActorById(int id, String graph) {
+		int shard = catalogue.shardOf(id);
+		return shard < 0 ? null : shards.get(shard).findActorById(id, graph);
+	}
+
+	// findActorsByIds(): the actors in the order of ids, null for an id without an actor; one call per shard involved
+	public List<Actor> findActorsByIds(Collection<Integer> ids) {
+		return findActorsByIds(ids, null);
+	}
+
+	public List<Actor> findActorsByIds(Collection<Integer> ids, String graph) {
+		Map<Integer, List<Integer>> idsByShard = new LinkedHashMap<>();
+		for (int id : ids) {
+			int shard = catalogue.shardOf(id);
+			if (shard >= 0) {
+				idsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id);
+			}
+		}
+		Map<Integer, Actor> found = new LinkedHashMap<>();
+		for (List<Actor> actors : catalogue.on(idsByShard.keySet(),
+				shard -> shards.get(shard).findActorsByIds(idsByShard.get(shard), graph))) {
+			for (Actor actor : actors) {
+				if (actor != null) {
+					found.put(actor.getId(), actor);
+				}
+			}
+		}
+		List<Actor> result = new ArrayList<>(ids.size());
+		for (int id : ids) {
+			result.add(found.get(id));
+		}
+		return result;
+	}
+
+	public List<Actor> findAllActors() {
+		return findAllActors(null);
+	}
+
+	public List<Actor> findAllActors(String graph) {
+		return concat(catalogue.onEach(shard -> shards.get(shard).findAllActors(graph)));
+	}
+
+	public List<Actor> findActorByName(String name) {
+		return findActorByName(name, null);
+	}
+
+	public List<Actor> findActorByName(String name, String graph) {
+		return concat(catalogue.onEach(shard -> shards.get(shard).findActorByName(name, graph)));
+	}
+
+	public List<Actor> findActorByIndustry(String industry) {
+		return findActorByIndustry(industry, null);
+	}
+
+	public List<Actor> findActorByIndustry(String industry, String graph) {
+		return concat(catalogue.onEach(shard -> shards.get(shard).findActorByIndustry(industry, graph)));
+	}
+
+	public List<Actor> findActorBetweenAge(int minAge, int maxAge) {
+		return findActorBetweenAge(minAge, maxAge, null);
+	}
+
+	public List<Actor> findActorBetweenAge(int minAge, int maxAge, String graph) {
+		return concat(catalogue.onEach(shard -> shards.get(shard).findActorBetweenAge(minAge, maxAge, graph)));
+	}
+
+	// findAllActorsByMovieName(): every shard with actors in the movie holds a copy of it, so each finds its own cast
+	public List<Actor> findAllActorsByMovieName(String movieName) {
+		return findAllActorsByMovieName(movieName, null);
+	}
+
+	public List<Actor> findAllActorsByMovieName(String movieName, String graph) {
+		return concat(catalogue.onEach(shard -> shards.get(shard).findAllActorsByMovieName(movieName, graph)));
+	}
+
+	// updateAllActorSalaryByMovieId(): the cast may be on any shard
+	public void updateAllActorSalaryByMovieId(int movieId, double newSalary) {
+		catalogue.onEach(shard -> {
+			shards.get(shard).updateAllActorSalaryByMovieId(movieId, newSalary);
+			return null;
+		});
+	}
+
+	public Actor raiseActorSalaryById(int id, double increment) {
+		int shard = catalogue.shardOf(id);
+		return shard < 0 ? null : shards.get(shard).raiseActorSalaryById(id, increment);
+	}
+
+	public void updateActorNationalityById(int id, String newNationality) {
+		int shard = catalogue.shardOf(id);
+		if (shard >= 0) {
+			shards.get(shard).updateActorNationalityById(id, newNationality);
+		}
+	}
+
+	public void deleteAllActorsByIndustry(String industry) {
+		catalogue.onEach(shard -> {
+			shards.get(shard).deleteAllActorsByIndustry(industry);
+			return null;
+		});
+	}
+
+	public void deleteAllActorsByMovieName(String movieName) {
+		catalogue.onEach(shard -> {
+			shards.get(shard).deleteAllActorsByMovieName(movieName);
+			return null;
+		});
+	}
+
+	private static <T> List<T> concat(List<List<T>> perShard) {
+		if (perShard.size() == 1) {
+			return perShard.get(0);
+		}
+		int size = 0;
+		for (List<T> rows : perShard) {
+			size += rows.size();
+		}
+		List<T> all = new ArrayList<>(size);
+		for (List<T> rows : perShard) {
+			all.addAll(rows);
+		}
+		return all;
+	}
+}
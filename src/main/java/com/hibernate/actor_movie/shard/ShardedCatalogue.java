@@ -0,0 +1,152 @@
+package com.hibernate.actor_movie.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntFunction;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.async.DaoExecutor;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.graph.CastGraphIndex;
+import com.hibernate.actor_movie.id.PooledIdGenerator;
+import com.hibernate.actor_movie.search.SearchIndex;
+
+// The actors and movies spread over several databases of the same schema, one EntityManagerFactory per shard; used
+// through ShardedActorDao and ShardedMovieDao.
+//   - every shard hands out ids from its own range (shard 0 from 1, shard 1 from 1 + idsPerShard, ...), so ids never
+//     collide and shardOf() tells from an id alone where its row lives; shard 0 of a catalogue can be an existing
+//     unsharded database
+//   - where new rows go is decided by the ShardKey
+//   - calls that need every shard run on all of them at once, each on a DaoExecutor sized to its connection pool
+// Each shard runs without the second-level and query caches and without the cast graph, aggregate view, search
+// index and change stream: those are kept per factory (see FactoryLocal), so a shard's would hold only the rows of
+// that shard, which the sharded DAOs do not combine. A factory opened outside the catalogue keeps its own.
+public final class ShardedCatalogue implements AutoCloseable {
+
+	private final List<EntityManagerFactory> factories;
+	private final List<DaoExecutor> executors;
+	private final ShardKey key;
+	private final int idsPerShard;
+
+	private ShardedCatalogue(List<EntityManagerFactory> factories, ShardKey key, int idsPerShard) {
+		this.factories = factories;
+		this.key = key;
+		this.idsPerShard = idsPerShard;
+		this.executors = new ArrayList<>(factories.size());
+		for (EntityManagerFactory emf : factories) {
+			executors.add(DaoExecutor.forPool(emf, 0, TimeUnit.MILLISECONDS));
+		}
+	}
+
+	// open(): builds a factory of the persistence unit per shard, each with its own properties over persistence.xml
+	// (at least the JDBC url); the order of the shards must never change, as it decides their id ranges
+	public static ShardedCatalogue open(List<? extends Map<String, ?>> shards, ShardKey key) {
+		if (shards.isEmpty() || key == null) {
+			throw new IllegalArgumentException("need at least one shard and a key");
+		}
+		int idsPerShard = Integer.MAX_VALUE / shards.size();
+		List<EntityManagerFactory> factories = new ArrayList<>(shards.size());
+		try {
+			for (int shard = 0; shard < shards.size(); shard++) {
+				Map<String, Object> properties = new HashMap<>(shards.get(shard));
+				properties.put(PooledIdGenerator.FIRST_ID_PROPERTY, String.valueOf(1 + shard * idsPerShard));
+				properties.put(PooledIdGenerator.LAST_ID_PROPERTY, String.valueOf((shard + 1) * idsPerShard));
+				properties.put("hibernate.cache.use_second_level_cache", "false");
+				properties.put("hibernate.cache.use_query_cache", "false");
+				properties.put(CastGraphIndex.ENABLED_PROPERTY, "false");
+				properties.put(AggregateView.ENABLED_PROPERTY, "false");
+				properties.put(SearchIndex.ENABLED_PROPERTY, "false");
+				properties.put(ChangeStream.ENABLED_PROPERTY, "false");
+				properties.put("hibernate.hikari.poolName", "actor-movie-shard-" + shard);
+				factories.add(Persistence.createEntityManagerFactory(EntityManagerFactoryProvider.PERSISTENCE_UNIT,
+						properties));
+			}
+		} catch (RuntimeException e) {
+			for (EntityManagerFactory emf : factories) {
+				emf.close();
+			}
+			throw e;
+		}
+		return new ShardedCatalogue(factories, key, idsPerShard);
+	}
+
+	public int getShardCount() {
+		return factories.size();
+	}
+
+	public EntityManagerFactory getFactory(int shard) {
+		return factories.get(shard);
+	}
+
+	public ShardKey getKey() {
+		return key;
+	}
+
+	// shardOf(): the shard whose range holds id, -1 for an id no shard hands out (0 or less)
+	public int shardOf(int id) {
+		return id <= 0 ? -1 : Math.min((id - 1) / idsPerShard, factories.size() - 1);
+	}
+
+	// onEach(): the results of call on every shard, in shard order
+	<T> List<T> onEach(IntFunction<T> call) {
+		List<Integer> all = new ArrayList<>(factories.size());
+		for (int shard = 0; shard < factories.size(); shard++) {
+			all.add(shard);
+		}
+		return on(all, call);
+	}
+
+	// on(): the results of call on the given shards, in their order, run at the same time; the first failure is
+	// thrown once the other calls are cancelled
+	<T> List<T> on(Collection<Integer> shards, IntFunction<T> call) {
+		if (shards.size() == 1) {
+			return Collections.singletonList(call.apply(shards.iterator().next()));
+		}
+		List<CompletableFuture<T>> futures = new ArrayList<>(shards.size());
+		for (int shard : shards) {
+			futures.add(executors.get(shard).submit(() -> call.apply(shard)));
+		}
+		List<T> results = new ArrayList<>(futures.size());
+		try {
+			for (CompletableFuture<T> future : futures) {
+				results.add(future.join());
+			}
+		} catch (CompletionException e) {
+			for (CompletableFuture<T> future : futures) {
+				future.cancel(true);
+			}
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			if (e.getCause() instanceof Error) {
+				throw (Error) e.getCause();
+			}
+			throw e;
+		}
+		return results;
+	}
+
+	// close(): closes every shard's factory and connection pool
+	@Override
+	public void close() {
+		for (DaoExecutor executor : executors) {
+			executor.close();
+		}
+		for (EntityManagerFactory emf : factories) {
+			if (emf.isOpen()) {
+				emf.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package com.hibernate.actor_movie.shard;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.hibernate.Hibernate;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.MovieDao;
+
+// MovieDao over a ShardedCatalogue. An Actor_Movie link always lives on the actor's shard: a movie is stored on
+// its home shard (the shard of its id), and a copy with the same id is stored on every other shard that has actors
+// in it, so each link joins two rows of the same database and the join table keeps its foreign keys. Movies are the
+// side copied because there are far fewer of them than actors.
+//   - an actor's filmography is complete on the actor's shard, a movie's cast is spread over the copies
+//   - finders ask every shard at once and return each movie once; with Movie.WITH_ACTORS its cast is gathered from
+//     all the copies
+//   - updates and deletes of movies run on every shard, which keeps the copies equal to the home row
+// Writes to several shards are not atomic, see ShardedActorDao. Paging, streaming, summaries, search and the
+// collection totals are not sharded; use getShard() for them.
+public class ShardedMovieDao {
+
+    private final ShardedCatalogue catalogue;
+    private final List<MovieDao> shards;
+    private final List<ActorDao> actorShards;
+
+    public ShardedMovieDao(ShardedCatalogue catalogue) {
+        this.catalogue = catalogue;
+        this.shards = new ArrayList<>(catalogue.getShardCount());
+        this.actorShards = new ArrayList<>(catalogue.getShardCount());
+        for (int shard = 0; shard < catalogue.getShardCount(); shard++) {
+            shards.add(new MovieDao(catalogue.getFactory(shard)));
+            actorShards.add(new ActorDao(catalogue.getFactory(shard)));
+        }
+    }
+
+    // getShard(): the plain DAO of one shard
+    public MovieDao getShard(int shard) {
+        return shards.get(shard);
+    }
+
+    // addMovie(): stores the movie on its home shard, linked to the actors there, then a copy linked to the actors
+    // of each other shard. A new movie (id 0) gets its home from the key and an id of that shard's range. Calling it
+    // again with the movie's id adds links, as MovieDao.addMovie does.
+    public void addMovie(Movie movie, List<Integer> actorIds) {
+        int home = movie.getMovieId() == 0 ? catalogue.getKey().movieShard(movie, catalogue.getShardCount())
+                : catalogue.shardOf(movie.getMovieId());
+        if (home < 0) {
+            throw new IllegalArgumentException("no shard holds movie id " + movie.getMovieId());
+        }
+        Map<Integer, List<Integer>> actorsByShard = byShard(actorIds);
+        List<Integer> homeActors = actorsByShard.remove(home);
+        shards.get(home).addMovie(movie, homeActors == null ? Collections.emptyList() : homeActors);
+        catalogue.on(actorsByShard.keySet(), shard -> {
+            shards.get(shard).addMovie(copyOf(movie), actorsByShard.get(shard));
+            return null;
+        });
+    }
+
+    // findMoviesByIds(): the movies in the order of ids, null for an id without a movie. Without a graph each id is
+    // read from its home shard only; with one every shard is asked, for the cast.
+    public List<Movie> findMoviesByIds(Collection<Integer> ids) {
+        return findMoviesByIds(ids, null);
+    }
+
+    public List<Movie> findMoviesByIds(Collection<Integer> ids, String graph) {
+        List<List<Movie>> perShard;
+        if (graph == null) {
+            Map<Integer, List<Integer>> idsByShard = byShard(ids);
+            perShard = catalogue.on(idsByShard.keySet(),
+                    shard -> shards.get(shard).findMoviesByIds(idsByShard.get(shard), null));
+        } else {
+            perShard = catalogue.onEach(shard -> shards.get(shard).findMoviesByIds(ids, graph));
+        }
+        Map<Integer, Movie> found = distinct(perShard);
+        List<Movie> result = new ArrayList<>(ids.size());
+        for (int id : ids) {
+            result.add(found.get(id));
+        }
+        return result;
+    }
+
+    public List<Movie> findMovieByName(String movieName) {
+        return findMovieByName(movieName, null);
+    }
+
+    public List<Movie> findMovieByName(String movieName, String graph) {
+        return new ArrayList<>(distinct(catalogue.onEach(shard -> shards.get(shard).findMovieByName(movieName, graph)))
+                .values());
+    }
+
+    public List<Movie> findAllMoviesByGenre(String genre) {
+        return findAllMoviesByGenre(genre, null);
+    }
+
+    public List<Movie> findAllMoviesByGenre(String genre, String graph) {
+        return new ArrayList<>(distinct(catalogue.onEach(shard -> shards.get(shard).findAllMoviesByGenre(genre, graph)))
+                .values());
+    }
+
+    public List<Movie> findAllMoviesByDirector(String director) {
+        return findAllMoviesByDirector(director, null);
+    }
+
+    public List<Movie> findAllMoviesByDirector(String director, String graph) {
+        return new ArrayList<>(distinct(catalogue.onEach(
+                shard -> shards.get(shard).findAllMoviesByDirector(director, graph))).values());
+    }
+
+    public List<Movie> findAllMovieCollectionGreaterThan(int collection) {
+        return findAllMovieCollectionGreaterThan(collection, null);
+    }
+
+    public List<Movie> findAllMovieCollectionGreaterThan(int collection, String graph) {
+        return new ArrayList<>(distinct(catalogue.onEach(
+                shard -> shards.get(shard).findAllMovieCollectionGreaterThan(collection, graph))).values());
+    }
+
+    public void updateMovieCollectionByVerdict(String verdict, int increment) {
+        catalogue.onEach(shard -> {
+            shards.get(shard).updateMovieCollectionByVerdict(verdict, increment);
+            return null;
+        });
+    }
+
+    // addToMovieCollectionById(): adds to the home row and every copy; returns the home row, null when there is none
+    public Movie addToMovieCollectionById(int movieId, int increment) {
+        int home = catalogue.shardOf(movieId);
+        if (home < 0) {
+            return null;
+        }
+        return catalogue.onEach(shard -> shards.get(shard).addToMovieCollectionById(movieId, increment)).get(home);
+    }
+
+    // findAllMoviesByActorId(): one shard, the actor's, which has a copy of each of the actor's movies
+    public List<Movie> findAllMoviesByActorId(int actorId) {
+        int shard = catalogue.shardOf(actorId);
+        return shard < 0 ? new ArrayList<>() : shards.get(shard).findAllMoviesByActorId(actorId);
+    }
+
+    // deleteAllMoviesByActorName(): the actors' shards tell which movies they are in, then those movies are deleted
+    // everywhere, home rows and copies
+    public void deleteAllMoviesByActorName(String actorName) {
+        Set<Integer> movieIds = new LinkedHashSet<>();
+        for (List<Actor> actors : catalogue.onEach(
+                shard -> actorShards.get(shard).findActorByName(actorName, Actor.WITH_MOVIES))) {
+            for (Actor actor : actors) {
+                for (Movie movie : actor.getMovies()) {
+                    movieIds.add(movie.getMovieId());
+                }
+            }
+        }
+        deleteMoviesByIds(movieIds);
+    }
+
+    public void deleteMoviesByIds(Collection<Integer> movieIds) {
+        if (movieIds.isEmpty()) {
+            return;
+        }
+        catalogue.onEach(shard -> {
+            shards.get(shard).deleteMoviesByIds(movieIds);
+            return null;
+        });
+    }
+
+    public void deleteAllMoviesWithCollectionLessThan(int collection) {
+        catalogue.onEach(shard -> {
+            shards.get(shard).deleteAllMoviesWithCollectionLessThan(collection);
+            return null;
+        });
+    }
+
+    // byShard(): ids grouped by the shard of their range; ids no shard holds are left out
+    private Map<Integer, List<Integer>> byShard(Collection<Integer> ids) {
+        Map<Integer, List<Integer>> idsByShard = new LinkedHashMap<>();
+        for (int id : ids) {
+            int shard = catalogue.shardOf(id);
+            if (shard >= 0) {
+                idsByShard.computeIfAbsent(shard, s -> new ArrayList<>()).add(id);
+            }
+        }
+        return idsByShard;
+    }
+
+    // distinct(): each movie once, in the order first found. Copies hold the same values as the home row, so any
+    // row will do; when the cast was fetched, the actors of every copy are put together.
+    private static Map<Integer, Movie> distinct(List<List<Movie>> perShard) {
+        Map<Integer, Movie> movies = new LinkedHashMap<>();
+        for (List<Movie> rows : perShard) {
+            for (Movie movie : rows) {
+                if (movie != null) {
+                    movies.merge(movie.getMovieId(), movie, ShardedMovieDao::withCastOf);
+                }
+            }
+        }
+        return movies;
+    }
+
+    private static Movie withCastOf(Movie kept, Movie copy) {
+        if (Hibernate.isInitialized(kept.getActor()) && Hibernate.isInitialized(copy.getActor())
+                && kept.getActor() != null && copy.getActor() != null) {
+            List<Actor> cast = new ArrayList<>(kept.getActor());
+            cast.addAll(copy.getActor());
+            kept.setActor(cast);
+        }
+        return kept;
+    }
+
+    private static Movie copyOf(Movie movie) {
+        Movie copy = new Movie();
+        copy.setMovieId(movie.getMovieId());
+        copy.setMovieName(movie.getMovieName());
+        copy.setMovieDirector(movie.getMovieDirector());
+        copy.setGenre(movie.getGenre());
+        copy.setVerdict(movie.getVerdict());
+        copy.setCollection(movie.getCollection());
+        copy.setVersion(movie.getVersion());
+        return copy;
+    }
+}
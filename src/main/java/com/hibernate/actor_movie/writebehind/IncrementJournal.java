@@ -0,0 +1,184 @@
+package com.hibernate.actor_movie.writebehind;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Append-only local log of the increments a WriteBehindBuffer has accepted but not yet written, for recovery after
+// a crash. Each flush period appends to its own segment, increments-<sequence>.journal, of 13-byte records (target
+// ordinal, id, increment as a long or as the bits of a double). The flush that writes a period records its sequence
+// in the write_behind_checkpoint table in the same transaction, and only then deletes the segment. On startup the
+// segments after the recorded sequence are replayed and the others deleted, so each increment is written once.
+// Records reach the operating system before add returns but are not forced to disk: a crash of the process loses
+// none, a crash of the machine can lose the ones the OS had not written yet.
+final class IncrementJournal {
+
+	static final String CHECKPOINT_TABLE = "write_behind_checkpoint";
+
+	private static final int RECORD_SIZE = 13;
+	private static final String PREFIX = "increments-";
+	private static final String SUFFIX = ".journal";
+
+	private final Path directory;
+	private final String name;
+
+	IncrementJournal(Path directory) {
+		try {
+			this.directory = Files.createDirectories(directory.toAbsolutePath());
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		this.name = this.directory.toString();
+	}
+
+	Segment open(long sequence) {
+		try {
+			return new Segment(FileChannel.open(segment(sequence), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+					StandardOpenOption.APPEND));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	// replay(): passes every record of the segments after checkpoint to records, oldest first, and deletes the
+	// segments up to it; returns the highest sequence on disk (or checkpoint). A record cut short by a crash is skipped.
+	long replay(long checkpoint, Records records) {
+		long last = checkpoint;
+		for (long sequence : sequences()) {
+			last = Math.max(last, sequence);
+			if (sequence <= checkpoint) {
+				delete(sequence);
+				continue;
+			}
+			try {
+				ByteBuffer record = ByteBuffer.wrap(Files.readAllBytes(segment(sequence)));
+				IncrementTarget[] targets = IncrementTarget.values();
+				while (record.remaining() >= RECORD_SIZE) {
+					records.accept(targets[record.get()], record.getInt(), record.getLong());
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		return last;
+	}
+
+	// deleteUpTo(): drops the segments whose increments are written, after their checkpoint has committed
+	void deleteUpTo(long sequence) {
+		for (long written : sequences()) {
+			if (written <= sequence) {
+				delete(written);
+			}
+		}
+	}
+
+	// readCheckpoint(): the sequence of the last period written from this journal, 0 for none; creates the table
+	// the first time
+	long readCheckpoint(Connection connection) throws SQLException {
+		try (Statement create = connection.createStatement()) {
+			create.executeUpdate("CREATE TABLE IF NOT EXISTS " + CHECKPOINT_TABLE
+					+ " (journal VARCHAR(500) NOT NULL PRIMARY KEY, flushed BIGINT NOT NULL)");
+		}
+		try (PreparedStatement select = connection.prepareStatement(
+				"SELECT flushed FROM " + CHECKPOINT_TABLE + " WHERE journal = ?")) {
+			select.setString(1, name);
+			try (ResultSet row = select.executeQuery()) {
+				return row.next() ? row.getLong(1) : 0;
+			}
+		}
+	}
+
+	// writeCheckpoint(): records that every period up to sequence is written, in the flush's transaction
+	void writeCheckpoint(Connection connection, long sequence) throws SQLException {
+		try (PreparedStatement update = connection.prepareStatement(
+				"UPDATE " + CHECKPOINT_TABLE + " SET flushed = ? WHERE journal = ?")) {
+			update.setLong(1, sequence);
+			update.setString(2, name);
+			if (update.executeUpdate() > 0) {
+				return;
+			}
+		}
+		try (PreparedStatement insert = connection.prepareStatement(
+				"INSERT INTO " + CHECKPOINT_TABLE + " (journal, flushed) VALUES (?, ?)")) {
+			insert.setString(1, name);
+			insert.setLong(2, sequence);
+			insert.executeUpdate();
+		}
+	}
+
+	private List<Long> sequences() {
+		List<Long> sequences = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+			for (Path file : files) {
+				String fileName = file.getFileName().toString();
+				sequences.add(Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length())));
+			}
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		Collections.sort(sequences);
+		return sequences;
+	}
+
+	private void delete(long sequence) {
+		try {
+			Files.deleteIfExists(segment(sequence));
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	private Path segment(long sequence) {
+		return directory.resolve(String.format("%s%019d%s", PREFIX, sequence, SUFFIX));
+	}
+
+	interface Records {
+
+		void accept(IncrementTarget target, int id, long increment);
+	}
+
+	// The segment of one flush period, appended to by every thread adding in that period
+	static final class Segment implements AutoCloseable {
+
+		private final FileChannel channel;
+		private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+
+		Segment(FileChannel channel) {
+			this.channel = channel;
+		}
+
+		synchronized void append(IncrementTarget target, int id, long increment) {
+			record.clear();
+			record.put((byte) target.ordinal()).putInt(id).putLong(increment).flip();
+			try {
+				while (record.hasRemaining()) {
+					channel.write(record);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		@Override
+		public void close() {
+			try {
+				channel.close();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,41 @@
+package com.hibernate.actor_movie.writebehind;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+// Numeric columns a WriteBehindBuffer accumulates increments for
+public enum IncrementTarget {
+
+	MOVIE_COLLECTION(Movie.class, "Movie", "movieId", "collection", false),
+	ACTOR_SALARY(Actor.class, "Actor", "id", "salary", true);
+
+	private final Class<?> entity;
+	private final String table;
+	private final String idColumn;
+	private final String column;
+	private final boolean fractional;
+
+	IncrementTarget(Class<?> entity, String table, String idColumn, String column, boolean fractional) {
+		this.entity = entity;
+		this.table = table;
+		this.idColumn = idColumn;
+		this.column = column;
+		this.fractional = fractional;
+	}
+
+	public Class<?> getEntity() {
+		return entity;
+	}
+
+	// isFractional(): increments are doubles (salaries) rather than whole numbers (collections)
+	public boolean isFractional() {
+		return fractional;
+	}
+
+	// updateSql(): adds ?1 to one row's column; increments the version like an entity update would, so concurrent
+	// read-modify-write updates of the row retry on the new value
+	String updateSql() {
+		return "UPDATE " + table + " SET " + column + " = " + column + " + ?, version = version + 1 WHERE " + idColumn
+				+ " = ?";
+	}
+}
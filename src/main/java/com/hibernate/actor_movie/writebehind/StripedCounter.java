@@ -0,0 +1,80 @@
+package com.hibernate.actor_movie.writebehind;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// A lock-free sum of increments to one row. Adds go to a single base value until two threads collide on it; from
+// then on each thread adds to its own cell of a striped array, one cache line per cell, so a hot row does not
+// serialize its writers. Whole-number sums are kept as longs, fractional ones as the bits of a double; sum() is only
+// exact once no add is running, which WriteBehindBuffer guarantees before it reads it.
+final class StripedCounter {
+
+	static final int STRIPES = Integer.highestOneBit(Math.min(64, Runtime.getRuntime().availableProcessors()) * 2 - 1);
+	// longs per 64-byte cache line
+	static final int PAD = 8;
+
+	private final AtomicLong base = new AtomicLong();
+	private volatile AtomicLongArray cells;
+
+	void add(long delta) {
+		long value = base.get();
+		if (cells == null && base.compareAndSet(value, value + delta)) {
+			return;
+		}
+		cells().getAndAdd(stripe(), delta);
+	}
+
+	void add(double delta) {
+		long bits = base.get();
+		if (cells == null && base.compareAndSet(bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + delta))) {
+			return;
+		}
+		AtomicLongArray stripes = cells();
+		int stripe = stripe();
+		do {
+			bits = stripes.get(stripe);
+		} while (!stripes.compareAndSet(stripe, bits, Double.doubleToRawLongBits(Double.longBitsToDouble(bits) + delta)));
+	}
+
+	long sum() {
+		long sum = base.get();
+		AtomicLongArray stripes = cells;
+		if (stripes != null) {
+			for (int i = 0; i < STRIPES; i++) {
+				sum += stripes.get(i * PAD);
+			}
+		}
+		return sum;
+	}
+
+	double doubleSum() {
+		double sum = Double.longBitsToDouble(base.get());
+		AtomicLongArray stripes = cells;
+		if (stripes != null) {
+			for (int i = 0; i < STRIPES; i++) {
+				sum += Double.longBitsToDouble(stripes.get(i * PAD));
+			}
+		}
+		return sum;
+	}
+
+	// stripe(): the calling thread's cell, the same on every call
+	static int stripe() {
+		long mixed = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+		return ((int) (mixed >>> 40) & (STRIPES - 1)) * PAD;
+	}
+
+	private AtomicLongArray cells() {
+		AtomicLongArray stripes = cells;
+		if (stripes == null) {
+			synchronized (this) {
+				stripes = cells;
+				if (stripes == null) {
+					stripes = new AtomicLongArray(STRIPES * PAD);
+					cells = stripes;
+				}
+			}
+		}
+		return stripes;
+	}
+}
@@ -0,0 +1,479 @@
+package com.hibernate.actor_movie.writebehind;
+
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.persistence.Cache;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Session;
+
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.change.ChangeType;
+import com.hibernate.actor_movie.replica.ReplicaRouting;
+
+// Write-behind accumulator for high-frequency increments of movie collections and actor salaries, such as a
+// box-office feed. add calls only touch memory: increments to the same row are summed in a StripedCounter, and a
+// background thread writes the sums as one batch of UPDATEs (one per changed row, in one transaction) when
+// maxPendingRows rows have pending increments or flushInterval has passed, whichever comes first. Thousands of
+// increments to a hot row per second become one UPDATE per interval.
+// Increments are kept per flush period: a flush starts a new period, waits for the adds still running in the old
+// one, then writes it, so an increment is never split or lost between periods. A flush that fails keeps its sums,
+// which go out with the next one.
+// Durability: close() writes what is pending, and flushOnShutdown() does the same when the JVM exits normally. With a
+// journal directory, every increment is also appended to an IncrementJournal, replayed by the next buffer on that
+// directory after a crash.
+// Readers see an increment once the flush holding it commits. The flushed rows' versions are incremented (concurrent
+// read-modify-write updates retry, see OptimisticRetry), their cached entities evicted, the AggregateView updated and
+// the rows published to the ChangeStream.
+// Increments to rows that do not exist are dropped.
+public class WriteBehindBuffer implements AutoCloseable {
+
+	static final Logger LOG = Logger.getLogger("com.hibernate.actor_movie.writebehind");
+
+	private static final int BATCH_SIZE = 500;
+
+	private final EntityManagerFactory emf;
+	private final int maxPendingRows;
+	private final long flushIntervalNanos;
+	private final IncrementJournal journal;
+	private final Object flushLock = new Object();
+	private final Semaphore wake = new Semaphore(0);
+	private final Thread flusher;
+	private final LongAdder increments = new LongAdder();
+	private final AtomicLong rowsWritten = new AtomicLong();
+	private final AtomicLong flushes = new AtomicLong();
+	private volatile Period current;
+	private volatile boolean closed;
+	private Thread shutdownHook;
+
+	// maxPendingRows is the batch size that triggers an early flush; increments live only in memory until written
+	public WriteBehindBuffer(EntityManagerFactory emf, int maxPendingRows, long flushInterval, TimeUnit unit) {
+		this(emf, maxPendingRows, flushInterval, unit, null);
+	}
+
+	// journalDirectory, when not null, holds the IncrementJournal; increments a crashed buffer left there are replayed
+	// into this one first. One buffer at a time per directory.
+	public WriteBehindBuffer(EntityManagerFactory emf, int maxPendingRows, long flushInterval, TimeUnit unit,
+			Path journalDirectory) {
+		if (maxPendingRows <= 0 || flushInterval <= 0) {
+			throw new IllegalArgumentException("need maxPendingRows > 0 and flushInterval > 0");
+		}
+		this.emf = emf;
+		this.maxPendingRows = maxPendingRows;
+		this.flushIntervalNanos = unit.toNanos(flushInterval);
+		this.journal = journalDirectory == null ? null : new IncrementJournal(journalDirectory);
+		this.current = journal == null ? new Period(1, null) : recover();
+		this.flusher = new Thread(this::flushPeriodically, "write-behind-flusher");
+		flusher.setDaemon(true);
+		flusher.start();
+	}
+
+	// addToMovieCollection(): the movie's collection will grow by increment at the next flush
+	public void addToMovieCollection(int movieId, int increment) {
+		add(IncrementTarget.MOVIE_COLLECTION, movieId, increment, true);
+	}
+
+	// raiseActorSalary(): the actor's salary will grow by increment at the next flush
+	public void raiseActorSalary(int actorId, double increment) {
+		add(IncrementTarget.ACTOR_SALARY, actorId, Double.doubleToRawLongBits(increment), true);
+	}
+
+	// flushOnShutdown(): writes the pending increments when the JVM shuts down normally, as close() would
+	public synchronized WriteBehindBuffer flushOnShutdown() {
+		if (shutdownHook == null && !closed) {
+			shutdownHook = new Thread(this::close, "write-behind-shutdown");
+			Runtime.getRuntime().addShutdownHook(shutdownHook);
+		}
+		return this;
+	}
+
+	// flush(): writes the increments added so far and returns once they are committed; a failure is thrown after
+	// the increments have been kept for the next flush
+	public void flush() {
+		synchronized (flushLock) {
+			Period period = current;
+			current = new Period(period.sequence + 1, journal == null ? null : journal.open(period.sequence + 1));
+			period.awaitAdds();
+			if (period.journal != null) {
+				period.journal.close();
+			}
+			try {
+				write(period);
+			} catch (RuntimeException e) {
+				if (!checkpointed(period)) {
+					carryForward(period);
+					throw e;
+				}
+			}
+		}
+	}
+
+	// getIncrements(): increments accepted since the buffer was created
+	public long getIncrements() {
+		return increments.sum();
+	}
+
+	// getRowsWritten(): UPDATEs committed by the flushes, one per row per flush
+	public long getRowsWritten() {
+		return rowsWritten.get();
+	}
+
+	// getFlushes(): flushes that committed, not counting those with nothing to write
+	public long getFlushes() {
+		return flushes.get();
+	}
+
+	// close(): stops the flusher and writes what is still pending; adding afterwards fails
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			if (shutdownHook != null && Thread.currentThread() != shutdownHook) {
+				try {
+					Runtime.getRuntime().removeShutdownHook(shutdownHook);
+				} catch (IllegalStateException alreadyShuttingDown) {
+					// the hook is running or about to; this close() does the work either way
+				}
+			}
+		}
+		wake.release();
+		try {
+			flusher.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+		synchronized (flushLock) {
+			if (current.journal != null) {
+				current.journal.close();
+				journal.deleteUpTo(current.sequence);
+			}
+		}
+	}
+
+	// abandon(): stops the flusher and drops the pending increments, as a crash of the process would
+	void abandon() {
+		closed = true;
+		wake.release();
+		if (current.journal != null) {
+			current.journal.close();
+		}
+	}
+
+	// add(): increment is a long, or the bits of a double for fractional targets; incoming is false for increments
+	// already in the journal (replayed or carried forward)
+	private void add(IncrementTarget target, int id, long increment, boolean incoming) {
+		while (true) {
+			Period period = current;
+			int stripe = period.enter();
+			try {
+				if (period != current) {
+					continue;
+				}
+				if (closed && incoming) {
+					throw new IllegalStateException("write-behind buffer is closed");
+				}
+				if (incoming && period.journal != null) {
+					period.journal.append(target, id, increment);
+				}
+				Map<Integer, StripedCounter> rows = period.rows.get(target);
+				StripedCounter counter = rows.get(id);
+				if (counter == null) {
+					StripedCounter added = new StripedCounter();
+					counter = rows.putIfAbsent(id, added);
+					if (counter == null) {
+						counter = added;
+						if (period.size() >= maxPendingRows) {
+							wake.release();
+						}
+					}
+				}
+				if (target.isFractional()) {
+					counter.add(Double.longBitsToDouble(increment));
+				} else {
+					counter.add(increment);
+				}
+				if (incoming) {
+					increments.increment();
+				}
+				return;
+			} finally {
+				period.exit(stripe);
+			}
+		}
+	}
+
+	private void flushPeriodically() {
+		while (!closed) {
+			try {
+				wake.tryAcquire(flushIntervalNanos, TimeUnit.NANOSECONDS);
+				wake.drainPermits();
+			} catch (InterruptedException e) {
+				return;
+			}
+			if (closed) {
+				// close() writes the rest itself
+				return;
+			}
+			try {
+				flush();
+			} catch (RuntimeException e) {
+				LOG.log(Level.WARNING, "write-behind flush failed, retrying with the next one", e);
+			}
+		}
+	}
+
+	// write(): one transaction of batched UPDATEs, with the journal checkpoint; then the caches and the view
+	private void write(Period period) {
+		Map<IncrementTarget, Map<Integer, Number>> sums = period.sums();
+		int rows = 0;
+		for (Map<Integer, Number> targetSums : sums.values()) {
+			rows += targetSums.size();
+		}
+		if (rows == 0) {
+			// nothing to write; a segment can only hold increments that cancel out
+			if (journal != null) {
+				journal.deleteUpTo(period.sequence);
+			}
+			return;
+		}
+		EntityManager em = emf.createEntityManager();
+		AggregateView.AffectedMovies movies;
+		AggregateView.AffectedActors actors;
+		try {
+			em.getTransaction().begin();
+			movies = sums.get(IncrementTarget.MOVIE_COLLECTION).isEmpty() ? null
+					: AggregateView.incrementedMovies(em, sums.get(IncrementTarget.MOVIE_COLLECTION));
+			Map<Integer, Number> salaries = sums.get(IncrementTarget.ACTOR_SALARY);
+			actors = salaries.isEmpty() ? null
+					: AggregateView.affectedActors(em, "id IN (" + String.join(", ", idList(salaries)) + ")");
+			em.unwrap(Session.class).doWork(connection -> {
+				for (Map.Entry<IncrementTarget, Map<Integer, Number>> target : sums.entrySet()) {
+					try (PreparedStatement update = connection.prepareStatement(target.getKey().updateSql())) {
+						int batched = 0;
+						for (Map.Entry<Integer, Number> row : target.getValue().entrySet()) {
+							if (target.getKey().isFractional()) {
+								update.setDouble(1, row.getValue().doubleValue());
+							} else {
+								update.setLong(1, row.getValue().longValue());
+							}
+							update.setInt(2, row.getKey());
+							update.addBatch();
+							if (++batched % BATCH_SIZE == 0) {
+								update.executeBatch();
+							}
+						}
+						if (batched % BATCH_SIZE != 0) {
+							update.executeBatch();
+						}
+					}
+				}
+				if (journal != null) {
+					journal.writeCheckpoint(connection, period.sequence);
+				}
+			});
+			em.getTransaction().commit();
+			ReplicaRouting.wrote();
+		} catch (RuntimeException e) {
+			if (em.getTransaction().isActive()) {
+				em.getTransaction().rollback();
+			}
+			throw e;
+		} finally {
+			em.close();
+		}
+		written(period, sums, rows);
+		AggregateView.collectionsIncremented(movies, 1);
+		AggregateView.salariesRaised(actors, sums.get(IncrementTarget.ACTOR_SALARY));
+		published(sums);
+	}
+
+	// published(): the flushed rows, as updates on the ChangeStream
+	private void published(Map<IncrementTarget, Map<Integer, Number>> sums) {
+		for (Map.Entry<IncrementTarget, Map<Integer, Number>> target : sums.entrySet()) {
+			ChangeStream.bulk(emf, target.getKey().getEntity(), ChangeType.UPDATE).add(target.getValue().keySet()).committed();
+		}
+	}
+
+	// written(): the bookkeeping after a period's increments have committed
+	private void written(Period period, Map<IncrementTarget, Map<Integer, Number>> sums, int rows) {
+		// the cached finder queries hold ids only and none filters on a collection or salary, so evicting the rows'
+		// entities is enough
+		Cache cache = emf.getCache();
+		for (Map.Entry<IncrementTarget, Map<Integer, Number>> target : sums.entrySet()) {
+			for (Integer id : target.getValue().keySet()) {
+				cache.evict(target.getKey().getEntity(), id);
+			}
+		}
+		if (journal != null) {
+			journal.deleteUpTo(period.sequence);
+		}
+		if (rows > 0) {
+			rowsWritten.addAndGet(rows);
+			flushes.incrementAndGet();
+		}
+	}
+
+	// checkpointed(): whether a flush that failed committed after all (the failure came after the commit); only the
+	// journal's checkpoint can tell
+	private boolean checkpointed(Period period) {
+		if (journal == null) {
+			return false;
+		}
+		try {
+			long[] checkpoint = new long[1];
+			EntityManager em = emf.createEntityManager();
+			try {
+				em.unwrap(Session.class).doWork(connection -> checkpoint[0] = journal.readCheckpoint(connection));
+			} finally {
+				em.close();
+			}
+			if (checkpoint[0] >= period.sequence) {
+				Map<IncrementTarget, Map<Integer, Number>> sums = period.sums();
+				written(period, sums, 0);
+				AggregateView.rowsChanged(emf);
+				published(sums);
+				return true;
+			}
+		} catch (RuntimeException e) {
+			LOG.log(Level.FINE, "could not read the write-behind checkpoint", e);
+		}
+		return false;
+	}
+
+	// carryForward(): adds a period that could not be written to the current one; its journal segment stays until a
+	// later checkpoint covers it
+	private void carryForward(Period period) {
+		for (Map.Entry<IncrementTarget, Map<Integer, Number>> target : period.sums().entrySet()) {
+			for (Map.Entry<Integer, Number> row : target.getValue().entrySet()) {
+				add(target.getKey(), row.getKey(), bits(target.getKey(), row.getValue()), false);
+			}
+		}
+	}
+
+	// recover(): the first period, holding the increments of the journal's unwritten segments
+	private Period recover() {
+		long[] checkpoint = new long[1];
+		EntityManager em = emf.createEntityManager();
+		try {
+			em.getTransaction().begin();
+			em.unwrap(Session.class).doWork(connection -> checkpoint[0] = journal.readCheckpoint(connection));
+			em.getTransaction().commit();
+		} finally {
+			em.close();
+		}
+		Map<IncrementTarget, Map<Integer, Number>> replayed = new EnumMap<>(IncrementTarget.class);
+		for (IncrementTarget target : IncrementTarget.values()) {
+			replayed.put(target, new HashMap<>());
+		}
+		long last = journal.replay(checkpoint[0], (target, id, increment) -> replayed.get(target).merge(id,
+				target.isFractional() ? (Number) Double.longBitsToDouble(increment) : (Number) increment,
+				(a, b) -> target.isFractional() ? (Number) (a.doubleValue() + b.doubleValue())
+						: (Number) (a.longValue() + b.longValue())));
+		current = new Period(last + 1, journal.open(last + 1));
+		for (Map.Entry<IncrementTarget, Map<Integer, Number>> target : replayed.entrySet()) {
+			for (Map.Entry<Integer, Number> row : target.getValue().entrySet()) {
+				add(target.getKey(), row.getKey(), bits(target.getKey(), row.getValue()), false);
+			}
+		}
+		return current;
+	}
+
+	private static long bits(IncrementTarget target, Number value) {
+		return target.isFractional() ? Double.doubleToRawLongBits(value.doubleValue()) : value.longValue();
+	}
+
+	private static Iterable<String> idList(Map<Integer, Number> rows) {
+		return () -> rows.keySet().stream().map(String::valueOf).iterator();
+	}
+
+	// The increments of one flush period, with the number of adds still running in it per stripe (a thread always
+	// enters and exits on the same stripe, so no stripe goes negative and a zero total means none is running)
+	private static final class Period {
+
+		final long sequence;
+		final IncrementJournal.Segment journal;
+		final Map<IncrementTarget, Map<Integer, StripedCounter>> rows = new EnumMap<>(IncrementTarget.class);
+		final AtomicLongArray running = new AtomicLongArray(StripedCounter.STRIPES * StripedCounter.PAD);
+
+		Period(long sequence, IncrementJournal.Segment journal) {
+			this.sequence = sequence;
+			this.journal = journal;
+			for (IncrementTarget target : IncrementTarget.values()) {
+				rows.put(target, new ConcurrentHashMap<>());
+			}
+		}
+
+		int enter() {
+			int stripe = StripedCounter.stripe();
+			running.incrementAndGet(stripe);
+			return stripe;
+		}
+
+		void exit(int stripe) {
+			running.decrementAndGet(stripe);
+		}
+
+		int size() {
+			int size = 0;
+			for (Map<Integer, StripedCounter> targetRows : rows.values()) {
+				size += targetRows.size();
+			}
+			return size;
+		}
+
+		// awaitAdds(): waits for the adds that entered before this period was replaced
+		void awaitAdds() {
+			while (true) {
+				long running = 0;
+				for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+					running += this.running.get(stripe * StripedCounter.PAD);
+				}
+				if (running == 0) {
+					return;
+				}
+				Thread.yield();
+			}
+		}
+
+		// sums(): the non-zero sum of every row; only once awaitAdds() has returned
+		Map<IncrementTarget, Map<Integer, Number>> sums() {
+			Map<IncrementTarget, Map<Integer, Number>> sums = new EnumMap<>(IncrementTarget.class);
+			for (Map.Entry<IncrementTarget, Map<Integer, StripedCounter>> target : rows.entrySet()) {
+				Map<Integer, Number> targetSums = new HashMap<>();
+				for (Map.Entry<Integer, StripedCounter> row : target.getValue().entrySet()) {
+					if (target.getKey().isFractional()) {
+						double sum = row.getValue().doubleSum();
+						if (sum != 0) {
+							targetSums.put(row.getKey(), sum);
+						}
+					} else {
+						long sum = row.getValue().sum();
+						if (sum != 0) {
+							targetSums.put(row.getKey(), sum);
+						}
+					}
+				}
+				sums.put(target.getKey(), targetSums);
+			}
+			return sums;
+		}
+	}
+}
@@ -0,0 +1,152 @@
+package com.hibernate.actor_movie.aggregate;
+
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * The GROUP BY finders, and the in-memory view matching them after every kind of DAO write.
+ */
+public class AggregateViewTest
+    extends TestCase
+{
+    public void testFindersGroupPerDimension()
+    {
+        TestDatabase.useH2( "aggregates" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            MovieDao movieDao = new MovieDao();
+            actorDao.addActor( actor( 1, "Film", "Indian", 100 ) );
+            actorDao.addActor( actor( 2, "Film", null, 300 ) );
+            actorDao.addActor( actor( 3, "Stage", "Indian", 50 ) );
+            movieDao.addMovie( movie( 10, "Drama", "Hit", 100 ), Arrays.asList( 1 ) );
+            movieDao.addMovie( movie( 11, "Drama", "Flop", 20 ), Arrays.asList( 2 ) );
+            movieDao.addMovie( movie( 12, "Action", "Hit", 400 ), Arrays.asList( 3 ) );
+
+            List<SalaryStats> industries = actorDao.findSalaryStats( ActorDimension.INDUSTRY );
+            assertEquals( 2, industries.size() );
+            assertEquals( "Film", industries.get( 0 ).getGroup() );
+            assertEquals( 2, industries.get( 0 ).getActors() );
+            assertEquals( 200.0, industries.get( 0 ).getAverage() );
+            assertEquals( 300.0, industries.get( 0 ).getMax() );
+
+            List<SalaryStats> nationalities = actorDao.findSalaryStats( ActorDimension.NATIONALITY );
+            assertNull( nationalities.get( 0 ).getGroup() );
+            assertEquals( 150.0, nationalities.get( 1 ).getTotal() );
+
+            List<CollectionTotal> genres = movieDao.findCollectionTotals( MovieDimension.GENRE );
+            assertEquals( "Action", genres.get( 0 ).getGroup() );
+            assertEquals( 400, genres.get( 0 ).getCollection() );
+            assertEquals( 2, genres.get( 1 ).getMovies() );
+            assertEquals( 120, genres.get( 1 ).getCollection() );
+            assertNull( AggregateView.current( emf ) );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+    }
+
+    public void testViewFollowsDaoWrites()
+    {
+        TestDatabase.useH2( "aggregateView", AggregateView.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            MovieDao movieDao = new MovieDao();
+            AggregateView view = AggregateView.current( emf );
+            assertTrue( view.salaryStats( ActorDimension.INDUSTRY ).isEmpty() );
+
+            actorDao.addActor( actor( 1, "Film", "Indian", 100 ) );
+            actorDao.addActor( actor( 2, "Film", null, 300 ) );
+            actorDao.addActor( actor( 3, "Stage", "Indian", 50 ) );
+            movieDao.addMovie( movie( 10, "Drama", "Hit", 100 ), Arrays.asList( 1, 2 ) );
+            movieDao.addMovie( movie( 11, "Drama", "Flop", 20 ), Arrays.asList( 3 ) );
+            movieDao.addMovie( movie( 12, "Action", "Hit", 400 ), Arrays.asList( 3 ) );
+            assertMatchesDatabase( view, actorDao, movieDao );
+
+            // the top earner of Film earns less: the group maximum is read again
+            actorDao.updateAllActorSalaryByMovieId( 10, 80 );
+            assertEquals( 80.0, view.salaryStats( ActorDimension.INDUSTRY ).get( 0 ).getMax() );
+            assertMatchesDatabase( view, actorDao, movieDao );
+
+            actorDao.updateActorNationalityById( 2, "British" );
+            movieDao.updateMovieCollectionByVerdict( "Hit", 5 );
+            assertMatchesDatabase( view, actorDao, movieDao );
+
+            // an entity update moves the actor between groups
+            EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.find( Actor.class, 3 ).setIndustry( "Film" );
+            em.getTransaction().commit();
+            em.close();
+            assertEquals( 1, view.salaryStats( ActorDimension.INDUSTRY ).size() );
+            assertMatchesDatabase( view, actorDao, movieDao );
+
+            // a rolled back insert never reaches the view
+            em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.persist( movie( 13, "Horror", "Flop", 1 ) );
+            em.flush();
+            em.getTransaction().rollback();
+            em.close();
+            assertEquals( 2, view.collectionTotals( MovieDimension.GENRE ).size() );
+
+            movieDao.deleteAllMoviesWithCollectionLessThan( 50 );
+            actorDao.deleteAllActorsByIndustry( "Film" );
+            assertTrue( view.salaryStats( ActorDimension.NATIONALITY ).isEmpty() );
+            assertMatchesDatabase( view, actorDao, movieDao );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+        assertNull( AggregateView.current( emf ) );
+    }
+
+    private static void assertMatchesDatabase( AggregateView view, ActorDao actorDao, MovieDao movieDao )
+    {
+        for ( ActorDimension by : ActorDimension.values() )
+        {
+            assertEquals( by.name(), actorDao.findSalaryStats( by ).toString(), view.salaryStats( by ).toString() );
+        }
+        for ( MovieDimension by : MovieDimension.values() )
+        {
+            assertEquals( by.name(), movieDao.findCollectionTotals( by ).toString(),
+                view.collectionTotals( by ).toString() );
+        }
+    }
+
+    private static Actor actor( int id, String industry, String nationality, double salary )
+    {
+        Actor actor = TestCatalogue.actor( id, industry );
+        actor.setNationality( nationality );
+        actor.setSalary( salary );
+        return actor;
+    }
+
+    private static Movie movie( int id, String genre, String verdict, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id );
+        movie.setMovieDirector( "Director " + genre );
+        movie.setGenre( genre );
+        movie.setVerdict( verdict );
+        movie.setCollection( collection );
+        return movie;
+    }
+}
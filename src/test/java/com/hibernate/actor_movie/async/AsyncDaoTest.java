@@ -0,0 +1,192 @@
+package com.hibernate.actor_movie.async;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * The async DAOs return what the blocking ones do, never run more calls at
+ * once than the limit, and drop calls that are cancelled or time out.
+ */
+public class AsyncDaoTest
+    extends TestCase
+{
+    private DaoExecutor executor;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "async" );
+        executor = DaoExecutor.forPool( EntityManagerFactoryProvider.getEntityManagerFactory(), 0, TimeUnit.SECONDS );
+    }
+
+    protected void tearDown()
+    {
+        executor.close();
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testLimitIsThePoolSize()
+    {
+        // TestDatabase sizes the pool at 4
+        assertEquals( 4, executor.getMaxConcurrent() );
+    }
+
+    public void testFanOutReturnsActorsInOrder() throws Exception
+    {
+        ActorDao actorDao = new ActorDao();
+        for ( int id = 1; id <= 20; id++ )
+        {
+            Actor actor = new Actor();
+            actor.setId( id );
+            actor.setName( "Actor " + id );
+            actor.setIndustry( "Film" );
+            actorDao.addActor( actor );
+        }
+        AsyncActorDao async = new AsyncActorDao( actorDao, executor );
+
+        List<Actor> actors = async.findEachActorById( Arrays.asList( 7, 99, 3 ) ).get( 10, TimeUnit.SECONDS );
+
+        assertEquals( 7, actors.get( 0 ).getId() );
+        assertNull( actors.get( 1 ) );
+        assertEquals( 3, actors.get( 2 ).getId() );
+        assertEquals( 20, async.findActorByIndustry( "Film" ).get( 10, TimeUnit.SECONDS ).size() );
+    }
+
+    public void testNeverRunsMoreThanTheLimit() throws Exception
+    {
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for ( int i = 0; i < 20; i++ )
+        {
+            calls.add( executor.submit( () -> {
+                peak.accumulateAndGet( running.incrementAndGet(), Math::max );
+                sleep( 20 );
+                return running.decrementAndGet();
+            } ) );
+        }
+        AsyncSupport.allOf( calls ).get( 10, TimeUnit.SECONDS );
+
+        assertEquals( 4, peak.get() );
+    }
+
+    public void testTimeoutFailsTheCallAndFreesItsPermit() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        CompletableFuture<Object> slow = executor.submit( () -> {
+            await( release );
+            return null;
+        }, 50, TimeUnit.MILLISECONDS );
+        try
+        {
+            slow.get( 10, TimeUnit.SECONDS );
+            fail();
+        }
+        catch ( ExecutionException expected )
+        {
+            assertTrue( expected.getCause() instanceof TimeoutException );
+        }
+
+        // the timed out call was interrupted, so all permits are free again
+        List<CompletableFuture<Integer>> calls = new ArrayList<>();
+        for ( int i = 0; i < 4; i++ )
+        {
+            calls.add( executor.submit( () -> 1 ) );
+        }
+        assertEquals( 4, AsyncSupport.allOf( calls ).get( 10, TimeUnit.SECONDS ).size() );
+    }
+
+    public void testCancelledCallNeverRuns() throws Exception
+    {
+        CountDownLatch release = new CountDownLatch( 1 );
+        List<CompletableFuture<Object>> blockers = new ArrayList<>();
+        for ( int i = 0; i < 4; i++ )
+        {
+            blockers.add( executor.submit( () -> {
+                await( release );
+                return null;
+            } ) );
+        }
+        AtomicBoolean ran = new AtomicBoolean();
+        CompletableFuture<Object> queued = executor.submit( () -> {
+            ran.set( true );
+            return null;
+        } );
+
+        assertTrue( queued.cancel( true ) );
+        release.countDown();
+        AsyncSupport.allOf( blockers ).get( 10, TimeUnit.SECONDS );
+        sleep( 50 );
+
+        assertFalse( ran.get() );
+        try
+        {
+            queued.join();
+            fail();
+        }
+        catch ( CancellationException expected )
+        {
+        }
+    }
+
+    public void testFailureCancelsTheRestOfAFanOut() throws Exception
+    {
+        CompletableFuture<Integer> failing = executor.submit( () -> {
+            throw new IllegalStateException( "boom" );
+        } );
+        CountDownLatch release = new CountDownLatch( 1 );
+        CompletableFuture<Integer> slow = executor.submit( () -> {
+            await( release );
+            return 1;
+        } );
+        try
+        {
+            AsyncSupport.allOf( Arrays.asList( failing, slow ) ).get( 10, TimeUnit.SECONDS );
+            fail();
+        }
+        catch ( ExecutionException expected )
+        {
+            assertEquals( "boom", expected.getCause().getMessage() );
+        }
+        assertTrue( slow.isCancelled() );
+    }
+
+    private static void sleep( long millis )
+    {
+        try
+        {
+            Thread.sleep( millis );
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await( CountDownLatch latch )
+    {
+        try
+        {
+            latch.await();
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.Page;
+
+/**
+ * Every public ActorDao operation against the seeded catalogue.
+ * Throughput and sampled latency (p50/p90/p99/max) are reported per
+ * operation; run with -prof gc (as the benchmark profile does) for the
+ * allocation rate.
+ */
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class ActorDaoBenchmark
+{
+    /**
+     * Rows for the delete benchmarks: ten actors of their own industry, all
+     * linked to a movie of their own, inserted before every invocation.
+     */
+    @State( Scope.Thread )
+    public static class DoomedActors
+    {
+        String industry;
+        String movieName;
+
+        @Setup( Level.Invocation )
+        public void insert( BenchmarkCatalogue catalogue )
+        {
+            Movie movie = catalogue.newMovie( 1 );
+            industry = "Doomed " + movie.getMovieId();
+            movieName = movie.getMovieName();
+            List<Integer> ids = new java.util.ArrayList<>();
+            for ( int i = 0; i < 10; i++ )
+            {
+                Actor actor = catalogue.newActor( industry );
+                catalogue.actorDao.addActor( actor );
+                ids.add( actor.getId() );
+            }
+            catalogue.movieDao.addMovie( movie, ids );
+        }
+    }
+
+    @Benchmark
+    public void addActor( BenchmarkCatalogue catalogue )
+    {
+        catalogue.actorDao.addActor( catalogue.newActor( "Added" ) );
+    }
+
+    @Benchmark
+    public void addMovie( BenchmarkCatalogue catalogue )
+    {
+        catalogue.actorDao.addMovie( catalogue.newMovie( 500 ) );
+    }
+
+    @Benchmark
+    public Actor findActorById( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorById( catalogue.randomActorId() );
+    }
+
+    @Benchmark
+    public Actor findActorByIdWithMovies( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorById( catalogue.randomActorId(), Actor.WITH_MOVIES );
+    }
+
+    @Benchmark
+    public List<Actor> findActorsByIds( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorsByIds( catalogue.randomActorIds( 100 ) );
+    }
+
+    @Benchmark
+    public List<Actor> findActorsByIdsWithMovies( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorsByIds( catalogue.randomActorIds( 100 ), Actor.WITH_MOVIES );
+    }
+
+    @Benchmark
+    @Warmup( iterations = 1 )
+    @Measurement( iterations = 2 )
+    public List<Actor> findAllActors( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findAllActors();
+    }
+
+    @Benchmark
+    public List<Actor> findActorByName( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorByName( BenchmarkCatalogue.actorName( catalogue.randomActorId() ) );
+    }
+
+    @Benchmark
+    public List<Actor> findActorByIndustry( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorByIndustry( BenchmarkCatalogue.industry( catalogue.randomActorId() ) );
+    }
+
+    @Benchmark
+    public List<Actor> findActorByIndustryWithMovies( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findActorByIndustry( BenchmarkCatalogue.industry( catalogue.randomActorId() ),
+            Actor.WITH_MOVIES );
+    }
+
+    @Benchmark
+    public long forEachActorByIndustry( BenchmarkCatalogue catalogue, Blackhole blackhole )
+    {
+        return catalogue.actorDao.forEachActorByIndustry( BenchmarkCatalogue.industry( catalogue.randomActorId() ), 500,
+            blackhole::consume );
+    }
+
+    // A page starting at a random depth: keyset pages should cost the same wherever they start
+    @Benchmark
+    public Page<Actor> findActorPageByIndustry( BenchmarkCatalogue catalogue )
+    {
+        int after = catalogue.randomActorId();
+        return catalogue.actorDao.findActorPageByIndustry( BenchmarkCatalogue.industry( after ), Integer.toString( after ),
+            50 );
+    }
+
+    @Benchmark
+    public List<Actor> findActorBetweenAge( BenchmarkCatalogue catalogue )
+    {
+        int age = BenchmarkCatalogue.age( catalogue.randomActorId() );
+        return catalogue.actorDao.findActorBetweenAge( age, age );
+    }
+
+    @Benchmark
+    public long forEachActorBetweenAge( BenchmarkCatalogue catalogue, Blackhole blackhole )
+    {
+        int age = BenchmarkCatalogue.age( catalogue.randomActorId() );
+        return catalogue.actorDao.forEachActorBetweenAge( age, age, 500, blackhole::consume );
+    }
+
+    @Benchmark
+    public List<Actor> findAllActorsByMovieName( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findAllActorsByMovieName( BenchmarkCatalogue.movieName( catalogue.randomMovieId() ) );
+    }
+
+    @Benchmark
+    public void updateAllActorSalaryByMovieId( BenchmarkCatalogue catalogue )
+    {
+        catalogue.actorDao.updateAllActorSalaryByMovieId( catalogue.randomMovieId(),
+            ThreadLocalRandom.current().nextInt( 1000 ) );
+    }
+
+    @Benchmark
+    public void updateActorNationalityById( BenchmarkCatalogue catalogue )
+    {
+        catalogue.actorDao.updateActorNationalityById( catalogue.randomActorId(), "Nationality " + System.nanoTime() % 30 );
+    }
+
+    @Benchmark
+    public void deleteAllActorsByIndustry( BenchmarkCatalogue catalogue, DoomedActors doomed )
+    {
+        catalogue.actorDao.deleteAllActorsByIndustry( doomed.industry );
+    }
+
+    @Benchmark
+    public void deleteAllActorsByMovieName( BenchmarkCatalogue catalogue, DoomedActors doomed )
+    {
+        catalogue.actorDao.deleteAllActorsByMovieName( doomed.movieName );
+    }
+}
@@ -0,0 +1,70 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.aggregate.CollectionTotal;
+import com.hibernate.actor_movie.aggregate.MovieDimension;
+import com.hibernate.actor_movie.aggregate.SalaryStats;
+
+/**
+ * Dashboard aggregates of the seeded catalogue: the GROUP BY finders, which
+ * read every row, next to the same figures served by the in-memory view.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class AggregateBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class View
+    {
+        AggregateView view;
+
+        @Setup( Level.Trial )
+        public void load( BenchmarkCatalogue catalogue )
+        {
+            view = AggregateView.load( catalogue.emf );
+        }
+    }
+
+    @Benchmark
+    public List<CollectionTotal> collectionTotalsByQuery( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findCollectionTotals( MovieDimension.DIRECTOR );
+    }
+
+    @Benchmark
+    public List<CollectionTotal> collectionTotalsFromView( View view )
+    {
+        return view.view.collectionTotals( MovieDimension.DIRECTOR );
+    }
+
+    @Benchmark
+    public List<SalaryStats> salaryStatsByQuery( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findSalaryStats( ActorDimension.INDUSTRY );
+    }
+
+    @Benchmark
+    public List<SalaryStats> salaryStatsFromView( View view )
+    {
+        return view.view.salaryStats( ActorDimension.INDUSTRY );
+    }
+}
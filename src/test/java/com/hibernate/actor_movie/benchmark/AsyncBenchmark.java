@@ -0,0 +1,78 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.async.AsyncActorDao;
+import com.hibernate.actor_movie.async.DaoExecutor;
+
+/**
+ * Loading 16 actors with their movies one after the other, and fanned out
+ * through {@link AsyncActorDao} with 1 to 8 calls in flight. The catalogue's
+ * pool has 10 connections, so every concurrency level fits in it.
+ */
+@BenchmarkMode( Mode.SampleTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class AsyncBenchmark
+{
+    private static final int FAN_OUT = 16;
+
+    @State( Scope.Benchmark )
+    public static class Async
+    {
+        @Param( { "1", "2", "4", "8" } )
+        public int concurrency;
+
+        public DaoExecutor executor;
+        public AsyncActorDao actorDao;
+
+        @Setup( Level.Trial )
+        public void open( BenchmarkCatalogue catalogue )
+        {
+            executor = new DaoExecutor( concurrency, 0, TimeUnit.SECONDS );
+            actorDao = new AsyncActorDao( catalogue.actorDao, executor );
+        }
+
+        @TearDown( Level.Trial )
+        public void close()
+        {
+            executor.close();
+        }
+    }
+
+    @Benchmark
+    public List<Actor> sequential( BenchmarkCatalogue catalogue )
+    {
+        List<Actor> actors = new ArrayList<>();
+        for ( Integer id : catalogue.randomActorIds( FAN_OUT ) )
+        {
+            actors.add( catalogue.actorDao.findActorById( id, Actor.WITH_MOVIES ) );
+        }
+        return actors;
+    }
+
+    @Benchmark
+    public List<Actor> fanOut( BenchmarkCatalogue catalogue, Async async )
+    {
+        return async.actorDao.findEachActorById( catalogue.randomActorIds( FAN_OUT ), Actor.WITH_MOVIES ).join();
+    }
+}
@@ -0,0 +1,263 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestDatabase;
+import com.hibernate.actor_movie.importer.CatalogueImporter;
+import com.hibernate.actor_movie.importer.ImportResult;
+
+/**
+ * An embedded H2 database (MySQL mode) seeded once per trial with a
+ * deterministic catalogue: {@code actors} actors, one movie per ten actors
+ * and {@code moviesPerActor} Actor_Movie links per actor.
+ */
+@State( Scope.Benchmark )
+public class BenchmarkCatalogue
+{
+    public static final int INDUSTRIES = 20;
+    public static final int GENRES = 10;
+    public static final int AGES = 60;
+    public static final String[] VERDICTS = { "Blockbuster", "Hit", "Average", "Flop" };
+
+    @Param( { "10000" } )
+    public int actors;
+
+    @Param( { "3" } )
+    public int moviesPerActor;
+
+    public int movies;
+    public int directors;
+    public EntityManagerFactory emf;
+    public ActorDao actorDao;
+    public MovieDao movieDao;
+
+    private final AtomicInteger nextActorId = new AtomicInteger();
+    private final AtomicInteger nextMovieId = new AtomicInteger();
+
+    @Setup( Level.Trial )
+    public void seed() throws IOException
+    {
+        movies = Math.max( moviesPerActor, actors / 10 );
+        directors = Math.max( 1, movies / 20 );
+        nextActorId.set( actors );
+        nextMovieId.set( movies );
+
+        // measure the DAOs, not the test-time index check
+        TestDatabase.useH2( "benchmark",
+            "hibernate.hikari.maximumPoolSize", "10",
+            "actor_movie.schema.index_check", "off" );
+        emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+
+        CatalogueImporter importer = new CatalogueImporter( emf, 50, 10_000 );
+        Path dir = Files.createTempDirectory( "benchmark-catalogue" );
+        try
+        {
+            report( importer.importActors( writeActors( dir.resolve( "actors.csv" ) ) ) );
+            report( importer.importMovies( writeMovies( dir.resolve( "movies.csv" ) ) ) );
+            report( importer.importLinks( writeLinks( dir.resolve( "links.csv" ) ) ) );
+        }
+        finally
+        {
+            for ( String file : new String[] { "actors.csv", "movies.csv", "links.csv" } )
+            {
+                Files.deleteIfExists( dir.resolve( file ) );
+            }
+            Files.delete( dir );
+        }
+
+        actorDao = new ActorDao( emf );
+        movieDao = new MovieDao( emf );
+
+    }
+
+    @TearDown( Level.Trial )
+    public void close()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    // Values of the seeded catalogue, derived from the id so benchmarks can pick matching arguments
+
+    public static String actorName( int id )
+    {
+        return "Actor " + id;
+    }
+
+    public static String industry( int id )
+    {
+        return "Industry " + id % INDUSTRIES;
+    }
+
+    public static int age( int id )
+    {
+        return 18 + id % AGES;
+    }
+
+    public static String movieName( int id )
+    {
+        return "Movie " + id;
+    }
+
+    public static String genre( int id )
+    {
+        return "Genre " + id % GENRES;
+    }
+
+    public String director( int id )
+    {
+        return "Director " + id % directors;
+    }
+
+    public static String verdict( int id )
+    {
+        return VERDICTS[id % VERDICTS.length];
+    }
+
+    public static int collection( int id )
+    {
+        return id * 7919 % 1000;
+    }
+
+    public int randomActorId()
+    {
+        return ThreadLocalRandom.current().nextInt( actors ) + 1;
+    }
+
+    public int randomMovieId()
+    {
+        return ThreadLocalRandom.current().nextInt( movies ) + 1;
+    }
+
+    // newActor(): an actor with an id that is not in the seeded catalogue
+    public Actor newActor( String industry )
+    {
+        int id = nextActorId.incrementAndGet();
+        Actor actor = new Actor();
+        actor.setId( id );
+        actor.setName( actorName( id ) );
+        actor.setAge( age( id ) );
+        actor.setIndustry( industry );
+        actor.setSalary( 100 );
+        actor.setNationality( "Indian" );
+        return actor;
+    }
+
+    // newMovie(): a movie with an id that is not in the seeded catalogue
+    public Movie newMovie( int collection )
+    {
+        int id = nextMovieId.incrementAndGet();
+        Movie movie = new Movie();
+        movie.setMovieId( id );
+        movie.setMovieName( movieName( id ) );
+        movie.setMovieDirector( director( id ) );
+        movie.setGenre( genre( id ) );
+        movie.setVerdict( verdict( id ) );
+        movie.setCollection( collection );
+        return movie;
+    }
+
+    // reserveActorIds(): the first of count consecutive actor ids that are not in the seeded catalogue
+    public int reserveActorIds( int count )
+    {
+        return nextActorId.getAndAdd( count ) + 1;
+    }
+
+    // reserveMovieIds(): the first of count consecutive movie ids that are not in the seeded catalogue
+    public int reserveMovieIds( int count )
+    {
+        return nextMovieId.getAndAdd( count ) + 1;
+    }
+
+    public List<Integer> randomActorIds( int count )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            ids.add( randomActorId() );
+        }
+        return ids;
+    }
+
+    public List<Integer> randomMovieIds( int count )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( int i = 0; i < count; i++ )
+        {
+            ids.add( randomMovieId() );
+        }
+        return ids;
+    }
+
+    private Path writeActors( Path file ) throws IOException
+    {
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "id,name,age,industry,salary,nationality\n" );
+            for ( int id = 1; id <= actors; id++ )
+            {
+                out.write( id + "," + actorName( id ) + "," + age( id ) + "," + industry( id ) + "," + ( id % 500 ) * 1000
+                    + ",Nationality " + id % 30 + "\n" );
+            }
+        }
+        return file;
+    }
+
+    private Path writeMovies( Path file ) throws IOException
+    {
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "movieId,movieName,movieDirector,genre,verdict,collection\n" );
+            for ( int id = 1; id <= movies; id++ )
+            {
+                out.write( id + "," + movieName( id ) + "," + director( id ) + "," + genre( id ) + "," + verdict( id ) + ","
+                    + collection( id ) + "\n" );
+            }
+        }
+        return file;
+    }
+
+    // Each actor gets moviesPerActor distinct movies spread evenly over the catalogue
+    private Path writeLinks( Path file ) throws IOException
+    {
+        int step = Math.max( 1, movies / moviesPerActor );
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "actorId,movieId\n" );
+            for ( int id = 1; id <= actors; id++ )
+            {
+                for ( int k = 0; k < moviesPerActor; k++ )
+                {
+                    out.write( id + "," + ( ( id + k * step ) % movies + 1 ) + "\n" );
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void report( ImportResult result )
+    {
+        System.out.println( "Seeded " + result );
+    }
+}
@@ -0,0 +1,210 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.importer.CatalogueImporter;
+
+/**
+ * The bulk operations that select rows through Actor_Movie, timed once per
+ * iteration against a fan-out of {@code links} linked rows inserted on top of
+ * the seeded catalogue: one movie with {@code links} actors, or one actor
+ * with {@code links} movies. Each of them issues a fixed number of statements,
+ * so the time should grow with the rows touched and nothing else.
+ * <p>
+ * The 1M point takes minutes per operation to set up; narrow the range with
+ * e.g. {@code -Dbench.links=1000,10000}.
+ */
+@BenchmarkMode( Mode.SingleShotTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 1 )
+@Measurement( iterations = 3 )
+@Fork( value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" } )
+public class BulkOperationBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class FanOut
+    {
+        @Param( { "1000", "10000", "100000", "1000000" } )
+        public int links;
+    }
+
+    /** One new movie played by {@code links} new actors, inserted before every iteration. */
+    @State( Scope.Thread )
+    public static class Cast
+    {
+        int movieId;
+        String movieName;
+
+        @Setup( Level.Iteration )
+        public void insert( BenchmarkCatalogue catalogue, FanOut fanOut ) throws IOException
+        {
+            movieId = catalogue.reserveMovieIds( 1 );
+            movieName = BenchmarkCatalogue.movieName( movieId );
+            int firstActor = catalogue.reserveActorIds( fanOut.links );
+            Path dir = Files.createTempDirectory( "benchmark-cast" );
+            try
+            {
+                CatalogueImporter importer = new CatalogueImporter( catalogue.emf, 50, 10_000 );
+                importer.importMovies( writeMovies( dir.resolve( "movies.csv" ), catalogue, movieId, 1 ) );
+                importer.importActors( writeActors( dir.resolve( "actors.csv" ), firstActor, fanOut.links ) );
+                importer.importLinks( writeLinks( dir.resolve( "links.csv" ), firstActor, fanOut.links, movieId, 1 ) );
+            }
+            finally
+            {
+                deleteDirectory( dir );
+            }
+        }
+
+        // Drops whatever a read or update benchmark left behind; after a delete benchmark there is nothing to drop
+        @TearDown( Level.Iteration )
+        public void delete( BenchmarkCatalogue catalogue )
+        {
+            catalogue.actorDao.deleteAllActorsByMovieName( movieName );
+        }
+    }
+
+    /** One new actor playing in {@code links} new movies, inserted before every iteration. */
+    @State( Scope.Thread )
+    public static class Filmography
+    {
+        int actorId;
+        String actorName;
+
+        @Setup( Level.Iteration )
+        public void insert( BenchmarkCatalogue catalogue, FanOut fanOut ) throws IOException
+        {
+            actorId = catalogue.reserveActorIds( 1 );
+            actorName = BenchmarkCatalogue.actorName( actorId );
+            int firstMovie = catalogue.reserveMovieIds( fanOut.links );
+            Path dir = Files.createTempDirectory( "benchmark-filmography" );
+            try
+            {
+                CatalogueImporter importer = new CatalogueImporter( catalogue.emf, 50, 10_000 );
+                importer.importMovies( writeMovies( dir.resolve( "movies.csv" ), catalogue, firstMovie, fanOut.links ) );
+                importer.importActors( writeActors( dir.resolve( "actors.csv" ), actorId, 1 ) );
+                importer.importLinks( writeLinks( dir.resolve( "links.csv" ), actorId, 1, firstMovie, fanOut.links ) );
+            }
+            finally
+            {
+                deleteDirectory( dir );
+            }
+        }
+
+        @TearDown( Level.Iteration )
+        public void delete( BenchmarkCatalogue catalogue )
+        {
+            catalogue.movieDao.deleteAllMoviesByActorName( actorName );
+            catalogue.actorDao.deleteAllActorsByIndustry( "Filmography " + actorId );
+        }
+    }
+
+    @Benchmark
+    public List<Actor> findAllActorsByMovieName( BenchmarkCatalogue catalogue, Cast cast )
+    {
+        return catalogue.actorDao.findAllActorsByMovieName( cast.movieName );
+    }
+
+    @Benchmark
+    public void updateAllActorSalaryByMovieId( BenchmarkCatalogue catalogue, Cast cast )
+    {
+        catalogue.actorDao.updateAllActorSalaryByMovieId( cast.movieId, 42 );
+    }
+
+    @Benchmark
+    public void deleteAllActorsByMovieName( BenchmarkCatalogue catalogue, Cast cast )
+    {
+        catalogue.actorDao.deleteAllActorsByMovieName( cast.movieName );
+    }
+
+    @Benchmark
+    public List<Movie> findAllMoviesByActorId( BenchmarkCatalogue catalogue, Filmography filmography )
+    {
+        return catalogue.movieDao.findAllMoviesByActorId( filmography.actorId );
+    }
+
+    @Benchmark
+    public void deleteAllMoviesByActorName( BenchmarkCatalogue catalogue, Filmography filmography )
+    {
+        catalogue.movieDao.deleteAllMoviesByActorName( filmography.actorName );
+    }
+
+    private static Path writeActors( Path file, int firstId, int count ) throws IOException
+    {
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "id,name,age,industry,salary,nationality\n" );
+            for ( int id = firstId; id < firstId + count; id++ )
+            {
+                // a one-actor filmography gets an industry of its own so its teardown can find it
+                String industry = count == 1 ? "Filmography " + id : "Cast";
+                out.write( id + "," + BenchmarkCatalogue.actorName( id ) + "," + BenchmarkCatalogue.age( id ) + ","
+                    + industry + ",1000,Indian\n" );
+            }
+        }
+        return file;
+    }
+
+    private static Path writeMovies( Path file, BenchmarkCatalogue catalogue, int firstId, int count ) throws IOException
+    {
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "movieId,movieName,movieDirector,genre,verdict,collection\n" );
+            for ( int id = firstId; id < firstId + count; id++ )
+            {
+                out.write( id + "," + BenchmarkCatalogue.movieName( id ) + "," + catalogue.director( id ) + ","
+                    + BenchmarkCatalogue.genre( id ) + "," + BenchmarkCatalogue.verdict( id ) + ","
+                    + BenchmarkCatalogue.collection( id ) + "\n" );
+            }
+        }
+        return file;
+    }
+
+    // Links every actor in the first range to every movie in the second; one side always has a single id
+    private static Path writeLinks( Path file, int firstActor, int actors, int firstMovie, int movies )
+        throws IOException
+    {
+        try ( BufferedWriter out = Files.newBufferedWriter( file, StandardCharsets.UTF_8 ) )
+        {
+            out.write( "actorId,movieId\n" );
+            for ( int actorId = firstActor; actorId < firstActor + actors; actorId++ )
+            {
+                for ( int movieId = firstMovie; movieId < firstMovie + movies; movieId++ )
+                {
+                    out.write( actorId + "," + movieId + "\n" );
+                }
+            }
+        }
+        return file;
+    }
+
+    private static void deleteDirectory( Path dir ) throws IOException
+    {
+        for ( String file : new String[] { "actors.csv", "movies.csv", "links.csv" } )
+        {
+            Files.deleteIfExists( dir.resolve( file ) );
+        }
+        Files.delete( dir );
+    }
+}
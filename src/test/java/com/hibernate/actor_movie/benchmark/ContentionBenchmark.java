@@ -0,0 +1,107 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+
+/**
+ * Salary raises by 8 threads (change with -t) on the same few actors:
+ * raiseActorSalaryById, which retries on a version conflict, against the
+ * same read-modify-write holding a row lock (SELECT ... FOR UPDATE) for the
+ * whole transaction. hotRows is the number of actors the threads share;
+ * failed counts raises that gave up (retries exhausted or lock timeout).
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+@Threads( 8 )
+public class ContentionBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class HotRows
+    {
+        @Param( { "1", "16" } )
+        public int hotRows;
+
+        int next()
+        {
+            return 1 + ThreadLocalRandom.current().nextInt( hotRows );
+        }
+    }
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Failures
+    {
+        public long failed;
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            failed = 0;
+        }
+    }
+
+    @Benchmark
+    public Actor optimistic( BenchmarkCatalogue catalogue, HotRows rows, Failures failures )
+    {
+        try
+        {
+            return catalogue.actorDao.raiseActorSalaryById( rows.next(), 1 );
+        }
+        catch ( PersistenceException e )
+        {
+            failures.failed++;
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Actor pessimistic( BenchmarkCatalogue catalogue, HotRows rows, Failures failures )
+    {
+        EntityManager em = catalogue.emf.createEntityManager();
+        try
+        {
+            em.getTransaction().begin();
+            Actor actor = em.find( Actor.class, rows.next(), LockModeType.PESSIMISTIC_WRITE );
+            actor.setSalary( actor.getSalary() + 1 );
+            em.getTransaction().commit();
+            return actor;
+        }
+        catch ( PersistenceException e )
+        {
+            if ( em.getTransaction().isActive() )
+            {
+                em.getTransaction().rollback();
+            }
+            failures.failed++;
+            return null;
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+}
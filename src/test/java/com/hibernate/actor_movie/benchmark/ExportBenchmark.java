@@ -0,0 +1,111 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.export.CatalogueExporter;
+import com.hibernate.actor_movie.export.CatalogueSnapshot;
+import com.hibernate.actor_movie.export.ExportResult;
+import com.hibernate.actor_movie.export.SnapshotColumn;
+import com.hibernate.actor_movie.export.SnapshotCursor;
+import com.hibernate.actor_movie.export.SnapshotTable;
+
+/**
+ * A full export of the seeded catalogue against reading just its actors
+ * through findAllActors, and a salary total per industry scanned from the
+ * snapshot's industry and salary columns. The bytes counter is the size of
+ * the snapshots written in an iteration.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class ExportBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class Snapshot
+    {
+        public Path dir;
+        public Path file;
+        public CatalogueExporter exporter;
+        public CatalogueSnapshot snapshot;
+
+        @Setup( Level.Trial )
+        public void export( BenchmarkCatalogue catalogue ) throws IOException
+        {
+            dir = Files.createTempDirectory( "benchmark-export" );
+            file = dir.resolve( "catalogue.snapshot" );
+            exporter = new CatalogueExporter( catalogue.emf, CatalogueExporter.DEFAULT_ROWS_PER_BLOCK,
+                CatalogueExporter.DEFAULT_FETCH_SIZE );
+            exporter.export( file );
+            snapshot = CatalogueSnapshot.open( file );
+        }
+
+        @TearDown( Level.Trial )
+        public void delete() throws IOException
+        {
+            snapshot.close();
+            Files.deleteIfExists( dir.resolve( "export.snapshot" ) );
+            Files.deleteIfExists( file );
+            Files.delete( dir );
+        }
+    }
+
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Bytes
+    {
+        public long bytes;
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public ExportResult exportCatalogue( Snapshot snapshot, Bytes bytes ) throws IOException
+    {
+        ExportResult result = snapshot.exporter.export( snapshot.dir.resolve( "export.snapshot" ) );
+        bytes.bytes += result.getBytes();
+        return result;
+    }
+
+    @Benchmark
+    public List<Actor> findAllActors( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.actorDao.findAllActors();
+    }
+
+    @Benchmark
+    public double[] salaryByIndustryFromSnapshot( Snapshot snapshot )
+    {
+        double[] totals = new double[snapshot.snapshot.values( SnapshotColumn.ACTOR_INDUSTRY ).size() + 1];
+        SnapshotCursor actors = snapshot.snapshot.cursor( SnapshotTable.ACTOR );
+        while ( actors.next() )
+        {
+            totals[actors.getCode( SnapshotColumn.ACTOR_INDUSTRY )] += actors.getDouble( SnapshotColumn.ACTOR_SALARY );
+        }
+        return totals;
+    }
+}
@@ -0,0 +1,101 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.graph.CastGraph;
+
+/**
+ * Traversals of the in-memory cast graph of the seeded catalogue, next to
+ * the co-stars of an actor read through the DAOs (two queries), and the
+ * cost of folding one actor's changed links into the graph.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class GraphBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class Graph
+    {
+        CastGraph graph;
+
+        @Setup( Level.Trial )
+        public void load( BenchmarkCatalogue catalogue )
+        {
+            graph = CastGraph.load( catalogue.emf );
+        }
+    }
+
+    @Benchmark
+    public int[] filmography( BenchmarkCatalogue catalogue, Graph graph )
+    {
+        return graph.graph.filmography( catalogue.randomActorId() );
+    }
+
+    @Benchmark
+    public int[] cast( BenchmarkCatalogue catalogue, Graph graph )
+    {
+        return graph.graph.cast( catalogue.randomMovieId() );
+    }
+
+    @Benchmark
+    public int[] coStars( BenchmarkCatalogue catalogue, Graph graph )
+    {
+        return graph.graph.coStars( catalogue.randomActorId() );
+    }
+
+    @Benchmark
+    public int[] neighbourhood2( BenchmarkCatalogue catalogue, Graph graph )
+    {
+        return graph.graph.neighbourhood( catalogue.randomActorId(), 2 );
+    }
+
+    @Benchmark
+    public List<Integer> coStarsByQueries( BenchmarkCatalogue catalogue )
+    {
+        int actorId = catalogue.randomActorId();
+        List<Integer> movieIds = new ArrayList<>();
+        for ( Movie movie : catalogue.actorDao.findActorById( actorId, Actor.WITH_MOVIES ).getMovies() )
+        {
+            movieIds.add( movie.getMovieId() );
+        }
+        TreeSet<Integer> coStars = new TreeSet<>();
+        for ( Movie movie : catalogue.movieDao.findMoviesByIds( movieIds, Movie.WITH_ACTORS ) )
+        {
+            for ( Actor actor : movie.getActor() )
+            {
+                coStars.add( actor.getId() );
+            }
+        }
+        coStars.remove( actorId );
+        return new ArrayList<>( coStars );
+    }
+
+    @Benchmark
+    @OutputTimeUnit( TimeUnit.MILLISECONDS )
+    public CastGraph foldOneActor( BenchmarkCatalogue catalogue, Graph graph )
+    {
+        return graph.graph.withActorLinks(
+            Collections.singletonMap( catalogue.randomActorId(), new int[] { catalogue.randomMovieId() } ) );
+    }
+}
@@ -0,0 +1,67 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+
+/**
+ * Insert throughput, in actors per millisecond, of 4 threads (change with -t)
+ * each writing transactions of 100 new actors: actors with ids chosen by the
+ * caller and merged, as addActor did for every actor, against actors left
+ * without an id and persisted, their ids coming from the Actor pool. Merge
+ * selects each actor before inserting it; persist only batches the inserts
+ * and reserves a block of ids every 50 actors
+ * (actor_movie.id.pool_size.Actor).
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+@Threads( 4 )
+public class InsertBenchmark
+{
+    private static final int ACTORS_PER_TRANSACTION = 100;
+
+    @Benchmark
+    @OperationsPerInvocation( ACTORS_PER_TRANSACTION )
+    public void assignedIdsMerged( BenchmarkCatalogue catalogue )
+    {
+        EntityManager em = catalogue.emf.createEntityManager();
+        em.getTransaction().begin();
+        for ( int i = 0; i < ACTORS_PER_TRANSACTION; i++ )
+        {
+            em.merge( catalogue.newActor( "Inserted" ) );
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation( ACTORS_PER_TRANSACTION )
+    public void pooledIdsPersisted( BenchmarkCatalogue catalogue )
+    {
+        EntityManager em = catalogue.emf.createEntityManager();
+        em.getTransaction().begin();
+        for ( int i = 0; i < ACTORS_PER_TRANSACTION; i++ )
+        {
+            Actor actor = catalogue.newActor( "Inserted" );
+            actor.setId( 0 );
+            em.persist( actor );
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+}
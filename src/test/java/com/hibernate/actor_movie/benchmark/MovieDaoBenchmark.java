@@ -0,0 +1,159 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.Page;
+
+/**
+ * Every public MovieDao operation against the seeded catalogue.
+ * See ActorDaoBenchmark for what is reported.
+ */
+@BenchmarkMode( { Mode.Throughput, Mode.SampleTime } )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class MovieDaoBenchmark
+{
+    /**
+     * Rows for the delete benchmarks: a fresh actor with a unique name and
+     * five movies of their own with a negative collection, inserted before
+     * every invocation.
+     */
+    @State( Scope.Thread )
+    public static class DoomedMovies
+    {
+        String actorName;
+
+        @Setup( Level.Invocation )
+        public void insert( BenchmarkCatalogue catalogue )
+        {
+            Actor actor = catalogue.newActor( "Doomed" );
+            actorName = actor.getName();
+            catalogue.actorDao.addActor( actor );
+            for ( int i = 0; i < 5; i++ )
+            {
+                catalogue.movieDao.addMovie( catalogue.newMovie( -1 ), java.util.Collections.singletonList( actor.getId() ) );
+            }
+        }
+    }
+
+    @Benchmark
+    public void addMovie( BenchmarkCatalogue catalogue )
+    {
+        catalogue.movieDao.addMovie( catalogue.newMovie( 500 ), catalogue.randomActorIds( 3 ) );
+    }
+
+    @Benchmark
+    public void addMovieWithLargeCast( BenchmarkCatalogue catalogue )
+    {
+        catalogue.movieDao.addMovie( catalogue.newMovie( 500 ), catalogue.randomActorIds( 500 ) );
+    }
+
+    @Benchmark
+    public List<Movie> findMoviesByIds( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findMoviesByIds( catalogue.randomMovieIds( 100 ) );
+    }
+
+    @Benchmark
+    public List<Movie> findMovieByName( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findMovieByName( BenchmarkCatalogue.movieName( catalogue.randomMovieId() ) );
+    }
+
+    @Benchmark
+    public List<Movie> findMovieByNameWithActors( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findMovieByName( BenchmarkCatalogue.movieName( catalogue.randomMovieId() ), Movie.WITH_ACTORS );
+    }
+
+    @Benchmark
+    public List<Movie> findAllMoviesByGenre( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findAllMoviesByGenre( BenchmarkCatalogue.genre( catalogue.randomMovieId() ) );
+    }
+
+    @Benchmark
+    public long forEachMovieByGenre( BenchmarkCatalogue catalogue, Blackhole blackhole )
+    {
+        return catalogue.movieDao.forEachMovieByGenre( BenchmarkCatalogue.genre( catalogue.randomMovieId() ), 500,
+            blackhole::consume );
+    }
+
+    @Benchmark
+    public Page<Movie> findMoviePageByGenre( BenchmarkCatalogue catalogue )
+    {
+        int after = catalogue.randomMovieId();
+        return catalogue.movieDao.findMoviePageByGenre( BenchmarkCatalogue.genre( after ), Integer.toString( after ), 50 );
+    }
+
+    @Benchmark
+    public List<Movie> findAllMoviesByDirector( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findAllMoviesByDirector( catalogue.director( catalogue.randomMovieId() ) );
+    }
+
+    @Benchmark
+    public long forEachMovieByDirector( BenchmarkCatalogue catalogue, Blackhole blackhole )
+    {
+        return catalogue.movieDao.forEachMovieByDirector( catalogue.director( catalogue.randomMovieId() ), 500,
+            blackhole::consume );
+    }
+
+    @Benchmark
+    public Page<Movie> findMoviePageByDirector( BenchmarkCatalogue catalogue )
+    {
+        int after = catalogue.randomMovieId();
+        return catalogue.movieDao.findMoviePageByDirector( catalogue.director( after ), Integer.toString( after ), 50 );
+    }
+
+    // Roughly the top 1% of movies by collection
+    @Benchmark
+    public List<Movie> findAllMovieCollectionGreaterThan( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findAllMovieCollectionGreaterThan( 990 );
+    }
+
+    @Benchmark
+    public void updateMovieCollectionByVerdict( BenchmarkCatalogue catalogue )
+    {
+        String verdict = BenchmarkCatalogue.verdict( catalogue.randomMovieId() );
+        catalogue.movieDao.updateMovieCollectionByVerdict( verdict, ThreadLocalRandom.current().nextInt( -1, 2 ) );
+    }
+
+    @Benchmark
+    public List<Movie> findAllMoviesByActorId( BenchmarkCatalogue catalogue )
+    {
+        return catalogue.movieDao.findAllMoviesByActorId( catalogue.randomActorId() );
+    }
+
+    @Benchmark
+    public void deleteAllMoviesByActorName( BenchmarkCatalogue catalogue, DoomedMovies doomed )
+    {
+        catalogue.movieDao.deleteAllMoviesByActorName( doomed.actorName );
+    }
+
+    @Benchmark
+    public void deleteAllMoviesWithCollectionLessThan( BenchmarkCatalogue catalogue, DoomedMovies doomed )
+    {
+        catalogue.movieDao.deleteAllMoviesWithCollectionLessThan( 0 );
+    }
+}
@@ -0,0 +1,71 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.actor_movie.payroll.PayrollJob;
+import com.hibernate.actor_movie.payroll.PayrollResult;
+import com.hibernate.actor_movie.payroll.SalaryFormula;
+
+/**
+ * A whole payroll over the seeded catalogue, in partitions of 1000 actors,
+ * on pools of 1, 2 and 4 threads. Every run is a new job, so nothing is
+ * skipped, and the formula alternates between two rates, so every salary
+ * is written each time.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class PayrollBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class Jobs
+    {
+        @Param( { "1", "2", "4" } )
+        public int threads;
+
+        ForkJoinPool pool;
+        int runs;
+
+        @Setup( Level.Trial )
+        public void start()
+        {
+            pool = new ForkJoinPool( threads );
+        }
+
+        @TearDown( Level.Trial )
+        public void stop()
+        {
+            pool.shutdown();
+        }
+
+        PayrollJob next( BenchmarkCatalogue catalogue )
+        {
+            double rate = ++runs % 2 == 0 ? 1.0 : 1.1;
+            SalaryFormula formula = ( collection, verdict ) -> rate * SalaryFormula.VERDICT_SHARE.fee( collection, verdict );
+            return new PayrollJob( catalogue.emf, "benchmark-" + threads + "-" + runs, formula, 1000, pool );
+        }
+    }
+
+    @Benchmark
+    public PayrollResult run( BenchmarkCatalogue catalogue, Jobs jobs )
+    {
+        return jobs.next( catalogue ).run();
+    }
+}
@@ -0,0 +1,86 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorSummary;
+import com.hibernate.actor_movie.dao.MovieSummary;
+
+/**
+ * The entity finders against their summary variants on the same rows:
+ * findActorByIndustry / findActorSummariesByIndustry (1 in 20 actors) and
+ * findAllMoviesByGenre / findMovieSummariesByGenre (1 in 10 movies). The
+ * rows counter is the number of rows read in an iteration; divided by the
+ * calls it gives the rows per call, and the gc profiler's alloc.rate.norm
+ * divided by the rows per call gives the bytes allocated per row.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class ProjectionBenchmark
+{
+    @State( Scope.Thread )
+    @AuxCounters( AuxCounters.Type.EVENTS )
+    public static class Rows
+    {
+        public long rows;
+
+        @Setup( Level.Iteration )
+        public void reset()
+        {
+            rows = 0;
+        }
+    }
+
+    @Benchmark
+    public List<Actor> findActorByIndustry( BenchmarkCatalogue catalogue, Rows rows )
+    {
+        List<Actor> actors = catalogue.actorDao.findActorByIndustry( BenchmarkCatalogue.industry( catalogue.randomActorId() ) );
+        rows.rows += actors.size();
+        return actors;
+    }
+
+    @Benchmark
+    public List<ActorSummary> findActorSummariesByIndustry( BenchmarkCatalogue catalogue, Rows rows )
+    {
+        List<ActorSummary> actors =
+            catalogue.actorDao.findActorSummariesByIndustry( BenchmarkCatalogue.industry( catalogue.randomActorId() ) );
+        rows.rows += actors.size();
+        return actors;
+    }
+
+    @Benchmark
+    public List<Movie> findAllMoviesByGenre( BenchmarkCatalogue catalogue, Rows rows )
+    {
+        // answers from the query cache once warm
+        List<Movie> movies = catalogue.movieDao.findAllMoviesByGenre( BenchmarkCatalogue.genre( catalogue.randomMovieId() ) );
+        rows.rows += movies.size();
+        return movies;
+    }
+
+    @Benchmark
+    public List<MovieSummary> findMovieSummariesByGenre( BenchmarkCatalogue catalogue, Rows rows )
+    {
+        List<MovieSummary> movies =
+            catalogue.movieDao.findMovieSummariesByGenre( BenchmarkCatalogue.genre( catalogue.randomMovieId() ) );
+        rows.rows += movies.size();
+        return movies;
+    }
+}
@@ -0,0 +1,87 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Root;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Movie;
+
+/**
+ * What it costs to get a query ready to run, without running it, for the
+ * findAllMovieCollectionGreaterThan filter: built with CriteriaBuilder as
+ * the finder used to, from the same HQL string, and by name from the
+ * @NamedQuery the finder uses now. Each call filters on a random
+ * collection. Run with -prof gc for the bytes allocated per query.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+public class QueryCompileBenchmark
+{
+    @State( Scope.Thread )
+    public static class Session
+    {
+        EntityManager em;
+
+        @Setup( Level.Trial )
+        public void open( BenchmarkCatalogue catalogue )
+        {
+            em = catalogue.emf.createEntityManager();
+        }
+
+        @TearDown( Level.Trial )
+        public void close()
+        {
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public TypedQuery<Movie> criteria( Session session )
+    {
+        CriteriaBuilder cb = session.em.getCriteriaBuilder();
+        CriteriaQuery<Movie> cq = cb.createQuery( Movie.class );
+        Root<Movie> root = cq.from( Movie.class );
+        cq.select( root ).distinct( true ).where( cb.greaterThan( root.get( "collection" ), collection() ) );
+        return session.em.createQuery( cq );
+    }
+
+    @Benchmark
+    public TypedQuery<Movie> hqlString( Session session )
+    {
+        return session.em.createQuery( "SELECT DISTINCT m FROM Movie m WHERE m.collection > :collection", Movie.class )
+            .setParameter( "collection", collection() );
+    }
+
+    @Benchmark
+    public TypedQuery<Movie> namedQuery( Session session )
+    {
+        return session.em.createNamedQuery( Movie.FIND_COLLECTION_GREATER_THAN, Movie.class )
+            .setParameter( "collection", collection() );
+    }
+
+    private static int collection()
+    {
+        return ThreadLocalRandom.current().nextInt( 1000 );
+    }
+}
@@ -0,0 +1,131 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.render.ResultRenderer;
+import com.hibernate.actor_movie.render.ResultWriter;
+
+/**
+ * Dumps a result of movies, each with its two actors loaded, to a file:
+ * println per movie through a PrintStream set up like System.out (128-byte
+ * buffer, flushed on every line) against a ResultRenderer writing through a
+ * ResultWriter, and writing the same text already encoded, which is what
+ * the file alone costs. No database is involved; the movies are built once.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+@State( Scope.Benchmark )
+public class RenderBenchmark
+{
+    @Param( { "1000000" } )
+    public int movies;
+
+    private List<Movie> result;
+    private byte[] rendered;
+    private Path dir;
+    private Path file;
+
+    @Setup( Level.Trial )
+    public void build() throws IOException
+    {
+        result = new ArrayList<>( movies );
+        for ( int id = 1; id <= movies; id++ )
+        {
+            Movie movie = new Movie();
+            movie.setMovieId( id );
+            movie.setMovieName( BenchmarkCatalogue.movieName( id ) );
+            movie.setMovieDirector( "Director " + id % 1000 );
+            movie.setGenre( BenchmarkCatalogue.genre( id ) );
+            movie.setVerdict( id % 3 == 0 ? "Flop" : "Hit" );
+            movie.setCollection( id % 1000 );
+            movie.setActor( Arrays.asList( actor( id ), actor( id + 1 ) ) );
+            result.add( movie );
+        }
+        dir = Files.createTempDirectory( "benchmark-render" );
+        file = dir.resolve( "movies.txt" );
+        renderer();
+        rendered = Files.readAllBytes( file );
+    }
+
+    @TearDown( Level.Trial )
+    public void delete() throws IOException
+    {
+        Files.deleteIfExists( file );
+        Files.delete( dir );
+    }
+
+    @Benchmark
+    public void println() throws IOException
+    {
+        try ( PrintStream out = new PrintStream( new BufferedOutputStream( new FileOutputStream( file.toFile() ), 128 ),
+            true ) )
+        {
+            for ( Movie movie : result )
+            {
+                out.println( movie );
+            }
+        }
+    }
+
+    @Benchmark
+    public long renderer() throws IOException
+    {
+        try ( ResultWriter out = ResultWriter.open( file ) )
+        {
+            return new ResultRenderer().renderAll( result, out );
+        }
+    }
+
+    @Benchmark
+    public void writeRendered() throws IOException
+    {
+        try ( FileChannel channel = FileChannel.open( file, StandardOpenOption.CREATE,
+            StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE ) )
+        {
+            ByteBuffer bytes = ByteBuffer.wrap( rendered );
+            while ( bytes.hasRemaining() )
+            {
+                channel.write( bytes );
+            }
+        }
+    }
+
+    private static Actor actor( int id )
+    {
+        Actor actor = TestCatalogue.actor( id );
+        actor.setName( BenchmarkCatalogue.actorName( id ) );
+        return actor;
+    }
+}
@@ -0,0 +1,169 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.search.SearchField;
+import com.hibernate.actor_movie.search.SearchIndex;
+import com.hibernate.actor_movie.search.TextIndex;
+
+/**
+ * Search latency. Over a million generated titles of one to four words
+ * drawn from a fixed-seed vocabulary of 50,000 pronounceable words, the
+ * first words of the vocabulary far more common than the last: a typeahead
+ * prefix, a two-word query and a misspelled word, top 10. Over the seeded catalogue:
+ * ten movies found through the index and loaded by id, against the
+ * LIKE '%x%' scan it replaces.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms4g", "-Xmx4g" } )
+public class SearchBenchmark
+{
+    private static final int LIMIT = 10;
+    private static final String CONSONANTS = "bcdfghjklmnprstvwz";
+    private static final String VOWELS = "aeiouy";
+
+    @State( Scope.Benchmark )
+    public static class Titles
+    {
+        @Param( { "1000000" } )
+        public int titles;
+
+        TextIndex index;
+        String[] vocabulary;
+        String[] texts;
+
+        @Setup( Level.Trial )
+        public void build()
+        {
+            Random random = new Random( 42 );
+            vocabulary = new String[50_000];
+            for ( int i = 0; i < vocabulary.length; i++ )
+            {
+                char[] word = new char[3 + random.nextInt( 7 )];
+                for ( int c = 0; c < word.length; c++ )
+                {
+                    String letters = c % 2 == 0 ? CONSONANTS : VOWELS;
+                    word[c] = letters.charAt( random.nextInt( letters.length() ) );
+                }
+                vocabulary[i] = new String( word );
+            }
+            int[] ids = new int[titles];
+            texts = new String[titles];
+            for ( int id = 0; id < titles; id++ )
+            {
+                StringBuilder text = new StringBuilder();
+                for ( int words = 1 + random.nextInt( 4 ); words > 0; words-- )
+                {
+                    double skew = random.nextDouble();
+                    text.append( text.length() == 0 ? "" : " " )
+                        .append( vocabulary[(int) ( skew * skew * vocabulary.length )] );
+                }
+                ids[id] = id + 1;
+                texts[id] = text.toString();
+            }
+            index = TextIndex.of( ids, texts, titles );
+        }
+
+        String randomWord()
+        {
+            return vocabulary[ThreadLocalRandom.current().nextInt( vocabulary.length )];
+        }
+
+        String randomTitle()
+        {
+            return texts[ThreadLocalRandom.current().nextInt( texts.length )];
+        }
+    }
+
+    @State( Scope.Benchmark )
+    public static class Catalogue
+    {
+        SearchIndex index;
+
+        @Setup( Level.Trial )
+        public void load( BenchmarkCatalogue catalogue )
+        {
+            index = SearchIndex.load( catalogue.emf );
+        }
+    }
+
+    @Benchmark
+    public int[] typeahead( Titles titles )
+    {
+        String word = titles.randomWord();
+        return titles.index.search( word.substring( 0, Math.min( word.length(), 3 + ThreadLocalRandom.current().nextInt( 2 ) ) ),
+            LIMIT );
+    }
+
+    @Benchmark
+    public int[] twoWords( Titles titles )
+    {
+        String title = titles.randomTitle();
+        int space = title.indexOf( ' ' );
+        // the second word typed halfway
+        return titles.index.search( space < 0 ? title : title.substring( 0, space + ( title.length() - space ) / 2 ),
+            LIMIT );
+    }
+
+    @Benchmark
+    public int[] misspelled( Titles titles )
+    {
+        char[] word = titles.randomWord().toCharArray();
+        int at = 1 + ThreadLocalRandom.current().nextInt( word.length - 2 );
+        char swapped = word[at];
+        word[at] = word[at + 1];
+        word[at + 1] = swapped;
+        return titles.index.search( new String( word ), LIMIT );
+    }
+
+    @Benchmark
+    public List<Movie> searchMoviesByName( BenchmarkCatalogue catalogue, Catalogue index )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( int id : index.index.search( SearchField.MOVIE_NAME, "movie " + catalogue.randomMovieId(), LIMIT ) )
+        {
+            ids.add( id );
+        }
+        return catalogue.movieDao.findMoviesByIds( ids );
+    }
+
+    @Benchmark
+    public List<Movie> likeScan( BenchmarkCatalogue catalogue )
+    {
+        EntityManager em = catalogue.emf.createEntityManager();
+        try
+        {
+            return em.createQuery( "SELECT m FROM Movie m WHERE m.movieName LIKE :name", Movie.class )
+                .setParameter( "name", "%Movie " + catalogue.randomMovieId() + "%" )
+                .setMaxResults( LIMIT )
+                .getResultList();
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,104 @@
+package com.hibernate.actor_movie.benchmark;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.query.NativeQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.writebehind.WriteBehindBuffer;
+
+/**
+ * Collection increments by 8 threads (change with -t) on a few hot movies,
+ * as a box-office feed sends them: one transaction with one UPDATE per
+ * increment, against a WriteBehindBuffer flushing every 100 ms. The buffer
+ * prints how many increments it took and how many UPDATEs it ran for them.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 2, time = 5 )
+@Measurement( iterations = 3, time = 5 )
+@Fork( value = 1, jvmArgs = { "-Xms2g", "-Xmx2g" } )
+@Threads( 8 )
+public class WriteBehindBenchmark
+{
+    @State( Scope.Benchmark )
+    public static class HotRows
+    {
+        @Param( { "16" } )
+        public int hotRows;
+
+        int next()
+        {
+            return 1 + ThreadLocalRandom.current().nextInt( hotRows );
+        }
+    }
+
+    @State( Scope.Benchmark )
+    public static class Buffer
+    {
+        WriteBehindBuffer buffer;
+
+        @Setup( Level.Trial )
+        public void open( BenchmarkCatalogue catalogue )
+        {
+            buffer = new WriteBehindBuffer( catalogue.emf, 10_000, 100, TimeUnit.MILLISECONDS );
+        }
+
+        @TearDown( Level.Trial )
+        public void close()
+        {
+            buffer.close();
+            System.err.printf( "%d increments written with %d UPDATEs in %d flushes%n", buffer.getIncrements(),
+                buffer.getRowsWritten(), buffer.getFlushes() );
+        }
+    }
+
+    @Benchmark
+    public int updatePerIncrement( BenchmarkCatalogue catalogue, HotRows rows )
+    {
+        EntityManager em = catalogue.emf.createEntityManager();
+        try
+        {
+            em.getTransaction().begin();
+            int updated = em.createNativeQuery(
+                "UPDATE Movie SET collection = collection + 1, version = version + 1 WHERE movieId = ?1" )
+                .unwrap( NativeQuery.class )
+                .addSynchronizedEntityClass( Movie.class )
+                .setParameter( 1, rows.next() )
+                .executeUpdate();
+            em.getTransaction().commit();
+            return updated;
+        }
+        finally
+        {
+            if ( em.getTransaction().isActive() )
+            {
+                em.getTransaction().rollback();
+            }
+            em.close();
+        }
+    }
+
+    @Benchmark
+    public void writeBehind( Buffer buffer, HotRows rows )
+    {
+        buffer.buffer.addToMovieCollection( rows.next(), 1 );
+    }
+}
@@ -0,0 +1,226 @@
+package com.hibernate.actor_movie.change;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+import com.hibernate.actor_movie.importer.CatalogueImporter;
+
+import junit.framework.TestCase;
+
+/**
+ * Delivery and back-pressure of the change ring, and the change stream following DAO writes.
+ */
+public class ChangeStreamTest
+    extends TestCase
+{
+    public void testSlowSubscriberHoldsPublishersBack()
+        throws Exception
+    {
+        ChangeStream stream = new ChangeStream( 4 );
+        CountDownLatch release = new CountDownLatch( 1 );
+        BlockingQueue<ChangeEvent> received = new LinkedBlockingQueue<>();
+        ChangeStream.Subscription subscription = stream.subscribe( changes -> {
+            received.addAll( changes );
+            try
+            {
+                release.await();
+            }
+            catch ( InterruptedException e )
+            {
+                Thread.currentThread().interrupt();
+            }
+        } );
+        try
+        {
+            // a full ring goes in at once; the subscriber takes it and stops
+            stream.publish( events( 1, 2, 3, 4 ) );
+            assertEquals( 1, take( received, 1 ).get( 0 ).getId() );
+
+            Thread publisher = new Thread( () -> stream.publish( events( 5 ) ) );
+            publisher.start();
+            publisher.join( 300 );
+            assertTrue( "published over an event not handled yet", publisher.isAlive() );
+
+            release.countDown();
+            publisher.join( 5000 );
+            assertFalse( publisher.isAlive() );
+            List<ChangeEvent> rest = take( received, 4 );
+            assertEquals( 5, rest.get( 3 ).getId() );
+            assertEquals( 4, rest.get( 3 ).getSequence() );
+            assertEquals( 4, stream.getLastSequence() );
+        }
+        finally
+        {
+            release.countDown();
+            subscription.close();
+        }
+        // without subscribers nothing waits
+        stream.publish( events( 6, 7, 8, 9, 10, 11, 12, 13, 14 ) );
+        assertEquals( 13, stream.getLastSequence() );
+    }
+
+    public void testRingSizeIsAPowerOfTwo()
+    {
+        try
+        {
+            new ChangeStream( 1000 );
+            fail( "ring of 1000 slots" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+            assertTrue( expected.getMessage().contains( "1000" ) );
+        }
+    }
+
+    public void testStreamFollowsDaoWrites()
+        throws Exception
+    {
+        TestDatabase.useH2( "change", ChangeStream.ENABLED_PROPERTY, "true", ChangeStream.RING_SIZE_PROPERTY, "64" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        BlockingQueue<ChangeEvent> received = new LinkedBlockingQueue<>();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            MovieDao movieDao = new MovieDao();
+            ChangeStream stream = ChangeStream.require( emf );
+            assertEquals( 64, stream.getRingSize() );
+            stream.subscribe( received::addAll );
+
+            actorDao.addActor( TestCatalogue.actor( 1, "Film" ) );
+            actorDao.addActor( TestCatalogue.actor( 2, "Film" ) );
+            actorDao.addActor( TestCatalogue.actor( 3, "Stage" ) );
+            assertEquals( Arrays.asList( "INSERT Actor#1", "INSERT Actor#2", "INSERT Actor#3" ),
+                          describe( take( received, 3 ) ) );
+
+            // one transaction each: the movie (merged, so inserted and then updated), and the actors that own its links
+            movieDao.addMovie( movie( 10, "Hit" ), Arrays.asList( 1, 2 ) );
+            movieDao.addMovie( movie( 11, "Flop" ), Arrays.asList( 3 ) );
+            List<String> added = describe( take( received, 7 ) );
+            assertEquals( Arrays.asList( "INSERT Movie#10", "UPDATE Movie#10" ), added.subList( 0, 2 ) );
+            assertEquals( Arrays.asList( "UPDATE Actor#1", "UPDATE Actor#2" ), sorted( added.subList( 2, 4 ) ) );
+            assertEquals( Arrays.asList( "INSERT Movie#11", "UPDATE Movie#11", "UPDATE Actor#3" ),
+                          added.subList( 4, 7 ) );
+
+            // a rolled back insert publishes nothing
+            EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.persist( TestCatalogue.actor( 4, "Film" ) );
+            em.flush();
+            em.getTransaction().rollback();
+            em.close();
+
+            // bulk statements publish the rows they changed, and only those
+            movieDao.updateMovieCollectionByVerdict( "Hit", 5 );
+            actorDao.updateActorNationalityById( 3, "French" );
+            actorDao.deleteAllActorsByIndustry( "Film" );
+            movieDao.deleteAllMoviesWithCollectionLessThan( 1000 );
+            List<ChangeEvent> bulk = take( received, 6 );
+            assertEquals( Arrays.asList( "UPDATE Movie#10 (bulk)", "UPDATE Actor#3 (bulk)", "DELETE Actor#1 (bulk)",
+                                         "DELETE Actor#2 (bulk)", "DELETE Movie#10 (bulk)", "DELETE Movie#11 (bulk)" ),
+                          describe( bulk ) );
+            assertNull( received.poll( 200, TimeUnit.MILLISECONDS ) );
+            // every event in commit order, numbered without gaps
+            assertEquals( 15, bulk.get( 5 ).getSequence() );
+            assertEquals( 15, stream.getLastSequence() );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+        assertNull( ChangeStream.current( emf ) );
+    }
+
+    public void testImportedLinksUpdateTheirActors()
+        throws Exception
+    {
+        TestDatabase.useH2( "changeImport", ChangeStream.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        BlockingQueue<ChangeEvent> received = new LinkedBlockingQueue<>();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            actorDao.addActor( TestCatalogue.actor( 1 ) );
+            actorDao.addActor( TestCatalogue.actor( 2 ) );
+            actorDao.addMovie( TestCatalogue.movie( 10 ) );
+            actorDao.addMovie( TestCatalogue.movie( 11 ) );
+            ChangeStream.require( emf ).subscribe( received::addAll );
+
+            // chunks of two links, each published once it commits
+            Iterator<String[]> links = Arrays.asList( new String[] { "2", "10" }, new String[] { "1", "10" },
+                new String[] { "1", "11" } ).iterator();
+            new CatalogueImporter( emf, 2, 2 ).importLinks( () -> links.hasNext() ? links.next() : null );
+
+            assertEquals( Arrays.asList( "UPDATE Actor#1 (bulk)", "UPDATE Actor#2 (bulk)", "UPDATE Actor#1 (bulk)" ),
+                          describe( take( received, 3 ) ) );
+            assertNull( received.poll( 200, TimeUnit.MILLISECONDS ) );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+    }
+
+    private static List<ChangeEvent> events( int... ids )
+    {
+        List<ChangeEvent> events = new ArrayList<>();
+        for ( int id : ids )
+        {
+            events.add( new ChangeEvent( ChangeType.UPDATE, Actor.class, id, false ) );
+        }
+        return events;
+    }
+
+    private static List<ChangeEvent> take( BlockingQueue<ChangeEvent> received, int count )
+        throws InterruptedException
+    {
+        List<ChangeEvent> events = new ArrayList<>();
+        while ( events.size() < count )
+        {
+            ChangeEvent event = received.poll( 5, TimeUnit.SECONDS );
+            assertNotNull( "only " + events + " of " + count + " events arrived", event );
+            events.add( event );
+        }
+        return events;
+    }
+
+    private static List<String> describe( List<ChangeEvent> events )
+    {
+        List<String> descriptions = new ArrayList<>();
+        for ( ChangeEvent event : events )
+        {
+            descriptions.add( event.toString().substring( event.toString().indexOf( ' ' ) + 1 ) );
+        }
+        return descriptions;
+    }
+
+    private static List<String> sorted( List<String> descriptions )
+    {
+        List<String> sorted = new ArrayList<>( descriptions );
+        Collections.sort( sorted );
+        return sorted;
+    }
+
+    private static Movie movie( int id, String verdict )
+    {
+        Movie movie = TestCatalogue.movie( id );
+        movie.setVerdict( verdict );
+        return movie;
+    }
+}
@@ -0,0 +1,177 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * The bulk updates and deletes that select rows through Actor_Movie: they
+ * touch the right rows, leave no orphaned links behind, and issue the same
+ * number of statements however many rows and links are involved.
+ */
+public class BulkOperationTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+    private Statistics statistics;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "bulk", "hibernate.generate_statistics", "true" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        statistics = EntityManagerFactoryProvider.getEntityManagerFactory().unwrap( SessionFactory.class ).getStatistics();
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    // Actors 1..cast are in "Film" and play in "Big"; actor 100 is in "Other" and plays in "Small" with actor 1
+    private void seed( int cast )
+    {
+        List<Integer> bigCast = new ArrayList<>();
+        for ( int id = 1; id <= cast; id++ )
+        {
+            actorDao.addActor( TestCatalogue.actor( id, "Film" ) );
+            bigCast.add( id );
+        }
+        actorDao.addActor( TestCatalogue.actor( 100, "Other" ) );
+        movieDao.addMovie( movie( 10, "Big", 50 ), bigCast );
+        movieDao.addMovie( movie( 11, "Small", 500 ), Arrays.asList( 1, 100 ) );
+        statistics.clear();
+    }
+
+    public void testDeleteActorsByMovieNameRemovesTheirLinks()
+    {
+        seed( 3 );
+        actorDao.deleteAllActorsByMovieName( "Big" );
+
+        assertEquals( Arrays.asList( 100 ), actorIds() );
+        assertEquals( Arrays.asList( "100-11" ), links() );
+        assertEquals( Arrays.asList( 10, 11 ), movieIds() );
+    }
+
+    public void testDeleteActorsByMovieNameStatementCountDoesNotGrow()
+    {
+        seed( 3 );
+        actorDao.deleteAllActorsByMovieName( "Big" );
+        long small = statistics.getPrepareStatementCount();
+        assertEquals( 5, small );
+
+        tearDown();
+        setUp();
+        seed( 60 );
+        actorDao.deleteAllActorsByMovieName( "Big" );
+
+        assertEquals( small, statistics.getPrepareStatementCount() );
+        assertEquals( Arrays.asList( 100 ), actorIds() );
+    }
+
+    public void testDeleteMoviesByActorNameRemovesTheirLinks()
+    {
+        seed( 3 );
+        movieDao.deleteAllMoviesByActorName( "Actor 1" );
+
+        assertEquals( new ArrayList<Integer>(), movieIds() );
+        assertEquals( new ArrayList<String>(), links() );
+        assertEquals( Arrays.asList( 1, 2, 3, 100 ), actorIds() );
+    }
+
+    public void testDeleteActorsByIndustryRemovesTheirLinks()
+    {
+        seed( 3 );
+        actorDao.deleteAllActorsByIndustry( "Film" );
+
+        assertEquals( 2, statistics.getPrepareStatementCount() );
+        assertEquals( Arrays.asList( 100 ), actorIds() );
+        assertEquals( Arrays.asList( "100-11" ), links() );
+    }
+
+    public void testDeleteMoviesByCollectionRemovesTheirLinks()
+    {
+        seed( 3 );
+        movieDao.deleteAllMoviesWithCollectionLessThan( 100 );
+
+        assertEquals( 2, statistics.getPrepareStatementCount() );
+        assertEquals( Arrays.asList( "1-11", "100-11" ), links() );
+    }
+
+    public void testUpdateSalaryByMovieIdIsOneStatement()
+    {
+        seed( 3 );
+        actorDao.findActorById( 1 );
+        statistics.clear();
+        actorDao.updateAllActorSalaryByMovieId( 11, 9 );
+
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        // the cached copy of actor 1 must not survive the update
+        assertEquals( 9.0, actorDao.findActorById( 1 ).getSalary() );
+        assertEquals( 9.0, actorDao.findActorById( 100 ).getSalary() );
+        assertEquals( 1000.0, actorDao.findActorById( 2 ).getSalary() );
+    }
+
+    public void testFindActorsByMovieName()
+    {
+        seed( 3 );
+        List<Actor> actors = actorDao.findAllActorsByMovieName( "Small", Actor.WITH_MOVIES );
+
+        assertEquals( 2, actors.size() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        for ( Actor actor : actors )
+        {
+            assertEquals( actor.getId() == 1 ? 2 : 1, actor.getMovies().size() );
+        }
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static List<Integer> actorIds()
+    {
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        List<Integer> ids = em.createQuery( "SELECT a.id FROM Actor a ORDER BY a.id" ).getResultList();
+        em.close();
+        return ids;
+    }
+
+    @SuppressWarnings( "unchecked" )
+    private static List<Integer> movieIds()
+    {
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        List<Integer> ids = em.createQuery( "SELECT m.movieId FROM Movie m ORDER BY m.movieId" ).getResultList();
+        em.close();
+        return ids;
+    }
+
+    private static List<String> links()
+    {
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        List<String> links = new ArrayList<>();
+        for ( Object row : em.createNativeQuery( "SELECT Actor_id, movie_id FROM Actor_Movie ORDER BY movie_id, Actor_id" )
+            .getResultList() )
+        {
+            Object[] columns = (Object[]) row;
+            links.add( columns[0] + "-" + columns[1] );
+        }
+        em.close();
+        return links;
+    }
+
+    private static Movie movie( int id, String name, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id, name );
+        movie.setCollection( collection );
+        return movie;
+    }
+}
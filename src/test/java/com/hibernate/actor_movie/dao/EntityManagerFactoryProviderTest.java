@@ -0,0 +1,72 @@
+package com.hibernate.actor_movie.dao;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.hibernate.actor_movie.replica.RoutingConnectionProvider;
+import com.zaxxer.hikari.HikariDataSource;
+
+import junit.framework.TestCase;
+
+/**
+ * Checks that all DAOs share one pooled EntityManagerFactory.
+ */
+public class EntityManagerFactoryProviderTest
+    extends TestCase
+{
+    protected void setUp()
+    {
+        TestDatabase.useH2( "provider" );
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testDaosShareOneFactory()
+    {
+        ActorDao actorDao = new ActorDao();
+        MovieDao movieDao = new MovieDao();
+
+        assertSame( actorDao.emf, movieDao.emf );
+        assertSame( actorDao.emf, EntityManagerFactoryProvider.getEntityManagerFactory() );
+    }
+
+    public void testFactoryUsesConnectionPool()
+    {
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        ConnectionProvider connectionProvider = emf.unwrap( SessionFactoryImplementor.class )
+            .getServiceRegistry().getService( ConnectionProvider.class );
+
+        // the primary's pool, which replicas (none here) would sit beside
+        assertTrue( connectionProvider instanceof RoutingConnectionProvider );
+        assertNotNull( connectionProvider.unwrap( HikariDataSource.class ) );
+    }
+
+    public void testCloseReleasesFactory()
+    {
+        EntityManagerFactory first = EntityManagerFactoryProvider.getEntityManagerFactory();
+        EntityManagerFactoryProvider.close();
+
+        assertFalse( first.isOpen() );
+        EntityManagerFactory second = EntityManagerFactoryProvider.getEntityManagerFactory();
+        assertNotSame( first, second );
+        assertTrue( second.isOpen() );
+    }
+
+    public void testConfigureRejectedWhileOpen()
+    {
+        EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            EntityManagerFactoryProvider.configure( TestDatabase.h2( "other" ) );
+            fail( "configure() must not change a factory that is already built" );
+        }
+        catch ( IllegalStateException expected )
+        {
+        }
+    }
+}
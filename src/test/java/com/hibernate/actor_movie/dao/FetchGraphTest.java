@@ -0,0 +1,91 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+
+import junit.framework.TestCase;
+
+/**
+ * Counts the SQL statements each actor finder issues, with and without the
+ * movies graph, to show that loading N actors never costs N extra selects.
+ */
+public class FetchGraphTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private Statistics statistics;
+
+    protected void setUp()
+    {
+        // measure the fetch shape itself, not what the second-level cache saves
+        TestDatabase.useH2( "fetchgraph", "hibernate.generate_statistics", "true",
+            "hibernate.cache.use_second_level_cache", "false", "hibernate.cache.use_query_cache", "false" );
+
+        actorDao = new ActorDao();
+        MovieDao movieDao = new MovieDao();
+        for ( int id = 1; id <= 3; id++ )
+        {
+            actorDao.addActor( TestCatalogue.actor( id ) );
+        }
+        movieDao.addMovie( TestCatalogue.movie( 10, "First" ), Arrays.asList( 1, 2, 3 ) );
+        movieDao.addMovie( TestCatalogue.movie( 11, "Second" ), Arrays.asList( 1, 2, 3 ) );
+
+        statistics = EntityManagerFactoryProvider.getEntityManagerFactory().unwrap( SessionFactory.class ).getStatistics();
+        statistics.clear();
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testSummaryLoadsActorRowsOnly()
+    {
+        List<Actor> actors = actorDao.findActorByIndustry( "Film" );
+
+        assertEquals( 3, actors.size() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        for ( Actor actor : actors )
+        {
+            assertFalse( Hibernate.isInitialized( actor.getMovies() ) );
+        }
+    }
+
+    public void testWithMoviesJoinFetchesInOneStatement()
+    {
+        assertMoviesFetchedInOneStatement( actorDao.findActorByIndustry( "Film", Actor.WITH_MOVIES ) );
+        assertMoviesFetchedInOneStatement( actorDao.findActorByName( "Actor 2", Actor.WITH_MOVIES ) );
+        assertMoviesFetchedInOneStatement( actorDao.findActorBetweenAge( 20, 40, Actor.WITH_MOVIES ) );
+        assertMoviesFetchedInOneStatement( actorDao.findAllActorsByMovieName( "First", Actor.WITH_MOVIES ) );
+        assertMoviesFetchedInOneStatement( actorDao.findAllActors( Actor.WITH_MOVIES ) );
+        assertMoviesFetchedInOneStatement( Arrays.asList( actorDao.findActorById( 1, Actor.WITH_MOVIES ) ) );
+    }
+
+    public void testToStringDoesNotTouchUnloadedMovies()
+    {
+        Actor actor = actorDao.findActorById( 1 );
+
+        assertTrue( actor.toString().contains( "movies=(not loaded)" ) );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+    }
+
+    private void assertMoviesFetchedInOneStatement( List<Actor> actors )
+    {
+        assertFalse( actors.isEmpty() );
+        assertEquals( actors.size(), actors.stream().distinct().count() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        for ( Actor actor : actors )
+        {
+            assertTrue( Hibernate.isInitialized( actor.getMovies() ) );
+            assertEquals( 2, actor.getMovies().size() );
+        }
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        statistics.clear();
+    }
+}
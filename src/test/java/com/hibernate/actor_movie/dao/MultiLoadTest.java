@@ -0,0 +1,134 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * findActorsByIds and findMoviesByIds, and addMovie built on them: results
+ * in request order, one select per 500 ids that are not cached, none for
+ * those that are.
+ */
+public class MultiLoadTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+    private Statistics statistics;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "multiload", "hibernate.generate_statistics", "true" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        statistics = EntityManagerFactoryProvider.getEntityManagerFactory().unwrap( SessionFactory.class ).getStatistics();
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    // Actors 1..count, with nothing left in the second-level cache
+    private List<Integer> seed( int count )
+    {
+        List<Integer> ids = new ArrayList<>();
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        em.getTransaction().begin();
+        for ( int id = 1; id <= count; id++ )
+        {
+            em.persist( TestCatalogue.actor( id ) );
+            ids.add( id );
+        }
+        em.getTransaction().commit();
+        em.close();
+        EntityManagerFactoryProvider.getEntityManagerFactory().getCache().evictAll();
+        statistics.clear();
+        return ids;
+    }
+
+    public void testActorsComeBackInRequestOrder()
+    {
+        seed( 5 );
+        List<Actor> actors = actorDao.findActorsByIds( Arrays.asList( 3, 99, 1, 3 ) );
+
+        assertEquals( 4, actors.size() );
+        assertEquals( 3, actors.get( 0 ).getId() );
+        assertNull( actors.get( 1 ) );
+        assertEquals( 1, actors.get( 2 ).getId() );
+        assertEquals( 3, actors.get( 3 ).getId() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+    }
+
+    public void testOneSelectPer500Ids()
+    {
+        List<Integer> ids = seed( 600 );
+        List<Actor> actors = actorDao.findActorsByIds( ids );
+
+        assertEquals( 600, actors.size() );
+        assertEquals( 600, actors.get( 599 ).getId() );
+        assertEquals( 2, statistics.getPrepareStatementCount() );
+    }
+
+    public void testCachedActorsCostNoSelect()
+    {
+        List<Integer> ids = seed( 20 );
+        actorDao.findActorsByIds( ids.subList( 0, 10 ) );
+        statistics.clear();
+
+        assertEquals( 20, actorDao.findActorsByIds( ids ).size() );
+        assertEquals( 10, statistics.getSecondLevelCacheHitCount() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+
+        statistics.clear();
+        actorDao.findActorsByIds( ids );
+        assertEquals( 0, statistics.getPrepareStatementCount() );
+    }
+
+    public void testGraphLoadsTheMovies()
+    {
+        List<Integer> ids = seed( 3 );
+        movieDao.addMovie( TestCatalogue.movie( 10 ), ids );
+
+        List<Actor> actors = actorDao.findActorsByIds( ids, Actor.WITH_MOVIES );
+
+        assertEquals( 10, actors.get( 2 ).getMovies().get( 0 ).getMovieId() );
+        assertEquals( Arrays.asList( 10, null ),
+            ids( movieDao.findMoviesByIds( Arrays.asList( 10, 11 ) ) ) );
+    }
+
+    public void testAddMovieReadsItsCastInBatches()
+    {
+        List<Integer> ids = seed( 500 );
+        // an id given twice is linked once, an unknown one is skipped
+        List<Integer> cast = new ArrayList<>( ids );
+        cast.add( 1 );
+        cast.add( 999 );
+        movieDao.addMovie( TestCatalogue.movie( 10 ), cast );
+
+        // merge's select of the new movie, one select for the actors, one for their movies, then the JDBC batched
+        // inserts of the movie and its links and the deletes that recreate each actor's link bag
+        assertEquals( 6, statistics.getPrepareStatementCount() );
+        assertEquals( 500, movieDao.findMoviesByIds( Arrays.asList( 10 ), Movie.WITH_ACTORS ).get( 0 ).getActor().size() );
+    }
+
+    private static List<Integer> ids( List<Movie> movies )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( Movie movie : movies )
+        {
+            ids.add( movie == null ? null : movie.getMovieId() );
+        }
+        return ids;
+    }
+}
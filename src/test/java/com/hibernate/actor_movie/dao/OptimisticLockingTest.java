@@ -0,0 +1,165 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceException;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Versioned Actor and Movie rows: every kind of update moves the version on,
+ * a stale copy cannot overwrite a newer row, and concurrent read-modify-write
+ * updates of one row lose nothing.
+ */
+public class OptimisticLockingTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "optimistic" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        actorDao.addActor( TestCatalogue.actor( 1 ) );
+        actorDao.addActor( TestCatalogue.actor( 2 ) );
+        movieDao.addMovie( TestCatalogue.movie( 10 ), Arrays.asList( 1, 2 ) );
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testUpdatesIncrementVersions()
+    {
+        // linking the actors to movie 10 left their versions alone
+        assertEquals( 0, actorDao.findActorById( 1 ).getVersion() );
+
+        assertEquals( 1, actorDao.raiseActorSalaryById( 1, 50 ).getVersion() );
+        actorDao.updateAllActorSalaryByMovieId( 10, 200 );
+        actorDao.updateActorNationalityById( 1, "British" );
+        Actor actor = actorDao.findActorById( 1 );
+        assertEquals( 3, actor.getVersion() );
+        assertEquals( 200.0, actor.getSalary() );
+        assertEquals( 1, actorDao.findActorById( 2 ).getVersion() );
+
+        movieDao.updateMovieCollectionByVerdict( "Hit", 5 );
+        Movie movie = movieDao.addToMovieCollectionById( 10, 5 );
+        assertEquals( 2, movie.getVersion() );
+        assertEquals( 110, movie.getCollection() );
+        assertNull( movieDao.addToMovieCollectionById( 99, 5 ) );
+    }
+
+    public void testStaleCopyIsRejected()
+    {
+        Actor stale = actorDao.findActorById( 1 );
+        actorDao.raiseActorSalaryById( 1, 50 );
+
+        stale.setNationality( "British" );
+        try
+        {
+            actorDao.addActor( stale );
+            fail( "a stale copy overwrote the newer row" );
+        }
+        catch ( PersistenceException e )
+        {
+            assertTrue( e.toString(), OptimisticRetry.isConflict( e ) );
+        }
+        Actor actor = actorDao.findActorById( 1 );
+        assertEquals( 1050.0, actor.getSalary() );
+        assertEquals( "Indian", actor.getNationality() );
+    }
+
+    public void testRejectedSavesGiveBackTheirConnections()
+    {
+        TestDatabase.useH2( "optimisticPool",
+            "hibernate.hikari.maximumPoolSize", "2",
+            "hibernate.hikari.connectionTimeout", "1000" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        actorDao.addActor( TestCatalogue.actor( 1 ) );
+        movieDao.addMovie( TestCatalogue.movie( 10 ), Arrays.asList( 1 ) );
+        Actor staleActor = actorDao.findActorById( 1 );
+        Movie staleMovie = movieDao.findMoviesByIds( Arrays.asList( 10 ) ).get( 0 );
+        actorDao.raiseActorSalaryById( 1, 50 );
+        movieDao.addToMovieCollectionById( 10, 5 );
+
+        // more rejected saves than the pool has connections
+        for ( int i = 0; i < 3; i++ )
+        {
+            try
+            {
+                actorDao.addActor( staleActor );
+                fail( "a stale actor overwrote the newer row" );
+            }
+            catch ( PersistenceException expected )
+            {
+                assertTrue( expected.toString(), OptimisticRetry.isConflict( expected ) );
+            }
+            try
+            {
+                movieDao.addMovie( staleMovie, Arrays.asList( 1 ) );
+                fail( "a stale movie overwrote the newer row" );
+            }
+            catch ( PersistenceException expected )
+            {
+                assertTrue( expected.toString(), OptimisticRetry.isConflict( expected ) );
+            }
+        }
+        assertEquals( 1050.0, actorDao.findActorById( 1 ).getSalary() );
+        assertEquals( 105, movieDao.findMoviesByIds( Arrays.asList( 10 ) ).get( 0 ).getCollection() );
+    }
+
+    // Movies are left out: H2 1.4.200 can corrupt a secondary index when concurrent transactions update its column
+    // (Movie.collection), which MySQL does not
+    public void testConcurrentRaisesLoseNothing() throws Exception
+    {
+        int threads = 4;
+        int raises = 25;
+        ExecutorService executor = Executors.newFixedThreadPool( threads );
+        try
+        {
+            List<Callable<Void>> workers = new ArrayList<>();
+            for ( int t = 0; t < threads; t++ )
+            {
+                workers.add( () -> {
+                    for ( int i = 0; i < raises; i++ )
+                    {
+                        actorDao.raiseActorSalaryById( 1, 1 );
+                    }
+                    return null;
+                } );
+            }
+            for ( Future<Void> worker : executor.invokeAll( workers ) )
+            {
+                worker.get();
+            }
+        }
+        finally
+        {
+            executor.shutdown();
+        }
+
+        Actor actor = actorDao.findActorById( 1 );
+        assertEquals( 1000.0 + threads * raises, actor.getSalary() );
+        assertEquals( threads * raises, actor.getVersion() );
+    }
+
+    public void testOnlyConflictsAreRetried()
+    {
+        assertTrue( OptimisticRetry.isConflict( new PersistenceException( new OptimisticLockException() ) ) );
+        assertFalse( OptimisticRetry.isConflict( new PersistenceException( "constraint violation" ) ) );
+    }
+}
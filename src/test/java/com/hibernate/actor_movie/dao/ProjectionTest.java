@@ -0,0 +1,97 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * The summary finders return the same rows as the entity finders, with one
+ * statement and without loading a single entity.
+ */
+public class ProjectionTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+    private Statistics statistics;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "projection", "hibernate.generate_statistics", "true" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        statistics = EntityManagerFactoryProvider.getEntityManagerFactory().unwrap( SessionFactory.class ).getStatistics();
+
+        actorDao.addActor( actor( 1, "Film", 30 ) );
+        actorDao.addActor( actor( 2, "Film", 45 ) );
+        actorDao.addActor( actor( 3, "Stage", 60 ) );
+        movieDao.addMovie( movie( 10, "Drama", "Director A", 500 ), Arrays.asList( 1, 2 ) );
+        movieDao.addMovie( movie( 11, "Comedy", "Director A", 200 ), Arrays.asList( 3 ) );
+        statistics.clear();
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testActorSummariesMatchTheEntities()
+    {
+        List<ActorSummary> summaries = actorDao.findActorSummariesByIndustry( "Film" );
+
+        assertEquals( 2, summaries.size() );
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        assertEquals( 0, statistics.getEntityLoadCount() );
+        for ( ActorSummary summary : summaries )
+        {
+            Actor actor = actorDao.findActorById( summary.getId() );
+            assertEquals( actor.getName(), summary.getName() );
+            assertEquals( "Film", summary.getIndustry() );
+        }
+    }
+
+    public void testActorSummariesBetweenAge()
+    {
+        List<ActorSummary> summaries = actorDao.findActorSummariesBetweenAge( 40, 70 );
+
+        assertEquals( 2, summaries.size() );
+        assertEquals( actorDao.findActorBetweenAge( 40, 70 ).size(), summaries.size() );
+        assertEquals( 0, statistics.getSecondLevelCachePutCount() );
+    }
+
+    public void testMovieSummaries()
+    {
+        List<MovieSummary> byGenre = movieDao.findMovieSummariesByGenre( "Drama" );
+
+        assertEquals( 1, byGenre.size() );
+        assertEquals( 10, byGenre.get( 0 ).getMovieId() );
+        assertEquals( "Movie 10", byGenre.get( 0 ).getMovieName() );
+        assertEquals( 500, byGenre.get( 0 ).getCollection() );
+        assertEquals( 2, movieDao.findMovieSummariesByDirector( "Director A" ).size() );
+        assertEquals( 0, statistics.getEntityLoadCount() );
+        assertEquals( 2, statistics.getPrepareStatementCount() );
+    }
+
+    private static Actor actor( int id, String industry, int age )
+    {
+        Actor actor = TestCatalogue.actor( id, industry );
+        actor.setAge( age );
+        return actor;
+    }
+
+    private static Movie movie( int id, String genre, String director, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id );
+        movie.setMovieDirector( director );
+        movie.setGenre( genre );
+        movie.setCollection( collection );
+        return movie;
+    }
+}
@@ -0,0 +1,129 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.cache.CacheRegions;
+import com.hibernate.actor_movie.cache.CacheRegions.RegionStatistics;
+
+import junit.framework.TestCase;
+
+/**
+ * Repeated lookups must be served from the second-level and query caches,
+ * and bulk writes must invalidate what they change.
+ */
+public class SecondLevelCacheTest
+    extends TestCase
+{
+    private EntityManagerFactory emf;
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+    private Statistics statistics;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "cache" );
+        emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+
+        Actor actor = new Actor();
+        actor.setId( 1 );
+        actor.setName( "Mohanlal" );
+        actor.setIndustry( "Mollywood" );
+        actor.setSalary( 100 );
+        actorDao.addActor( actor );
+        Movie movie = new Movie();
+        movie.setMovieId( 10 );
+        movie.setMovieName( "Drishyam" );
+        movie.setGenre( "Thriller" );
+        movie.setVerdict( "Hit" );
+        movie.setCollection( 50 );
+        movieDao.addMovie( movie, Arrays.asList( 1 ) );
+
+        CacheRegions.enableStatistics( emf, true );
+        statistics = emf.unwrap( SessionFactory.class ).getStatistics();
+        statistics.clear();
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testFindByIdIsServedFromCache()
+    {
+        emf.getCache().evictAll();
+        actorDao.findActorById( 1 );
+        long statements = statistics.getPrepareStatementCount();
+        Actor cached = actorDao.findActorById( 1 );
+
+        assertEquals( "Mohanlal", cached.getName() );
+        assertEquals( statements, statistics.getPrepareStatementCount() );
+        RegionStatistics actorRegion = CacheRegions.statistics( emf ).get( CacheRegions.ACTOR );
+        assertEquals( 1, actorRegion.getHits() );
+        assertEquals( 1, actorRegion.getMisses() );
+        assertEquals( 0.5, actorRegion.getHitRatio(), 0.0 );
+    }
+
+    public void testFinderIsServedFromQueryCache()
+    {
+        actorDao.findActorByName( "Mohanlal" );
+        long statements = statistics.getPrepareStatementCount();
+        assertEquals( 1, actorDao.findActorByName( "Mohanlal" ).size() );
+
+        assertEquals( statements, statistics.getPrepareStatementCount() );
+        Map<String, RegionStatistics> regions = CacheRegions.statistics( emf );
+        assertEquals( 1, regions.get( CacheRegions.ACTOR_QUERIES ).getHits() );
+    }
+
+    public void testBulkUpdateInvalidatesCachedResults()
+    {
+        movieDao.findMovieByName( "Drishyam" );
+        movieDao.updateMovieCollectionByVerdict( "Hit", 25 );
+        long statements = statistics.getPrepareStatementCount();
+        movieDao.findMovieByName( "Drishyam" );
+
+        assertTrue( statistics.getPrepareStatementCount() > statements );
+        assertEquals( 75, emf.createEntityManager().find( Movie.class, 10 ).getCollection() );
+    }
+
+    public void testUpdateInvalidatesCachedEntity()
+    {
+        actorDao.findActorById( 1 );
+        actorDao.updateActorNationalityById( 1, "Indian" );
+
+        assertEquals( "Indian", actorDao.findActorById( 1 ).getNationality() );
+    }
+
+    public void testGraphFindersLoadTheGraphOnEveryCall()
+    {
+        for ( int call = 1; call <= 2; call++ )
+        {
+            Actor actor = actorDao.findActorByName( "Mohanlal", Actor.WITH_MOVIES ).get( 0 );
+            assertTrue( "call " + call, Hibernate.isInitialized( actor.getMovies() ) );
+            Movie byName = movieDao.findMovieByName( "Drishyam", Movie.WITH_ACTORS ).get( 0 );
+            assertTrue( "call " + call, Hibernate.isInitialized( byName.getActor() ) );
+            Movie byGenre = movieDao.findAllMoviesByGenre( "Thriller", Movie.WITH_ACTORS ).get( 0 );
+            assertTrue( "call " + call, Hibernate.isInitialized( byGenre.getActor() ) );
+        }
+        assertEquals( "Drishyam", actorDao.findActorByName( "Mohanlal", Actor.WITH_MOVIES ).get( 0 ).getMovies()
+            .get( 0 ).getMovieName() );
+    }
+
+    public void testGraphLookupLoadsMoviesOfCachedActor()
+    {
+        actorDao.findActorById( 1 );
+        Actor actor = actorDao.findActorById( 1, Actor.WITH_MOVIES );
+
+        assertEquals( "Drishyam", actor.getMovies().get( 0 ).getMovieName() );
+    }
+}
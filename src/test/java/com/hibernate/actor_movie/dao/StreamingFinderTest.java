@@ -0,0 +1,195 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Streaming and keyset-paginated finders must visit every matching row
+ * exactly once, in key order for pages.
+ */
+public class StreamingFinderTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "streaming" );
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        // ids deliberately out of order, with non-matching rows in between
+        for ( int i = 25; i >= 1; i-- )
+        {
+            actorDao.addActor( actor( i * 2, "Bollywood", 20 + i ) );
+            actorDao.addActor( actor( i * 2 + 1, "Hollywood", 60 ) );
+        }
+        for ( int i = 1; i <= 7; i++ )
+        {
+            Movie movie = new Movie();
+            movie.setMovieId( i );
+            movie.setMovieName( "Movie " + i );
+            movie.setMovieDirector( i % 2 == 0 ? "Nolan" : "Rajamouli" );
+            movie.setGenre( "Action" );
+            movieDao.addMovie( movie, new ArrayList<Integer>() );
+        }
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testPagesVisitEveryActorInIdOrder()
+    {
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String token = null;
+        do
+        {
+            Page<Actor> page = actorDao.findActorPageByIndustry( "Bollywood", token, 10 );
+            pageSizes.add( page.getItems().size() );
+            for ( Actor actor : page.getItems() )
+            {
+                ids.add( actor.getId() );
+            }
+            token = page.getNextPageToken();
+        }
+        while ( token != null );
+
+        assertEquals( "[10, 10, 5]", pageSizes.toString() );
+        assertEquals( 25, ids.size() );
+        for ( int i = 0; i < ids.size(); i++ )
+        {
+            assertEquals( Integer.valueOf( ( i + 1 ) * 2 ), ids.get( i ) );
+        }
+    }
+
+    public void testExactlyFullLastPageHasNoNextToken()
+    {
+        Page<Actor> first = actorDao.findActorPageByIndustry( "Bollywood", null, 25 );
+
+        assertEquals( 25, first.getItems().size() );
+        assertFalse( first.hasNext() );
+    }
+
+    public void testMoviePagesByGenreAndDirector()
+    {
+        Page<Movie> first = movieDao.findMoviePageByGenre( "Action", null, 4 );
+        Page<Movie> second = movieDao.findMoviePageByGenre( "Action", first.getNextPageToken(), 4 );
+
+        assertEquals( 4, first.getItems().size() );
+        assertEquals( 3, second.getItems().size() );
+        assertEquals( 5, second.getItems().get( 0 ).getMovieId() );
+        assertFalse( second.hasNext() );
+        assertEquals( 3, movieDao.findMoviePageByDirector( "Nolan", null, 10 ).getItems().size() );
+    }
+
+    public void testStreamingVisitsEveryMatch()
+    {
+        List<Integer> ages = new ArrayList<>();
+        long visited = actorDao.forEachActorByIndustry( "Bollywood", 4, actor -> ages.add( actor.getAge() ) );
+
+        assertEquals( 25, visited );
+        assertEquals( 25, ages.size() );
+        assertEquals( 10, actorDao.forEachActorBetweenAge( 21, 30, 3, actor -> { } ) );
+        assertEquals( 7, movieDao.forEachMovieByGenre( "Action", 2, movie -> { } ) );
+        assertEquals( 4, movieDao.forEachMovieByDirector( "Rajamouli", 2, movie -> { } ) );
+    }
+
+    public void testStreamingKeepsNothingTheActionLoaded()
+    {
+        List<Integer> cast = new ArrayList<>();
+        cast.add( 2 );
+        cast.add( 4 );
+        movieDao.addMovie( movie( 8, "Ensemble", 100 ), cast );
+
+        List<Movie> loaded = new ArrayList<>();
+        actorDao.forEachActorByIndustry( "Bollywood", 4, actor -> loaded.addAll( actor.getMovies() ) );
+
+        // a movie still managed from the row before would have come back as the same instance
+        assertEquals( 2, loaded.size() );
+        assertEquals( loaded.get( 0 ).getMovieId(), loaded.get( 1 ).getMovieId() );
+        assertNotSame( loaded.get( 0 ), loaded.get( 1 ) );
+    }
+
+    public void testCastCollectionAndFilmographyStreamAndPage()
+    {
+        List<Integer> cast = new ArrayList<>();
+        for ( int id = 24; id >= 2; id -= 2 )
+        {
+            cast.add( id );
+        }
+        movieDao.addMovie( movie( 8, "Ensemble", 100 ), cast );
+        // the same title again, sharing actor 2: every actor is still listed once
+        List<Integer> remake = new ArrayList<>();
+        remake.add( 3 );
+        remake.add( 2 );
+        movieDao.addMovie( movie( 9, "Ensemble", 200 ), remake );
+
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> pageSizes = new ArrayList<>();
+        String token = null;
+        do
+        {
+            Page<Actor> page = actorDao.findActorPageByMovieName( "Ensemble", token, 5 );
+            pageSizes.add( page.getItems().size() );
+            for ( Actor actor : page.getItems() )
+            {
+                ids.add( actor.getId() );
+            }
+            token = page.getNextPageToken();
+        }
+        while ( token != null );
+        assertEquals( "[5, 5, 3]", pageSizes.toString() );
+        assertEquals( "[2, 3, 4, 6, 8, 10, 12, 14, 16, 18, 20, 22, 24]", ids.toString() );
+        assertEquals( 13, actorDao.forEachActorByMovieName( "Ensemble", 4, actor -> { } ) );
+
+        Page<Movie> hits = movieDao.findMoviePageCollectionGreaterThan( 50, null, 1 );
+        assertEquals( 8, hits.getItems().get( 0 ).getMovieId() );
+        hits = movieDao.findMoviePageCollectionGreaterThan( 50, hits.getNextPageToken(), 1 );
+        assertEquals( 9, hits.getItems().get( 0 ).getMovieId() );
+        assertFalse( hits.hasNext() );
+        assertEquals( 2, movieDao.forEachMovieCollectionGreaterThan( 50, 1, movie -> { } ) );
+
+        Page<Movie> filmography = movieDao.findMoviePageByActorId( 2, null, 1 );
+        assertEquals( 8, filmography.getItems().get( 0 ).getMovieId() );
+        filmography = movieDao.findMoviePageByActorId( 2, filmography.getNextPageToken(), 1 );
+        assertEquals( 9, filmography.getItems().get( 0 ).getMovieId() );
+        List<String> names = new ArrayList<>();
+        assertEquals( 2, movieDao.forEachMovieByActorId( 2, 1, movie -> names.add( movie.getMovieName() ) ) );
+        assertEquals( "[Ensemble, Ensemble]", names.toString() );
+    }
+
+    public void testInvalidTokenIsRejected()
+    {
+        try
+        {
+            actorDao.findActorPageByIndustry( "Bollywood", "not-a-token", 10 );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    private static Movie movie( int id, String name, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id, name );
+        movie.setMovieDirector( "Zoya Akhtar" );
+        movie.setCollection( collection );
+        return movie;
+    }
+
+    private static Actor actor( int id, String industry, int age )
+    {
+        Actor actor = TestCatalogue.actor( id, industry );
+        actor.setAge( age );
+        return actor;
+    }
+}
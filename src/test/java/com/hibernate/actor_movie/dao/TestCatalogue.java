@@ -0,0 +1,51 @@
+package com.hibernate.actor_movie.dao;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+/**
+ * Actors and movies for the tests to save, with every column filled in.
+ * A test sets whatever it asserts on; an id of 0 leaves it to the id pool.
+ */
+public final class TestCatalogue
+{
+    private TestCatalogue()
+    {
+    }
+
+    // actor(): "Actor <id>", 30, in Film, earning 1000, Indian
+    public static Actor actor( int id )
+    {
+        return actor( id, "Film" );
+    }
+
+    public static Actor actor( int id, String industry )
+    {
+        Actor actor = new Actor();
+        actor.setId( id );
+        actor.setName( "Actor " + id );
+        actor.setAge( 30 );
+        actor.setIndustry( industry );
+        actor.setSalary( 1000 );
+        actor.setNationality( "Indian" );
+        return actor;
+    }
+
+    // movie(): "Movie <id>", a Drama by "Director", a Hit collecting 100
+    public static Movie movie( int id )
+    {
+        return movie( id, "Movie " + id );
+    }
+
+    public static Movie movie( int id, String name )
+    {
+        Movie movie = new Movie();
+        movie.setMovieId( id );
+        movie.setMovieName( name );
+        movie.setMovieDirector( "Director" );
+        movie.setGenre( "Drama" );
+        movie.setVerdict( "Hit" );
+        movie.setCollection( 100 );
+        return movie;
+    }
+}
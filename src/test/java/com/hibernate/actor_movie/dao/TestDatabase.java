@@ -0,0 +1,57 @@
+package com.hibernate.actor_movie.dao;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Persistence properties that point the "mysql-config" unit at an
+ * in-memory H2 database, so the DAOs can be tested without MySQL.
+ */
+public final class TestDatabase
+{
+    private TestDatabase()
+    {
+    }
+
+    public static Map<String, Object> h2( String name )
+    {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put( "javax.persistence.jdbc.driver", "org.h2.Driver" );
+        properties.put( "javax.persistence.jdbc.url", "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1" );
+        properties.put( "javax.persistence.jdbc.user", "sa" );
+        properties.put( "javax.persistence.jdbc.password", "" );
+        properties.put( "hibernate.dialect", "org.hibernate.dialect.H2Dialect" );
+        properties.put( "hibernate.hbm2ddl.auto", "create-drop" );
+        properties.put( "hibernate.show_sql", "false" );
+        properties.put( "hibernate.hikari.minimumIdle", "1" );
+        properties.put( "hibernate.hikari.maximumPoolSize", "4" );
+        // every statement a test runs must be served by an index
+        properties.put( "actor_movie.schema.index_check", "fail" );
+        // the cast graph reloads after bulk statements; tests that want it turn it on
+        properties.put( "actor_movie.graph.index", "false" );
+        // so does the aggregate view, and it reads the affected rows before each bulk update
+        properties.put( "actor_movie.aggregate.view", "false" );
+        // and the search index, which the search tests turn on
+        properties.put( "actor_movie.search.index", "false" );
+        // the change stream reads the ids each bulk statement changes; the change tests turn it on
+        properties.put( "actor_movie.change.stream", "false" );
+        return properties;
+    }
+
+    // useH2(): (re)builds the shared factory against a fresh in-memory database; settings are property names and
+    // values in pairs, laid over h2(), e.g. a feature the test turns on
+    public static void useH2( String name, String... settings )
+    {
+        if ( settings.length % 2 != 0 )
+        {
+            throw new IllegalArgumentException( "settings come in name, value pairs" );
+        }
+        Map<String, Object> properties = h2( name );
+        for ( int i = 0; i < settings.length; i += 2 )
+        {
+            properties.put( settings[i], settings[i + 1] );
+        }
+        EntityManagerFactoryProvider.close();
+        EntityManagerFactoryProvider.configure( properties );
+    }
+}
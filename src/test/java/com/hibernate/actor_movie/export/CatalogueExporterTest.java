@@ -0,0 +1,181 @@
+package com.hibernate.actor_movie.export;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+import com.hibernate.actor_movie.importer.CatalogueImporter;
+import com.hibernate.actor_movie.importer.ImportResult;
+
+import junit.framework.TestCase;
+
+/**
+ * Exports a small catalogue with three rows per block, so several blocks and
+ * a partial last block are written, then reads the snapshot back column by
+ * column and restores it into an empty database.
+ */
+public class CatalogueExporterTest
+    extends TestCase
+{
+    private Path dir;
+    private Path file;
+
+    protected void setUp() throws IOException
+    {
+        TestDatabase.useH2( "export" );
+        dir = Files.createTempDirectory( "export" );
+        file = dir.resolve( "catalogue.snapshot" );
+
+        ActorDao actorDao = new ActorDao();
+        MovieDao movieDao = new MovieDao();
+        actorDao.addActor( actor( 1, "Shah Rukh Khan", "Bollywood", 100.5, "Indian" ) );
+        actorDao.addActor( actor( 2, "Prabhas", "Tollywood", 90, "Indian" ) );
+        actorDao.addActor( actor( 3, "Tom Hanks", "Hollywood", 80, "American" ) );
+        actorDao.addActor( actor( 4, "Yash", "Sandalwood", 70, null ) );
+        actorDao.addActor( actor( 5, "Amélie Poulain", "Hollywood", 60.25, "Française" ) );
+        movieDao.addMovie( movie( 10, "Baahubali", "Rajamouli", "Epic", "Blockbuster", 1800 ), Arrays.asList( 2 ) );
+        movieDao.addMovie( movie( 11, "KGF", null, "Action", "Hit", 1200 ), Arrays.asList( 4, 1 ) );
+        movieDao.addMovie( movie( 12, "Cast Away", "Zemeckis", "Drama", "Hit", 430 ), Arrays.asList( 3 ) );
+    }
+
+    protected void tearDown() throws IOException
+    {
+        EntityManagerFactoryProvider.close();
+        Files.deleteIfExists( file );
+        Files.delete( dir );
+    }
+
+    public void testSnapshotHoldsEveryRow() throws IOException
+    {
+        ExportResult result = new CatalogueExporter( EntityManagerFactoryProvider.getEntityManagerFactory(), 3, 2 )
+            .export( file );
+
+        assertEquals( 5, result.getRows( SnapshotTable.ACTOR ) );
+        assertEquals( 3, result.getRows( SnapshotTable.MOVIE ) );
+        assertEquals( 4, result.getRows( SnapshotTable.ACTOR_MOVIE ) );
+        assertEquals( Files.size( file ), result.getBytes() );
+        assertFalse( Files.exists( dir.resolve( "catalogue.snapshot.partial" ) ) );
+
+        try ( CatalogueSnapshot snapshot = CatalogueSnapshot.open( file ) )
+        {
+            assertEquals( 5, snapshot.getRowCount( SnapshotTable.ACTOR ) );
+            assertEquals( 2, snapshot.blockCount( SnapshotTable.ACTOR ) );
+
+            // total salary of Hollywood, comparing dictionary codes instead of strings
+            int hollywood = snapshot.code( SnapshotColumn.ACTOR_INDUSTRY, "Hollywood" );
+            assertEquals( -1, snapshot.code( SnapshotColumn.ACTOR_INDUSTRY, "Kollywood" ) );
+            double hollywoodSalaries = 0;
+            StringBuilder names = new StringBuilder();
+            SnapshotCursor actors = snapshot.cursor( SnapshotTable.ACTOR );
+            while ( actors.next() )
+            {
+                if ( actors.getCode( SnapshotColumn.ACTOR_INDUSTRY ) == hollywood )
+                {
+                    hollywoodSalaries += actors.getDouble( SnapshotColumn.ACTOR_SALARY );
+                }
+                names.append( actors.getInt( SnapshotColumn.ACTOR_ID ) ).append( '=' )
+                    .append( actors.getString( SnapshotColumn.ACTOR_NAME ) ).append( '/' )
+                    .append( actors.getString( SnapshotColumn.ACTOR_NATIONALITY ) ).append( ' ' );
+            }
+            assertFalse( actors.next() );
+            assertEquals( 140.25, hollywoodSalaries, 0.0 );
+            assertEquals( "1=Shah Rukh Khan/Indian 2=Prabhas/Indian 3=Tom Hanks/American 4=Yash/null "
+                + "5=Amélie Poulain/Française ", names.toString() );
+            assertEquals( Arrays.asList( "Bollywood", "Tollywood", "Hollywood", "Sandalwood" ),
+                snapshot.values( SnapshotColumn.ACTOR_INDUSTRY ) );
+
+            SnapshotCursor movies = snapshot.cursor( SnapshotTable.MOVIE );
+            assertTrue( movies.next() );
+            assertTrue( movies.next() );
+            assertEquals( "KGF", movies.getString( SnapshotColumn.MOVIE_NAME ) );
+            assertNull( movies.getString( SnapshotColumn.MOVIE_DIRECTOR ) );
+            assertEquals( "Hit", movies.getString( SnapshotColumn.MOVIE_VERDICT ) );
+            assertEquals( 1200, movies.getInt( SnapshotColumn.MOVIE_COLLECTION ) );
+            try
+            {
+                movies.getInt( SnapshotColumn.ACTOR_AGE );
+                fail( "read an actor column from the movie cursor" );
+            }
+            catch ( IllegalArgumentException expected )
+            {
+            }
+
+            int links = 0;
+            SnapshotCursor cursor = snapshot.cursor( SnapshotTable.ACTOR_MOVIE );
+            while ( cursor.next() )
+            {
+                links += cursor.getInt( SnapshotColumn.LINK_ACTOR_ID ) * cursor.getInt( SnapshotColumn.LINK_MOVIE_ID );
+            }
+            assertEquals( 2 * 10 + 4 * 11 + 1 * 11 + 3 * 12, links );
+        }
+    }
+
+    public void testRestoreIntoAnEmptyDatabase() throws IOException
+    {
+        new CatalogueExporter( EntityManagerFactoryProvider.getEntityManagerFactory(), 3, 2 ).export( file );
+
+        TestDatabase.useH2( "export-restored" );
+        List<ImportResult> results;
+        try ( CatalogueSnapshot snapshot = CatalogueSnapshot.open( file ) )
+        {
+            results = snapshot.restore(
+                new CatalogueImporter( EntityManagerFactoryProvider.getEntityManagerFactory(), 2, 4 ) );
+        }
+
+        assertEquals( 5, results.get( 0 ).getRows() );
+        assertEquals( 3, results.get( 1 ).getRows() );
+        assertEquals( 4, results.get( 2 ).getRows() );
+        Actor khan = new ActorDao().findActorById( 1, Actor.WITH_MOVIES );
+        assertEquals( "Shah Rukh Khan", khan.getName() );
+        assertEquals( 100.5, khan.getSalary(), 0.0 );
+        assertEquals( "KGF", khan.getMovies().get( 0 ).getMovieName() );
+        Actor yash = new ActorDao().findActorById( 4 );
+        assertNull( yash.getNationality() );
+        assertEquals( "Amélie Poulain", new ActorDao().findActorById( 5 ).getName() );
+        assertEquals( 2, new MovieDao().findMoviesByIds( Arrays.asList( 11 ), Movie.WITH_ACTORS ).get( 0 )
+            .getActor().size() );
+    }
+
+    public void testRejectsOtherFiles() throws IOException
+    {
+        Files.write( file, "id,name\n1,Prabhas\n".getBytes( StandardCharsets.UTF_8 ) );
+        try
+        {
+            CatalogueSnapshot.open( file ).close();
+            fail( "opened a CSV file as a snapshot" );
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    private static Actor actor( int id, String name, String industry, double salary, String nationality )
+    {
+        Actor actor = TestCatalogue.actor( id, industry );
+        actor.setName( name );
+        actor.setAge( 40 );
+        actor.setSalary( salary );
+        actor.setNationality( nationality );
+        return actor;
+    }
+
+    private static Movie movie( int id, String name, String director, String genre, String verdict, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id, name );
+        movie.setMovieDirector( director );
+        movie.setGenre( genre );
+        movie.setVerdict( verdict );
+        movie.setCollection( collection );
+        return movie;
+    }
+}
@@ -0,0 +1,116 @@
+package com.hibernate.actor_movie.graph;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Traversals over a small cast graph, and the index following DAO writes.
+ * The chain used throughout: actors 1 and 2 in movie 10, 2 and 3 in 11,
+ * 3 and 4 in 12; actor 5 alone in 13.
+ */
+public class CastGraphTest
+    extends TestCase
+{
+    private static CastGraph chain()
+    {
+        long[] links = { CastGraph.link( 3, 12 ), CastGraph.link( 1, 10 ), CastGraph.link( 2, 10 ),
+            CastGraph.link( 2, 11 ), CastGraph.link( 3, 11 ), CastGraph.link( 4, 12 ), CastGraph.link( 5, 13 ),
+            CastGraph.link( 1, 10 ) };
+        return CastGraph.fromLinks( links, links.length );
+    }
+
+    public void testFilmographyAndCast()
+    {
+        CastGraph graph = chain();
+
+        assertEquals( 5, graph.actorCount() );
+        assertEquals( 4, graph.movieCount() );
+        assertEquals( 7, graph.linkCount() );
+        assertTrue( Arrays.equals( new int[] { 10, 11 }, graph.filmography( 2 ) ) );
+        assertTrue( Arrays.equals( new int[] { 3, 4 }, graph.cast( 12 ) ) );
+        assertEquals( 0, graph.filmography( 99 ).length );
+        assertEquals( 0, graph.cast( 99 ).length );
+    }
+
+    public void testCoStarsAndNeighbourhood()
+    {
+        CastGraph graph = chain();
+
+        assertTrue( Arrays.equals( new int[] { 1, 3 }, graph.coStars( 2 ) ) );
+        assertTrue( Arrays.equals( new int[] { 2, 3 }, graph.neighbourhood( 1, 2 ) ) );
+        assertTrue( Arrays.equals( new int[] { 2, 3, 4 }, graph.neighbourhood( 1, 3 ) ) );
+        assertTrue( Arrays.equals( new int[] { 2, 3, 4 }, graph.neighbourhood( 1, 10 ) ) );
+        assertEquals( 0, graph.coStars( 5 ).length );
+        assertEquals( 0, graph.neighbourhood( 1, 0 ).length );
+    }
+
+    public void testWithActorLinksReplacesOnlyThoseActors()
+    {
+        Map<Integer, int[]> changes = new HashMap<>();
+        changes.put( 2, new int[] { 12 } );
+        changes.put( 5, new int[0] );
+        changes.put( 6, new int[] { 10 } );
+        CastGraph graph = chain().withActorLinks( changes );
+
+        assertTrue( Arrays.equals( new int[] { 1, 6 }, graph.cast( 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 3 }, graph.cast( 11 ) ) );
+        assertTrue( Arrays.equals( new int[] { 2, 3, 4 }, graph.cast( 12 ) ) );
+        assertEquals( 0, graph.cast( 13 ).length );
+    }
+
+    public void testIndexFollowsDaoWrites()
+    {
+        TestDatabase.useH2( "graph", CastGraphIndex.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            MovieDao movieDao = new MovieDao();
+            for ( int id = 1; id <= 4; id++ )
+            {
+                actorDao.addActor( TestCatalogue.actor( id, id <= 2 ? "Film" : "Stage" ) );
+            }
+            assertEquals( 0, CastGraphIndex.current( emf ).graph().linkCount() );
+
+            movieDao.addMovie( TestCatalogue.movie( 10 ), Arrays.asList( 1, 2 ) );
+            movieDao.addMovie( TestCatalogue.movie( 11 ), Arrays.asList( 2, 3, 4 ) );
+            CastGraph graph = CastGraphIndex.current( emf ).graph();
+            assertTrue( Arrays.equals( new int[] { 10, 11 }, graph.filmography( 2 ) ) );
+            assertTrue( Arrays.equals( new int[] { 2, 3, 4 }, graph.neighbourhood( 1, 2 ) ) );
+
+            // a rolled back link never reaches the graph
+            EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.find( Actor.class, 1 ).getMovies().add( em.find( Movie.class, 11 ) );
+            em.flush();
+            em.getTransaction().rollback();
+            em.close();
+            assertTrue( Arrays.equals( new int[] { 10 }, CastGraphIndex.current( emf ).graph().filmography( 1 ) ) );
+
+            // bulk deletes go around Hibernate, the index reloads
+            actorDao.deleteAllActorsByIndustry( "Film" );
+            graph = CastGraphIndex.current( emf ).graph();
+            assertEquals( 0, graph.cast( 10 ).length );
+            assertTrue( Arrays.equals( new int[] { 3, 4 }, graph.cast( 11 ) ) );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+        assertNull( CastGraphIndex.current( emf ) );
+    }
+}
@@ -0,0 +1,155 @@
+package com.hibernate.actor_movie.id;
+
+import java.util.Arrays;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Pooled ids: entities without an id get one from their pool, in blocks of
+ * the configured size and without a select per insert, while ids given by
+ * the caller are kept and never handed out again.
+ */
+public class PooledIdGeneratorTest
+    extends TestCase
+{
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testNewEntitiesTakeIdsFromTheirPool()
+    {
+        TestDatabase.useH2( "pooledIds", PooledIdGenerator.POOL_SIZE_PROPERTY + "Actor", "10" );
+        ActorDao actorDao = new ActorDao();
+        MovieDao movieDao = new MovieDao();
+
+        Actor first = TestCatalogue.actor( 0 );
+        actorDao.addActor( first );
+        Actor second = TestCatalogue.actor( 0 );
+        actorDao.addActor( second );
+        assertEquals( 1, first.getId() );
+        assertEquals( 2, second.getId() );
+        // one block of 10 reserved for actors, one of the default 50 for movies
+        assertEquals( 10, lastReservedId( "Actor" ) );
+
+        Movie movie = TestCatalogue.movie( 0 );
+        movieDao.addMovie( movie, Arrays.asList( 1, 2 ) );
+        assertEquals( 1, movie.getMovieId() );
+        assertEquals( 50, lastReservedId( "Movie" ) );
+        assertEquals( 2, movieDao.findMoviesByIds( Arrays.asList( 1 ), Movie.WITH_ACTORS ).get( 0 ).getActor().size() );
+
+        // a caller's id is kept; once the pool has advanced past it, the rest of the reserved block is skipped
+        actorDao.addActor( TestCatalogue.actor( 5 ) );
+        actorDao.addActor( TestCatalogue.actor( 100 ) );
+        PooledIdGenerator.advance( EntityManagerFactoryProvider.getEntityManagerFactory(), Actor.class );
+        Actor third = TestCatalogue.actor( 0 );
+        actorDao.addActor( third );
+        assertEquals( 101, third.getId() );
+        assertEquals( "Actor 5", actorDao.findActorById( 5 ).getName() );
+        assertEquals( 110, lastReservedId( "Actor" ) );
+    }
+
+    public void testCallerIdInsideTheReservedBlockIsNotHandedOut()
+    {
+        TestDatabase.useH2( "pooledIdsAssigned" );
+        ActorDao actorDao = new ActorDao();
+
+        Actor first = TestCatalogue.actor( 0 );
+        actorDao.addActor( first );
+        actorDao.addActor( TestCatalogue.actor( 2 ) );
+        Actor third = TestCatalogue.actor( 0 );
+        actorDao.addActor( third );
+
+        assertEquals( 1, first.getId() );
+        assertEquals( 3, third.getId() );
+        assertEquals( "Actor 2", actorDao.findActorById( 2 ).getName() );
+    }
+
+    public void testFarCallerIdMovesThePoolInOneStep()
+    {
+        TestDatabase.useH2( "pooledIdsFar" );
+        ActorDao actorDao = new ActorDao();
+
+        actorDao.addActor( TestCatalogue.actor( 0 ) );
+        actorDao.addActor( TestCatalogue.actor( 10000000 ) );
+        Actor next = TestCatalogue.actor( 0 );
+        actorDao.addActor( next );
+
+        assertEquals( 10000001, next.getId() );
+        // moved up to the caller's id, then one block of 50 reserved past it
+        assertEquals( 10000050, lastReservedId( "Actor" ) );
+    }
+
+    public void testPoolStartsPastExistingIds()
+    {
+        TestDatabase.useH2( "pooledIdsRestart", "hibernate.hbm2ddl.auto", "create" );
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        em.getTransaction().begin();
+        for ( int id = 1; id <= 5; id++ )
+        {
+            em.persist( TestCatalogue.actor( id ) );
+        }
+        em.getTransaction().commit();
+        em.close();
+
+        // the next factory on the same database finds actors 1..5
+        TestDatabase.useH2( "pooledIdsRestart", "hibernate.hbm2ddl.auto", "update" );
+        Actor actor = TestCatalogue.actor( 0 );
+        new ActorDao().addActor( actor );
+        assertEquals( 6, actor.getId() );
+    }
+
+    public void testNewRowsAreInsertedWithoutSelects()
+    {
+        TestDatabase.useH2( "pooledInserts",
+            "hibernate.generate_statistics", "true",
+            PooledIdGenerator.POOL_SIZE_PROPERTY + "Actor", "100" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        Statistics statistics = emf.unwrap( SessionFactory.class ).getStatistics();
+        statistics.clear();
+
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        for ( int i = 0; i < 100; i++ )
+        {
+            em.persist( TestCatalogue.actor( 0 ) );
+        }
+        em.getTransaction().commit();
+        em.close();
+
+        // the batched inserts alone; the generator reserved the block with a select and an update of the Actor pool
+        // row on a connection of its own, and merge would have selected every actor first
+        assertEquals( 1, statistics.getPrepareStatementCount() );
+        assertEquals( 100, statistics.getEntityInsertCount() );
+        assertEquals( 100, lastReservedId( "Actor" ) );
+    }
+
+    private static long lastReservedId( String entity )
+    {
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        try
+        {
+            return ( (Number) em.createNativeQuery( "SELECT next_val FROM id_pool WHERE sequence_name = ?1" )
+                .setParameter( 1, entity )
+                .getSingleResult() ).longValue();
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.hibernate.actor_movie.importer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.Cache;
+import org.hibernate.SessionFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestDatabase;
+import com.hibernate.actor_movie.graph.CastGraphIndex;
+
+import junit.framework.TestCase;
+
+/**
+ * Imports small CSV and JSONL files into H2 with tiny batches and chunks,
+ * so several transactions and partial final batches are exercised.
+ */
+public class CatalogueImporterTest
+    extends TestCase
+{
+    private Path dir;
+    private CatalogueImporter importer;
+
+    protected void setUp() throws IOException
+    {
+        TestDatabase.useH2( "importer" );
+        dir = Files.createTempDirectory( "catalogue" );
+        importer = new CatalogueImporter( EntityManagerFactoryProvider.getEntityManagerFactory(), 2, 4 );
+    }
+
+    protected void tearDown() throws IOException
+    {
+        EntityManagerFactoryProvider.close();
+        try ( java.util.stream.Stream<Path> files = Files.list( dir ) )
+        {
+            for ( Path file : (Iterable<Path>) files::iterator )
+            {
+                Files.delete( file );
+            }
+        }
+        Files.delete( dir );
+    }
+
+    public void testImportsActorsMoviesAndLinks() throws IOException
+    {
+        Path actors = write( "actors.csv",
+            "id,name,age,industry,salary,nationality",
+            "1,\"Khan, Shah Rukh\",58,Bollywood,100.5,Indian",
+            "2,Prabhas,44,Tollywood,90,Indian",
+            "",
+            "3,Tom Hanks,67,Hollywood,80,American",
+            "4,Yash,38,Sandalwood,70,Indian",
+            "5,Mohanlal,63,Mollywood,60,Indian" );
+        Path movies = write( "movies.jsonl",
+            "{\"movieId\": 10, \"movieName\": \"Baahubali\", \"movieDirector\": \"Rajamouli\", \"genre\": \"Epic\", \"verdict\": \"Blockbuster\", \"collection\": 1800}",
+            "{\"movieId\": 11, \"movieName\": \"KGF \\\"2\\\"\", \"movieDirector\": \"Prashanth Neel\", \"genre\": \"Action\", \"verdict\": \"Hit\", \"collection\": 1200}" );
+        Path links = write( "links.csv", "movieId,actorId", "10,2", "11,4", "10,1" );
+
+        ImportResult actorResult = importer.importActors( actors );
+        ImportResult movieResult = importer.importMovies( movies );
+        ImportResult linkResult = importer.importLinks( links );
+
+        assertEquals( 5, actorResult.getRows() );
+        assertEquals( 2, actorResult.getTransactions() );
+        assertEquals( 2, movieResult.getRows() );
+        assertEquals( 3, linkResult.getRows() );
+
+        Actor shahRukh = new ActorDao().findActorById( 1, Actor.WITH_MOVIES );
+        assertEquals( "Khan, Shah Rukh", shahRukh.getName() );
+        assertEquals( 100.5, shahRukh.getSalary(), 0.0 );
+        assertEquals( "Baahubali", shahRukh.getMovies().get( 0 ).getMovieName() );
+
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        EntityManager em = emf.createEntityManager();
+        try
+        {
+            assertEquals( "KGF \"2\"", em.createQuery( "SELECT m.movieName FROM Movie m WHERE m.movieId = 11", String.class )
+                .getSingleResult() );
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+
+    public void testChunkBoundaryCommitsEveryRow() throws IOException
+    {
+        Path actors = write( "actors.csv",
+            "id,name,age,industry,salary,nationality",
+            "1,A,30,X,1,N", "2,B,30,X,1,N", "3,C,30,X,1,N", "4,D,30,X,1,N" );
+
+        ImportResult result = importer.importActors( actors );
+
+        assertEquals( 4, result.getRows() );
+        assertEquals( 4, new ActorDao().findActorByIndustry( "X" ).size() );
+    }
+
+    public void testFailedLinkImportRefreshesTheCommittedChunks() throws IOException
+    {
+        TestDatabase.useH2( "importerLinks", CastGraphIndex.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        importer = new CatalogueImporter( emf, 2, 4 );
+        importer.importActors( write( "actors.csv", "id,name,age,industry,salary,nationality",
+            "1,A,30,X,1,N", "2,B,30,X,1,N", "3,C,30,X,1,N" ) );
+        importer.importMovies( write( "movies.csv", "movieId,movieName,movieDirector,genre,verdict,collection",
+            "10,M,D,G,Hit,1", "11,N,D,G,Hit,1" ) );
+        // actor 1's empty movie list is cached
+        EntityManager em = emf.createEntityManager();
+        assertEquals( 0, em.find( Actor.class, 1 ).getMovies().size() );
+        em.close();
+        Cache cache = emf.unwrap( SessionFactory.class ).getCache();
+        assertTrue( cache.containsCollection( "com.hibernate.JPA.Hibernate.Actor.movies", 1 ) );
+
+        // the first chunk of 4 commits, the second fails on a movie that does not exist
+        Path links = write( "links.csv", "actorId,movieId", "1,10", "2,10", "3,10", "1,11", "2,99" );
+        try
+        {
+            importer.importLinks( links );
+            fail( "linked a movie that does not exist" );
+        }
+        catch ( PersistenceException expected )
+        {
+        }
+
+        assertFalse( cache.containsCollection( "com.hibernate.JPA.Hibernate.Actor.movies", 1 ) );
+        assertEquals( 2, new ActorDao().findActorById( 1, Actor.WITH_MOVIES ).getMovies().size() );
+        assertTrue( Arrays.equals( new int[] { 1, 2, 3 }, CastGraphIndex.current( emf ).graph().cast( 10 ) ) );
+    }
+
+    public void testBrokenUnicodeEscapeIsMalformed() throws IOException
+    {
+        String[] broken = {
+            "{\"name\": \"Bad \\u12\"}",
+            "{\"name\": \"Bad \\uzzzz\"}",
+            "{\"name\": \"Bad \\u0\uff10\uff10\uff10\"}",
+            "{\"name\": \"Bad \\u12" };
+        for ( String line : broken )
+        {
+            Path file = write( "broken.jsonl", "{\"name\": \"Ren\\u00e9e\"}", line );
+            try ( RowReader reader = RowReader.open( file, "name" ) )
+            {
+                assertEquals( "Ren\u00e9e", reader.next()[0] );
+                try
+                {
+                    reader.next();
+                    fail( line );
+                }
+                catch ( IllegalArgumentException expected )
+                {
+                    assertTrue( expected.getMessage(), expected.getMessage().startsWith( "Malformed JSON on line 2: " ) );
+                    assertTrue( expected.getMessage(), expected.getMessage().contains( "escape at column 15" ) );
+                }
+            }
+        }
+    }
+
+    private Path write( String name, String... lines ) throws IOException
+    {
+        return Files.write( dir.resolve( name ), Arrays.asList( lines ), StandardCharsets.UTF_8 );
+    }
+}
@@ -0,0 +1,161 @@
+package com.hibernate.actor_movie.metrics;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Instrumented DAOs record calls, statements, rows and entities per method,
+ * log slow calls, and record nothing while metrics are disabled.
+ */
+public class DaoMetricsTest
+    extends TestCase
+{
+    private InstrumentedActorDao actorDao;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "metrics" );
+        actorDao = new InstrumentedActorDao();
+        for ( int id = 1; id <= 3; id++ )
+        {
+            Actor actor = new Actor();
+            actor.setId( id );
+            actor.setName( "Actor " + id );
+            actor.setIndustry( "Film" );
+            actorDao.addActor( actor );
+        }
+        DaoMetrics.reset();
+        DaoMetrics.setEnabled( true );
+        DaoMetrics.setSlowThreshold( 1, TimeUnit.HOURS );
+    }
+
+    protected void tearDown()
+    {
+        DaoMetrics.setEnabled( false );
+        DaoMetrics.reset();
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testRecordsCallsStatementsRowsAndEntities()
+    {
+        actorDao.findActorByIndustry( "Film" );
+        actorDao.findActorByIndustry( "None" );
+
+        MethodSnapshot finder = snapshot( "ActorDao.findActorByIndustry" );
+        assertEquals( 2, finder.getCalls() );
+        assertEquals( 0, finder.getErrors() );
+        assertEquals( 2, finder.getStatements() );
+        assertEquals( 3, finder.getRows() );
+        assertEquals( 3, finder.getEntities() );
+        assertTrue( finder.getMaxMicros() >= finder.getP50Micros() );
+    }
+
+    public void testOverloadIsCountedOnce()
+    {
+        actorDao.findActorByName( "Actor 1" );
+
+        assertEquals( 1, snapshot( "ActorDao.findActorByName" ).getCalls() );
+    }
+
+    public void testFailuresAreCounted()
+    {
+        try
+        {
+            actorDao.findActorPageByIndustry( "Film", "bad token", 10 );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+
+        assertEquals( 1, snapshot( "ActorDao.findActorPageByIndustry" ).getErrors() );
+    }
+
+    public void testDisabledRecordsNothing()
+    {
+        DaoMetrics.setEnabled( false );
+        actorDao.findActorByIndustry( "Film" );
+
+        assertEquals( 0, snapshot( "ActorDao.findActorByIndustry" ).getCalls() );
+    }
+
+    public void testSlowCallsAreLogged()
+    {
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler()
+        {
+            public void publish( LogRecord record )
+            {
+                records.add( record );
+            }
+
+            public void flush()
+            {
+            }
+
+            public void close()
+            {
+            }
+        };
+        DaoMetrics.SLOW_LOG.addHandler( handler );
+        try
+        {
+            DaoMetrics.setSlowThreshold( 0, TimeUnit.NANOSECONDS );
+            actorDao.findActorById( 2 );
+        }
+        finally
+        {
+            DaoMetrics.SLOW_LOG.removeHandler( handler );
+        }
+
+        assertEquals( 1, records.size() );
+        assertTrue( records.get( 0 ).getMessage().startsWith( "Slow DAO call ActorDao.findActorById" ) );
+    }
+
+    public void testExportsCsv()
+    {
+        actorDao.findActorById( 1 );
+        StringWriter csv = new StringWriter();
+        DaoMetrics.exportCsv( csv );
+
+        assertTrue( csv.toString().startsWith( "method,calls," ) );
+        assertTrue( csv.toString().contains( "\nActorDao.findActorById,1," ) );
+        assertTrue( DaoMetrics.dump().contains( "ActorDao.findActorById" ) );
+    }
+
+    public void testHistogramPercentiles()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for ( long value = 1; value <= 1000; value++ )
+        {
+            histogram.record( value * 1000 );
+        }
+
+        assertEquals( 1000, histogram.getCount() );
+        assertEquals( 1_000_000, histogram.getMax() );
+        assertEquals( 500_000, histogram.percentile( 50 ), 500_000 / 8 );
+        assertEquals( 990_000, histogram.percentile( 99 ), 990_000 / 8 );
+    }
+
+    private static MethodSnapshot snapshot( String name )
+    {
+        for ( MethodSnapshot method : DaoMetrics.snapshot() )
+        {
+            if ( method.getName().equals( name ) )
+            {
+                return method;
+            }
+        }
+        throw new AssertionError( name + " not registered" );
+    }
+}
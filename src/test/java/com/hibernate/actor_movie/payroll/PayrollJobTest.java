@@ -0,0 +1,188 @@
+package com.hibernate.actor_movie.payroll;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Salaries recomputed partition by partition from the actors' movies, and
+ * a job that failed part way picked up from its checkpoints.
+ */
+public class PayrollJobTest
+    extends TestCase
+{
+    private static final int ACTORS = 25;
+
+    private EntityManagerFactory emf;
+    private ActorDao actorDao;
+    private ForkJoinPool pool;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "payroll" );
+        emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        actorDao = new ActorDao();
+        MovieDao movieDao = new MovieDao();
+        for ( int id = 1; id <= ACTORS; id++ )
+        {
+            actorDao.addActor( TestCatalogue.actor( id ) );
+        }
+        // a blockbuster for the even ids, a hit for every third, a flop for every fifth; 1, 7, 11... have no movies
+        movieDao.addMovie( movie( 100, "Blockbuster", 1000 ), actorsWhere( 2 ) );
+        movieDao.addMovie( movie( 101, "Hit", 500 ), actorsWhere( 3 ) );
+        movieDao.addMovie( movie( 102, "Flop", 200 ), actorsWhere( 5 ) );
+        List<Integer> actor21 = new ArrayList<>();
+        actor21.add( 21 );
+        movieDao.addMovie( movie( 103, "Cult", 400 ), actor21 );
+        pool = new ForkJoinPool( 4 );
+    }
+
+    protected void tearDown()
+    {
+        pool.shutdown();
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testSalariesFollowMovies()
+    {
+        // cached before the job, so a stale cached actor would show
+        assertEquals( 1000.0, actorDao.findActorById( 2 ).getSalary() );
+
+        PayrollResult result = new PayrollJob( emf, "payroll-1", SalaryFormula.VERDICT_SHARE, 10, pool ).run();
+        // ids 1-9, 10-19 and 20-25
+        assertEquals( 3, result.getPartitions() );
+        assertEquals( 0, result.getSkipped() );
+        assertEquals( ACTORS, result.getActors() );
+        assertEquals( 18, result.getChanged() );
+
+        for ( int id = 1; id <= ACTORS; id++ )
+        {
+            Actor actor = actorDao.findActorById( id );
+            assertEquals( "actor " + id, expectedSalary( id ), actor.getSalary(), 1e-9 );
+            assertEquals( "actor " + id, expectedSalary( id ) == 1000.0 ? 0 : 1, actor.getVersion() );
+        }
+    }
+
+    public void testRestartRetriesOnlyFailedPartitions()
+    {
+        SalaryFormula noCults = ( collection, verdict ) -> {
+            if ( "Cult".equals( verdict ) )
+            {
+                throw new IllegalArgumentException( "no rate for cult movies" );
+            }
+            return SalaryFormula.VERDICT_SHARE.fee( collection, verdict );
+        };
+        try
+        {
+            new PayrollJob( emf, "payroll-2", noCults, 10, pool ).run();
+            fail( "a partition failed" );
+        }
+        catch ( IllegalStateException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().startsWith( "1 payroll partitions" ) );
+            assertTrue( expected.getCause() instanceof IllegalArgumentException );
+        }
+        // actor 21's partition rolled back, the others committed
+        assertEquals( 1000.0, actorDao.findActorById( 21 ).getSalary() );
+        assertEquals( 1000.0, actorDao.findActorById( 20 ).getSalary() );
+        assertEquals( expectedSalary( 2 ), actorDao.findActorById( 2 ).getSalary(), 1e-9 );
+
+        PayrollJob job = new PayrollJob( emf, "payroll-2", SalaryFormula.VERDICT_SHARE, 10, pool );
+        PayrollResult retried = job.run();
+        assertEquals( 1, retried.getPartitions() );
+        assertEquals( 2, retried.getSkipped() );
+        assertEquals( 6, retried.getActors() );
+        assertEquals( expectedSalary( 21 ), actorDao.findActorById( 21 ).getSalary(), 1e-9 );
+        assertEquals( expectedSalary( 20 ), actorDao.findActorById( 20 ).getSalary(), 1e-9 );
+
+        assertEquals( 3, job.run().getSkipped() );
+        assertEquals( 3, job.clear() );
+        PayrollResult again = job.run();
+        assertEquals( 3, again.getPartitions() );
+        // every salary is already right
+        assertEquals( 0, again.getChanged() );
+        assertEquals( 1, actorDao.findActorById( 2 ).getVersion() );
+    }
+
+    public void testDefaultJobRunsOnAPoolOfItsOwn()
+    {
+        PayrollJob job = new PayrollJob( emf, "payroll-4", SalaryFormula.VERDICT_SHARE );
+        PayrollResult result = job.run();
+        assertEquals( 1, result.getPartitions() );
+        assertEquals( 18, result.getChanged() );
+        assertEquals( expectedSalary( 2 ), actorDao.findActorById( 2 ).getSalary(), 1e-9 );
+
+        // each run starts a pool of its own
+        assertEquals( 1, job.run().getSkipped() );
+    }
+
+    public void testRestartNeedsTheSamePartitions()
+    {
+        new PayrollJob( emf, "payroll-3", SalaryFormula.VERDICT_SHARE, 10, pool ).run();
+        try
+        {
+            new PayrollJob( emf, "payroll-3", SalaryFormula.VERDICT_SHARE, 7, pool ).run();
+            fail( "restarted with partitions of 7 ids" );
+        }
+        catch ( IllegalStateException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().contains( "payroll-3" ) );
+        }
+    }
+
+    private static double expectedSalary( int id )
+    {
+        double salary = 0;
+        boolean movies = false;
+        if ( id % 2 == 0 )
+        {
+            salary += 100;
+            movies = true;
+        }
+        if ( id % 3 == 0 )
+        {
+            salary += 30;
+            movies = true;
+        }
+        if ( id % 5 == 0 )
+        {
+            salary += 2;
+            movies = true;
+        }
+        if ( id == 21 )
+        {
+            salary += 12;
+        }
+        return movies ? salary : 1000.0;
+    }
+
+    private static List<Integer> actorsWhere( int divisor )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( int id = divisor; id <= ACTORS; id += divisor )
+        {
+            ids.add( id );
+        }
+        return ids;
+    }
+
+    private static Movie movie( int id, String verdict, int collection )
+    {
+        Movie movie = TestCatalogue.movie( id );
+        movie.setVerdict( verdict );
+        movie.setCollection( collection );
+        return movie;
+    }
+}
@@ -0,0 +1,124 @@
+package com.hibernate.actor_movie.render;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+
+import junit.framework.TestCase;
+
+/**
+ * Renders actors and movies that point at each other, at several depths,
+ * and writes many rendered rows through a ResultWriter whose buffers fill
+ * up mid-row.
+ */
+public class ResultRendererTest
+    extends TestCase
+{
+    private Actor actor;
+    private Movie movie;
+
+    protected void setUp()
+    {
+        actor = new Actor();
+        actor.setId( 1 );
+        actor.setName( "Amélie" );
+        actor.setAge( 30 );
+        actor.setIndustry( "Film" );
+        actor.setSalary( 100 );
+        actor.setNationality( "FR" );
+        movie = new Movie();
+        movie.setMovieId( 10 );
+        movie.setMovieName( "First" );
+        movie.setMovieDirector( "Director" );
+        movie.setGenre( "Drama" );
+        movie.setVerdict( "Hit" );
+        movie.setCollection( 5 );
+        actor.setMovies( new ArrayList<>( Collections.singletonList( movie ) ) );
+        movie.setActor( new ArrayList<>( Collections.singletonList( actor ) ) );
+    }
+
+    public void testCycleEndsInAReference()
+    {
+        String expected = "Actor [id=1, name=Amélie, age=30, industry=Film, salary=100.0, nationality=FR, movies=["
+            + "Movie [movieId=10, movieName=First, movieDirector=Director, genre=Drama, verdict=Hit, collection=5, "
+            + "actor=[Actor#1]]]]";
+
+        assertEquals( expected, new ResultRenderer().render( actor ).toString() );
+        // deeper than the cycle: the actor is still being rendered when its movie lists it again
+        assertEquals( expected, new ResultRenderer( 5 ).render( actor ).toString() );
+        assertEquals( expected, actor.toString() );
+    }
+
+    public void testDepthLimitsAssociations()
+    {
+        Movie sequel = new Movie();
+        sequel.setMovieId( 11 );
+        sequel.setActor( new ArrayList<>( Collections.singletonList( actor ) ) );
+        actor.getMovies().add( sequel );
+
+        assertTrue( new ResultRenderer( 0 ).render( movie ).toString().endsWith( ", actor=[Actor#1]]" ) );
+        assertTrue( new ResultRenderer( 1 ).render( movie ).toString()
+            .endsWith( "nationality=FR, movies=[Movie#10, Movie#11]]]]" ) );
+        assertTrue( new ResultRenderer( 2 ).render( movie ).toString()
+            .endsWith( "nationality=FR, movies=[Movie#10, Movie [movieId=11, movieName=null, movieDirector=null, "
+                + "genre=null, verdict=null, collection=0, actor=[Actor#1]]]]]]" ) );
+    }
+
+    public void testListsAndMissingAssociations()
+    {
+        Actor newcomer = new Actor();
+        newcomer.setId( 2 );
+
+        assertEquals( "[Actor#1 is not an actor, null]",
+            new ResultRenderer().render( Arrays.asList( "Actor#1 is not an actor", null ) ).toString() );
+        assertTrue( new ResultRenderer().render( newcomer ).toString().endsWith( ", movies=null]" ) );
+        try
+        {
+            new ResultRenderer( -1 );
+            fail();
+        }
+        catch ( IllegalArgumentException expected )
+        {
+        }
+    }
+
+    public void testWriterMatchesPrintedText() throws IOException
+    {
+        List<Object> rows = new ArrayList<>();
+        StringBuilder expected = new StringBuilder();
+        for ( int i = 0; i < 2000; i++ )
+        {
+            Movie row = new Movie();
+            row.setMovieId( i );
+            row.setMovieName( "Film 🎬 " + i );
+            row.setActor( movie.getActor() );
+            rows.add( i % 2 == 0 ? actor : row );
+            expected.append( rows.get( i ) ).append( System.lineSeparator() );
+        }
+        Path file = Files.createTempFile( "render", ".txt" );
+        try
+        {
+            ResultWriter out = new ResultWriter( FileChannel.open( file, StandardOpenOption.WRITE ), 64, true );
+            assertEquals( rows.size(), new ResultRenderer().renderAll( rows, out ) );
+            out.close();
+
+            byte[] written = Files.readAllBytes( file );
+            assertEquals( expected.toString(), new String( written, StandardCharsets.UTF_8 ) );
+            assertEquals( written.length, out.getBytes() );
+        }
+        finally
+        {
+            Files.delete( file );
+        }
+    }
+}
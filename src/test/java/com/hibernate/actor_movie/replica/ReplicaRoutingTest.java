@@ -0,0 +1,274 @@
+package com.hibernate.actor_movie.replica;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.async.AsyncActorDao;
+import com.hibernate.actor_movie.async.DaoExecutor;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.ActorSummary;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Two in-memory databases stand in for the primary and its replicas. They are
+ * never synchronised, so the name an actor comes back with tells which one a
+ * finder read.
+ */
+public class ReplicaRoutingTest
+    extends TestCase
+{
+    private ActorDao actorDao;
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testFindersReadFromTheReplicaAndWritesGoToThePrimary()
+        throws Exception
+    {
+        useReplicas( url( "replica-one" ) );
+        replica( "replica-one", "Replica Brando" );
+
+        assertEquals( "Replica Brando", onFreshThread( () -> name( actorDao.findActorByIndustry( "Film" ) ) ) );
+        // the primary's actor is in the second-level cache since its insert, and is served from there
+        assertEquals( "Primary Brando", onFreshThread( () -> actorDao.findActorById( 1 ).getName() ) );
+        assertEquals( "Replica Brando", onFreshThread( () -> summaryName( actorDao.findActorSummariesByIndustry( "Film" ) ) ) );
+        assertEquals( 3, provider().getReads( 0 ) );
+        // every replica connection went back to its pool with its session
+        assertEquals( 0, provider().getActiveConnections( 0 ) );
+
+        // the write lands on the primary, and the thread that wrote reads it back from there
+        assertEquals( "USA", onFreshThread( () -> {
+            actorDao.updateActorNationalityById( 1, "USA" );
+            return actorDao.findActorByIndustry( "Film" ).get( 0 ).getNationality();
+        } ) );
+        assertEquals( "Replica Brando", onFreshThread( () -> name( actorDao.findActorByIndustry( "Film" ) ) ) );
+        assertEquals( "USA", ReplicaRouting.onPrimary( () -> actorDao.findActorByIndustry( "Film" ).get( 0 ).getNationality() ) );
+    }
+
+    public void testReadYourWritesAndOnPrimaryStayOnThePrimary()
+        throws Exception
+    {
+        useReplicas( url( "replica-ryw" ) );
+        replica( "replica-ryw", "Replica Brando" );
+
+        // this thread inserted the primary's actor in useReplicas()
+        assertEquals( "Primary Brando", name( actorDao.findActorByIndustry( "Film" ) ) );
+        assertEquals( "Primary Brando", onFreshThread(
+            () -> ReplicaRouting.onPrimary( () -> name( actorDao.findActorByIndustry( "Film" ) ) ) ) );
+        assertEquals( 0, provider().getReads( 0 ) );
+    }
+
+    public void testAsyncCallsKeepTheCallersRouting()
+        throws Exception
+    {
+        useReplicas( url( "replica-async" ) );
+        replica( "replica-async", "Replica Brando" );
+        DaoExecutor executor = new DaoExecutor( 2, 0, TimeUnit.SECONDS );
+        try
+        {
+            AsyncActorDao asyncDao = new AsyncActorDao( actorDao, executor );
+            // nothing written yet: the worker reads the replica
+            assertEquals( "Replica Brando", onFreshThread( () -> name( asyncDao.findActorByIndustry( "Film" ).get() ) ) );
+            assertEquals( "Primary Brando", onFreshThread( () -> ReplicaRouting.onPrimary(
+                () -> name( asyncDao.findActorByIndustry( "Film" ).join() ) ) ) );
+
+            // the write runs on one worker, the read after it on another, and both stay with the caller's window
+            assertEquals( "USA", onFreshThread( () -> {
+                asyncDao.updateActorNationalityById( 1, "USA" ).get();
+                return asyncDao.findActorByIndustry( "Film" ).get().get( 0 ).getNationality();
+            } ) );
+            assertEquals( "Primary Brando", onFreshThread( () -> asyncDao.updateActorNationalityById( 1, "Irish" )
+                .thenCompose( done -> asyncDao.findActorByIndustry( "Film" ) )
+                .thenApply( ReplicaRoutingTest::name )
+                .get() ) );
+            assertEquals( 1, provider().getReads( 0 ) );
+        }
+        finally
+        {
+            executor.close();
+        }
+    }
+
+    public void testFailedReadsGiveBackTheirReplicaConnections()
+        throws Exception
+    {
+        useReplicas( url( "replica-broken" ) );
+        replica( "replica-broken", "Replica Brando" );
+        try ( Connection connection = DriverManager.getConnection( url( "replica-broken" ), "sa", "" );
+            Statement statement = connection.createStatement() )
+        {
+            statement.execute( "DROP TABLE Actor_Movie" );
+            statement.execute( "DROP TABLE Actor" );
+        }
+
+        for ( int i = 0; i < 3; i++ )
+        {
+            try
+            {
+                onFreshThread( () -> actorDao.findActorByIndustry( "Film" ) );
+                fail( "read a table the replica does not have" );
+            }
+            catch ( ExecutionException expected )
+            {
+                assertTrue( expected.getCause() instanceof PersistenceException );
+            }
+        }
+        assertEquals( 3, provider().getReads( 0 ) );
+        assertEquals( 0, provider().getActiveConnections( 0 ) );
+    }
+
+    public void testReadsFallBackToThePrimaryWhileTheReplicaIsDown()
+        throws Exception
+    {
+        useReplicas( "jdbc:h2:mem:replica-late;IFEXISTS=TRUE;MODE=MySQL" );
+        awaitHealth( false );
+        assertEquals( "Primary Brando", onFreshThread( () -> name( actorDao.findActorByIndustry( "Film" ) ) ) );
+
+        replica( "replica-late", "Replica Brando" );
+        awaitHealth( true );
+        assertEquals( "Replica Brando", onFreshThread( () -> name( actorDao.findActorByIndustry( "Film" ) ) ) );
+    }
+
+    public void testReadsAreSpreadOverTheReplicas()
+        throws Exception
+    {
+        useReplicas( url( "replica-a" ) + "," + url( "replica-b" ) );
+        replica( "replica-a", "Brando A" );
+        replica( "replica-b", "Brando B" );
+
+        List<String> names = onFreshThread( () -> {
+            List<String> read = new ArrayList<>();
+            for ( int i = 0; i < 10; i++ )
+            {
+                read.add( name( actorDao.findActorByIndustry( "Film" ) ) );
+            }
+            return read;
+        } );
+        Set<String> distinct = new HashSet<>( names );
+        assertEquals( 2, distinct.size() );
+        assertTrue( distinct.contains( "Brando A" ) && distinct.contains( "Brando B" ) );
+        assertEquals( 5, provider().getReads( 0 ) );
+        assertEquals( 5, provider().getReads( 1 ) );
+    }
+
+    // useReplicas(): a fresh primary with one actor, routing to the replicas
+    private void useReplicas( String urls )
+    {
+        TestDatabase.useH2( "replica-primary",
+            RoutingConnectionProvider.REPLICA_URLS_PROPERTY, urls,
+            RoutingConnectionProvider.READ_YOUR_WRITES_PROPERTY, "60000",
+            RoutingConnectionProvider.HEALTH_CHECK_PROPERTY, "50",
+            RoutingConnectionProvider.CONNECTION_TIMEOUT_PROPERTY, "250" );
+        actorDao = new ActorDao();
+        actorDao.addActor( actor( "Primary Brando" ) );
+    }
+
+    // replica(): creates the replica's schema with the same actor under another name. The caches are off: the
+    // JVM's cache manager is the primary's, and must neither answer for the replica nor be closed with it.
+    private static void replica( String name, String actorName )
+    {
+        Map<String, Object> properties = TestDatabase.h2( name );
+        properties.put( "hibernate.hbm2ddl.auto", "create" );
+        properties.put( "hibernate.cache.use_second_level_cache", "false" );
+        properties.put( "hibernate.cache.use_query_cache", "false" );
+        properties.put( "hibernate.connection.provider_class",
+            "org.hibernate.hikaricp.internal.HikariCPConnectionProvider" );
+        EntityManagerFactory emf = Persistence.createEntityManagerFactory( EntityManagerFactoryProvider.PERSISTENCE_UNIT,
+            properties );
+        try
+        {
+            EntityManager em = emf.createEntityManager();
+            em.getTransaction().begin();
+            em.merge( actor( actorName ) );
+            em.getTransaction().commit();
+            em.close();
+        }
+        finally
+        {
+            emf.close();
+        }
+    }
+
+    private static String url( String name )
+    {
+        return "jdbc:h2:mem:" + name + ";MODE=MySQL;DB_CLOSE_DELAY=-1";
+    }
+
+    private static RoutingConnectionProvider provider()
+    {
+        return (RoutingConnectionProvider) EntityManagerFactoryProvider.getEntityManagerFactory()
+            .unwrap( SessionFactoryImplementor.class ).getServiceRegistry().getService( ConnectionProvider.class );
+    }
+
+    private static void awaitHealth( boolean healthy )
+        throws InterruptedException
+    {
+        for ( int i = 0; i < 200 && provider().isHealthy( 0 ) != healthy; i++ )
+        {
+            Thread.sleep( 25 );
+        }
+        assertEquals( healthy, provider().isHealthy( 0 ) );
+    }
+
+    // onFreshThread(): runs the call on a thread that has written nothing
+    private static <T> T onFreshThread( Callable<T> call )
+        throws Exception
+    {
+        ExecutorService thread = Executors.newSingleThreadExecutor();
+        try
+        {
+            return thread.submit( call ).get();
+        }
+        finally
+        {
+            thread.shutdown();
+        }
+    }
+
+    private static String name( List<Actor> actors )
+    {
+        assertEquals( 1, actors.size() );
+        return actors.get( 0 ).getName();
+    }
+
+    private static String summaryName( List<ActorSummary> summaries )
+    {
+        assertEquals( 1, summaries.size() );
+        return summaries.get( 0 ).getName();
+    }
+
+    private static Actor actor( String name )
+    {
+        Actor actor = TestCatalogue.actor( 1 );
+        actor.setName( name );
+        actor.setAge( 50 );
+        actor.setNationality( "American" );
+        return actor;
+    }
+}
@@ -0,0 +1,134 @@
+package com.hibernate.actor_movie.schema;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
+
+import javax.persistence.EntityManager;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * The index check accepts the statements the mapping has indexes for and
+ * reports the ones it has not, both for Hibernate's SQL and native SQL.
+ */
+public class IndexCheckTest
+    extends TestCase
+{
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    private static IndexCheck start( String mode )
+    {
+        TestDatabase.useH2( "indexcheck", IndexCheck.MODE_PROPERTY, mode );
+        return IndexCheck.current( EntityManagerFactoryProvider.getEntityManagerFactory() );
+    }
+
+    public void testIndexedStatementsPass()
+    {
+        IndexCheck check = start( "fail" );
+
+        assertEquals( 0, check.problems( "select actor0_.id as id1_0_ from Actor actor0_ where actor0_.industry=? "
+            + "and actor0_.id>? order by actor0_.id limit ?" ).size() );
+        assertEquals( 0, check.problems( "select movies0_.Actor_id as Actor_id1_1_0_ from Actor_Movie movies0_ "
+            + "inner join Movie movie1_ on movies0_.movie_id=movie1_.movieId where movies0_.Actor_id=?" ).size() );
+        assertEquals( 0, check.problems( "UPDATE Actor SET salary = ?1 WHERE id IN "
+            + "(SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?2)" ).size() );
+        assertEquals( 0, check.problems( "select actor0_.id from Actor actor0_" ).size() );
+    }
+
+    public void testUnindexedFilterIsReported()
+    {
+        IndexCheck check = start( "fail" );
+
+        assertEquals( "[filter on actor.salary, actor.salary]",
+            check.problems( "select a.id from Actor a where a.salary<'100' or a.salary>?" ).toString() );
+        // the outer query is served by the primary key, the subquery is not
+        assertEquals( "[filter on actor.salary]", check.problems(
+            "delete from Actor where id in (select a.id from Actor a where a.salary=?)" ).toString() );
+    }
+
+    public void testUnindexedJoinIsReported()
+    {
+        IndexCheck check = start( "fail" );
+
+        assertEquals( "[join on actor.salary]", check.problems(
+            "select m.movieId from Movie m inner join Actor a on a.salary=m.collection where m.movieId=?" ).toString() );
+    }
+
+    public void testFailRejectsTheStatement()
+    {
+        start( "fail" );
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        try
+        {
+            em.createQuery( "SELECT a FROM Actor a WHERE a.salary > 0", Actor.class ).getResultList();
+            fail();
+        }
+        catch ( RuntimeException expected )
+        {
+            Throwable cause = expected;
+            while ( !( cause instanceof IllegalStateException ) && cause.getCause() != null )
+            {
+                cause = cause.getCause();
+            }
+            assertTrue( cause.getMessage(), cause.getMessage().startsWith( "No index supports filter on actor.salary" ) );
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+
+    public void testWarnLogsEachStatementOnce()
+    {
+        start( "warn" );
+        List<LogRecord> records = new ArrayList<>();
+        Handler handler = new Handler()
+        {
+            public void publish( LogRecord record )
+            {
+                records.add( record );
+            }
+
+            public void flush()
+            {
+            }
+
+            public void close()
+            {
+            }
+        };
+        IndexCheck.LOG.addHandler( handler );
+        try
+        {
+            for ( int i = 0; i < 3; i++ )
+            {
+                EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+                em.createQuery( "SELECT a FROM Actor a WHERE a.salary = 100", Actor.class ).getResultList();
+                em.close();
+            }
+            new ActorDao().findActorByIndustry( "Film" );
+        }
+        finally
+        {
+            IndexCheck.LOG.removeHandler( handler );
+        }
+
+        assertEquals( 1, records.size() );
+        assertTrue( records.get( 0 ).getMessage().startsWith( "No index supports filter on actor.salary" ) );
+    }
+
+    public void testOffInstallsNothing()
+    {
+        assertNull( start( "off" ) );
+    }
+}
@@ -0,0 +1,101 @@
+package com.hibernate.actor_movie.schema;
+
+import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import org.hibernate.engine.jdbc.connections.spi.ConnectionProvider;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Every query name Actor and Movie declare resolves, and a named native
+ * query the database cannot prepare is reported by name.
+ */
+public class NativeQueryCheckTest
+    extends TestCase
+{
+    protected void setUp()
+    {
+        TestDatabase.useH2( "nativequerycheck" );
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testEveryQueryNameResolves()
+        throws Exception
+    {
+        EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+        try
+        {
+            List<String> graphs = Arrays.asList( Actor.SUMMARY, Actor.WITH_MOVIES, Movie.SUMMARY, Movie.WITH_ACTORS );
+            int names = 0;
+            for ( Class<?> entity : new Class<?>[] { Actor.class, Movie.class } )
+            {
+                for ( Field field : entity.getFields() )
+                {
+                    String name = (String) field.get( null );
+                    if ( !graphs.contains( name ) )
+                    {
+                        assertNotNull( name, em.createNamedQuery( name ) );
+                        names++;
+                    }
+                }
+            }
+            assertEquals( 40, names );
+        }
+        finally
+        {
+            em.close();
+        }
+    }
+
+    public void testUnpreparableStatementIsReported()
+    {
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        ConnectionProvider connections = emf.unwrap( SessionFactoryImplementor.class ).getServiceRegistry()
+            .getService( ConnectionProvider.class );
+        Map<String, String> statements = new TreeMap<>();
+        statements.put( "Movie.fine", "SELECT movieId FROM Movie WHERE verdict = ?1" );
+        statements.put( "Movie.typo", "SELECT movieId FROM Movie WHERE verdit = ?1" );
+        statements.put( "Movie.noTable", "SELECT id FROM Films WHERE name = :name" );
+        try
+        {
+            NativeQueryCheckIntegrator.check( connections, statements );
+            fail( "statements on a missing column and table prepared" );
+        }
+        catch ( IllegalStateException expected )
+        {
+            assertTrue( expected.getMessage(), expected.getMessage().contains( "Movie.typo" ) );
+            assertTrue( expected.getMessage(), expected.getMessage().contains( "Movie.noTable" ) );
+            assertFalse( expected.getMessage(), expected.getMessage().contains( "Movie.fine" ) );
+        }
+
+        statements.remove( "Movie.typo" );
+        statements.remove( "Movie.noTable" );
+        NativeQueryCheckIntegrator.check( connections, statements );
+    }
+
+    public void testParametersBecomeJdbcPlaceholders()
+    {
+        assertEquals( "UPDATE Actor SET salary = ? WHERE id IN (SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?)",
+                      NativeQueryCheckIntegrator.jdbc( "UPDATE Actor SET salary = ?1 WHERE id IN "
+                          + "(SELECT Actor_id FROM Actor_Movie WHERE movie_id = ?12)" ) );
+        assertEquals( "SELECT id FROM Actor WHERE name = ? AND industry = ?",
+                      NativeQueryCheckIntegrator.jdbc( "SELECT id FROM Actor WHERE name = :name AND industry = :industry" ) );
+    }
+}
@@ -0,0 +1,189 @@
+package com.hibernate.actor_movie.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Ranking of the text index, and the search index following DAO writes.
+ */
+public class SearchIndexTest
+    extends TestCase
+{
+    private static TextIndex titles()
+    {
+        int[] ids = { 1, 2, 3, 4, 5, 6 };
+        String[] texts = { "The Godfather Part II", "The Godfather", "Godzilla", "Goodfellas", "Amélie",
+            "The Good, the Bad and the Ugly" };
+        return TextIndex.of( ids, texts, ids.length );
+    }
+
+    public void testExactWordsBeforeCompletionsShorterTextsFirst()
+    {
+        TextIndex index = titles();
+
+        assertEquals( 6, index.size() );
+        assertTrue( Arrays.equals( new int[] { 2, 1 }, index.search( "godfather", 10 ) ) );
+        // "good" itself, then the closer completion "goodfellas"; godzilla and godfather do not start with it
+        assertTrue( Arrays.equals( new int[] { 6, 4 }, index.search( "Good", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 3, 2, 1 }, index.search( "god", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 3 }, index.search( "god", 1 ) ) );
+        assertEquals( 0, index.search( "", 10 ).length );
+        assertEquals( 0, index.search( "godfather", 0 ).length );
+    }
+
+    public void testEveryQueryWordMustMatch()
+    {
+        TextIndex index = titles();
+
+        assertTrue( Arrays.equals( new int[] { 1 }, index.search( "godfather part", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 1 }, index.search( "the godf pa", 10 ) ) );
+        assertEquals( 0, index.search( "godfather ugly", 10 ).length );
+    }
+
+    public void testMisspellingsAndAccents()
+    {
+        TextIndex index = titles();
+
+        assertTrue( Arrays.equals( new int[] { 2, 1 }, index.search( "godfahter", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 4 }, index.search( "goodfelas", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 5 }, index.search( "amelie", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 5 }, index.search( "AMÉL", 10 ) ) );
+        assertEquals( 0, index.search( "xyzzy", 10 ).length );
+    }
+
+    public void testPutAndRemove()
+    {
+        TextIndex index = titles();
+
+        index.put( 3, "Godzilla vs Kong" );
+        index.put( 7, "Kong: Skull Island" );
+        index.remove( 1 );
+
+        assertEquals( 6, index.size() );
+        assertTrue( Arrays.equals( new int[] { 3, 7 }, index.search( "kong", 10 ) ) );
+        assertTrue( Arrays.equals( new int[] { 2 }, index.search( "godfather", 10 ) ) );
+        assertEquals( 0, index.search( "part", 10 ).length );
+
+        index.put( 7, null );
+        index.remove( 99 );
+        assertEquals( 5, index.size() );
+        assertTrue( Arrays.equals( new int[] { 3 }, index.search( "kong", 10 ) ) );
+    }
+
+    public void testIndexFollowsDaoWrites()
+    {
+        TestDatabase.useH2( "search", SearchIndex.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            ActorDao actorDao = new ActorDao();
+            MovieDao movieDao = new MovieDao();
+            actorDao.addActor( actor( 1, "Marlon Brando", "Film" ) );
+            actorDao.addActor( actor( 2, "Al Pacino", "Film" ) );
+            actorDao.addActor( actor( 3, "Robert De Niro", "Stage" ) );
+            movieDao.addMovie( movie( 10, "The Godfather", "Francis Ford Coppola" ), Arrays.asList( 1, 2 ) );
+            movieDao.addMovie( movie( 11, "Goodfellas", "Martin Scorsese" ), Arrays.asList( 3 ) );
+
+            assertEquals( Arrays.asList( 2 ), actorIds( actorDao.searchActorsByName( "paci", 10 ) ) );
+            assertEquals( Arrays.asList( 3 ), actorIds( actorDao.searchActorsByName( "de nirro", 10 ) ) );
+            assertEquals( Arrays.asList( 10 ), movieIds( movieDao.searchMoviesByName( "godfahter", 10 ) ) );
+            assertEquals( Arrays.asList( 11 ), movieIds( movieDao.searchMoviesByDirector( "scor", 10 ) ) );
+            assertTrue( actorDao.searchActorsByName( "streep", 10 ).isEmpty() );
+
+            // a rename through the entity replaces the old words
+            EntityManager em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.find( Actor.class, 2 ).setName( "Michael Corleone" );
+            em.getTransaction().commit();
+            em.close();
+            assertEquals( Arrays.asList( 2 ), actorIds( actorDao.searchActorsByName( "corleone", 10 ) ) );
+            assertTrue( actorDao.searchActorsByName( "pacino", 10 ).isEmpty() );
+
+            // a rolled back insert never reaches the index
+            em = EntityManagerFactoryProvider.getEntityManagerFactory().createEntityManager();
+            em.getTransaction().begin();
+            em.persist( actor( 4, "Meryl Streep", "Film" ) );
+            em.flush();
+            em.getTransaction().rollback();
+            em.close();
+            assertTrue( actorDao.searchActorsByName( "streep", 10 ).isEmpty() );
+
+            // bulk deletes go around Hibernate, the index reloads
+            actorDao.deleteAllActorsByIndustry( "Film" );
+            assertTrue( actorDao.searchActorsByName( "brando", 10 ).isEmpty() );
+            assertEquals( Arrays.asList( 3 ), actorIds( actorDao.searchActorsByName( "robert", 10 ) ) );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+        assertNull( SearchIndex.current( emf ) );
+    }
+
+    public void testSearchNeedsTheIndex()
+    {
+        EntityManagerFactoryProvider.close();
+        TestDatabase.useH2( "search-off" );
+        try
+        {
+            new ActorDao().searchActorsByName( "brando", 10 );
+            fail( "searched without an index" );
+        }
+        catch ( IllegalStateException expected )
+        {
+            assertTrue( expected.getMessage().contains( SearchIndex.ENABLED_PROPERTY ) );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+    }
+
+    private static List<Integer> actorIds( List<Actor> actors )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( Actor actor : actors )
+        {
+            ids.add( actor.getId() );
+        }
+        return ids;
+    }
+
+    private static List<Integer> movieIds( List<Movie> movies )
+    {
+        List<Integer> ids = new ArrayList<>();
+        for ( Movie movie : movies )
+        {
+            ids.add( movie.getMovieId() );
+        }
+        return ids;
+    }
+
+    private static Actor actor( int id, String name, String industry )
+    {
+        Actor actor = TestCatalogue.actor( id, industry );
+        actor.setName( name );
+        return actor;
+    }
+
+    private static Movie movie( int id, String name, String director )
+    {
+        Movie movie = TestCatalogue.movie( id, name );
+        movie.setMovieDirector( director );
+        return movie;
+    }
+}
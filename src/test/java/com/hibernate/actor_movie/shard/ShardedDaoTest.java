@@ -0,0 +1,231 @@
+package com.hibernate.actor_movie.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Actor;
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.change.ChangeStream;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+import com.hibernate.actor_movie.graph.CastGraphIndex;
+import com.hibernate.actor_movie.schema.IndexCheck;
+import com.hibernate.actor_movie.search.SearchIndex;
+
+import junit.framework.TestCase;
+
+/**
+ * Actors and movies on three in-memory databases: ids tell the shard, point
+ * lookups go to one shard, finders gather from all of them, and a movie
+ * whose cast spans shards is copied so every link stays on one database.
+ */
+public class ShardedDaoTest
+    extends TestCase
+{
+    private ShardedCatalogue catalogue;
+    private ShardedActorDao actorDao;
+    private ShardedMovieDao movieDao;
+    // an industry stored on each shard by ShardKey.INDUSTRY
+    private String[] industries;
+
+    protected void setUp()
+    {
+        List<Map<String, Object>> shards = new ArrayList<>();
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            shards.add( TestDatabase.h2( "shard" + shard ) );
+        }
+        catalogue = ShardedCatalogue.open( shards, ShardKey.INDUSTRY );
+        actorDao = new ShardedActorDao( catalogue );
+        movieDao = new ShardedMovieDao( catalogue );
+
+        industries = new String[3];
+        for ( int i = 0, found = 0; found < 3; i++ )
+        {
+            Actor probe = actor( "Industry " + i );
+            int shard = ShardKey.INDUSTRY.actorShard( probe, 3 );
+            if ( industries[shard] == null )
+            {
+                industries[shard] = probe.getIndustry();
+                found++;
+            }
+        }
+    }
+
+    protected void tearDown()
+    {
+        catalogue.close();
+    }
+
+    public void testIdsRouteToTheirShard()
+    {
+        int idsPerShard = Integer.MAX_VALUE / 3;
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            Actor actor = actor( industries[shard] );
+            actorDao.addActor( actor );
+
+            assertEquals( 1 + shard * idsPerShard, actor.getId() );
+            assertEquals( shard, catalogue.shardOf( actor.getId() ) );
+            for ( int other = 0; other < 3; other++ )
+            {
+                assertEquals( other == shard, actorDao.getShard( other ).findActorById( actor.getId() ) != null );
+            }
+            assertEquals( actor.getName(), actorDao.findActorById( actor.getId() ).getName() );
+        }
+
+        // a caller's id decides the shard, whatever the key says
+        Actor assigned = actor( industries[0] );
+        assigned.setId( 2 * idsPerShard + 100 );
+        actorDao.addActor( assigned );
+        assertNotNull( actorDao.getShard( 2 ).findActorById( assigned.getId() ) );
+
+        List<Actor> found = actorDao.findActorsByIds( Arrays.asList( assigned.getId(), 1, 7, 1 + idsPerShard, -1 ) );
+        assertEquals( assigned.getId(), found.get( 0 ).getId() );
+        assertEquals( 1, found.get( 1 ).getId() );
+        assertNull( found.get( 2 ) );
+        assertEquals( 1 + idsPerShard, found.get( 3 ).getId() );
+        assertNull( found.get( 4 ) );
+        assertNull( actorDao.findActorById( 0 ) );
+    }
+
+    public void testFindersGatherFromEveryShard()
+    {
+        for ( int i = 0; i < 9; i++ )
+        {
+            Actor actor = actor( industries[i % 3] );
+            actor.setName( i % 2 == 0 ? "Even" : "Odd" );
+            actorDao.addActor( actor );
+        }
+
+        assertEquals( 9, actorDao.findAllActors().size() );
+        assertEquals( 5, actorDao.findActorByName( "Even" ).size() );
+        assertEquals( 3, actorDao.findActorByIndustry( industries[1] ).size() );
+        assertEquals( 9, actorDao.findActorBetweenAge( 20, 40 ).size() );
+
+        actorDao.deleteAllActorsByIndustry( industries[2] );
+        assertEquals( 6, actorDao.findAllActors().size() );
+    }
+
+    public void testCastSpanningShardsIsCopied()
+    {
+        List<Integer> cast = new ArrayList<>();
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            Actor actor = actor( industries[shard] );
+            actorDao.addActor( actor );
+            cast.add( actor.getId() );
+        }
+        Movie movie = movie( "Crossover" );
+        movieDao.addMovie( movie, cast );
+        int home = catalogue.shardOf( movie.getMovieId() );
+        assertEquals( ShardKey.INDUSTRY.movieShard( movie, 3 ), home );
+
+        // the home row and two copies, each linked to the actor of its shard
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            List<Movie> rows = movieDao.getShard( shard ).findMovieByName( "Crossover", Movie.WITH_ACTORS );
+            assertEquals( 1, rows.size() );
+            assertEquals( movie.getMovieId(), rows.get( 0 ).getMovieId() );
+            assertEquals( 1, rows.get( 0 ).getActor().size() );
+            assertEquals( cast.get( shard ).intValue(), rows.get( 0 ).getActor().get( 0 ).getId() );
+        }
+
+        List<Movie> movies = movieDao.findAllMoviesByGenre( "Drama", Movie.WITH_ACTORS );
+        assertEquals( 1, movies.size() );
+        assertEquals( new HashSet<>( cast ), ids( movies.get( 0 ).getActor() ) );
+        assertEquals( 1, movieDao.findAllMoviesByGenre( "Drama" ).size() );
+        assertEquals( 3, movieDao.findMoviesByIds( Arrays.asList( movie.getMovieId() ), Movie.WITH_ACTORS ).get( 0 )
+            .getActor().size() );
+        assertEquals( "Crossover", movieDao.findMoviesByIds( Arrays.asList( movie.getMovieId() ) ).get( 0 ).getMovieName() );
+        assertEquals( new HashSet<>( cast ), ids( actorDao.findAllActorsByMovieName( "Crossover" ) ) );
+        for ( int actorId : cast )
+        {
+            assertEquals( 1, movieDao.findAllMoviesByActorId( actorId ).size() );
+            assertEquals( 1, actorDao.findActorById( actorId, Actor.WITH_MOVIES ).getMovies().size() );
+        }
+
+        // updates reach every copy
+        assertEquals( 15, movieDao.addToMovieCollectionById( movie.getMovieId(), 5 ).getCollection() );
+        movieDao.updateMovieCollectionByVerdict( "Hit", 1 );
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            assertEquals( 16, movieDao.getShard( shard ).findMovieByName( "Crossover" ).get( 0 ).getCollection() );
+        }
+        assertEquals( 1, movieDao.findAllMovieCollectionGreaterThan( 15 ).size() );
+
+        // so do deletes, through the shard of the actor named
+        Actor named = actorDao.findActorById( cast.get( 1 ) );
+        movieDao.deleteAllMoviesByActorName( named.getName() );
+        for ( int shard = 0; shard < 3; shard++ )
+        {
+            assertTrue( movieDao.getShard( shard ).findMovieByName( "Crossover" ).isEmpty() );
+        }
+        assertTrue( movieDao.findAllMoviesByActorId( cast.get( 0 ) ).isEmpty() );
+        assertEquals( 3, actorDao.findAllActors().size() );
+    }
+
+    public void testShardsLeaveOtherFactoriesTheirSubsystems()
+    {
+        TestDatabase.useH2( "unsharded",
+            CastGraphIndex.ENABLED_PROPERTY, "true",
+            AggregateView.ENABLED_PROPERTY, "true",
+            SearchIndex.ENABLED_PROPERTY, "true",
+            ChangeStream.ENABLED_PROPERTY, "true" );
+        EntityManagerFactory emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        try
+        {
+            // shard factories are built with all of them off, then closed
+            ShardedCatalogue.open( Arrays.asList( TestDatabase.h2( "extraShard" ) ), ShardKey.NAME ).close();
+            assertNull( CastGraphIndex.current( catalogue.getFactory( 0 ) ) );
+
+            assertNotNull( CastGraphIndex.current( emf ) );
+            assertNotNull( AggregateView.current( emf ) );
+            assertNotNull( SearchIndex.current( emf ) );
+            assertNotNull( ChangeStream.current( emf ) );
+            assertNotNull( IndexCheck.current( emf ) );
+            new ActorDao().addActor( TestCatalogue.actor( 1 ) );
+            assertEquals( 1, AggregateView.current( emf ).salaryStats( ActorDimension.INDUSTRY ).get( 0 ).getActors() );
+        }
+        finally
+        {
+            EntityManagerFactoryProvider.close();
+        }
+    }
+
+    private static Set<Integer> ids( List<Actor> actors )
+    {
+        Set<Integer> ids = new HashSet<>();
+        for ( Actor actor : actors )
+        {
+            ids.add( actor.getId() );
+        }
+        return ids;
+    }
+
+    private static int names;
+
+    private static Actor actor( String industry )
+    {
+        Actor actor = TestCatalogue.actor( 0, industry );
+        actor.setName( "Actor " + ++names );
+        return actor;
+    }
+
+    private static Movie movie( String name )
+    {
+        Movie movie = TestCatalogue.movie( 0, name );
+        movie.setCollection( 10 );
+        return movie;
+    }
+}
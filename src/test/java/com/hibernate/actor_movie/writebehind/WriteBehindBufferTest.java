@@ -0,0 +1,261 @@
+package com.hibernate.actor_movie.writebehind;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManagerFactory;
+
+import com.hibernate.JPA.Hibernate.Movie;
+import com.hibernate.actor_movie.aggregate.ActorDimension;
+import com.hibernate.actor_movie.aggregate.AggregateView;
+import com.hibernate.actor_movie.aggregate.MovieDimension;
+import com.hibernate.actor_movie.dao.ActorDao;
+import com.hibernate.actor_movie.dao.EntityManagerFactoryProvider;
+import com.hibernate.actor_movie.dao.MovieDao;
+import com.hibernate.actor_movie.dao.TestCatalogue;
+import com.hibernate.actor_movie.dao.TestDatabase;
+
+import junit.framework.TestCase;
+
+/**
+ * Increments summed in memory and written in batches: nothing lost under
+ * concurrent adds and flushes, one UPDATE per row per flush, caches and the
+ * aggregate view kept in step, and journaled increments replayed exactly
+ * once after a crash.
+ */
+public class WriteBehindBufferTest
+    extends TestCase
+{
+    private EntityManagerFactory emf;
+    private ActorDao actorDao;
+    private MovieDao movieDao;
+
+    protected void setUp()
+    {
+        TestDatabase.useH2( "writebehind", AggregateView.ENABLED_PROPERTY, "true" );
+        emf = EntityManagerFactoryProvider.getEntityManagerFactory();
+        actorDao = new ActorDao();
+        movieDao = new MovieDao();
+        actorDao.addActor( TestCatalogue.actor( 1, "Film" ) );
+        actorDao.addActor( TestCatalogue.actor( 2, "Stage" ) );
+        movieDao.addMovie( movie( 10, "Hit" ), Arrays.asList( 1 ) );
+        movieDao.addMovie( movie( 11, "Flop" ), Arrays.asList( 2 ) );
+    }
+
+    protected void tearDown()
+    {
+        EntityManagerFactoryProvider.close();
+    }
+
+    public void testIncrementsCoalescePerRow()
+    {
+        WriteBehindBuffer buffer = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS );
+        for ( int i = 0; i < 1000; i++ )
+        {
+            buffer.addToMovieCollection( 10 + i % 2, 1 );
+            buffer.raiseActorSalary( 1, 0.5 );
+        }
+        buffer.addToMovieCollection( 99, 5 );
+        // still pending
+        assertEquals( 100, movie( 10 ).getCollection() );
+
+        buffer.flush();
+        assertEquals( 600, movie( 10 ).getCollection() );
+        assertEquals( 600, movie( 11 ).getCollection() );
+        assertEquals( 1, movie( 10 ).getVersion() );
+        assertEquals( 1500.0, actorDao.findActorById( 1 ).getSalary() );
+        assertEquals( 1, actorDao.findActorById( 1 ).getVersion() );
+        assertEquals( 0, actorDao.findActorById( 2 ).getVersion() );
+        assertEquals( 2001, buffer.getIncrements() );
+        // movie 99 does not exist; its UPDATE matches nothing
+        assertEquals( 4, buffer.getRowsWritten() );
+        assertEquals( 1, buffer.getFlushes() );
+        assertViewMatchesDatabase();
+
+        buffer.flush();
+        assertEquals( 1, buffer.getFlushes() );
+        buffer.close();
+    }
+
+    public void testConcurrentAddsAndFlushesLoseNothing() throws Exception
+    {
+        WriteBehindBuffer buffer = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.MILLISECONDS );
+        ExecutorService threads = Executors.newFixedThreadPool( 8 );
+        try
+        {
+            List<Future<?>> adds = new ArrayList<>();
+            for ( int t = 0; t < 8; t++ )
+            {
+                adds.add( threads.submit( () -> {
+                    for ( int i = 0; i < 5000; i++ )
+                    {
+                        buffer.addToMovieCollection( 10 + i % 2, 1 );
+                        buffer.raiseActorSalary( 1 + i % 2, 0.25 );
+                    }
+                } ) );
+            }
+            for ( Future<?> add : adds )
+            {
+                add.get();
+            }
+        }
+        finally
+        {
+            threads.shutdown();
+        }
+        buffer.close();
+
+        assertEquals( 20100, movie( 10 ).getCollection() );
+        assertEquals( 20100, movie( 11 ).getCollection() );
+        assertEquals( 6000.0, actorDao.findActorById( 1 ).getSalary() );
+        assertEquals( 6000.0, actorDao.findActorById( 2 ).getSalary() );
+        assertEquals( 80000, buffer.getIncrements() );
+        assertTrue( buffer.getRowsWritten() < 80000 );
+        assertViewMatchesDatabase();
+    }
+
+    public void testPendingRowsTriggerFlush() throws Exception
+    {
+        WriteBehindBuffer buffer = new WriteBehindBuffer( emf, 2, 1, TimeUnit.HOURS );
+        buffer.addToMovieCollection( 10, 7 );
+        buffer.raiseActorSalary( 2, 7 );
+        for ( int wait = 0; wait < 500 && buffer.getFlushes() == 0; wait++ )
+        {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, buffer.getFlushes() );
+        assertEquals( 107, movie( 10 ).getCollection() );
+        assertEquals( 1007.0, actorDao.findActorById( 2 ).getSalary() );
+        buffer.close();
+    }
+
+    public void testCachedEntitiesSeeFlushedIncrements()
+    {
+        WriteBehindBuffer buffer = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS );
+        assertEquals( 100, movie( 10 ).getCollection() );
+        assertTrue( emf.getCache().contains( Movie.class, 10 ) );
+
+        buffer.addToMovieCollection( 10, 5 );
+        buffer.flush();
+        assertEquals( 105, movie( 10 ).getCollection() );
+        buffer.close();
+    }
+
+    public void testJournalReplaysOnceAfterCrash() throws IOException
+    {
+        Path journal = Files.createTempDirectory( "write-behind" );
+        Path copy = Files.createTempDirectory( "write-behind-copy" );
+        try
+        {
+            WriteBehindBuffer crashed = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS, journal );
+            crashed.addToMovieCollection( 10, 3 );
+            crashed.addToMovieCollection( 10, 4 );
+            crashed.raiseActorSalary( 1, 2.5 );
+            crashed.abandon();
+            assertEquals( 100, movie( 10 ).getCollection() );
+            copyFiles( journal, copy );
+
+            WriteBehindBuffer recovered = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS, journal );
+            recovered.addToMovieCollection( 11, 1 );
+            recovered.close();
+            assertEquals( 107, movie( 10 ).getCollection() );
+            assertEquals( 101, movie( 11 ).getCollection() );
+            assertEquals( 1002.5, actorDao.findActorById( 1 ).getSalary() );
+            assertEquals( 0, files( journal ).size() );
+            assertViewMatchesDatabase();
+
+            // a segment whose flush committed but which was not deleted yet is not replayed
+            copyFiles( copy, journal );
+            new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS, journal ).close();
+            assertEquals( 107, movie( 10 ).getCollection() );
+            assertEquals( 0, files( journal ).size() );
+        }
+        finally
+        {
+            deleteAll( journal );
+            deleteAll( copy );
+        }
+    }
+
+    public void testClosedBufferRejectsIncrements()
+    {
+        WriteBehindBuffer buffer = new WriteBehindBuffer( emf, 1000, 1, TimeUnit.HOURS );
+        buffer.addToMovieCollection( 10, 1 );
+        buffer.close();
+        assertEquals( 101, movie( 10 ).getCollection() );
+        try
+        {
+            buffer.addToMovieCollection( 10, 1 );
+            fail( "added to a closed buffer" );
+        }
+        catch ( IllegalStateException expected )
+        {
+        }
+        buffer.close();
+    }
+
+    private Movie movie( int id )
+    {
+        return movieDao.findMoviesByIds( Arrays.asList( id ) ).get( 0 );
+    }
+
+    private void assertViewMatchesDatabase()
+    {
+        AggregateView view = AggregateView.current( emf );
+        for ( ActorDimension by : ActorDimension.values() )
+        {
+            assertEquals( by.name(), actorDao.findSalaryStats( by ).toString(), view.salaryStats( by ).toString() );
+        }
+        for ( MovieDimension by : MovieDimension.values() )
+        {
+            assertEquals( by.name(), movieDao.findCollectionTotals( by ).toString(),
+                view.collectionTotals( by ).toString() );
+        }
+    }
+
+    private static List<Path> files( Path directory ) throws IOException
+    {
+        List<Path> files = new ArrayList<>();
+        try ( DirectoryStream<Path> entries = Files.newDirectoryStream( directory ) )
+        {
+            for ( Path entry : entries )
+            {
+                files.add( entry );
+            }
+        }
+        return files;
+    }
+
+    private static void copyFiles( Path from, Path to ) throws IOException
+    {
+        for ( Path file : files( from ) )
+        {
+            Files.copy( file, to.resolve( file.getFileName() ) );
+        }
+    }
+
+    private static void deleteAll( Path directory ) throws IOException
+    {
+        for ( Path file : files( directory ) )
+        {
+            Files.delete( file );
+        }
+        Files.delete( directory );
+    }
+
+    private static Movie movie( int id, String verdict )
+    {
+        Movie movie = TestCatalogue.movie( id );
+        movie.setVerdict( verdict );
+        return movie;
+    }
+}